@@ -3,6 +3,7 @@ package agentIO;
 import TournamentSystem.tools.TSDiskAgentDataTransfer;
 import TournamentSystem.TSResultStorage;
 import controllers.*;
+import controllers.TD.ntuple4.NTuple4WeightFile;
 import games.Arena;
 
 import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
@@ -29,6 +30,8 @@ public class LoadSaveGBG {
 	private final FileFilter tdAgentExt = new ExtensionFilter("agt.zip", "TD-Agents");
 	private final FileFilter tdTSRExt = new ExtensionFilter("tsr.zip", "Tournament-Result");
 	private final FileFilter txtExt = new ExtensionFilter(".txt.zip", "Compressed Text-Files (.txt.zip)");
+	private final FileFilter ntwExt = new ExtensionFilter(NTuple4WeightFile.EXT, "N-tuple weight files ("
+			+NTuple4WeightFile.EXT+")");
 	private final Arena arenaGame;
 	private final JFrame arenaFrame;
 	private final String TAG = "[LoadSaveGBG] ";
@@ -110,7 +113,9 @@ public class LoadSaveGBG {
 	// Menu: Save Agent
 	// ==============================================================
 	/**
-	 * Save agent to disk without file chooser dialog
+	 * Save agent to disk without file chooser dialog. If {@code filePath} has the extension
+	 * {@link NTuple4WeightFile#EXT}, the agent (an n-tuple agent) is saved in the binary weight format of
+	 * {@link NTuple4WeightFile}, else as {@code .agt.zip}.
 	 * 
 	 * @param pa	the agent
 	 * @param filePath the location on disk
@@ -123,6 +128,19 @@ public class LoadSaveGBG {
 			throw new IOException("ERROR: pa=null, there is no agent to save to disk");
 		}
 		
+		if (NTuple4WeightFile.isWeightFile(filePath)) {
+			try {
+				NTuple4WeightFile.save(pa, filePath);
+			} catch (IOException e) {
+				if(arenaGame!=null)
+					arenaGame.setStatusMessage("[ERROR: Could not save to file " + filePath + " !]");
+				throw e;
+			}
+			if(arenaGame!=null)
+				arenaGame.setStatusMessage("Done.");
+			return;
+		}
+
 		try {
 			fos = new FileOutputStream(filePath);
 		} catch (FileNotFoundException e2) {
@@ -439,7 +457,8 @@ public class LoadSaveGBG {
 	 * not yet have certain elements, which are then filled in from defaults)
 	 * 
 	 * @param filePath		if null, open a file choose dialog. If not null, open this fully 
-	 * 						qualified file with suffix .agt.zip.
+	 * 						qualified file with suffix .agt.zip or {@link NTuple4WeightFile#EXT} (n-tuple agent
+	 * 						with memory-mapped weights, see {@link NTuple4WeightFile}).
 	 * @return				the agent loaded
 	 * @throws IOException
 	 */
@@ -468,11 +487,13 @@ public class LoadSaveGBG {
 			if (fc==null) throw new IOException("No JFileChooser present!");
 			
 			fc.removeChoosableFileFilter(txtExt);
+			fc.addChoosableFileFilter(ntwExt);
 			fc.setFileFilter(tdAgentExt);
 			fc.setCurrentDirectory(new File(strDir));
 			fc.setAcceptAllFileFilterUsed(false);
 
 			int returnVal = fc.showOpenDialog(arenaFrame);
+			fc.removeChoosableFileFilter(ntwExt);
 
 			if (returnVal == JFileChooser.APPROVE_OPTION) {
 				try {
@@ -501,6 +522,11 @@ public class LoadSaveGBG {
 			}
 		}
 		
+		if (fis != null && NTuple4WeightFile.isWeightFile(filePath)) {
+			fis.close();		// the weight file is memory-mapped, not streamed
+			return loadWeightFileAgent(filePath);
+		}
+
 		if (fis != null) {
 			GZIPInputStream gs;
 			try {
@@ -534,6 +560,42 @@ public class LoadSaveGBG {
 		return pa;
 	}
 
+	/**
+	 * Load an n-tuple agent (or a wrapper around one) from a binary weight file ({@link NTuple4WeightFile}). Its
+	 * weights are memory-mapped read-only and are used in place.
+	 *
+	 * @param filePath	fully qualified file with suffix {@link NTuple4WeightFile#EXT}
+	 * @return the agent loaded and instantiated
+	 * @throws IOException
+	 */
+	private PlayAgent loadWeightFileAgent(String filePath) throws IOException {
+		PlayAgent pa;
+		try {
+			pa = NTuple4WeightFile.load(filePath);
+		} catch (IOException e) {
+			if(arenaGame!=null) {
+				arenaGame.showMessage("ERROR: " + e.getMessage(),
+					e.getClass().getName(), JOptionPane.ERROR_MESSAGE);
+				arenaGame.setStatusMessage("[ERROR: Could not load agent from " + filePath + " !]");
+			}
+			throw e;
+		}
+		pa.setAgentFile(filePath);
+		pa.instantiateAfterLoading();
+		if (pa.getParOther() == null) {
+			((AgentBase) pa).setDefaultParOther();
+		}
+		if (pa.getParReplay() == null) {
+			((AgentBase) pa).setDefaultParReplay();
+		}
+		if (pa.getParWrapper() == null) {
+			((AgentBase) pa).setDefaultParWrapper(pa.getParOther());
+		}
+		if(arenaGame!=null)
+			arenaGame.setStatusMessage("Done.");
+		return pa;
+	}
+
 	/**
 	 * load saved tournament results from disk to reopen visualization
 	 * @param filePath		if null, open a file choose dialog. If not null, open this fully
@@ -8,6 +8,7 @@ import games.StateObsNondeterministic;
 import params.ParMaxN;
 import params.ParOther;
 import tools.ScoreTuple;
+import tools.TranspositionTable;
 import tools.Types;
 import tools.Types.ACTIONS;
 import tools.Types.ACTIONS_VT;
@@ -16,8 +17,9 @@ import java.io.Serial;
 import java.io.Serializable;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 /**
  * The Expectimax-N agent implements the Expectimax-N algorithm via interface {@link PlayAgent}. 
@@ -25,6 +27,28 @@ import java.util.Random;
  * {@link ScoreTuple}, an N-tuple of game scores (one score for each player 0, 1,..., N-1).
  * It traverses the game tree up to a prescribed depth (default: 10, see {@link ParMaxN}).
  * <p>
+ * The values of the chance nodes after deterministic actions are stored in a bounded {@link TranspositionTable}
+ * (if {@code m_useHashMap}, only for perfect-information games).
+ * <p>
+ * If {@link ParMaxN#getMaxNMoveTime()} {@code > 0}, {@link #getNextAction2(StateObservation, boolean, boolean)}
+ * searches with <b>iterative deepening</b> until the time budget expires, in the same way as {@link MaxNAgent}.
+ * <p>
+ * If {@link ParMaxN#getMaxNParallelism()} {@code > 1}, the root actions and the chance outcomes of chance nodes up to
+ * depth {@link ParMaxN#getMaxNParallelDepth()} are searched in parallel (fork/join). The child results are combined
+ * in the same order as in the sequential search, so vTable and score tuples are the same. For this reason, a table
+ * entry is only used if its value does not depend on the search order: a depth-limited value only for the same draft,
+ * an exact value for every draft which allows to search its subtree without cutoff. Note that in parallel mode,
+ * {@link #estimateGameValueTuple(StateObservation, ScoreTuple)} is called from several threads. The fork/join pool is
+ * kept over the moves (and replaced if the parallelism changes), {@link #shutdownSearchPool()} releases it.
+ * <p>
+ * If {@link ParMaxN#getMaxNStarPruning()} {@code > 0}, chance nodes are pruned with <b>Star1</b> or <b>Star2</b>
+ * (Ballard's *-minimax): Since every value lies in {@code [getMinGameScore(), getMaxGameScore()]}, an alpha-beta
+ * window on the value of player 0 can be passed through chance nodes, and the outcomes of a chance node are only
+ * searched until its expected value is known to fall outside the window. This is only done for 2-player zero-sum
+ * games with perfect information (and requires that the estimates at the depth cutoff lie within the game score
+ * bounds), other games use full expansion. The root actions are searched with a full window, so vTable is the same
+ * as with full expansion. The number of visited nodes ({@link #getCountNodes()}) allows to compare both.
+ * <p>
  * {@link ExpectimaxNAgent} is for <b>non-deterministic</b> games. For deterministic games see 
  * {@link MaxNAgent}.
  * 
@@ -56,9 +80,20 @@ public class ExpectimaxNAgent extends AgentBase implements PlayAgent, Serializab
 
 	//	protected boolean m_rgs=true;  // use now AgentBase::m_oPar.getRewardIsGameScore()
 	private boolean m_useHashMap=true;	// new 2021-10-18
-	private final HashMap<String,ScoreTuple> hm;
+	private transient TranspositionTable m_table;	// created on demand (not saved with the agent)
+	private transient ForkJoinPool m_pool;			// created on demand, if getMaxNParallelism() > 1 (see getSearchPool)
 	protected int countTerminal;		// # of terminal node visits in getNextAction2
 	protected int countMaxDepth;		// # of premature returns due to maxDepth in getNextAction2
+	protected int countNodes;			// # of visited nodes in getNextAction2 (table hits not counted)
+	protected int countStarCuts;		// # of chance nodes cut by Star1/Star2 pruning in getNextAction2
+	private int m_star;					// the chance-node pruning of the current search: 0 = none, 1 = Star1, 2 = Star2
+	private double m_starLow, m_starHigh;	// the game score bounds for Star1/Star2 pruning
+	private boolean m_rootCutoff;		// true, if the last searchRoot had a depth cutoff (incl. depth-limited table hits)
+	private int m_searchDepth;			// the depth of the current search (m_depth or the iterative deepening depth)
+	private long m_deadline = 0;		// System.nanoTime() when the current search has to stop, 0: no time limit
+	private boolean m_partialIter;		// true, if the last iteration of the current search was stopped by the deadline
+	private int m_lastDepth;			// the last completed search depth in getNextAction2
+	private static final double STAR_EPS = 1e-12;	// relative margin of Star1/Star2 cuts
 	private final boolean DBG_EWN = false;
 	private final int DBG_EWN_DEPTH = 2;
 
@@ -77,7 +112,6 @@ public class ExpectimaxNAgent extends AgentBase implements PlayAgent, Serializab
 		super.setGameNum(0);
         rand = new Random(System.currentTimeMillis());
         m_mpar = new ParMaxN();
-		hm = new HashMap<>();
 		setAgentState(AgentState.TRAINED);
 	}
 	
@@ -89,7 +123,6 @@ public class ExpectimaxNAgent extends AgentBase implements PlayAgent, Serializab
 		rand = new Random(System.currentTimeMillis());
 		m_mpar = mpar;
 		m_depth = mpar.getMaxNDepth();
-		hm = new HashMap<>();
 		m_useHashMap = mpar.getMaxNUseHashmap();
 		setAgentState(AgentState.TRAINED);		// do again to set oPar's agent state to TRAINED
 	}
@@ -117,15 +150,14 @@ public class ExpectimaxNAgent extends AgentBase implements PlayAgent, Serializab
 		//m_arena.m_xab.setOParFrom(n, this.getParOther() );  // now in super
 	}
 
-	private ScoreTuple retrieveFromHashMap(boolean m_useHashMap, String stringRep) {
-		ScoreTuple sc = null;
-		if (m_useHashMap) {
-			// speed up MaxNAgent for repeated calls by storing/retrieving the
-			// scores of visited states in HashMap hm:
-			sc = hm.get(stringRep); 		// returns null if not in hm
-			//System.out.println(stringRep+":"+sc);
-		}
-		return sc;
+	/**
+	 * @return the transposition table for {@code so}'s number of players (created on first call, after loading
+	 * 		   the agent and if the number of players changes)
+	 */
+	private TranspositionTable getTable(StateObservation so) {
+		if (m_table==null || m_table.getNumPlayers()!=so.getNumPlayers())
+			m_table = new TranspositionTable(m_mpar.getMaxNTableSizeMB(), so.getNumPlayers());
+		return m_table;
 	}
 
 	/**
@@ -165,12 +197,94 @@ public class ExpectimaxNAgent extends AgentBase implements PlayAgent, Serializab
 //			System.out.print(soND);
 //		}
 
+		if (m_useHashMap) getTable(soND).newSearch();
+		initStarPruning(soND);
+		m_pool = getSearchPool(m_mpar.getMaxNParallelism());
+		long startTime = System.nanoTime();
+		ACTIONS_VT actBestVT;
+
+		if (m_mpar.getMaxNMoveTime() > 0) {
+			actBestVT = iterativeDeepening(soND, silent);
+		} else {
+			m_searchDepth = m_lastDepth = m_depth;
+			actBestVT = searchRoot(soND, silent, null);
+		}
+
+		if (!silent) {
+			System.out.println("[ExpectimaxN] depth reached: " + m_lastDepth + (m_partialIter ? " (+ partial)" : "")
+					+ ", time: " + (System.nanoTime() - startTime) / 1_000_000 + " ms");
+			System.out.println("[ExpectimaxN] nodes: " + countNodes + ", terminal: " + countTerminal
+					+ ", maxDepth: " + countMaxDepth + ((m_star > 0) ? ", Star" + m_star + " cuts: " + countStarCuts : ""));
+			if (m_useHashMap) System.out.println("[ExpectimaxN] "+m_table.stringDescr());
+		}
+
+		return actBestVT;
+	}
+
+	/**
+	 * Iterative deepening: search with depth 1, 2, ..., {@code m_depth} until the time budget
+	 * {@link ParMaxN#getMaxNMoveTime()} expires or until an iteration has no depth cutoff. The first iteration always
+	 * completes. Each further iteration searches the best action of the previous iteration first. If the budget
+	 * expires after this first action, the partial iteration is used (its best action among the searched actions, the
+	 * previous iteration's values in vTable for the actions not searched), else the previous iteration.
+	 *
+	 * @param soND		current game state (not changed on return)
+	 * @param silent	operate w/o printouts
+	 * @return the best action of the deepest (partial) iteration
+	 *
+	 * @see MaxNAgent
+	 */
+	private ACTIONS_VT iterativeDeepening(StateObsNondeterministic soND, boolean silent) {
+		long deadline = System.nanoTime() + m_mpar.getMaxNMoveTime() * 1_000_000L;
+		ACTIONS_VT actBestVT = null;
+		m_partialIter = false;
+		m_lastDepth = 0;
+		try {
+			for (int d = 1; d <= m_depth && !m_partialIter; d++) {
+				m_searchDepth = d;
+				m_deadline = (d == 1) ? 0 : deadline;
+				actBestVT = searchRoot(soND, silent, actBestVT);
+				if (!m_partialIter) m_lastDepth = d;
+				if (!m_rootCutoff) break;
+			}
+		} catch (SearchTimeout e) {
+			// the current iteration did not complete its first action: keep the previous iteration's actBestVT
+		} finally {
+			m_deadline = 0;
+		}
+		return actBestVT;
+	}
+
+	/**
+	 * Set the chance-node pruning for a search from state {@code so}: {@link ParMaxN#getMaxNStarPruning()} if
+	 * {@code so} is from a 2-player zero-sum game with perfect information, else none.
+	 */
+	private void initStarPruning(StateObsNondeterministic so) {
+		m_starLow = so.getMinGameScore();
+		m_starHigh = so.getMaxGameScore();
+		boolean zeroSum2P = so.getNumPlayers() == 2 && m_starLow == -m_starHigh && !so.isImperfectInformationGame();
+		m_star = zeroSum2P ? m_mpar.getMaxNStarPruning() : 0;
+	}
+
+	private void checkDeadline() {
+		if (m_deadline != 0 && System.nanoTime() - m_deadline > 0) throw new SearchTimeout();
+	}
+
+	/**
+	 * Loop over all actions available for {@code soND} (the root) to find the action with the best score tuple.
+	 * The actions are searched in parallel, if {@link ParMaxN#getMaxNParallelism()} {@code > 1}.
+	 *
+	 * @param soND		current game state (not changed on return)
+	 * @param silent	operate w/o printouts
+	 * @param prevIter	only for iterative deepening: the result of the previous iteration (or null)
+	 * @return the best action
+	 */
+	private ACTIONS_VT searchRoot(StateObsNondeterministic soND, boolean silent, ACTIONS_VT prevIter) {
 		int i;
 		double bestValue= -Double.MAX_VALUE;
 		double value;			// the quantity to be maximized
 		ScoreTuple currScoreTuple;
 		ScoreTuple scBest;
-		StateObsNondeterministic NewSO;
 		ACTIONS actBest;
 
 		int player = soND.getPlayer();
@@ -183,20 +297,65 @@ public class ExpectimaxNAgent extends AgentBase implements PlayAgent, Serializab
 		scBest=new ScoreTuple(soND,true);		// make a new ScoreTuple with all values as low as possible
 		ScoreTuple.CombineOP cOpMax = ScoreTuple.CombineOP.MAX;
 		double[] vTable = new double[acts.size()];
-		countMaxDepth = countTerminal = 0;
 
-		for(i = 0; i < acts.size(); ++i)
-		{
-			NewSO = soND.copy();
-			NewSO.advanceDeterministic(acts.get(i));
+		// the search order: the best action of the previous iteration first
+		int[] order = new int[acts.size()];
+		for (i = 0; i < order.length; ++i) order[i] = i;
+		if (prevIter != null) {
+			for (i = 0; i < order.length; ++i)
+				if (acts.get(i).toInt() == prevIter.toInt()) { order[i] = 0; order[0] = i; break; }
+		}
 
-			if (MCTSETreeNode.WITH_PARTIAL && soND.isImperfectInformationGame()) {
-				currScoreTuple = getEAScoreTuple_partial(
-						new DuoStateND(NewSO,NewSO),
-						silent,1, ViewType.ROOT).element2();
-			} else {
-				currScoreTuple = getEAScoreTuple(NewSO, silent,1);
+		// the score tuples of the actions (null: not searched, because the deadline has expired)
+		ScoreTuple[] results = new ScoreTuple[acts.size()];
+		SearchContext ctx = new SearchContext();
+		if (m_pool == null) {
+			for (int n = 0; n < order.length; ++n) {
+				try {
+					results[order[n]] = getRootActionScoreTuple(soND, acts.get(order[n]), silent, ctx);
+				} catch (SearchTimeout e) {
+					break;
+				}
+			}
+		} else {
+			SearchContext[] subs = new SearchContext[acts.size()];
+			ArrayList<ForkJoinTask<?>> tasks = new ArrayList<>();
+			for (int n = 0; n < order.length; ++n) {
+				final int j = order[n];
+				subs[j] = new SearchContext();
+				tasks.add(ForkJoinTask.adapt(() -> {
+					try {
+						results[j] = getRootActionScoreTuple(soND, acts.get(j), silent, subs[j]);
+					} catch (SearchTimeout e) {
+						// results[j] stays null
+					}
+				}));
 			}
+			m_pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+			for (SearchContext sub : subs) ctx.merge(sub);
+		}
+		countTerminal = ctx.countTerminal;
+		countMaxDepth = ctx.countMaxDepth;
+		countNodes = ctx.countNodes;
+		countStarCuts = ctx.countStarCuts;
+		m_rootCutoff = ctx.cutoff;
+
+		m_partialIter = false;
+		for (int n = 0; n < order.length; ++n) {
+			if (results[order[n]] == null) {
+				if (prevIter == null || results[order[0]] == null) throw new SearchTimeout();
+				// partial iteration: keep the previous iteration's values for the actions not searched
+				vTable[order[n]] = prevIter.getVTable()[order[n]];
+				m_partialIter = true;
+			}
+		}
+
+		// combine the results in the search order (the same for sequential and parallel search):
+		for(int n = 0; n < order.length; ++n)
+		{
+			i = order[n];
+			currScoreTuple = results[i];
+			if (currScoreTuple == null) continue;
 
 			vTable[i] = value = currScoreTuple.scTup[player];
 
@@ -250,11 +409,24 @@ public class ExpectimaxNAgent extends AgentBase implements PlayAgent, Serializab
 			}
 		}
 
-		if (!silent) System.out.println("[ExpectimaxN] HashMap size: "+hm.size());
-
-		ACTIONS_VT actBestVT = new ACTIONS_VT(actBest.toInt(), false, vTable, bestValue, scBest);
+		return new ACTIONS_VT(actBest.toInt(), false, vTable, bestValue, scBest);
+	}
 
-        return actBestVT;
+	/**
+	 * @return the score tuple of root action {@code act} in state {@code soND}
+	 */
+	private ScoreTuple getRootActionScoreTuple(StateObsNondeterministic soND, ACTIONS act, boolean silent,
+											   SearchContext ctx) {
+		StateObsNondeterministic NewSO = soND.copy();
+		NewSO.advanceDeterministic(act);
+		if (MCTSETreeNode.WITH_PARTIAL && soND.isImperfectInformationGame()) {
+			return getEAScoreTuple_partial(
+					new DuoStateND(NewSO,NewSO),
+					silent,1, ViewType.ROOT, ctx).element2();
+		}
+		if (m_star > 0)		// full window: the values in vTable are exact
+			return getStarScoreTuple(NewSO, silent,1, ctx, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, null);
+		return getEAScoreTuple(NewSO, silent,1, ctx);
 	}
 
 	/**
@@ -265,10 +437,13 @@ public class ExpectimaxNAgent extends AgentBase implements PlayAgent, Serializab
 	 * @param soND		current game state (not changed on return)
 	 * @param silent	operate w/o printouts
 	 * @param depth		tree depth
+	 * @param ctx		the bookkeeping of the current (sub)search
 	 * @return			score tuple for state {@code soND} as calculated by ExpectimaxNAgent (EA)
 	 */
-	private ScoreTuple getEAScoreTuple(StateObsNondeterministic soND, boolean silent, int depth) {
+	private ScoreTuple getEAScoreTuple(StateObsNondeterministic soND, boolean silent, int depth, SearchContext ctx) {
 		assert soND.isLegalState() : "Not a legal state";
+		checkDeadline();
+		ctx.countNodes++;
 		int player = soND.getPlayer();
 
 		boolean rgs = m_oPar.getRewardIsGameScore();
@@ -277,17 +452,16 @@ public class ExpectimaxNAgent extends AgentBase implements PlayAgent, Serializab
 		if (stopConditionMet)
 		{
 			// this is the 1st place to terminate the recursion:
-			countTerminal++;
+			ctx.countTerminal++;
 			return soND.getRewardTuple(rgs);
 		}
 
 		int i;
 		ScoreTuple currScoreTuple;
-		ScoreTuple sc,scBest;
+		ScoreTuple scBest;
 		ScoreTuple expecScoreTuple=new ScoreTuple(soND);	// a 0-ScoreTuple
 		ScoreTuple.CombineOP cOpMax = ScoreTuple.CombineOP.MAX;
 		StateObsNondeterministic NewSO;
-		String stringRep;
 
 
 		if (soND.isNextActionDeterministic()) {
@@ -305,39 +479,8 @@ public class ExpectimaxNAgent extends AgentBase implements PlayAgent, Serializab
 				//System.out.print(NewSO);
 				//System.out.println("depth="+depth);
 
-				if (depth<this.m_depth) {
-					stringRep = NewSO.uniqueStringDescr();
-					sc = retrieveFromHashMap(m_useHashMap,stringRep);
-					if (sc==null) {
-						// here is the recursion:
-						currScoreTuple = getEAScoreTuple(NewSO, silent,depth+1);
-						if (m_useHashMap) {  hm.put(stringRep, currScoreTuple);  }
-					} else {
-						currScoreTuple = sc;
-					}
-
-					// --- version w/o HashMap hm:
-//					// here is the recursion:
-//					currScoreTuple = getEAScoreTuple(NewSO, silent,depth+1);
-				} else {
-					// this is the 2nd place to terminate the recursion:
-					// (after finishing the for-loop for every element of acts)
-					stopConditionMet = NewSO.isGameOver() || (stopOnRoundOver && NewSO.isRoundOver());
-					// this check on stopConditionMet is needed when using this method from
-					// ExpectimaxNWrapper: If NewSO is a game-over state, we do not need to call the estimator
-					// (i.e. wrapped agent), we just take the final reward
-					if (stopConditionMet)
-					{
-						countTerminal++;
-						currScoreTuple =  NewSO.getRewardTuple(rgs);
-					} else {
-						countMaxDepth++;
-						// setAvailableActions not needed any more (and leads for EWN to a wrong isNextActionDeterministic==false):
-//						NewSO.setAvailableActions();		// The former problematic MC-N, which could not handle an
-						// incoming NewSO with next-action-nondeterministic, does now handle it
-						currScoreTuple = estimateGameValueTuple(NewSO, null);
-					}
-				}
+				currScoreTuple = getAfterstateScoreTuple(NewSO, silent, depth, ctx,
+						Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
 				//if (!silent && depth<0) printAfterstate(soND,acts.get(i),currScoreTuple,depth);
 
 				// *maximize* always P's element in the tuple currScoreTuple,
@@ -368,17 +511,30 @@ public class ExpectimaxNAgent extends AgentBase implements PlayAgent, Serializab
 			//ScoreTuple.CombineOP cOpND = ScoreTuple.CombineOP.MIN;
 			double currProbab;
 			double sumProbab=0.0;
-			for(i = 0; i < rans.size(); ++i)
-			{
-				NewSO = soND.copy();
-				NewSO.advanceNondeterministic(rans.get(i));
-				while(!NewSO.isNextActionDeterministic() && !NewSO.isRoundOver()){		// /WK/03/2021 NEW
-					NewSO.advanceNondeterministic();
+
+			// the score tuples of the nondeterministic actions, in parallel up to depth getMaxNParallelDepth():
+			ScoreTuple[] results = new ScoreTuple[rans.size()];
+			if (m_pool != null && ForkJoinTask.getPool() == m_pool && depth <= m_mpar.getMaxNParallelDepth()) {
+				SearchContext[] subs = new SearchContext[rans.size()];
+				ArrayList<ForkJoinTask<?>> tasks = new ArrayList<>();
+				for (i = 0; i < rans.size(); ++i) {
+					final int j = i;
+					subs[j] = new SearchContext();
+					tasks.add(ForkJoinTask.adapt(() -> {
+						results[j] = getChanceOutcomeScoreTuple(soND, rans.get(j), silent, depth, subs[j]);
+					}));
 				}
+				ForkJoinTask.invokeAll(tasks);
+				for (SearchContext sub : subs) ctx.merge(sub);
+			} else {
+				for (i = 0; i < rans.size(); ++i)
+					results[i] = getChanceOutcomeScoreTuple(soND, rans.get(i), silent, depth, ctx);
+			}
 
-				// here is the recursion:
-				currScoreTuple = getEAScoreTuple(NewSO, silent,depth);
-				// was before called with depth+1, but we now increase depth only on deterministic moves (!)
+			// combine the results in their order (the same for sequential and parallel search):
+			for(i = 0; i < rans.size(); ++i)
+			{
+				currScoreTuple = results[i];
 
 				currProbab = soND.getProbability(rans.get(i));
 				//if (!silent) printNondet(NewSO,currScoreTuple,currProbab,depth);
@@ -402,6 +558,259 @@ public class ExpectimaxNAgent extends AgentBase implements PlayAgent, Serializab
 
 	}
 
+	/**
+	 * For perfect-information games: the score tuple of afterstate {@code NewSO}, the state after a deterministic
+	 * action in a state at depth {@code depth}. It is taken from the transposition table or calculated by recursion
+	 * or, at the maximum depth, estimated by {@link #estimateGameValueTuple(StateObservation, ScoreTuple)}.
+	 * <p>
+	 * A table entry is only used if its value is the same as the value calculated by recursion: a depth-limited
+	 * value only for the same draft, an exact value if the draft is at least the draft needed to search the
+	 * subtree without cutoff (this is the draft stored for an exact value). So the result does not depend on the
+	 * table content, i.e. on the search order.
+	 * <p>
+	 * With Star1/Star2 pruning, the recursion is {@link #getStarScoreTuple} with window {@code (alpha,beta)}. A value
+	 * outside the window is stored as a bound, and a bound entry is only used if it is outside the window, too.
+	 */
+	private ScoreTuple getAfterstateScoreTuple(StateObsNondeterministic NewSO, boolean silent, int depth,
+											   SearchContext ctx, double alpha, double beta) {
+		if (depth<this.m_searchDepth) {
+			int draft = this.m_searchDepth - depth;
+			long key = 0;
+			if (m_useHashMap) {
+				// speed up ExpectimaxNAgent for repeated calls by storing/retrieving the
+				// scores of visited states in the transposition table:
+				key = NewSO.hash64();
+				TranspositionTable.Entry entry = m_table.probe(key, draft);
+				if (entry!=null && (entry.exact ? draft>=entry.draft : draft==entry.draft)
+						&& isUsableBound(entry, alpha, beta)) {
+					if (entry.exact) ctx.height = Math.max(ctx.height, entry.draft);
+					else ctx.cutoff = true;
+					return entry.scoreTuple;
+				}
+			}
+			// here is the recursion:
+			SearchContext sub = new SearchContext();
+			ScoreTuple currScoreTuple = (m_star > 0)
+					? getStarScoreTuple(NewSO, silent,depth+1, sub, alpha, beta, null)
+					: getEAScoreTuple(NewSO, silent,depth+1, sub);
+			sub.height++;			// the draft needed for NewSO is one more than for the afterstates below
+			double v = currScoreTuple.scTup[0];
+			int bound = (m_star == 0) ? TranspositionTable.BOUND_NONE
+					  : (v <= alpha) ? TranspositionTable.BOUND_UPPER
+					  : (v >= beta) ? TranspositionTable.BOUND_LOWER : TranspositionTable.BOUND_NONE;
+			if (m_useHashMap)
+				m_table.store(key, sub.cutoff ? draft : sub.height, !sub.cutoff, bound, currScoreTuple,
+							  TranspositionTable.NO_ACTION);
+			ctx.merge(sub);
+			return currScoreTuple;
+		}
+
+		// this is the 2nd place to terminate the recursion:
+		ctx.countNodes++;
+		boolean stopOnRoundOver= m_mpar.getStopOnRoundOver();
+		boolean stopConditionMet = NewSO.isGameOver() || (stopOnRoundOver && NewSO.isRoundOver());
+		// this check on stopConditionMet is needed when using this method from
+		// ExpectimaxNWrapper: If NewSO is a game-over state, we do not need to call the estimator
+		// (i.e. wrapped agent), we just take the final reward
+		if (stopConditionMet)
+		{
+			ctx.countTerminal++;
+			return NewSO.getRewardTuple(m_oPar.getRewardIsGameScore());
+		}
+		ctx.countMaxDepth++;
+		ctx.cutoff = true;
+		// setAvailableActions not needed any more (and leads for EWN to a wrong isNextActionDeterministic==false):
+//		NewSO.setAvailableActions();		// The former problematic MC-N, which could not handle an
+		// incoming NewSO with next-action-nondeterministic, does now handle it
+		ScoreTuple estimate = estimateGameValueTuple(NewSO, null);
+		assert m_star == 0 || (m_starLow <= estimate.scTup[0] && estimate.scTup[0] <= m_starHigh)
+				: "Star1/Star2 pruning requires estimates within the game score bounds";
+		return estimate;
+	}
+
+	/**
+	 * For 2-player zero-sum games with Star1/Star2 pruning: the score tuple for state {@code soND}, searched with
+	 * window {@code (alpha,beta)} on the value {@code v} of player 0 (player 1 has value {@code -v}). Player 0
+	 * maximizes {@code v}, player 1 minimizes it (alpha-beta). If the returned value is {@code v <= alpha}
+	 * ({@code v >= beta}), it is only an upper (lower) bound of the true value, otherwise it is the value of
+	 * {@link #getEAScoreTuple(StateObsNondeterministic, boolean, int, SearchContext)}.
+	 *
+	 * @param soND		current game state (not changed on return)
+	 * @param silent	operate w/o printouts
+	 * @param depth		tree depth
+	 * @param ctx		the bookkeeping of the current (sub)search
+	 * @param alpha		lower end of the window
+	 * @param beta		upper end of the window
+	 * @param first		if not null, the (exact) score tuple of {@code soND}'s first action, known from a Star2 probe
+	 * @return			score tuple for state {@code soND}
+	 */
+	private ScoreTuple getStarScoreTuple(StateObsNondeterministic soND, boolean silent, int depth, SearchContext ctx,
+										 double alpha, double beta, ScoreTuple first) {
+		assert soND.isLegalState() : "Not a legal state";
+		checkDeadline();
+		ctx.countNodes++;
+
+		boolean stopOnRoundOver= m_mpar.getStopOnRoundOver();
+		if (soND.isGameOver() || (stopOnRoundOver && soND.isRoundOver())) {
+			ctx.countTerminal++;
+			return soND.getRewardTuple(m_oPar.getRewardIsGameScore());
+		}
+		if (!soND.isNextActionDeterministic())
+			return getStarChanceScoreTuple(soND, silent, depth, ctx, alpha, beta);
+
+
+		boolean maxi = (soND.getPlayer() == 0);
+		ArrayList<ACTIONS> acts = soND.getAvailableActions();
+		ScoreTuple scBest = first;
+		double best = (first != null) ? first.scTup[0] : maxi ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+		for (int k = (first != null) ? 1 : 0; k < acts.size(); ++k) {
+			if (maxi ? best >= beta : best <= alpha) break;		// the opponent will avoid soND
+			StateObsNondeterministic NewSO = soND.copy();
+			NewSO.advanceDeterministic(acts.get(k));
+			ScoreTuple currScoreTuple = maxi
+					? getAfterstateScoreTuple(NewSO, silent, depth, ctx, Math.max(alpha, best), beta)
+					: getAfterstateScoreTuple(NewSO, silent, depth, ctx, alpha, Math.min(beta, best));
+			double v = currScoreTuple.scTup[0];
+			if (maxi ? v > best : v < best) {
+				best = v;
+				scBest = currScoreTuple;
+			}
+		}
+		return scBest;
+	}
+
+	/**
+	 * Star1/Star2 pruning at chance node {@code soND} (see {@link #getStarScoreTuple}). The value of outcome {@code i}
+	 * lies in {@code [lo[i],hi[i]]}, initially the game score bounds. The outcomes are searched in their order, each
+	 * with the window that is just wide enough to decide whether the expected value falls outside
+	 * {@code (alpha,beta)} (Star1), widened by a small margin against rounding errors. With Star2, a probing phase first searches only the first action of each outcome:
+	 * this gives a lower bound for outcomes where player 0 moves and an upper bound for outcomes where player 1 moves.
+	 * An exact probe result is not searched again.
+	 */
+	private ScoreTuple getStarChanceScoreTuple(StateObsNondeterministic soND, boolean silent, int depth,
+											   SearchContext ctx, double alpha, double beta) {
+		ArrayList<ACTIONS> rans = soND.getAvailableRandoms();
+		assert (rans.size()>0) : "Error: getAvailableRandoms returns no actions";
+		int n = rans.size();
+		StateObsNondeterministic[] succ = new StateObsNondeterministic[n];
+		double[] prob = new double[n];
+		double[] lo = new double[n];
+		double[] hi = new double[n];
+		ScoreTuple[] probe = new ScoreTuple[n];		// the exact score tuples of the Star2 probes (or null)
+		double lower = 0.0, upper = 0.0;		// the bounds of the expected value
+		// a cut needs a margin eps beyond the window, so that rounding errors in lower and upper cannot cut an
+		// outcome which the full expansion would choose (when two values differ only by rounding):
+		double eps = STAR_EPS * (m_starHigh - m_starLow);
+		for (int i = 0; i < n; ++i) {
+			succ[i] = soND.copy();
+			succ[i].advanceNondeterministic(rans.get(i));
+			while(!succ[i].isNextActionDeterministic() && !succ[i].isRoundOver()){
+				succ[i].advanceNondeterministic();
+			}
+			prob[i] = soND.getProbability(rans.get(i));
+			lo[i] = m_starLow;
+			hi[i] = m_starHigh;
+			lower += prob[i]*lo[i];
+			upper += prob[i]*hi[i];
+		}
+
+		if (m_star == 2) {
+			// probing phase: search the first action of each outcome
+			boolean stopOnRoundOver= m_mpar.getStopOnRoundOver();
+			for (int i = 0; i < n; ++i) {
+				StateObsNondeterministic s = succ[i];
+				if (s.isGameOver() || (stopOnRoundOver && s.isRoundOver()) || !s.isNextActionDeterministic())
+					continue;
+				StateObsNondeterministic NewSO = s.copy();
+				NewSO.advanceDeterministic(s.getAvailableActions().get(0));
+				if (s.getPlayer() == 0) {
+					double b = Math.min(hi[i], (beta + eps - (lower - prob[i]*lo[i])) / prob[i]);
+					ScoreTuple sc = getAfterstateScoreTuple(NewSO, silent, depth, ctx, lo[i], b);
+					double v = sc.scTup[0];
+					if (lo[i] < v && v < b) probe[i] = sc;
+					if (v > lo[i]) {
+						lower += prob[i]*(v - lo[i]);
+						lo[i] = v;
+					}
+					if (lower >= beta + eps || (v >= b && b < hi[i]))
+						return getStarBound(soND, Math.max(lower, beta), ctx);
+				} else {
+					double a = Math.max(lo[i], (alpha - eps - (upper - prob[i]*hi[i])) / prob[i]);
+					ScoreTuple sc = getAfterstateScoreTuple(NewSO, silent, depth, ctx, a, hi[i]);
+					double v = sc.scTup[0];
+					if (a < v && v < hi[i]) probe[i] = sc;
+					if (v < hi[i]) {
+						upper -= prob[i]*(hi[i] - v);
+						hi[i] = v;
+					}
+					if (upper <= alpha - eps || (v <= a && a > lo[i]))
+						return getStarBound(soND, Math.min(upper, alpha), ctx);
+				}
+			}
+		}
+
+		// Star1: search the outcomes with the window which decides whether the expected value is outside (alpha,beta)
+		for (int i = 0; i < n; ++i) {
+			double a = Math.max(lo[i], (alpha - eps - (upper - prob[i]*hi[i])) / prob[i]);
+			double b = Math.min(hi[i], (beta + eps - (lower - prob[i]*lo[i])) / prob[i]);
+			double v = getStarScoreTuple(succ[i], silent, depth, ctx, a, b, probe[i]).scTup[0];
+			lower += prob[i]*(v - lo[i]);
+			upper += prob[i]*(v - hi[i]);
+			if (v <= a && a > lo[i])		// fail low: the expected value is at most alpha
+				return getStarBound(soND, Math.min(upper, alpha), ctx);
+			if (v >= b && b < hi[i])		// fail high: the expected value is at least beta
+				return getStarBound(soND, Math.max(lower, beta), ctx);
+			lo[i] = hi[i] = v;
+		}
+
+		// no cut: the expected value, summed in the same order as in getEAScoreTuple
+		double value = 0.0;
+		for (int i = 0; i < n; ++i) value += prob[i]*lo[i];
+		ScoreTuple sc = new ScoreTuple(soND);
+		sc.scTup[0] = value;
+		sc.scTup[1] = -value;
+		return sc;
+	}
+
+	/**
+	 * @return the score tuple for a chance node {@code soND} cut by Star1/Star2 with bound {@code v}
+	 */
+	private ScoreTuple getStarBound(StateObsNondeterministic soND, double v, SearchContext ctx) {
+		ctx.countStarCuts++;
+		ScoreTuple sc = new ScoreTuple(soND);
+		sc.scTup[0] = v;
+		sc.scTup[1] = -v;
+		return sc;
+	}
+
+	/**
+	 * @return true, if {@code entry} is a value or a bound which shows that the value is outside {@code (alpha,beta)}
+	 */
+	private static boolean isUsableBound(TranspositionTable.Entry entry, double alpha, double beta) {
+		return switch (entry.bound) {
+			case TranspositionTable.BOUND_LOWER -> entry.scoreTuple.scTup[0] >= beta;
+			case TranspositionTable.BOUND_UPPER -> entry.scoreTuple.scTup[0] <= alpha;
+			default -> true;
+		};
+	}
+
+	/**
+	 * For perfect-information games: the score tuple of the state after nondeterministic action {@code ran} in state
+	 * {@code soND}
+	 */
+	private ScoreTuple getChanceOutcomeScoreTuple(StateObsNondeterministic soND, ACTIONS ran, boolean silent,
+												  int depth, SearchContext ctx) {
+		StateObsNondeterministic NewSO = soND.copy();
+		NewSO.advanceNondeterministic(ran);
+		while(!NewSO.isNextActionDeterministic() && !NewSO.isRoundOver()){		// /WK/03/2021 NEW
+			NewSO.advanceNondeterministic();
+		}
+
+		// here is the recursion:
+		return getEAScoreTuple(NewSO, silent,depth, ctx);
+		// was before called with depth+1, but we now increase depth only on deterministic moves (!)
+	}
+
 	/**
 	 * For imperfect-information games (games with partial states):
 	 * Loop over all actions available for {@code soND} to find the action with the best
@@ -411,15 +820,18 @@ public class ExpectimaxNAgent extends AgentBase implements PlayAgent, Serializab
 	 * @param silent	operate w/o printouts
 	 * @param depth		tree depth
 	 * @param fView     the view perspective (PLAYER or ROOT) to take when backing up the ScoreTuple
+	 * @param ctx		the bookkeeping of the current (sub)search
 	 * @return			duo of {@link ScoreTuple}s for state {@code soND} as calculated by ExpectimaxNAgent (EA)
 	 */
 	private DuoScoreTuples getEAScoreTuple_partial(DuoStateND duoState,
 											   boolean silent, int depth,
-											   ViewType fView) {
+											   ViewType fView, SearchContext ctx) {
 		StateObsNondeterministic soND = duoState.element1();
 		StateObsNondeterministic soRoot = duoState.element2();
 
 		assert soND.isLegalState() : "Not a legal state";
+		checkDeadline();
+		ctx.countNodes++;
 		int player = soND.getPlayer();
 
 		boolean rgs = m_oPar.getRewardIsGameScore();
@@ -428,7 +840,7 @@ public class ExpectimaxNAgent extends AgentBase implements PlayAgent, Serializab
 		if (stopConditionMet)
 		{
 			// this is the 1st place to terminate the recursion:
-			countTerminal++;
+			ctx.countTerminal++;
 			return new DuoScoreTuples(soND.getRewardTuple(rgs),soRoot.getRewardTuple(rgs));
 		}
 
@@ -446,7 +858,7 @@ public class ExpectimaxNAgent extends AgentBase implements PlayAgent, Serializab
 			if (p == root.getPlayer() && soND.isNextActionDeterministic()) {
 				// if p is the root player, take only the root completion (average = root's value)
 				StateObsNondeterministic sRoot = duoState.element2();
-				return getEAScoreTuple_partial(new DuoStateND(sRoot,sRoot), silent, depth, fView);
+				return getEAScoreTuple_partial(new DuoStateND(sRoot,sRoot), silent, depth, fView, ctx);
 			}
 			// else, if p is not the root player, get all possible completions for player p
 			// and take the weighted average of their resulting score tuples:
@@ -462,7 +874,7 @@ public class ExpectimaxNAgent extends AgentBase implements PlayAgent, Serializab
 
 				// recursive call: newDuoState has the same player p = soND.getPlayer() and it is not partial w.r.t. p,
 				// so this isPartialState-branch will *not* be called repeatedly:
-				DuoScoreTuples duoScoreTup = getEAScoreTuple_partial(newDuoState, silent, depth, fView);
+				DuoScoreTuples duoScoreTup = getEAScoreTuple_partial(newDuoState, silent, depth, fView, ctx);
 
 				currProbab = soND.getProbability(rans.get(i));
 				//if (!silent) printNondet(NewSO,currScoreTuple,currProbab,depth);
@@ -502,9 +914,9 @@ public class ExpectimaxNAgent extends AgentBase implements PlayAgent, Serializab
             	//System.out.print(NewSO);
             	//System.out.println("depth="+depth);
             	
-            	if (depth<this.m_depth) {
+            	if (depth<this.m_searchDepth) {
     				// here is the recursion:
-					duoScoreTup = getEAScoreTuple_partial(newDuoState, silent,depth+1, ViewType.PLAYER);
+					duoScoreTup = getEAScoreTuple_partial(newDuoState, silent,depth+1, ViewType.PLAYER, ctx);
     			} else {
     				// this is the 2nd place to terminate the recursion:
     				// (after finishing the for-loop for every element of acts)
@@ -512,12 +924,14 @@ public class ExpectimaxNAgent extends AgentBase implements PlayAgent, Serializab
 					// this check on stopConditionMet is needed when using this method from
 					// ExpectimaxNWrapper: If NewSO is a game-over state, we do not need to call the estimator
 					// (i.e. wrapped agent), we just take the final reward
+					ctx.countNodes++;
 					if (stopConditionMet)
 					{
-						countTerminal++;
+						ctx.countTerminal++;
 						duoScoreTup = new DuoScoreTuples(NewSO.getRewardTuple(rgs),NewRoot.getRewardTuple(rgs));
 					} else {
-						countMaxDepth++;
+						ctx.countMaxDepth++;
+						ctx.cutoff = true;
 						// setAvailableActions not needed anymore (and leads for EWN to a wrong isNextActionDeterministic==false):
 //						NewSO.setAvailableActions();		// The former problematic MC-N, which could not handle an
 												// incoming NewSO with next-action-nondeterministic, does now handle it
@@ -559,7 +973,7 @@ public class ExpectimaxNAgent extends AgentBase implements PlayAgent, Serializab
 
 				// here is the recursion:
 				DuoScoreTuples duoScoreTup = getEAScoreTuple_partial(newDuoState,
-						silent, depth, fView);
+						silent, depth, fView, ctx);
 						// was before called with depth+1, but now we increase depth only on deterministic moves (!)
 
 				currProbab = soND.getProbability(rans.get(i));
@@ -606,13 +1020,25 @@ public class ExpectimaxNAgent extends AgentBase implements PlayAgent, Serializab
 	public ScoreTuple getScoreTuple(StateObservation sob, ScoreTuple prevTuple) {
 		assert sob instanceof StateObsNondeterministic : "Error, sob must be of class StateObsNondeterministic";
 		StateObsNondeterministic soND_p, soND = (StateObsNondeterministic) sob;
-		if (!soND.isImperfectInformationGame()) {
-			return getEAScoreTuple(soND, true, 0);
+		m_searchDepth = m_depth;
+		if (m_useHashMap) getTable(sob);
+		initStarPruning(soND);
+		SearchContext ctx = new SearchContext();
+		ScoreTuple sc;
+		if (m_star > 0) {
+			sc = getStarScoreTuple(soND, true, 0, ctx, Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, null);
+		} else if (!soND.isImperfectInformationGame()) {
+			sc = getEAScoreTuple(soND, true, 0, ctx);
 		} else {
 			soND_p = PARTIAL_IN_RECURSION ? soND.partialState() : soND;
-			return getEAScoreTuple_partial(new DuoStateND(soND_p,soND_p), true, 0,ViewType.ROOT)
+			sc = getEAScoreTuple_partial(new DuoStateND(soND_p,soND_p), true, 0,ViewType.ROOT, ctx)
 					.element2();
 		}
+		countTerminal = ctx.countTerminal;
+		countMaxDepth = ctx.countMaxDepth;
+		countNodes = ctx.countNodes;
+		countStarCuts = ctx.countStarCuts;
+		return sc;
 	}
 	
 	/**
@@ -662,6 +1088,62 @@ public class ExpectimaxNAgent extends AgentBase implements PlayAgent, Serializab
 		return countMaxDepth;
 	}
 
+	/**
+	 * @return the number of nodes visited in the last search (states expanded or evaluated, without table hits)
+	 */
+	public int getCountNodes() {
+		return countNodes;
+	}
+
+	/**
+	 * @return the number of chance nodes cut by Star1/Star2 pruning in the last search
+	 */
+	public int getCountStarCuts() {
+		return countStarCuts;
+	}
+
+	/**
+	 * @return the search depth reached in the last call of {@link #getNextAction2(StateObservation, boolean, boolean)}
+	 * 		   (the last completed iteration in case of iterative deepening)
+	 */
+	public int getLastDepth() {
+		return m_lastDepth;
+	}
+
+	/**
+	 * @return the transposition table (with its statistics) or null, if there is none (yet)
+	 */
+	public TranspositionTable getTable() {
+		return m_table;
+	}
+
+	/**
+	 * @return the fork/join pool for the parallel search with {@code parallelism} threads ({@code null}, if
+	 *      {@code parallelism <= 1}). A pool with another parallelism is shut down and replaced.
+	 */
+	private synchronized ForkJoinPool getSearchPool(int parallelism) {
+		if (m_pool != null && m_pool.getParallelism() != parallelism) shutdownSearchPool();
+		if (parallelism > 1 && m_pool == null)
+			m_pool = new ForkJoinPool(parallelism);
+		return m_pool;
+	}
+
+	/**
+	 * Shut down the fork/join pool of the parallel search (if any), e.g. when the agent is no longer needed. The pool
+	 * is re-created when the agent searches again.
+	 */
+	public synchronized void shutdownSearchPool() {
+		if (m_pool != null) m_pool.shutdown();
+		m_pool = null;
+	}
+
+	/**
+	 * @return the fork/join pool of the last parallel search or null, if there is none (for the tests)
+	 */
+	ForkJoinPool getPool() {
+		return m_pool;
+	}
+
 	private void printAfterstate(StateObsNondeterministic soND,ACTIONS actBest,
     		ScoreTuple scTuple, int depth)
     {
@@ -773,4 +1255,27 @@ public class ExpectimaxNAgent extends AgentBase implements PlayAgent, Serializab
 		public ScoreTuple element2() { return duoTuple.element2; }
 	}
 
+	/**
+	 * The bookkeeping of a (sub)search: the counters and whether a depth cutoff occurred. Each parallel task works
+	 * on its own context, which is merged into the context of its parent after the task has finished. So the
+	 * recursion needs no shared mutable counters.
+	 */
+	private static final class SearchContext {
+		int countTerminal;
+		int countMaxDepth;
+		int countNodes;
+		int countStarCuts;
+		boolean cutoff;			// whether the subtree contains a depth cutoff (its score tuple is not exact)
+		int height;				// the draft needed to search the subtree without cutoff (if !cutoff)
+
+		void merge(SearchContext other) {
+			countTerminal += other.countTerminal;
+			countMaxDepth += other.countMaxDepth;
+			countNodes += other.countNodes;
+			countStarCuts += other.countStarCuts;
+			cutoff |= other.cutoff;
+			height = Math.max(height, other.height);
+		}
+	}
+
 }
\ No newline at end of file
@@ -227,11 +227,7 @@ public class MCTSAgentT extends AgentBase implements PlayAgent, Serializable
 	
 		assert so.isLegalState() 
 			: "Not a legal state"; // e.g. player to move does not fit to Table
-		if (m_Timer==null) {
-			m_Timer = new ElapsedCpuTimer(TimerType.CPU_TIME);
-			m_Timer.setMaxTimeMillis(40);
-		}
-		m_Timer.reset();
+		resetTimer();
 		
 		// Ask MCTS for the best action ...
 		actBest = act(so,m_Timer,VTable);
@@ -245,6 +241,20 @@ public class MCTSAgentT extends AgentBase implements PlayAgent, Serializable
 	}
 
 
+	/**
+	 * Start the timer for the next search. In anytime mode ({@link ParMCTS#getMoveTime()}{@code > 0}) this is a wall
+	 * clock timer with {@code moveTime} ms (wall clock, because the search may run on several threads), otherwise the
+	 * CPU timer with 40 ms, which is not used by the search.
+	 */
+	private void resetTimer() {
+		int moveTime = getParMCTS().getMoveTime();
+		TimerType type = (moveTime > 0) ? TimerType.WALL_TIME : TimerType.CPU_TIME;
+		if (m_Timer==null || m_Timer.type!=type)
+			m_Timer = new ElapsedCpuTimer(type);
+		m_Timer.setMaxTimeMillis((moveTime > 0) ? moveTime : 40);
+		m_Timer.reset();
+	}
+
 	/**
 	 * Used by {@link #getScoreTuple(StateObservation, ScoreTuple)}
 	 */
@@ -265,6 +275,7 @@ public class MCTSAgentT extends AgentBase implements PlayAgent, Serializable
         } else {
         	
     		// Ask MCTS for the best action ...
+    		resetTimer();
     		act(so,m_Timer,vtable);
 
             return vtable[nAct];
@@ -327,6 +338,14 @@ public class MCTSAgentT extends AgentBase implements PlayAgent, Serializable
 				+ ", tree depth:" + getParMCTS().getTreeDepth();
 	}
 
+	/**
+	 * @return the number of rollouts per second in the last call of {@link #act(StateObservation, ElapsedCpuTimer, double[])}
+	 * @see SingleMCTSPlayer#getRolloutsPerSecond()
+	 */
+	public double getRolloutsPerSecond() {
+		return mctsPlayer.getRolloutsPerSecond();
+	}
+
 	public ParMCTS getParMCTS() {
 		return mctsPlayer.getParMCTS();
 	}
@@ -342,5 +361,13 @@ public class MCTSAgentT extends AgentBase implements PlayAgent, Serializable
 		return mctsPlayer.getK();
 	}
 
+	/**
+	 * Shut down the thread pool of the root-parallel search ({@link ParMCTS#getNumTrees()} &gt; 1), if any.
+	 * @see SingleMCTSPlayer#shutdownTreePool()
+	 */
+	public void shutdownSearchPool() {
+		mctsPlayer.shutdownTreePool();
+	}
+
 }
 
@@ -1,5 +1,6 @@
 package controllers.MCTS;
 
+import controllers.MCTSWrapper.MCTS;
 import games.StateObservation;
 import params.ParMCTS;
 import params.ParOther;
@@ -9,12 +10,21 @@ import tools.Types;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * This is adapted from Diego Perez MCTS reference implementation<br>
  * 		<a href="http://gvgai.net/cont.php">http://gvgai.net/cont.php</a><br>
  * (with a bug fix concerning the number of available actions and  
  *  extensions for 1- and 2-player games)
+ * <p>
+ * If {@link ParMCTS#getNumTrees()} {@code = K > 1}, {@link #run(ElapsedCpuTimer, double[])} builds a
+ * <em>root-parallel ensemble</em>: K independent trees on K threads, each with its own random generator and its own
+ * copy of the root state, and each with {@code NUM_ITERS/K} iterations. The root statistics of the trees are merged
+ * before the action is chosen. There is no shared state between the trees, so the rollouts scale with the number of
+ * cores.
  *  
  * @author Wolfgang Konen, TH Koeln, 2016-2020
  */
@@ -40,6 +50,23 @@ public class SingleMCTSPlayer implements Serializable
 //    private double K = DEFAULT_K;
 //    private int verbose = DEFAULT_VERBOSITY; 
     int nRolloutFinished = 0;		// counts the number of rollouts ending with isGameOver==true
+    int nRollouts = 0;				// counts the number of rollouts in the last call of run()
+    private long runNanos = 0;		// the time of the last call of run()
+
+    /**
+     * the scratch state for the rollouts of this player's tree (re-filled by
+     * {@link StateObservation#copyInto(StateObservation)} for each rollout)
+     */
+    transient StateObservation rolloutState = null;
+
+    /**
+     * the number of iterations of this player's tree, if it is a member of a root-parallel ensemble (-1: take
+     * {@link ParMCTS#getNumIter()})
+     */
+    private transient int numItersOverride = -1;
+
+    private transient ExecutorService treePool;		// created on demand, see getTreePool(int)
+    private transient int treePoolThreads;
 	
 	/**
 	 * Member {@code m_parMCTS} is only needed for saving and loading the agent
@@ -112,6 +139,10 @@ public class SingleMCTSPlayer implements Serializable
     /**
      * Initializes the tree with the new observation state in the root.
      * Called from {@link MCTSAgentT#act(StateObservation, ElapsedCpuTimer, double[])}.
+     * <p>
+     * If {@link ParMCTS#getReuseTree()} is set (and {@link ParMCTS#getNumTrees()}{@code ==1}), the node of the
+     * previous tree with state {@code so} becomes the new root, if there is one within one round of moves below the
+     * previous root. Its subtree and statistics are kept.
      * @param so current state of the game.
      */
     public void init(StateObservation so)
@@ -122,6 +153,17 @@ public class SingleMCTSPlayer implements Serializable
     	//Set the game observation to a newly root node.
         //m_root = new SingleTreeNode(m_rnd,this);
         //m_root.state = so;
+    	if (m_parMCTS.getReuseTree() && m_parMCTS.getNumTrees() == 1) {
+    		SingleTreeNode reused = m_root.findNode(so, so.getNumPlayers());
+    		if (reused != null) {
+    			reused.makeRoot();
+    			m_root = reused;
+    			return;
+    		}
+    		// the root has to own its state, because the caller may advance so after this move and the
+    		// next call searches the old tree by state
+    		so = so.copy();
+    	}
     	m_root = new SingleTreeNode(so,null,null,m_rnd,this);// /WK/ bug fix: needed if a_gameState  
     														 // allows fewer actions than MCTSAgentT.NUM_ACTIONS 
     }
@@ -136,9 +178,18 @@ public class SingleMCTSPlayer implements Serializable
     public int run(ElapsedCpuTimer elapsedTimer, double[] vtable)
     {
     	this.nRolloutFinished=0;
+    	this.nRollouts=0;
+    	long startNanos = System.nanoTime();
     	
         //Do the search within the available time.
-        m_root.mctsSearch(elapsedTimer, vtable);
+        if (m_parMCTS.getNumTrees() > 1 && numItersOverride < 0) {
+            runEnsemble(elapsedTimer, vtable);
+        } else {
+            m_root.mctsSearch(elapsedTimer, vtable);
+        }
+        runNanos = System.nanoTime() - startNanos;
+        if (getVerbosity() > 0)
+        	System.out.println("[SingleMCTSPlayer] rollouts="+nRollouts+", rollouts/sec="+Math.round(getRolloutsPerSecond()));
 
         //Determine the best action to take and return it.
         //(Choose one of the following two lines)
@@ -148,6 +199,73 @@ public class SingleMCTSPlayer implements Serializable
         return action;
     }
 
+    /**
+     * Root-parallel ensemble: build {@link ParMCTS#getNumTrees()} independent trees for the state in {@link #m_root}
+     * on as many threads (of the pool {@link #getTreePool(int)}, which is kept over the moves) and merge their root
+     * statistics into {@link #m_root}.
+     */
+    private void runEnsemble(ElapsedCpuTimer elapsedTimer, double[] vtable) {
+        final int numTrees = m_parMCTS.getNumTrees();
+        final StateObservation so = m_root.m_state;
+        final SingleMCTSPlayer[] members = new SingleMCTSPlayer[numTrees];
+        final ArrayList<Future<?>> futures = new ArrayList<>(numTrees);
+        final ExecutorService pool = getTreePool(numTrees);
+        for (int t = 0; t < numTrees; t++) {
+            // each member gets its share of the iterations (the first ones get one more, if not divisible)
+            final SingleMCTSPlayer member = new SingleMCTSPlayer(m_parent, new Random(m_rnd.nextLong()), m_parMCTS);
+            member.numItersOverride = getNUM_ITERS() / numTrees + ((t < getNUM_ITERS() % numTrees) ? 1 : 0);
+            member.initActions(so);
+            member.init(so.copy());
+            members[t] = member;
+            futures.add(pool.submit(() -> member.m_root.mctsSearch(elapsedTimer, new double[vtable.length])));
+        }
+        Throwable failure = null;
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                for (Future<?> f : futures) f.cancel(true);
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("[SingleMCTSPlayer] Interrupted while waiting for the tree threads", e);
+            } catch (ExecutionException e) {
+                if (failure == null) failure = e.getCause();
+            }
+        }
+        if (failure != null)
+            throw new RuntimeException("[SingleMCTSPlayer] Root-parallel search failed", failure);
+
+        final SingleTreeNode[] roots = new SingleTreeNode[numTrees];
+        for (int t = 0; t < numTrees; t++) {
+            roots[t] = members[t].m_root;
+            nRolloutFinished += members[t].nRolloutFinished;
+            nRollouts += members[t].nRollouts;
+        }
+        m_root.mergeRoots(roots);
+        m_root.fillVTable(vtable);
+    }
+
+    /**
+     * @return the thread pool for the trees of the root-parallel ensemble, with {@code numThreads} threads. It is
+     * 		created on the first call and replaced (the old one is shut down), if {@code numThreads} changes.
+     */
+    private synchronized ExecutorService getTreePool(int numThreads) {
+        if (treePool == null || treePoolThreads != numThreads) {
+            if (treePool != null) treePool.shutdown();
+            treePool = MCTS.newSearchPool(numThreads);
+            treePoolThreads = numThreads;
+        }
+        return treePool;
+    }
+
+    /**
+     * Shut down the thread pool of the root-parallel ensemble (if any), e.g. when the agent is no longer needed. The
+     * pool is re-created when the agent searches again.
+     */
+    public synchronized void shutdownTreePool() {
+        if (treePool != null) treePool.shutdown();
+        treePool = null;
+    }
+
     public int getNUM_ACTIONS() {
 		return NUM_ACTIONS;
 	}
@@ -161,7 +279,7 @@ public class SingleMCTSPlayer implements Serializable
 	}
 
     public int getNUM_ITERS() {
-		return m_parMCTS.getNumIter();
+		return (numItersOverride >= 0) ? numItersOverride : m_parMCTS.getNumIter();
 	}
 
 	public double getK() {
@@ -180,6 +298,21 @@ public class SingleMCTSPlayer implements Serializable
         return nRolloutFinished;
     }
 
+    /**
+     * @return the number of rollouts in the last call of {@link #run(ElapsedCpuTimer, double[])}
+     */
+    public int getNRollouts() {
+        return nRollouts;
+    }
+
+    /**
+     * @return the number of rollouts per second (wall clock) in the last call of
+     * {@link #run(ElapsedCpuTimer, double[])}, including the time for tree policy and backup
+     */
+    public double getRolloutsPerSecond() {
+        return (runNanos == 0) ? 0.0 : nRollouts * 1e9 / runNanos;
+    }
+
     public ParMCTS getParMCTS() {
 		return m_parMCTS;
 	}
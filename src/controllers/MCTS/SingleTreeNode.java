@@ -7,6 +7,7 @@ import tools.Types;
 
 import java.io.Serializable;
 import java.text.DecimalFormat;
+import java.util.ArrayList;
 import java.util.Random;
 
 //import controllers.MCTS0.SingleTreeNode0;
@@ -33,7 +34,11 @@ public class SingleTreeNode implements Serializable
 	 */
 	public double totValue;
 	private int nVisits=0;
-	public static Random m_rnd = null;
+	/**
+	 * the random generator of the tree (each tree of a root-parallel ensemble has its own, see
+	 * {@link SingleMCTSPlayer})
+	 */
+	public Random m_rnd = null;
 	private int m_depth;
 //	private static double[] lastBounds = new double[] { 0, 1 };
 //	private static double[] curBounds = new double[] { 0, 1 };
@@ -105,7 +110,8 @@ public class SingleTreeNode implements Serializable
 	 * the state in {@code this}, the root node of the tree. <br>
 	 * <p>
 	 *
-	 * MCTS search: Do for {@code m_player.NUM_ITERS} iterations:
+	 * MCTS search: Do for {@code m_player.NUM_ITERS} iterations (or, in anytime mode
+	 * {@link params.ParMCTS#getMoveTime()}{@code > 0}, until the time of {@code elapsedTimer} is nearly up):
 	 * <ul>
 	 * <li>select a leaf node via {@link #treePolicy()} (this includes UCT or other select modes and 
 	 *    {@link #expand()} of not fully expanded nodes, as long as the maximum
@@ -126,8 +132,11 @@ public class SingleTreeNode implements Serializable
 	 * U(i) = children[i].totValue / children[i].nVisits
 	 * </pre>
 	 * 
+	 * In anytime mode with {@link params.ParMCTS#getEarlyStop()}, the search stops as soon as
+	 * {@link #cannotBeOvertaken(long)} holds for the estimated number of remaining iterations.
+	 * 
 	 * @param elapsedTimer
-	 *            currently not used
+	 *            the timer with the time budget of this move (only used in anytime mode)
 	 * @param VTable
 	 *            on input an array of length K+1, where K is the number of
 	 *            available moves for the root state. Contains on output
@@ -141,17 +150,21 @@ public class SingleTreeNode implements Serializable
 //		lastBounds[0] = curBounds[0];
 //		lastBounds[1] = curBounds[1];
 
+		final boolean anytime = m_player.getParMCTS().getMoveTime() > 0;
+		final boolean earlyStop = anytime && m_player.getParMCTS().getEarlyStop();
+		final int maxIters = anytime ? Integer.MAX_VALUE : m_player.getNUM_ITERS();
+		final int startVisits = this.nVisits;		// > 0, if this root was reused from the previous move
+		final long startNanos = System.nanoTime();
 		double avgTimeTaken = 0;
-		double acumTimeTaken = 0;
-		long remaining = elapsedTimer.remainingTimeMillis();
+		long remaining = anytime ? elapsedTimer.remainingTimeMillis() : 0;
 		int numIters = 0;
 
 		int remainingLimit = 5;
-		while (numIters < m_player.getNUM_ITERS()) { // /WK/ fixed number of
-														// iterations while
-														// debugging
-			// while(remaining > 2*avgTimeTaken && remaining > remainingLimit){
-			ElapsedCpuTimer elapsedTimerIteration = new ElapsedCpuTimer();
+		while (numIters < maxIters) { 
+			if (anytime) {
+				if (remaining <= 2*avgTimeTaken || remaining <= remainingLimit) break;
+				if (earlyStop && numIters > 0 && cannotBeOvertaken((long) (remaining / avgTimeTaken))) break;
+			}
 			SingleTreeNode selected = treePolicy();
 			
 			// NEW version: N-player unification
@@ -180,40 +193,17 @@ public class SingleTreeNode implements Serializable
 			// elapsedMillis="+elapsedTimer.elapsedMillis());
 
 			numIters++;
-			acumTimeTaken += (elapsedTimerIteration.elapsedMillis());
-
-			avgTimeTaken = acumTimeTaken / numIters;
-			remaining = elapsedTimer.remainingTimeMillis();
+			avgTimeTaken = (System.nanoTime() - startNanos) / 1e6 / numIters;
+			if (anytime) remaining = elapsedTimer.remainingTimeMillis();
 			// System.out.println(elapsedTimerIteration.elapsedMillis() + " -->
 			// " + acumTimeTaken + " (" + remaining + ")");
 		}
 
-		// fill VTable
-		double bestValue = -Double.MAX_VALUE;
-		double v;
-		double deltaGS = (m_state.getMaxGameScore()-m_state.getMinGameScore());
-		double minGS = m_state.getMinGameScore();
-		int K = m_state.getNumAvailableActions();
-		for (int k = 0; k < K; k++) {
-			for (int i = 0; i < children.length; i++) {
-				if (children[i]!=null) {	// needed for safety (RubiksCube & default start state)
-					if (children[i].m_act == m_state.getAction(k)) {
-						v = children[i].totValue / children[i].nVisits;
-						if (m_player.getNormalize()) {
-							VTable[k] = v*deltaGS + minGS;		// map back to interval [minGS,maxGS]
-						} else {
-							VTable[k] = v;
-						}
-						if (VTable[k] > bestValue) bestValue = VTable[k];
-					}
-				}
-			}
-		}
-		VTable[K] = bestValue;
+		fillVTable(VTable);
 
 		// /WK/ here follow some diagnostic checks (not required for normal operation)
 		
-		assert this.nVisits == numIters : "mroot's visits do not match numIters!";
+		assert this.nVisits == startVisits + numIters : "mroot's visits do not match numIters!";
 		this.printChildInfo(0, true);
 
 		/*
@@ -246,6 +236,34 @@ public class SingleTreeNode implements Serializable
 		}
 	}
 
+	/**
+	 * Fill {@code VTable} with the values {@code U(i)} of root's children (see {@link #mctsSearch(ElapsedCpuTimer,
+	 * double[])}) and their maximum in {@code VTable[K]}.
+	 */
+	void fillVTable(double[] VTable) {
+		double bestValue = -Double.MAX_VALUE;
+		double v;
+		double deltaGS = (m_state.getMaxGameScore()-m_state.getMinGameScore());
+		double minGS = m_state.getMinGameScore();
+		int K = m_state.getNumAvailableActions();
+		for (int k = 0; k < K; k++) {
+			for (int i = 0; i < children.length; i++) {
+				if (children[i]!=null) {	// needed for safety (RubiksCube & default start state)
+					if (children[i].m_act == m_state.getAction(k)) {
+						v = children[i].totValue / children[i].nVisits;
+						if (m_player.getNormalize()) {
+							VTable[k] = v*deltaGS + minGS;		// map back to interval [minGS,maxGS]
+						} else {
+							VTable[k] = v;
+						}
+						if (VTable[k] > bestValue) bestValue = VTable[k];
+					}
+				}
+			}
+		}
+		VTable[K] = bestValue;
+	}
+
 	
 	
 	public void printChildInfo(int nIndention, boolean isRootNode) {
@@ -522,13 +540,19 @@ public class SingleTreeNode implements Serializable
 	 * Play a rollout from {@code this.m_state}. This rollout consists of random actions. 
 	 * <p>
 	 * This method is valid for N-player games with arbitrary N.
+	 * <p>
+	 * The rollout runs on the scratch state of {@link SingleMCTSPlayer} which is re-filled via
+	 * {@link StateObservation#copyInto(StateObservation)}, so that games overriding {@code copyInto} do not allocate
+	 * a new state for each rollout. The random action is picked by index from the available actions.
 	 * 
 	 * @return the value vector (game reward vector) of the rollout, i. e.
 	 * 		   {@link #value(StateObservation)} of the final game-over state
 	 */
 	public double[] rollOut()
 	{
-		StateObservation rollerState = m_state.copy();
+		StateObservation rollerState = m_state.copyInto(m_player.rolloutState);
+		m_player.rolloutState = rollerState;
+		m_player.nRollouts++;
 		int thisDepth = this.m_depth;
 
 		while (!finishRollout(rollerState, thisDepth)) {
@@ -848,6 +872,30 @@ public class SingleTreeNode implements Serializable
 		}
 	}
 	
+	/**
+	 * Merge the root statistics of the independent trees of a root-parallel ensemble into {@code this}, a fresh root
+	 * node for the same state: For each action {@code i}, the child of {@code this} gets the sums of {@code nVisits} and
+	 * {@code totValue} over all trees (but no grandchildren). Afterwards, {@link #bestAction()},
+	 * {@link #mostVisitedAction()} and {@link #fillVTable(double[])} work on the merged statistics.
+	 *
+	 * @param roots the roots of the trees, all for the same state as {@code this}
+	 */
+	void mergeRoots(SingleTreeNode[] roots) {
+		for (SingleTreeNode root : roots) {
+			assert root.children.length == children.length : "mergeRoots: different number of children!";
+			for (int i = 0; i < children.length; i++) {
+				final SingleTreeNode c = root.children[i];
+				if (c == null) continue;
+				if (children[i] == null)
+					children[i] = new SingleTreeNode(c.m_state, m_state.getAction(i), this, m_rnd, m_player);
+				children[i].nVisits += c.nVisits;
+				children[i].totValue += c.totValue;
+			}
+			nVisits += root.nVisits;
+			totValue += root.totValue;
+		}
+	}
+
 	public int mostVisitedAction() {
 		int selected = -1;
 		double bestValue = -Double.MAX_VALUE;
@@ -916,6 +964,92 @@ public class SingleTreeNode implements Serializable
 		return selected;
 	}
 
+	/**
+	 * Early-stop criterion of the anytime search: The child of {@code this} with the most visits cannot be overtaken
+	 * by another child in {@code itersLeft} more iterations, and it is also the child with the best mean value
+	 * {@code totValue/nVisits} (the one that {@link #bestAction()} picks, apart from ties).
+	 * 
+	 * @param itersLeft the estimated number of remaining iterations
+	 * @return true, if further iterations cannot change the chosen action
+	 */
+	boolean cannotBeOvertaken(long itersLeft) {
+		int most = -1, mostVisits = -1, secondVisits = 0, best = -1;
+		double bestValue = -Double.MAX_VALUE;
+		for (int i = 0; i < children.length; i++) {
+			int v = (children[i] == null) ? 0 : children[i].nVisits;
+			if (v > mostVisits) {
+				secondVisits = Math.max(mostVisits, 0);
+				mostVisits = v;
+				most = i;
+			} else if (v > secondVisits) {
+				secondVisits = v;
+			}
+			if (v > 0 && children[i].totValue / v > bestValue) {
+				bestValue = children[i].totValue / v;
+				best = i;
+			}
+		}
+		return most == best && mostVisits - secondVisits > itersLeft;
+	}
+
+	/**
+	 * Search the nodes of the tree below {@code this} (up to {@code maxDepth} levels, including {@code this}) for a
+	 * node with the same state as {@code so}. Used for the reuse of the previous move's tree.
+	 * 
+	 * @return the matching node with the most visits, or {@code null} if there is none
+	 */
+	SingleTreeNode findNode(StateObservation so, int maxDepth) {
+		if (m_state == null) return null;
+		final String key = so.uniqueStringDescr();
+		SingleTreeNode found = null;
+		ArrayList<SingleTreeNode> level = new ArrayList<>();
+		level.add(this);
+		for (int d = 0; d <= maxDepth && !level.isEmpty(); d++) {
+			ArrayList<SingleTreeNode> next = new ArrayList<>();
+			for (SingleTreeNode n : level) {
+				if (n.m_state.getPlayer() == so.getPlayer()
+						&& n.m_state.getNumAvailableActions() == so.getNumAvailableActions()
+						&& (found == null || n.nVisits > found.nVisits)
+						&& n.m_state.uniqueStringDescr().equals(key)) {
+					found = n;
+				}
+				for (SingleTreeNode c : n.children)
+					if (c != null) next.add(c);
+			}
+			level = next;
+		}
+		return found;
+	}
+
+	/**
+	 * Make {@code this} the root of its subtree: detach it from its parent and shift the depths of all its
+	 * descendants, such that {@code this} has depth 0. The visits of {@code this} are set to the sum of its children's
+	 * visits (a root has no 'birth' visit, see {@link #printChildInfo(int, boolean)}).
+	 */
+	void makeRoot() {
+		final int offset = this.m_depth;
+		this.parent = null;
+		this.m_act = null;
+		this.nVisits = 0;
+		for (SingleTreeNode c : children)
+			if (c != null) this.nVisits += c.nVisits;
+		if (offset > 0) shiftDepth(offset);
+	}
+
+	private void shiftDepth(int offset) {
+		this.m_depth -= offset;
+		for (SingleTreeNode c : children)
+			if (c != null) c.shiftDepth(offset);
+	}
+
+	int getNVisits() {
+		return nVisits;
+	}
+
+	int getDepth() {
+		return m_depth;
+	}
+
 	public boolean notFullyExpanded() {
 		for (SingleTreeNode tn : children) {
 			if (tn == null) {
@@ -3,7 +3,9 @@ package controllers.MCTSExpWrapper;
 import TournamentSystem.TSTimeStorage;
 import controllers.AgentBase;
 import controllers.MCTSExpWrapper.stateApproximation2.Approximator2;
+import controllers.MCTSWrapper.MCTS;
 import controllers.MCTSWrapper.passStates.GameStateIncludingPass;
+import controllers.MCTSWrapper.utils.SearchBudget;
 import controllers.PlayAgent;
 import controllers.PlayAgtVector;
 import games.StateObservation;
@@ -19,6 +21,11 @@ import java.util.Map;
 /**
  * PlayAgent that performs a Monte Carlo Tree Search Expectimax (MCTSE) to calculate the next action to be selected.
  * This agent wraps an approximator, which is used to evaluate game states in MCTSE simulations.
+ * <p>
+ * The search performs either a fixed number of iterations or, in time-budget mode, as many iterations as fit into the
+ * time budget of the move (see {@link SearchBudget}). The achieved iterations are reported by
+ * {@link #getLastIterations()} and {@link #getSearchBudget()}, and printed per move if {@code getNextAction2} is not
+ * silent.
  */
 public final class MctseWrapperAgent extends AgentBase implements PlayAgent, Serializable {
     private final int iterations;
@@ -27,6 +34,8 @@ public final class MctseWrapperAgent extends AgentBase implements PlayAgent, Ser
 
     private MctseChanceNode rootNode;
 
+    private transient SearchBudget budget;     // created on demand, see getSearchBudget()
+
     /**
      * @param iterations   Number of monte carlo iterations to be performed before the next action is selected.
      * @param c_puct       A PUCT parameter that controls the importance of exploring new nodes instead of exploiting known ones.
@@ -71,6 +80,7 @@ public final class MctseWrapperAgent extends AgentBase implements PlayAgent, Ser
     public void resetAgent() {
         //this.lastSelectedNode = null;
         this.lastSelectedAction = Integer.MIN_VALUE;
+        getSearchBudget().resetEpisode();
     }
 
     @Override
@@ -82,10 +92,16 @@ public final class MctseWrapperAgent extends AgentBase implements PlayAgent, Ser
         rootNode = new MctseChanceNode(new GameStateIncludingPass(sob));
 
         mcts.largestDepth=0;
-        // Performs the given number of MCTS iterations:
-        for (int i = 0; i < iterations; i++) {
+        // Performs the given number of MCTS iterations or, in time-budget mode, searches until the deadline
+        // (but at least MCTS.MIN_ITERATIONS times):
+        final long deadline = getSearchBudget().startMove(sob, getParWrapper());
+        final int maxIterations = SearchBudget.isTimeMode(getParWrapper()) ? Integer.MAX_VALUE : iterations;
+        int i = 0;
+        for (; i < maxIterations; i++) {
+            if (i >= MCTS.MIN_ITERATIONS && deadline != Long.MAX_VALUE && System.nanoTime() >= deadline) break;
             mcts.search(rootNode,0);
         }
+        getSearchBudget().endMove(i);
 
         // Selects the int value of the action that leads to the child node with maximal visit counts.
         // This value is also cached for further calls.
@@ -145,6 +161,7 @@ public final class MctseWrapperAgent extends AgentBase implements PlayAgent, Ser
         StateObservation NewSO = sob.copy();
         NewSO.advance(Types.ACTIONS.fromInt(lastSelectedAction));
         System.out.println("---Best Move: " + NewSO.stringDescr() + ", " + (vBest));
+        System.out.println("---Search: iter=" + getLastIterations() + " (" + getSearchBudget().stringDescr() + ")");
     }
 
 //    @Override
@@ -173,6 +190,21 @@ public final class MctseWrapperAgent extends AgentBase implements PlayAgent, Ser
         return cs;
     }
 
+    /**
+     * @return the time budget of this agent and the statistics of the achieved iterations per move
+     */
+    public SearchBudget getSearchBudget() {
+        if (budget == null) budget = new SearchBudget();
+        return budget;
+    }
+
+    /**
+     * @return the number of MCTS iterations achieved in the last call of {@link #getNextAction2}
+     */
+    public int getLastIterations() {
+        return getSearchBudget().getLastIterations();
+    }
+
     public MctseChanceNode getRootNode() {
         return rootNode;
     }
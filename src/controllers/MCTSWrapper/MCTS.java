@@ -1,12 +1,34 @@
 package controllers.MCTSWrapper;
 
+import controllers.MCTSWrapper.passStates.GameStateIncludingPass;
 import controllers.MCTSWrapper.stateApproximation.Approximator;
+import controllers.MCTSWrapper.utils.Tuple;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 /***
  * A class that encapsulates the algorithm for a monte carlo tree search for 2-player games.
  * The games must have separate states for situations where a player has to pass.
  *
  * This inspiration for this code comes from https://web.stanford.edu/~surag/posts/alphazero.html
+ * <p>
+ * Besides the sequential {@link #search(MCTSNode, int)}, there is the tree-parallel
+ * {@link #searchParallel(MCTSNode, int, int)}, where several threads descend the same tree concurrently.
+ * With {@link #searchParallel(MCTSNode, int, int, int)}, each thread collects several leaves (with virtual loss)
+ * and evaluates them with one batch call {@link Approximator#predict(List)} (this pays off only for approximators
+ * which evaluate several states jointly, {@link controllers.MCTSWrapper.stateApproximation.PlayAgentApproximator
+ * PlayAgentApproximator} does not). The workers run in a thread pool
+ * (see {@link #newSearchPool(int)}), which the caller usually keeps over many searches (e.g. {@link MCTSWrapperAgent}).
  */
 public final class MCTS {
     private final double c_puct;
@@ -14,6 +36,13 @@ public final class MCTS {
     private final int maxDepth;
     public int largestDepth;    // the largest tree depth encountered during MCTS.search iterations
 
+    /**
+     * The minimum number of iterations in time-budget mode (the first one may be needed to expand the root)
+     */
+    public static final int MIN_ITERATIONS = 2;
+
+    private int maxNodes = 0;   // node budget, see setMaxNodes
+
     /**
      * @param approximator A component that approximates the value of a given game state.
      * @param c_puct A PUCT parameter that controls the importance of
@@ -27,6 +56,24 @@ public final class MCTS {
         this.maxDepth = (maxDepth==-1) ? Integer.MAX_VALUE : maxDepth;
     }
 
+    /**
+     * Set the node budget: {@link #searchParallel(MCTSNode, int, int, int, long) searchParallel} starts no new
+     * iteration once the tree has reached {@code maxNodes} nodes (see {@link MCTSNode#getTreeSize()}), so that the
+     * caller can prune it. (The budget is soft: iterations already started may add a few more nodes.)
+     *
+     * @param maxNodes the maximum number of nodes, 0 for no limit
+     */
+    public void setMaxNodes(final int maxNodes) {
+        this.maxNodes = maxNodes;
+    }
+
+    /**
+     * @return true, if the tree of {@code root} has reached the node budget
+     */
+    public boolean isTreeFull(final MCTSNode root) {
+        return maxNodes > 0 && root.getTreeSize() >= maxNodes;
+    }
+
     /**
      * Recursive Monte Carlo tree search that is applicable to 1- and 2-player games
      * which have separate states for situations where a player has to pass.
@@ -67,24 +114,317 @@ public final class MCTS {
         // Next step is to select a child node based on the PUCT algorithm.
         // This child node will be expanded in the next recursive call of this method.
 
-        final var selected = node.selectChild(c_puct); // Returns a tuple containing the selected
-                                                       // node and the action that leads to it.
-        final var selectedAction = selected.element1;
-        final var selectedNode = selected.element2;
+        final var selected = node.selectChild(c_puct); // Returns the action slot of the selected child node.
+        final var selectedNode = node.getChildNode(selected);
 
         final var childValue = search(selectedNode, depth+1); // Recursive call of the tree search for the child node
 
-        // Update the nodes mean value (Q) with the childValue.
-        final var visitCount = node.getN(selectedAction);
-        final var meanValue = node.getQ(selectedAction);
-        node.meanValues.put(
-            selectedAction.getId(),
-            (visitCount * meanValue + childValue) / (visitCount + 1)
-        );
-
-        // Increment the nodes visit count (N).
-        node.incrementVisitCount(selectedAction);
+        // Update the nodes mean value (Q) with the childValue and increment the nodes visit count (N).
+        node.update(selected, childValue);
 
         return sign * childValue;                   // /WK/ sign
     }
+
+    /**
+     * Tree-parallel Monte Carlo tree search: {@code numThreads} workers perform together {@code iterations}
+     * iterations (descents from {@code root} to a leaf) in the same tree. Concurrent workers are steered into
+     * different subtrees by virtual loss (see {@link MCTSNode#selectChildVL(double)}). Each node is expanded by
+     * exactly one worker; a worker that reaches a node under expansion waits for it.
+     * <p>
+     * The approximator is called concurrently, so the wrapped agent has to support concurrent calls of
+     * {@code getNextAction2} with {@code random=false} (this is the case for the n-tuple agents, e.g.
+     * {@link controllers.TD.ntuple4.TDNTuple4Agt}).
+     *
+     * @param root       Node where the tree search starts.
+     * @param iterations The total number of iterations (over all workers).
+     * @param numThreads The number of workers. If {@code numThreads <= 1}, {@link #search(MCTSNode, int)} is called
+     *                   {@code iterations} times.
+     * @return the number of completed iterations
+     */
+    public int searchParallel(final MCTSNode root, final int iterations, final int numThreads) {
+        return searchParallel(root, iterations, numThreads, 1);
+    }
+
+    /**
+     * Same as {@link #searchParallel(MCTSNode, int, int)}, but if {@code batchSize > 1}, each worker performs its
+     * iterations in passes: A pass descends up to {@code batchSize} times from {@code root} (with virtual loss, so
+     * that the descents reach different leaves), collects the non-expanded leaves and evaluates them together with
+     * one call of {@link Approximator#predict(List)}. Then the values are backed up along the paths.
+     * <p>
+     * A descent that reaches a leaf already pending in the current pass (or under expansion by another worker) is
+     * abandoned and ends the pass early. Thus, the passes may be shorter than {@code batchSize}, but the total number
+     * of completed iterations is always {@code iterations}.
+     *
+     * @param batchSize The maximum number of leaves per batch evaluation. If {@code batchSize <= 1}, this is the same
+     *                  as {@link #searchParallel(MCTSNode, int, int)}.
+     * @return the number of completed iterations
+     */
+    public int searchParallel(final MCTSNode root, final int iterations, final int numThreads, final int batchSize) {
+        return searchParallel(root, iterations, numThreads, batchSize, Long.MAX_VALUE);
+    }
+
+    /**
+     * Same as {@link #searchParallel(MCTSNode, int, int, int)}, but no new iteration is started after
+     * {@code deadline} (time-budget mode, see {@link controllers.MCTSWrapper.utils.SearchBudget}). At least
+     * {@link #MIN_ITERATIONS} iterations are performed (unless the node budget is reached, see
+     * {@link #setMaxNodes(int)}).
+     *
+     * @param deadline The deadline in terms of {@link System#nanoTime()}, {@link Long#MAX_VALUE} for none.
+     * @return the number of completed iterations
+     */
+    public int searchParallel(final MCTSNode root, final int iterations, final int numThreads, final int batchSize,
+                              final long deadline) {
+        return searchParallel(root, iterations, numThreads, batchSize, deadline, null);
+    }
+
+    /**
+     * Same as {@link #searchParallel(MCTSNode, int, int, int, long)}, but the workers run in {@code pool}.
+     *
+     * @param pool A pool with at least {@code numThreads} threads (see {@link #newSearchPool(int)}), owned by the
+     *             caller. If {@code null}, a pool is created for this call only.
+     * @return the number of completed iterations
+     */
+    public int searchParallel(final MCTSNode root, final int iterations, final int numThreads, final int batchSize,
+                              final long deadline, final ExecutorService pool) {
+        if (numThreads <= 1) {
+            int done = 0;
+            if (batchSize <= 1) {
+                for (; done < iterations && inTime(done, deadline) && !isTreeFull(root); done++)
+                    search(root, 0);
+            } else {
+                final int[] deepest = new int[1];
+                try {
+                    while (done < iterations && inTime(done, deadline) && !isTreeFull(root))
+                        done += searchBatch(root, Math.min(batchSize, iterations - done), deepest);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("[MCTS] Interrupted during batched search", e);
+                }
+                if (deepest[0] > largestDepth) largestDepth = deepest[0];
+            }
+            return done;
+        }
+        final AtomicInteger started = new AtomicInteger(0);
+        final AtomicInteger completed = new AtomicInteger(0);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final int[][] deepest = new int[numThreads][1];
+        final ExecutorService exec = (pool != null) ? pool : newSearchPool(numThreads);
+        final List<Future<?>> workers = new ArrayList<>(numThreads);
+        for (int t = 0; t < numThreads; t++) {
+            final int[] dt = deepest[t];
+            workers.add(exec.submit(() -> {
+                try {
+                    if (batchSize <= 1) {
+                        while (failure.get() == null && inTime(completed.get(), deadline) && !isTreeFull(root)
+                                && started.getAndIncrement() < iterations) {
+                            searchVL(root, 0, dt);
+                            completed.incrementAndGet();
+                        }
+                    } else {
+                        int n;
+                        while (failure.get() == null && inTime(completed.get(), deadline) && !isTreeFull(root)
+                                && (n = reserve(started, iterations, batchSize)) > 0) {
+                            final int done = searchBatch(root, n, dt);
+                            if (done < n) started.addAndGet(done - n);    // give back the iterations not done
+                            completed.addAndGet(done);
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            }));
+        }
+        try {
+            for (Future<?> worker : workers) worker.get();
+        } catch (InterruptedException e) {
+            for (Future<?> worker : workers) worker.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("[MCTS] Interrupted while waiting for the search threads", e);
+        } catch (ExecutionException e) {
+            failure.compareAndSet(null, e.getCause());
+        } finally {
+            if (pool == null) exec.shutdown();
+        }
+        for (int[] dt : deepest)
+            if (dt[0] > largestDepth) largestDepth = dt[0];
+        if (failure.get() != null)
+            throw new RuntimeException("[MCTS] Parallel search failed", failure.get());
+        return completed.get();
+    }
+
+    /**
+     * Create a thread pool for {@link #searchParallel(MCTSNode, int, int, int, long, ExecutorService)} with
+     * {@code numThreads} daemon threads. Idle threads terminate after a few seconds, so a pool which is no longer
+     * used does not keep its threads, even if it is not shut down by its owner.
+     *
+     * @param numThreads the number of threads
+     * @return the pool
+     */
+    public static ExecutorService newSearchPool(final int numThreads) {
+        final AtomicInteger count = new AtomicInteger(0);
+        final ThreadPoolExecutor pool = new ThreadPoolExecutor(numThreads, numThreads, 10, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    final Thread thread = new Thread(r, "MCTS-search-" + count.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * @return true, if another iteration may be started: fewer than {@link #MIN_ITERATIONS} are done or the
+     *      deadline is not yet reached
+     */
+    private static boolean inTime(final int done, final long deadline) {
+        return deadline == Long.MAX_VALUE || done < MIN_ITERATIONS || System.nanoTime() < deadline;
+    }
+
+    /**
+     * One iteration of a worker in {@link #searchParallel(MCTSNode, int, int)}: the same as
+     * {@link #search(MCTSNode, int)}, but with virtual loss and with thread-safe expansion.
+     *
+     * @param deepest deepest[0] is the largest depth encountered by this worker
+     */
+    private double searchVL(final MCTSNode node, final int depth, final int[] deepest) throws InterruptedException {
+        final int sign = node.gameState.getNumPlayers()==1 ? (+1) : (-1);
+
+        if (node.gameState.isFinalGameState())
+            return sign * node.gameState.getFinalGameScore();
+
+        if (depth > this.maxDepth)
+            return -1;
+        if (depth > deepest[0]) deepest[0]=depth;
+
+        while (!node.isExpanded()) {
+            if (node.tryClaimExpansion()) {
+                final double value;
+                try {
+                    final var valueAndMoveProbabilities = node.gameState.getApproximatedValueAndMoveProbabilities(approximator);
+                    value = valueAndMoveProbabilities.element1;
+                    node.finishExpansion(valueAndMoveProbabilities.element2);
+                } catch (RuntimeException e) {
+                    node.releaseExpansion();
+                    throw e;
+                }
+                return sign * value;
+            }
+            node.awaitExpansion();      // another worker expands this node
+        }
+
+        final var selected = node.selectChildVL(c_puct);
+        final var childValue = searchVL(node.getChildNode(selected), depth+1, deepest);
+        node.updateVL(selected, childValue);
+
+        return sign * childValue;
+    }
+
+    /**
+     * Reserve up to {@code batchSize} of the {@code iterations} for the calling worker.
+     *
+     * @return the number of reserved iterations (0, if all iterations are reserved)
+     */
+    private static int reserve(final AtomicInteger started, final int iterations, final int batchSize) {
+        while (true) {
+            final int s = started.get();
+            final int n = Math.min(batchSize, iterations - s);
+            if (n <= 0) return 0;
+            if (started.compareAndSet(s, s + n)) return n;
+        }
+    }
+
+    /**
+     * One pass of the batched search (see {@link #searchParallel(MCTSNode, int, int, int)}): up to {@code maxLeaves}
+     * descents from {@code root}, a batch evaluation of the collected leaves and the backup of all values.
+     *
+     * @param deepest deepest[0] is the largest depth encountered by this worker
+     * @return the number of completed iterations (at least 1, unless {@code maxLeaves == 0})
+     */
+    int searchBatch(final MCTSNode root, final int maxLeaves, final int[] deepest) throws InterruptedException {
+        final List<MCTSNode> leaves = new ArrayList<>(maxLeaves);
+        final List<List<MCTSNode>> leafPathNodes = new ArrayList<>(maxLeaves);
+        final List<int[]> leafPathSlots = new ArrayList<>(maxLeaves);
+        int done = 0;
+
+        descents:
+        while (done + leaves.size() < maxLeaves) {
+            final List<MCTSNode> pathNodes = new ArrayList<>();
+            int[] pathSlots = new int[16];
+            var node = root;
+            int depth = 0;
+            while (true) {
+                if (node.gameState.isFinalGameState()) {
+                    final int sign = node.gameState.getNumPlayers()==1 ? (+1) : (-1);
+                    backup(pathNodes, pathSlots, sign * node.gameState.getFinalGameScore());
+                    done++;
+                    continue descents;
+                }
+                if (depth > this.maxDepth) {
+                    backup(pathNodes, pathSlots, -1);
+                    done++;
+                    continue descents;
+                }
+                if (depth > deepest[0]) deepest[0]=depth;
+
+                if (!node.isExpanded()) {
+                    if (node.tryClaimExpansion()) {
+                        leaves.add(node);
+                        leafPathNodes.add(pathNodes);
+                        leafPathSlots.add(pathSlots);
+                        continue descents;
+                    }
+                    // The leaf is pending in this pass or under expansion by another worker: abandon the descent.
+                    for (int i = 0; i < pathNodes.size(); i++)
+                        pathNodes.get(i).revertVL(pathSlots[i]);
+                    if (!leaves.isEmpty()) break descents;      // evaluate what we have
+                    node.awaitExpansion();                      // another worker expands this node
+                    continue descents;
+                }
+
+                final var selected = node.selectChildVL(c_puct);
+                if (pathNodes.size() == pathSlots.length)
+                    pathSlots = Arrays.copyOf(pathSlots, 2 * pathSlots.length);
+                pathSlots[pathNodes.size()] = selected;
+                pathNodes.add(node);
+                node = node.getChildNode(selected);
+                depth++;
+            }
+        }
+
+        if (leaves.isEmpty()) return done;
+
+        final List<GameStateIncludingPass> states = new ArrayList<>(leaves.size());
+        for (MCTSNode leaf : leaves) states.add(leaf.gameState);
+        final List<Tuple<Double, double[]>> valuesAndMoveProbabilities;
+        try {
+            valuesAndMoveProbabilities = GameStateIncludingPass.getApproximatedValuesAndMoveProbabilities(states, approximator);
+        } catch (RuntimeException e) {
+            for (int j = 0; j < leaves.size(); j++) {
+                leaves.get(j).releaseExpansion();
+                final List<MCTSNode> pathNodes = leafPathNodes.get(j);
+                for (int i = 0; i < pathNodes.size(); i++)
+                    pathNodes.get(i).revertVL(leafPathSlots.get(j)[i]);
+            }
+            throw e;
+        }
+        for (int j = 0; j < leaves.size(); j++) {
+            final MCTSNode leaf = leaves.get(j);
+            leaf.finishExpansion(valuesAndMoveProbabilities.get(j).element2);
+            final int sign = leaf.gameState.getNumPlayers()==1 ? (+1) : (-1);
+            backup(leafPathNodes.get(j), leafPathSlots.get(j), sign * valuesAndMoveProbabilities.get(j).element1);
+        }
+        return done + leaves.size();
+    }
+
+    /**
+     * Back up the value returned from the end of a path, from the last node up to the root, the same way as the
+     * recursion in {@link #search(MCTSNode, int)} does it.
+     */
+    private static void backup(final List<MCTSNode> pathNodes, final int[] pathSlots, double value) {
+        for (int i = pathNodes.size() - 1; i >= 0; i--) {
+            final MCTSNode node = pathNodes.get(i);
+            node.updateVL(pathSlots[i], value);
+            value = node.gameState.getNumPlayers()==1 ? value : -value;
+        }
+    }
 }
@@ -2,16 +2,38 @@ package controllers.MCTSWrapper;
 
 import controllers.MCTSWrapper.passStates.ApplicableAction;
 import controllers.MCTSWrapper.passStates.GameStateIncludingPass;
-import controllers.MCTSWrapper.utils.Tuple;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Collection;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.Map;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Node of a monte carlo tree search.
  * This node is implemented as a linked list and thus also represents a search tree at the same time.
+ * <p>
+ * The statistics of the node are kept in parallel arrays indexed by the <em>action slot</em> {@code k}, that is the
+ * position of an action in {@link GameStateIncludingPass#getAvailableActionsIncludingPassActions()}. The arrays are
+ * allocated when the node gets its move probabilities (expansion), the array of child nodes on the first child
+ * selection. The sum of all visit counts is kept up to date, so that {@link #selectChild(double)} is O(A).
+ * <p>
+ * For the tree-parallel search {@link MCTS#searchParallel(MCTSNode, int, int)}, several workers descend the tree
+ * concurrently: They use the synchronized methods {@link #selectChildVL(double)} and {@link #updateVL(int, double)},
+ * which add and remove a <em>virtual loss</em> for each pending descent through an action slot, so that concurrent
+ * workers are steered into different subtrees. Exactly one worker expands a node (see {@link #tryClaimExpansion()}).
+ * The batched search uses the same mechanism for the several pending descents of a single worker.
+ * <p>
+ * All nodes of a tree share a counter of the live nodes ({@link #getTreeSize()}). When the tree is re-rooted
+ * ({@link #reRoot(int)}), the discarded parts are released explicitly, so the count stays exact. If the tree exceeds
+ * a node budget, the least-visited subtrees can be pruned with {@link #pruneLeastVisited(int)}.
+ * <p>
+ * In <em>transposition mode</em> (see {@link #MCTSNode(GameStateIncludingPass, boolean)}), the nodes of a tree are
+ * kept in a shared table, keyed by {@link GameStateIncludingPass#transpositionKey()}, and equal states reached via
+ * different move orders share one node. Since the statistics N, Q, P are kept per action slot of the parent, they
+ * are statistics of the <em>edges</em>, while the shared node pools the visits and the expansion of the state. The
+ * tree is then a directed acyclic graph, so releasing and pruning work by mark-and-sweep over the table.
  */
 public final class MCTSNode {
     /**
@@ -21,20 +43,72 @@ public final class MCTSNode {
      */
     public final GameStateIncludingPass gameState;
 
-    public final Map<Integer, MCTSNode> childNodes;
-    public final Map<Integer, Double> moveProbabilities;
-    public final Map<Integer, Double> meanValues;
-    public final Map<Integer, Integer> visitCounts;
+    private ApplicableAction[] actions;     // the available actions (including pass actions), null if not yet needed
+    private MCTSNode[] childNodes;          // childNodes[k] is the child for action slot k or null
+    private double[] moveProbabilities;
+    private double[] meanValues;
+    private int[] visitCounts;
+    private int sumVisits = 0;              // the sum of all visitCounts[k]
+    private int[] virtualLoss;              // number of pending descents through slot k (only in parallel search)
+    private int sumVirtualLoss = 0;
 
-    private boolean expanded;
+    /**
+     * The value that a pending descent contributes to the mean value of its action slot (a loss from the
+     * perspective of the player to move in this node)
+     */
+    static final double VIRTUAL_LOSS_VALUE = -1.0;
+
+    private final AtomicInteger treeSize;   // number of live nodes in the tree, shared by all its nodes
+    private boolean released = false;       // true, if this node was removed from its tree
+    private final HashMap<String, MCTSNode> table;  // transposition table shared by all nodes or null (tree mode)
+    private int mark = 0;                   // the last mark-and-sweep epoch in which this node was reachable
 
+    private volatile boolean expanded;
+    private boolean expanding;              // true while a worker of the parallel search expands this node
+
+    /**
+     * Creates the root node of a new tree.
+     */
     public MCTSNode(final GameStateIncludingPass gameState) {
+        this(gameState, false);
+    }
+
+    /**
+     * Creates the root node of a new tree.
+     *
+     * @param transpositions if true, equal states in the tree share one node (transposition mode)
+     */
+    public MCTSNode(final GameStateIncludingPass gameState, final boolean transpositions) {
+        this(gameState, new AtomicInteger(0), transpositions ? new HashMap<>() : null);
+        if (table != null) table.put(gameState.transpositionKey(), this);
+    }
+
+    private MCTSNode(final GameStateIncludingPass gameState, final AtomicInteger treeSize,
+                     final HashMap<String, MCTSNode> table) {
         this.gameState = gameState;
+        this.treeSize = treeSize;
+        this.table = table;
+        treeSize.incrementAndGet();
+    }
+
+    /**
+     * @return a new, non-expanded node for the state after action slot {@code k} or, in transposition mode, the
+     *      existing node for that state
+     */
+    private MCTSNode newChild(final int k) {
+        final var next = gameState.advance(actions[k]);
+        if (table == null)
+            return new MCTSNode(next, treeSize, null);
+        synchronized (table) {
+            return table.computeIfAbsent(next.transpositionKey(), key -> new MCTSNode(next, treeSize, table));
+        }
+    }
 
-        childNodes = new HashMap<>();
-        moveProbabilities = new HashMap<>();
-        meanValues = new HashMap<>();
-        visitCounts = new HashMap<>();
+    /**
+     * @return true, if this node's tree is in transposition mode
+     */
+    public boolean isTranspositionMode() {
+        return table != null;
     }
 
     public void setExpanded() {
@@ -45,6 +119,18 @@ public final class MCTSNode {
         return expanded;
     }
 
+    /**
+     * Allocate the arrays for the node statistics (if not yet done).
+     */
+    private void allocate() {
+        if (actions == null) {
+            actions = gameState.getAvailableActionsIncludingPassActions();
+            moveProbabilities = new double[actions.length];
+            meanValues = new double[actions.length];
+            visitCounts = new int[actions.length];
+        }
+    }
+
     /**
      * Overrides the node's move probabilities.
      *
@@ -52,19 +138,23 @@ public final class MCTSNode {
      * @throws IllegalArgumentException If the moveProps array's size doesn't equal the count of available actions.
      */
     public void setMoveProbabilities(final double[] moveProps) {
-        final var availableActions = gameState.getAvailableActionsIncludingPassActions();
+        allocate();
 
-        if (availableActions.length != moveProps.length)
+        if (actions.length != moveProps.length)
             throw new IllegalArgumentException("The length of moveProps array has to match the count of available actions");
 
-        for (int i = 0; i < moveProps.length; i++) {
-            moveProbabilities.put(availableActions[i].getId(), moveProps[i]);
-        }
+        System.arraycopy(moveProps, 0, moveProbabilities, 0, moveProps.length);
     }
 
-
-    public Tuple<ApplicableAction, MCTSNode> selectChild(final double c_puct) {
-        final var availableActions = gameState.getAvailableActionsIncludingPassActions();
+    /**
+     * Select the action slot with the highest PUCT value and create the corresponding child node, if it does not yet
+     * exist.
+     *
+     * @param c_puct A PUCT parameter that controls the importance of exploring new nodes instead of exploiting known ones.
+     * @return the selected action slot {@code k} (see {@link #getAction(int)} and {@link #getChildNode(int)})
+     */
+    public int selectChild(final double c_puct) {
+        allocate();
 
 //        // /WK/ debug check
 //        if (visitCounts.size()==0) {
@@ -75,20 +165,21 @@ public final class MCTSNode {
 //            System.err.println("[selectChild] *** Warning: meanValues.size==0 ! ***");
 //        }
 
-        var vsz = visitCounts.size();       // how often this node been has visited
+        var vsz = sumVisits;                // how often this node been has visited
+        var sqrtSum = Math.sqrt(sumVisits+ConfigWrapper.EPS);
         var bestValue = Double.NEGATIVE_INFINITY;
-        ApplicableAction bestAction = null;
+        var best = -1;
 
         // only needed for the experimental code below (search for bestP_act)
-        //ApplicableAction bestP_act = null;
-        //if (vsz==0 && ConfigWrapper.EPS<0) bestP_act = selectBestFromP(availableActions);
+        //var bestP_k = -1;
+        //if (vsz==0 && ConfigWrapper.EPS<0) bestP_k = selectBestFromP();
 
-        for (final var a : availableActions) {
+        for (int k = 0; k < actions.length; k++) {
             // In case visitCounst.size()>0, select according to the normal PUCT formula (EPS negligible, because |EPS| << 1)
             // In case visitCounts.size()==0 && EPS>0, select bestAction = argmax(getP(a)).
             // [This is because a non-visited node has getQ(a) = getN(a) = 0.]
             // This is the solution from Surag Nair, and it is the *recommended* choice.
-            var value = getQ(a) + c_puct * getP(a) * Math.sqrt(sum(visitCounts.values())+ConfigWrapper.EPS) / (1 + getN(a));
+            var value = meanValues[k] + c_puct * moveProbabilities[k] * sqrtSum / (1 + visitCounts[k]);
             // In case visitCounts.size()==0 && EPS==0, select the 1st action. This is the case originally
             // provided by JS, and it seemed first better in the Othello-case (but later we found that it is comparable to EPS>0).
 
@@ -96,16 +187,16 @@ public final class MCTSNode {
             // (experimental option: ... that is NOT argmax(getP(a))).
             if (vsz==0 && ConfigWrapper.EPS<0) {    // is EPS<0 on average as good as (EPS==0)-solution?
                 value = Math.random();
-                //if (a.getId()==bestP_act.getId()) value = -1;   // experimental: avoid the action argmax(getP(a))
+                //if (k==bestP_k) value = -1;   // experimental: avoid the action argmax(getP(a))
             }
 
             if (value > bestValue) {
                 bestValue = value;
-                bestAction = a;
+                best = k;
             }
         }
 
-        assert bestAction != null;
+        assert best != -1;
 
 //        // /WK/ debug check only
 //        var bestValue2 = Double.NEGATIVE_INFINITY;
@@ -132,57 +223,390 @@ public final class MCTSNode {
 //                assert (bestAction.getId()==selectBestFromP(availableActions).getId()) : "Check selectBestFromP failed!";
 //        }
 
-        final MCTSNode child;
-        if (childNodes.containsKey(bestAction.getId())) {
-            child = childNodes.get(bestAction.getId());
-        } else {
-            child = new MCTSNode(gameState.advance(bestAction));    // a new, non-expanded node
-            childNodes.put(bestAction.getId(), child);
+        if (childNodes == null)
+            childNodes = new MCTSNode[actions.length];
+        if (childNodes[best] == null)
+            childNodes[best] = newChild(best);    // a new, non-expanded node (or a transposition)
+
+        return best;
+    }
+
+    /**
+     * Same as {@link #selectChild(double)}, but for concurrent workers: the PUCT values take the pending descents of
+     * other workers into account (each one counts as a visit with value {@link #VIRTUAL_LOSS_VALUE}), and a virtual
+     * loss is added to the selected slot. It has to be removed with {@link #updateVL(int, double)}.
+     *
+     * @return the selected action slot {@code k}
+     */
+    synchronized int selectChildVL(final double c_puct) {
+        allocate();
+        if (virtualLoss == null)
+            virtualLoss = new int[actions.length];
+
+        var vsz = sumVisits + sumVirtualLoss;
+        var sqrtSum = Math.sqrt(vsz+ConfigWrapper.EPS);
+        var bestValue = Double.NEGATIVE_INFINITY;
+        var best = -1;
+        for (int k = 0; k < actions.length; k++) {
+            final int n = visitCounts[k], v = virtualLoss[k];
+            final double q = (v == 0) ? meanValues[k] : (n * meanValues[k] + v * VIRTUAL_LOSS_VALUE) / (n + v);
+            var value = q + c_puct * moveProbabilities[k] * sqrtSum / (1 + n + v);
+            if (vsz==0 && ConfigWrapper.EPS<0)      // see selectChild
+                value = Math.random();
+            if (value > bestValue) {
+                bestValue = value;
+                best = k;
+            }
         }
 
-        return new Tuple<>(bestAction, child);
+        assert best != -1;
+
+        if (childNodes == null)
+            childNodes = new MCTSNode[actions.length];
+        if (childNodes[best] == null)
+            childNodes[best] = newChild(best);    // a new, non-expanded node (or a transposition)
+        virtualLoss[best]++;
+        sumVirtualLoss++;
+
+        return best;
+    }
+
+    /**
+     * Same as {@link #update(int, double)} for concurrent workers, which also removes the virtual loss added by
+     * {@link #selectChildVL(double)}.
+     */
+    synchronized void updateVL(final int k, final double value) {
+        virtualLoss[k]--;
+        sumVirtualLoss--;
+        update(k, value);
+    }
+
+    /**
+     * Remove the virtual loss added by {@link #selectChildVL(double)} without an update, for a descent that was
+     * abandoned (batched search, see {@link MCTS#searchParallel(MCTSNode, int, int, int)}).
+     */
+    synchronized void revertVL(final int k) {
+        virtualLoss[k]--;
+        sumVirtualLoss--;
+    }
+
+    /**
+     * Claim the expansion of this node for the calling worker (parallel search). If successful, the worker has to
+     * call either {@link #finishExpansion(double[])} or (in case of an error) {@link #releaseExpansion()}.
+     *
+     * @return true, if the node is neither expanded nor being expanded by another worker
+     */
+    synchronized boolean tryClaimExpansion() {
+        if (expanded || expanding) return false;
+        expanding = true;
+        return true;
+    }
+
+    /**
+     * Set the move probabilities of a node claimed with {@link #tryClaimExpansion()}, mark it as expanded and wake
+     * up the workers waiting in {@link #awaitExpansion()}.
+     */
+    synchronized void finishExpansion(final double[] moveProps) {
+        setMoveProbabilities(moveProps);
+        expanded = true;
+        expanding = false;
+        notifyAll();
+    }
+
+    synchronized void releaseExpansion() {
+        expanding = false;
+        notifyAll();
     }
 
     /**
-     * @param availableActions
-     * @return the action argmax(getP(a)) (the first maximizing action, if there are more than one with the same max)
+     * Wait until the node is no longer being expanded by another worker.
      */
-    private ApplicableAction selectBestFromP(ApplicableAction[] availableActions) {
+    synchronized void awaitExpansion() throws InterruptedException {
+        while (expanding) wait();
+    }
+
+    /**
+     * @return the action slot argmax(getP(k)) (the first maximizing slot, if there are more than one with the same max)
+     */
+    private int selectBestFromP() {
         var bestValue = Double.NEGATIVE_INFINITY;
-        ApplicableAction bestAction = null;
-        for (final var a : availableActions) {
-            var value = getP(a);
+        var best = -1;
+        for (int k = 0; k < actions.length; k++) {
+            var value = moveProbabilities[k];
             if (value > bestValue) {
                 bestValue = value;
-                bestAction = a;
+                best = k;
             }
         }
-        return bestAction;
+        return best;
+    }
+
+    /**
+     * Update the statistics of action slot {@code k} with a new value from the subtree below it: the mean value
+     * (Q) takes {@code value} into account and the visit count (N) is incremented.
+     */
+    void update(final int k, final double value) {
+        meanValues[k] = (visitCounts[k] * meanValues[k] + value) / (visitCounts[k] + 1);
+        visitCounts[k]++;
+        sumVisits++;
+    }
+
+    /**
+     * @return the action slot of the action with id {@code actionId} or -1, if it is not available in this node
+     */
+    public int getSlot(final int actionId) {
+        allocate();
+        for (int k = 0; k < actions.length; k++)
+            if (actions[k].getId() == actionId) return k;
+        return -1;
+    }
+
+    /**
+     * @return the number of action slots, i.e. the number of available actions (including pass actions)
+     */
+    public int getNumSlots() {
+        allocate();
+        return actions.length;
+    }
+
+    public ApplicableAction getAction(final int k) {
+        allocate();
+        return actions[k];
+    }
+
+    /**
+     * @return the child node for action slot {@code k} or {@code null}, if it was not yet created
+     */
+    public MCTSNode getChildNode(final int k) {
+        return (childNodes == null) ? null : childNodes[k];
+    }
+
+    /**
+     * @return the child node for the action with id {@code actionId} or {@code null}, if it was not yet created
+     */
+    public MCTSNode getChildNodeForAction(final int actionId) {
+        if (childNodes == null) return null;
+        final int k = getSlot(actionId);
+        return (k < 0) ? null : childNodes[k];
     }
 
-    private static double sum(final Collection<Integer> values) {
-        return values.stream().mapToInt(it -> it).sum();
+    public double getQ(final int k) {
+        return (meanValues == null) ? 0.0 : meanValues[k];
     }
 
-    double getQ(final ApplicableAction action) {
-        return meanValues.getOrDefault(action.getId(), 0.0);
+    public int getN(final int k) {
+        return (visitCounts == null) ? 0 : visitCounts[k];
     }
 
-    int getN(final ApplicableAction action) {
-        return visitCounts.getOrDefault(action.getId(), 0);
+    public double getP(final int k) {
+        return (moveProbabilities == null) ? 0.0 : moveProbabilities[k];
     }
 
-    double getP(final ApplicableAction action) {
-        return moveProbabilities.getOrDefault(action.getId(), 0.0);
+    /**
+     * @return the sum of the visit counts over all action slots
+     */
+    public int getSumVisits() {
+        return sumVisits;
     }
 
     public ArrayList<Integer> getLastMoves() { return gameState.getLastMoves(); }
 
-    void incrementVisitCount(final ApplicableAction action) {
-        visitCounts.put(
-            action.getId(),
-            getN(action) + 1
-        );
+    /**
+     * @return the number of live nodes in the tree of this node (including nodes created but not yet expanded)
+     */
+    public int getTreeSize() {
+        return treeSize.get();
+    }
+
+    /**
+     * @return the number of nodes in the transposition table (0 in tree mode)
+     */
+    int getTableSize() {
+        if (table == null) return 0;
+        synchronized (table) {
+            return table.size();
+        }
+    }
+
+    /**
+     * Make the child in slot {@code k} the new root: this node and all its other subtrees are released.
+     * Must not be called while a search is running on this tree.
+     *
+     * @param k the action slot of the new root, or -1 to release the whole tree
+     * @return the child node in slot {@code k} (or {@code null}, if it does not exist or {@code k == -1})
+     */
+    public MCTSNode reRoot(final int k) {
+        final MCTSNode keep = (k < 0) ? null : getChildNode(k);
+        if (table != null) {
+            sweep(keep);
+            return keep;
+        }
+        if (keep != null) childNodes[k] = null;     // detach it before releasing the rest
+        release(this);
+        return keep;
+    }
+
+    /**
+     * Same as {@link #reRoot(int)} for the child reached by the action with id {@code actionId}.
+     */
+    public MCTSNode reRootForAction(final int actionId) {
+        return reRoot((childNodes == null) ? -1 : getSlot(actionId));
+    }
+
+    /**
+     * Prune the least-visited subtrees of the tree below this node (the root), until at most {@code target} nodes
+     * are left. A pruned child is removed, but the statistics of its action slot in the parent are kept; if it is
+     * selected again, it is re-created as a non-expanded node. Must not be called while a search is running on this
+     * tree.
+     *
+     * @return the number of released nodes
+     */
+    public int pruneLeastVisited(final int target) {
+        final int before = treeSize.get();
+        if (before <= target) return 0;
+        if (table != null) return before - pruneGraph(target);
+
+        // collect all (parent, slot) pairs of existing child nodes
+        final ArrayList<MCTSNode> parents = new ArrayList<>();
+        final ArrayList<Integer> slots = new ArrayList<>();
+        final ArrayDeque<MCTSNode> stack = new ArrayDeque<>();
+        stack.push(this);
+        while (!stack.isEmpty()) {
+            final MCTSNode node = stack.pop();
+            if (node.childNodes == null) continue;
+            for (int k = 0; k < node.childNodes.length; k++) {
+                if (node.childNodes[k] != null) {
+                    parents.add(node);
+                    slots.add(k);
+                    stack.push(node.childNodes[k]);
+                }
+            }
+        }
+
+        // prune them in the order of increasing visit counts
+        final Integer[] order = new Integer[parents.size()];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> Integer.compare(parents.get(a).visitCounts[slots.get(a)],
+                                                     parents.get(b).visitCounts[slots.get(b)]));
+        for (int i = 0; i < order.length && treeSize.get() > target; i++) {
+            final MCTSNode parent = parents.get(order[i]);
+            final int k = slots.get(order[i]);
+            if (parent.released || parent.childNodes[k] == null) continue;
+            release(parent.childNodes[k]);
+            parent.childNodes[k] = null;
+        }
+        return before - treeSize.get();
+    }
+
+    /**
+     * Transposition mode: cut the least-visited edges below this node (the root) and sweep the nodes no longer
+     * reachable, until at most {@code target} nodes are left or no edge is left. Since a node may have several
+     * parents, the effect of a cut is only known after the sweep, so edges are cut in rounds.
+     *
+     * @return the number of nodes left
+     */
+    private int pruneGraph(final int target) {
+        while (treeSize.get() > target) {
+            final ArrayList<MCTSNode> parents = new ArrayList<>();
+            final ArrayList<Integer> slots = new ArrayList<>();
+            final int epoch = nextEpoch();  // mark the nodes while collecting the edges (each node once)
+            mark = epoch;
+            final ArrayDeque<MCTSNode> stack = new ArrayDeque<>();
+            stack.push(this);
+            while (!stack.isEmpty()) {
+                final MCTSNode node = stack.pop();
+                if (node.childNodes == null) continue;
+                for (int k = 0; k < node.childNodes.length; k++) {
+                    final MCTSNode child = node.childNodes[k];
+                    if (child == null) continue;
+                    parents.add(node);
+                    slots.add(k);
+                    if (child.mark != epoch) {
+                        child.mark = epoch;
+                        stack.push(child);
+                    }
+                }
+            }
+            if (parents.isEmpty()) break;
+
+            final Integer[] order = new Integer[parents.size()];
+            for (int i = 0; i < order.length; i++) order[i] = i;
+            Arrays.sort(order, (a, b) -> Integer.compare(parents.get(a).visitCounts[slots.get(a)],
+                                                         parents.get(b).visitCounts[slots.get(b)]));
+            final int cuts = Math.min(order.length, treeSize.get() - target);
+            for (int i = 0; i < cuts; i++)
+                parents.get(order[i]).childNodes[slots.get(order[i])] = null;
+            sweep(this);
+        }
+        return treeSize.get();
+    }
+
+    /**
+     * @return a mark-and-sweep epoch greater than the marks of all nodes in the table
+     */
+    private int nextEpoch() {
+        synchronized (table) {
+            int maxMark = 0;
+            for (MCTSNode node : table.values()) maxMark = Math.max(maxMark, node.mark);
+            return maxMark + 1;
+        }
+    }
+
+    /**
+     * Transposition mode: release all nodes of the table that are not reachable from {@code root} (all nodes, if
+     * {@code root == null}) and set the tree size to the number of reachable nodes.
+     */
+    private void sweep(final MCTSNode root) {
+        int count = 0;
+        synchronized (table) {
+            final int epoch = nextEpoch();
+            if (root != null) {
+                final ArrayDeque<MCTSNode> stack = new ArrayDeque<>();
+                root.mark = epoch;
+                stack.push(root);
+                while (!stack.isEmpty()) {
+                    final MCTSNode node = stack.pop();
+                    count++;
+                    if (node.childNodes == null) continue;
+                    for (MCTSNode child : node.childNodes)
+                        if (child != null && child.mark != epoch) {
+                            child.mark = epoch;
+                            stack.push(child);
+                        }
+                }
+            }
+            for (Iterator<MCTSNode> it = table.values().iterator(); it.hasNext(); ) {
+                final MCTSNode node = it.next();
+                if (root == null || node.mark != epoch) {
+                    node.released = true;
+                    node.childNodes = null;
+                    it.remove();
+                }
+            }
+        }
+        treeSize.set(count);
+    }
+
+    /**
+     * Release {@code root} and its whole subtree: the nodes are marked as released, their references to the child
+     * nodes are dropped and the tree size is decremented accordingly.
+     */
+    private static void release(final MCTSNode root) {
+        final ArrayDeque<MCTSNode> stack = new ArrayDeque<>();
+        stack.push(root);
+        int count = 0;
+        while (!stack.isEmpty()) {
+            final MCTSNode node = stack.pop();
+            if (node.released) continue;
+            node.released = true;
+            count++;
+            if (node.childNodes != null) {
+                for (MCTSNode child : node.childNodes)
+                    if (child != null) stack.push(child);
+                node.childNodes = null;
+            }
+        }
+        root.treeSize.addAndGet(-count);
     }
 
-}
\ No newline at end of file
+}
@@ -6,6 +6,8 @@ import controllers.MCTSWrapper.passStates.ApplicableAction;
 import controllers.MCTSWrapper.passStates.GameStateIncludingPass;
 import controllers.MCTSWrapper.passStates.PassAction;
 import controllers.MCTSWrapper.stateApproximation.Approximator;
+import controllers.MCTSWrapper.stateApproximation.PlayAgentApproximator;
+import controllers.MCTSWrapper.utils.SearchBudget;
 import controllers.PlayAgent;
 import controllers.PlayAgtVector;
 import games.ObserverBase;
@@ -17,13 +19,21 @@ import tools.Types;
 
 import java.io.Serializable;
 import java.util.Arrays;
-import java.util.Comparator;
-import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.IntStream;
 
 /**
  * PlayAgent that performs a Monte Carlo Tree Search (MCTS) to calculate the next action to be selected.
  * This agent wraps an approximator, which is used to evaluate game states in MCTS simulations.
+ * <p>
+ * The search performs either a fixed number of iterations or, in time-budget mode, as many iterations as fit into the
+ * time budget of the move (see {@link SearchBudget}). The achieved iterations are reported by
+ * {@link #getLastIterations()} and {@link #getSearchBudget()}, and printed per move if {@code getNextAction2} is not
+ * silent.
+ * <p>
+ * With {@link ParWrapper#getWrapperMCTS_numThreads()} &gt; 1, the search runs in a thread pool owned by this agent.
+ * It is created on demand and released with {@link #shutdownSearchPool()}.
  */
 public final class MCTSWrapperAgent extends AgentBase implements PlayAgent, Serializable {
     private final int iterations;
@@ -48,6 +58,16 @@ public final class MCTSWrapperAgent extends AgentBase implements PlayAgent, Seri
 
     private final Random rand; // generate random Numbers
 
+    private transient SearchBudget budget;     // created on demand, see getSearchBudget()
+    private transient ExecutorService searchPool;  // created on demand, see getSearchPool(int)
+    private transient int searchPoolThreads;
+
+    /**
+     * If the search tree reaches the node budget {@link ParWrapper#getWrapperMCTS_maxNodes()}, it is pruned to this
+     * fraction of the budget (so that pruning, which has to traverse the tree, is not needed in every iteration).
+     */
+    public static final double PRUNE_FRACTION = 0.75;
+
     /**
      * @param iterations   Number of monte carlo iterations to be performed before the next action is selected.
      * @param c_puct       A PUCT parameter that controls the importance of exploring new nodes instead of exploiting known ones.
@@ -72,6 +92,7 @@ public final class MCTSWrapperAgent extends AgentBase implements PlayAgent, Seri
         mcts = new MCTS(approximator, c_puct, maxDepth);
         setAgentState(AgentState.TRAINED);
         setWrParams(this.m_wrPar,this.getMaxGameNum());
+        approximator.setCacheCapacity(this.m_wrPar.getWrapperMCTS_cacheSize());
     }
 
     /**
@@ -93,8 +114,11 @@ public final class MCTSWrapperAgent extends AgentBase implements PlayAgent, Seri
      */
     @Override
     public void resetAgent() {
+        if (this.lastSelectedNode != null) this.lastSelectedNode.reRoot(-1);    // release the old tree
         this.lastSelectedNode = null;
         this.lastSelectedAction = Integer.MIN_VALUE;
+        approximator.clearCache();      // the wrapped agent may have been trained since the last episode
+        getSearchBudget().resetEpisode();
     }
 
     /**
@@ -115,11 +139,21 @@ public final class MCTSWrapperAgent extends AgentBase implements PlayAgent, Seri
 
         MCTSNode mctsNode;
 
+        // During training (random==true) the wrapped agent learns after each move, so cached predictions are valid
+        // only within one search:
+        if (random) approximator.clearCache();
+
+        final long deadline = getSearchBudget().startMove(sob, getParWrapper());
+        final int maxIterations = SearchBudget.isTimeMode(getParWrapper()) ? Integer.MAX_VALUE : iterations;
+        int achieved = 0;
+
         if (lastSelectedNode == null || !getParWrapper().getUseLastMCTS() || !sob.isDeterministicGame()) {
 //      if (lastSelectedNode == null || !ConfigWrapper.USELASTMCTS || !sob.isDeterministicGame()) {
             // There is no search tree yet, or it is not valid for the current situation.
             // So a new MCTSNode is created from the given game state sob.
-            mctsNode = new MCTSNode(new GameStateIncludingPass(sob));
+            if (lastSelectedNode != null) lastSelectedNode.reRoot(-1);        // release the old tree
+            mctsNode = new MCTSNode(new GameStateIncludingPass(sob),
+                                    getParWrapper().getWrapperMCTS_transpositions());
         } else {
             // There already exists a search-tree, which was built in a previous call to MCTSWrapper in this episode.
 
@@ -152,8 +186,8 @@ public final class MCTSWrapperAgent extends AgentBase implements PlayAgent, Seri
             assert (sz>0) : "Wrongly sz=lastMoves.size()==0. [Probably advance does not call super.addToLastMoves.]";
             assert (pastActions.get(sz-1)==lastSelectedAction) : "Oops, action mismatch!";  // /WK/ general check
             for (int i = sz; i < pastActions.size(); i++) {
-                node = node.childNodes.get(pastActions.get(i));
-                //node = node.childNodes.getOrDefault(pastActions.get(i), null);   // alternative suggestion from JS
+                // the child for pastActions(i) becomes the new root, the rest of the tree is released:
+                node = node.reRootForAction(pastActions.get(i));
 
 //              if (node!=null) {
 //                  if (node.gameState.isFinalGameState()) {        // /WK/ debug
@@ -165,7 +199,8 @@ public final class MCTSWrapperAgent extends AgentBase implements PlayAgent, Seri
                     // In this case the current game state is not present in the previously expanded search tree,
                     // because it was not relevant enough in the MCTS to be expanded.
                     // In this case a new Monte Carlo search tree is created based on sob.
-                    node = new MCTSNode(new GameStateIncludingPass(sob));
+                    node = new MCTSNode(new GameStateIncludingPass(sob),
+                                        getParWrapper().getWrapperMCTS_transpositions());
 //                  if (node.gameState.isFinalGameState()) {        // /WK/ debug
 //                        System.err.println("*** Unexpected final state in (node==null)-branch!");
 //                  }
@@ -205,20 +240,33 @@ public final class MCTSWrapperAgent extends AgentBase implements PlayAgent, Seri
 
         if (exploMode!=2) {     // in case exploMode==2, we do not need the MCTS search, because we take a random action anyway
             mcts.largestDepth=0;
-            // Performs the given number of mcts iterations.
-            for (int i = 0; i < iterations; i++) {
-                mcts.search(mctsNode,0);
-            }
-
-            if (mctsNode.visitCounts.size()==0) {
+            // Performs the given number of mcts iterations or searches until the deadline in time-budget mode
+            // (with several threads, if numThreads > 1, and with batched leaf evaluation, if batchSize > 1).
+            // If the tree reaches the node budget, the search stops, the tree is pruned and the search continues.
+            final int maxNodes = getParWrapper().getWrapperMCTS_maxNodes();
+            mcts.setMaxNodes(maxNodes);
+            int done;
+            do {
+                if (mcts.isTreeFull(mctsNode))
+                    mctsNode.pruneLeastVisited((int) (PRUNE_FRACTION * maxNodes));
+                final int numThreads = getParWrapper().getWrapperMCTS_numThreads();
+                done = mcts.searchParallel(mctsNode, maxIterations - achieved, numThreads,
+                        getParWrapper().getWrapperMCTS_batchSize(), deadline, getSearchPool(numThreads));
+                achieved += done;
+            } while (done > 0 && achieved < maxIterations && mcts.isTreeFull(mctsNode)
+                    && (deadline == Long.MAX_VALUE || System.nanoTime() < deadline));
+
+            if (mctsNode.getSumVisits()==0) {
                 // As far as we see, this can only happen if iterations==1 (which is not a sensible choice),
                 // but we leave it in as debug check for the moment.
                 // We return always action 0 (which may or may not be a sensible choice)
                 System.err.println("MCTSWrapperAgent.getNextAction2: *** Warning *** visitCounts.size = 0");
                 System.err.println(mctsNode.gameState.stringDescr());
+                getSearchBudget().endMove(achieved);
                 return new Types.ACTIONS_VT(0,false,new double[sob.getNumAvailableActions()],0.0);
             }
         } // exploMode!=2
+        getSearchBudget().endMove(achieved);
 
         // Selects the int value of one of the available actions:
         // If getNextAction2 is called with random==false (eval or play), exploMode is always 0.
@@ -226,16 +274,18 @@ public final class MCTSWrapperAgent extends AgentBase implements PlayAgent, Seri
         switch (exploMode) {
             case 0 -> {
                 // case EXPLORATION_MODE==0 or the greedy case of EXPLORATION_MODE==2: exploit, take action with max visit counts
-                lastSelectedAction = mctsNode.visitCounts.entrySet().stream().max(
-                        Comparator.comparingDouble(Map.Entry::getValue)
-                ).orElseThrow().getKey();
-                // Caches the child node belonging to the previously selected action.
-                lastSelectedNode = mctsNode.childNodes.get(lastSelectedAction);
+                int best = 0;
+                for (int k = 1; k < mctsNode.getNumSlots(); k++)
+                    if (mctsNode.getN(k) > mctsNode.getN(best)) best = k;
+                lastSelectedAction = mctsNode.getAction(best).getId();
+                // Caches the child node belonging to the previously selected action (the rest of the tree is
+                // released, the statistics of mctsNode itself remain valid for getVTableFor below).
+                lastSelectedNode = mctsNode.reRoot(best);
             }
             case 1 -> {
                 // case EXPLORATION_MODE==1: sample an action proportional to visit counts
                 lastSelectedAction = selectActionProportional(mctsNode);
-                lastSelectedNode = mctsNode.childNodes.get(lastSelectedAction);
+                lastSelectedNode = mctsNode.reRootForAction(lastSelectedAction);
                 //lastSelectedNode = null;    // do not reuse the tree if random action.
             }
             case 2 -> {
@@ -244,9 +294,11 @@ public final class MCTSWrapperAgent extends AgentBase implements PlayAgent, Seri
                 final var vBest2 = Arrays.stream(vTable2).max().orElse(Double.NaN);
                 ScoreTuple scBest2 = new ScoreTuple(sob, vBest2);
                 mctsNode.setMoveProbabilities(vTable2);
-                int selectedAction = mctsNode.moveProbabilities.entrySet().stream().max(
-                        Comparator.comparingDouble(Map.Entry::getValue)
-                ).orElseThrow().getKey();
+                int best = 0;
+                for (int k = 1; k < mctsNode.getNumSlots(); k++)
+                    if (mctsNode.getP(k) > mctsNode.getP(best)) best = k;
+                int selectedAction = mctsNode.getAction(best).getId();
+                mctsNode.reRoot(-1);        // release the tree
                 lastSelectedNode = null;    // IMPORTANT: we have to reset lastSelectedNode after each random
                                             // action because the tree is then no longer valid (this reset may
                                             // affect adversely the quality of training)
@@ -263,12 +315,14 @@ public final class MCTSWrapperAgent extends AgentBase implements PlayAgent, Seri
 
         // Pass states should not be cached.
         while (lastSelectedNode != null && lastSelectedNode.gameState.lazyMustPass.value()) {
-            lastSelectedNode = lastSelectedNode.childNodes.get(new PassAction().getId());
+            lastSelectedNode = lastSelectedNode.reRootForAction(new PassAction().getId());
         }
 
         // --- debug info RubiksCube ---
         //System.out.println("largestDepth = "+mcts.largestDepth);
 
+        if (!silent) printSearchInfo();
+
         final var vTable = getVTableFor(mctsNode);
         final var vBest = Arrays.stream(vTable).max().orElse(Double.NaN);
         ScoreTuple scBest = new ScoreTuple(sob,vBest);
@@ -288,11 +342,10 @@ public final class MCTSWrapperAgent extends AgentBase implements PlayAgent, Seri
         ApplicableAction[] arrAction = mctsNode.gameState.getAvailableActionsIncludingPassActions();
         double[] vTab = new double[arrAction.length];
         double v, sum = 0;
-        int i=0;
-        for (var action : arrAction) {
-            v = mctsNode.visitCounts.getOrDefault(action.getId(), 0);
+        for (int i=0; i<arrAction.length; i++) {
+            v = mctsNode.getN(i);
             sum += v;
-            vTab[i++] = v;
+            vTab[i] = v;
         }
         for (int j=0; j<vTab.length; j++) vTab[j] /= sum;
         return vTab;
@@ -300,9 +353,9 @@ public final class MCTSWrapperAgent extends AgentBase implements PlayAgent, Seri
 
     public double[] getVTableFor(final MCTSNode mctsNode) {
         return getDistributionOver(
-            Arrays
-                    .stream(mctsNode.gameState.getAvailableActionsIncludingPassActions())
-                    .mapToDouble(action -> mctsNode.visitCounts.getOrDefault(action.getId(), 0))
+            IntStream
+                    .range(0, mctsNode.gameState.getAvailableActionsIncludingPassActions().length)
+                    .mapToDouble(mctsNode::getN)
                     .toArray()
         );
     }
@@ -352,11 +405,10 @@ public final class MCTSWrapperAgent extends AgentBase implements PlayAgent, Seri
         int i=1;
         double[] cTab = new double[arrAction.length+1];
         cTab[0]=0;
-        for (var action : arrAction) {
-            v = mctsNode.visitCounts.getOrDefault(action.getId(), 0);
+        for (; i<=arrAction.length; i++) {
+            v = mctsNode.getN(i-1);
             cTab[i] = cTab[i-1]+v;
             sum += v;
-            i++;
         }
         for (int j=0; j<cTab.length; j++) cTab[j] /= sum;
         return cTab;
@@ -388,6 +440,52 @@ public final class MCTSWrapperAgent extends AgentBase implements PlayAgent, Seri
         return cs;
     }
 
+    /**
+     * @return the time budget of this agent and the statistics of the achieved iterations per move
+     */
+    public SearchBudget getSearchBudget() {
+        if (budget == null) budget = new SearchBudget();
+        return budget;
+    }
+
+    /**
+     * @return the number of MCTS iterations achieved in the last call of {@link #getNextAction2}
+     */
+    public int getLastIterations() {
+        return getSearchBudget().getLastIterations();
+    }
+
+    private void printSearchInfo() {
+        String s = "[MCTSWrapperAgent] iter="+getLastIterations()+" ("+getSearchBudget().stringDescr()+")";
+        if (approximator instanceof PlayAgentApproximator pa && pa.getCacheHits()+pa.getCacheMisses() > 0)
+            s += String.format(", cache hit rate %.1f%%", 100*pa.getCacheHitRate());
+        System.out.println(s);
+    }
+
+    /**
+     * @return the thread pool for the parallel search with {@code numThreads} threads ({@code null}, if
+     *      {@code numThreads <= 1}). A pool with another number of threads is shut down and replaced.
+     */
+    private synchronized ExecutorService getSearchPool(final int numThreads) {
+        if (numThreads <= 1) return null;
+        if (searchPool == null || searchPoolThreads != numThreads) {
+            if (searchPool != null) searchPool.shutdown();
+            searchPool = MCTS.newSearchPool(numThreads);
+            searchPoolThreads = numThreads;
+        }
+        return searchPool;
+    }
+
+    /**
+     * Shut down the thread pool of the parallel search (if any), e.g. when the agent is no longer needed. The pool is
+     * re-created when the agent searches again. (Unused pool threads terminate after a few seconds anyway, see
+     * {@link MCTS#newSearchPool(int)}.)
+     */
+    public synchronized void shutdownSearchPool() {
+        if (searchPool != null) searchPool.shutdown();
+        searchPool = null;
+    }
+
     @Override
     public PlayAgent getWrappedPlayAgent() {
         return approximator.getWrappedPlayAgent();
@@ -423,9 +521,20 @@ public final class MCTSWrapperAgent extends AgentBase implements PlayAgent, Seri
         m_epsilonChangeDelta = (m_epsilon - wrPar.getWrapperMCTS_epsFinal()) / maxGameNum;
     }
 
+    /**
+     * Set the wrapper parameters and pass the capacity of the prediction cache
+     * ({@link ParWrapper#getWrapperMCTS_cacheSize()}) to the approximator.
+     */
+    @Override
+    public void setParWrapper(ParWrapper pwr) {
+        super.setParWrapper(pwr);
+        approximator.setCacheCapacity(this.m_wrPar.getWrapperMCTS_cacheSize());
+    }
+
     public boolean instantiateAfterLoading() {
         super.instantiateAfterLoading();
         setWrParams(this.m_wrPar,this.getMaxGameNum());
+        approximator.setCacheCapacity(this.m_wrPar.getWrapperMCTS_cacheSize());
         return true;
     }
 
@@ -12,6 +12,7 @@ import tools.ScoreTuple;
 import tools.Types;
 
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Represents a game state where pass states are not skipped.
@@ -111,6 +112,36 @@ public final class GameStateIncludingPass {
         return lazyAvailableActions.value();
     }
 
+    /**
+     * Batch version of {@link #getApproximatedValueAndMoveProbabilities(Approximator)}: all states are evaluated
+     * with one call of {@link Approximator#predict(List)}. Pass situations are handled as in the single-state version.
+     *
+     * @param gameStates   the states to evaluate
+     * @param approximator A component that is able to approximate the necessary values v and p for a Monte Carlo Tree Search.
+     * @return A list with the tuples (v, p) for the elements of {@code gameStates}, in the same order.
+     */
+    public static List<Tuple<Double, double[]>> getApproximatedValuesAndMoveProbabilities(
+            final List<GameStateIncludingPass> gameStates, final Approximator approximator) {
+        final List<StateObservation> toPredict = new ArrayList<>(gameStates.size());
+        for (GameStateIncludingPass gs : gameStates)
+            toPredict.add(gs.lazyMustPass.value()
+                    ? StateObservationExtensions.passToNextPlayer(gs.state)
+                    : gs.state);
+
+        final List<Tuple<Double, double[]>> predicted = approximator.predict(toPredict);
+
+        final List<Tuple<Double, double[]>> result = new ArrayList<>(gameStates.size());
+        for (int i = 0; i < gameStates.size(); i++) {
+            if (gameStates.get(i).lazyMustPass.value()) {
+                assert(gameStates.get(i).getNumPlayers()==2) : "Error in GameStateIncludingPass: Tuple creation is only valid for 2-player games!";
+                result.add(new Tuple<>(-predicted.get(i).element1, new double[]{1.0}));    // see approximateValueAndMoveProbabilitiesForPassingState
+            } else {
+                result.add(predicted.get(i));
+            }
+        }
+        return result;
+    }
+
     /**
      * This is for MCTSExpWrapper (without pass possibility)
      *
@@ -158,6 +189,15 @@ public final class GameStateIncludingPass {
         return state.getGameScoreTuple();
     }
 
+    /**
+     * @return a key that identifies this state for the transposition mode of the MCTS wrapper: the move counter, the
+     *      player to move and the unique string description of the state. (The move counter makes cycles in the
+     *      search graph impossible, e.g. in RubiksCube, but transpositions at the same depth are still found.)
+     */
+    public String transpositionKey() {
+        return state.getMoveCounter() + ":" + state.getPlayer() + ":" + state.uniqueStringDescr();
+    }
+
     public int getPlayer() { return state.getPlayer(); }
     public int getNumPlayers() { return state.getNumPlayers(); }
 
@@ -4,6 +4,9 @@ import controllers.MCTSWrapper.utils.Tuple;
 import controllers.PlayAgent;
 import games.StateObservation;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * A component used to approximate the value v and
  * the vector of move probabilities <b>p</b> of a given state.
@@ -16,6 +19,34 @@ public interface Approximator {
      */
     Tuple<Double, double[]> predict(final StateObservation stateObservation);
 
+    /**
+     * Predicts the value v and the move probabilities p for each of several StateObservations.
+     * <p>
+     * The default implementation calls {@link #predict(StateObservation)} for each state. Approximators that can
+     * share work across states (e.g. a vectorized network evaluating all states in one pass) should override it.
+     * It is called by the batched search of {@link controllers.MCTSWrapper.MCTS}.
+     *
+     * @return A list with one tuple (value v, vector <b>p</b>) per state, in the order of {@code stateObservations}.
+     */
+    default List<Tuple<Double, double[]>> predict(final List<StateObservation> stateObservations) {
+        final List<Tuple<Double, double[]>> result = new ArrayList<>(stateObservations.size());
+        for (StateObservation so : stateObservations)
+            result.add(predict(so));
+        return result;
+    }
+
+    /**
+     * Forget all cached predictions. Has to be called whenever the underlying model may have changed (e.g. because
+     * the wrapped agent was trained). The default implementation does nothing (no cache).
+     */
+    default void clearCache() { }
+
+    /**
+     * Set the capacity of the prediction cache (0: no caching). It is set by the wrapper from its
+     * {@link params.ParWrapper#getWrapperMCTS_cacheSize()}. The default implementation does nothing (no cache).
+     */
+    default void setCacheCapacity(final int capacity) { }
+
 //    /**
 //     * @return The approximator's estimate of the final score for that game state.
 //     */
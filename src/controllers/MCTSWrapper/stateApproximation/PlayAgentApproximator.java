@@ -5,20 +5,45 @@ import controllers.MCTSWrapper.utils.Tuple;
 import controllers.PlayAgent;
 import games.StateObservation;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
 
 /**
  * A component that approximates the value v and the
  * vector of move probabilities <b>p</b> of a state as predicted by a wrapped {@link PlayAgent}.
+ * <p>
+ * If a cache capacity greater than 0 is set (by the wrapper, see {@link #setCacheCapacity(int)}), the predictions are
+ * kept in a bounded transposition cache (see {@link PredictionCache}), so that repeated states cost only a lookup.
+ * This requires that {@code getNextAction2} of the wrapped agent is deterministic for {@code random=false} and that
+ * its result depends only on the player to move and the state (as hashed by {@link StateObservation#hash64()}).
+ * <p>
+ * The wrapped agent evaluates one state per call of {@code getNextAction2}. Therefore the batch version
+ * {@link #predict(List)} saves agent calls only for states which are cached or occur several times in the batch;
+ * beyond that, a batch costs as much as the single predictions.
  */
 public final class PlayAgentApproximator implements Approximator, Serializable {
     private final PlayAgent agent;
+    private int cacheCapacity = 0;
+    private transient volatile PredictionCache cache = null;     // null, if caching is off
 
     public PlayAgentApproximator(final PlayAgent agent) {
         this.agent = agent;
     }
 
+    /**
+     * @param agent         the wrapped agent
+     * @param cacheCapacity the capacity of the prediction cache (0: no caching)
+     */
+    public PlayAgentApproximator(final PlayAgent agent, final int cacheCapacity) {
+        this.agent = agent;
+        setCacheCapacity(cacheCapacity);
+    }
+
     /**
      * Predicts the value v and the move probabilities p of a given state.
      *
@@ -26,6 +51,51 @@ public final class PlayAgentApproximator implements Approximator, Serializable {
      */
     @Override
     public Tuple<Double, double[]> predict(final StateObservation stateObservation) {
+        final var c = cache;
+        final long key = (c == null) ? 0L : PredictionCache.keyOf(stateObservation);
+        if (c != null) {
+            final var cached = c.get(key);
+            if (cached != null) return cached;
+        }
+        final var prediction = evaluate(stateObservation);
+        if (c != null) c.put(key, prediction);
+        return prediction;
+    }
+
+    /**
+     * Predicts the value v and the move probabilities p for each of several states. If caching is on, the whole batch
+     * is looked up in the cache first, and each missing state is evaluated by the wrapped agent only once, even if
+     * it occurs several times in the batch (e.g. as transposition). The new predictions are put into the cache.
+     *
+     * @return A list with one tuple (value v, vector <b>p</b>) per state, in the order of {@code stateObservations}.
+     */
+    @Override
+    public List<Tuple<Double, double[]>> predict(final List<StateObservation> stateObservations) {
+        final var c = cache;
+        if (c == null) return Approximator.super.predict(stateObservations);
+
+        final int n = stateObservations.size();
+        final List<Tuple<Double, double[]>> result = new ArrayList<>(n);
+        final long[] keys = new long[n];
+        final HashMap<Long, Tuple<Double, double[]>> evaluated = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            keys[i] = PredictionCache.keyOf(stateObservations.get(i));
+            result.add(c.get(keys[i]));
+        }
+        for (int i = 0; i < n; i++) {
+            if (result.get(i) != null) continue;
+            var prediction = evaluated.get(keys[i]);
+            if (prediction == null) {
+                prediction = evaluate(stateObservations.get(i));
+                evaluated.put(keys[i], prediction);
+                c.put(keys[i], prediction);
+            }
+            result.set(i, prediction);
+        }
+        return result;
+    }
+
+    private Tuple<Double, double[]> evaluate(final StateObservation stateObservation) {
         final var actions_vt = agent.getNextAction2(stateObservation, false, true);
         return new Tuple<>(
             actions_vt.getVBest(),
@@ -33,6 +103,48 @@ public final class PlayAgentApproximator implements Approximator, Serializable {
         );
     }
 
+    /**
+     * Set the capacity of the prediction cache. A new (empty) cache is created only if the capacity changes.
+     *
+     * @param capacity the maximum number of cached predictions (0: caching off)
+     */
+    @Override
+    public synchronized void setCacheCapacity(final int capacity) {
+        cacheCapacity = Math.max(capacity, 0);
+        if (cacheCapacity == 0) cache = null;
+        else if (cache == null || cache.capacity != cacheCapacity) cache = new PredictionCache(cacheCapacity);
+    }
+
+    @Override
+    public void clearCache() {
+        final var c = cache;
+        if (c != null) c.clear();
+    }
+
+    /**
+     * @return the number of predictions served from the cache (0, if caching is off)
+     */
+    public long getCacheHits() {
+        final var c = cache;
+        return (c == null) ? 0 : c.getHits();
+    }
+
+    /**
+     * @return the number of predictions not found in the cache (0, if caching is off)
+     */
+    public long getCacheMisses() {
+        final var c = cache;
+        return (c == null) ? 0 : c.getMisses();
+    }
+
+    /**
+     * @return the fraction of cache lookups that were hits (0, if there was no lookup)
+     */
+    public double getCacheHitRate() {
+        final long hits = getCacheHits(), lookups = hits + getCacheMisses();
+        return (lookups == 0) ? 0.0 : (double) hits / lookups;
+    }
+
     // removed 'static' in front of double[] (needed for optSoftmax) --> any unwanted side effects?
     private double[] moveProbabilitiesForVTable(final double[] vTable, final StateObservation stateObservation) {
         assert (vTable.length == stateObservation.getNumAvailableActions()) : "Ooops, wrong size for vTable!";
@@ -107,5 +219,10 @@ public final class PlayAgentApproximator implements Approximator, Serializable {
         return agent;
     }
 
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        setCacheCapacity(cacheCapacity);        // the cache itself is not serialized
+    }
+
 
 }
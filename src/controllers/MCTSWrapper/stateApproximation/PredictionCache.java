@@ -0,0 +1,111 @@
+package controllers.MCTSWrapper.stateApproximation;
+
+import controllers.MCTSWrapper.utils.Tuple;
+import games.StateObservation;
+import tools.Zobrist;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded cache of predictions (value v, move probabilities <b>p</b>) of {@link PlayAgentApproximator}, keyed by
+ * a 64-bit hash of the player to move and {@link StateObservation#hash64()}. If the cache is full, the least recently
+ * used entry is evicted.
+ * <p>
+ * The cache is a transposition table: A state reached via different move orders or in consecutive searches of the
+ * same episode costs a lookup instead of a call of {@code getNextAction2}. It is only valid as long as the wrapped
+ * agent does not change (see {@link Approximator#clearCache()}). Like the other hash-keyed tables
+ * ({@link tools.TranspositionTable}) it relies on 64-bit hashes of different states being different.
+ * <p>
+ * The cache is split into {@link #NUM_STRIPES} independently locked LRU maps (selected by the key), so that the
+ * threads of the parallel search of {@link controllers.MCTSWrapper.MCTS} rarely wait for each other. The LRU order
+ * and the capacity hold per stripe.
+ */
+final class PredictionCache {
+    static final int NUM_STRIPES = 16;
+
+    final int capacity;
+    private final Stripe[] stripes = new Stripe[NUM_STRIPES];
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param capacity the maximum number of cached predictions
+     */
+    PredictionCache(final int capacity) {
+        this.capacity = capacity;
+        final int stripeCapacity = Math.max(1, (capacity + NUM_STRIPES - 1) / NUM_STRIPES);
+        for (int i = 0; i < NUM_STRIPES; i++) stripes[i] = new Stripe(stripeCapacity);
+    }
+
+    static long keyOf(final StateObservation so) {
+        return Zobrist.mix64(so.hash64(), so.getPlayer());
+    }
+
+    private Stripe stripe(final long key) {
+        return stripes[(int) (key >>> 60) & (NUM_STRIPES - 1)];
+    }
+
+    /**
+     * @return the cached prediction for {@code key} or null, if there is none (counted as hit or miss)
+     */
+    Tuple<Double, double[]> get(final long key) {
+        final Stripe s = stripe(key);
+        final Tuple<Double, double[]> res;
+        synchronized (s) {
+            res = s.map.get(key);
+        }
+        if (res == null) misses.increment(); else hits.increment();
+        return res;
+    }
+
+    void put(final long key, final Tuple<Double, double[]> prediction) {
+        final Stripe s = stripe(key);
+        synchronized (s) {
+            s.map.put(key, prediction);
+        }
+    }
+
+    /**
+     * Remove all entries (the hit/miss counters are kept).
+     */
+    void clear() {
+        for (Stripe s : stripes) {
+            synchronized (s) {
+                s.map.clear();
+            }
+        }
+    }
+
+    int size() {
+        int size = 0;
+        for (Stripe s : stripes) {
+            synchronized (s) {
+                size += s.map.size();
+            }
+        }
+        return size;
+    }
+
+    long getHits() { return hits.sum(); }
+
+    long getMisses() { return misses.sum(); }
+
+    /**
+     * One LRU map of the cache (in access order, the eldest entry is removed when the capacity is exceeded). Access
+     * has to be synchronized on the stripe.
+     */
+    private static final class Stripe {
+        final Map<Long, Tuple<Double, double[]>> map;
+
+        Stripe(final int capacity) {
+            map = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<Long, Tuple<Double, double[]>> eldest) {
+                    return size() > capacity;
+                }
+            };
+        }
+    }
+}
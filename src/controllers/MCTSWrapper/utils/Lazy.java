@@ -4,13 +4,17 @@ import java.util.function.Supplier;
 
 /**
  * Provides support for delayed initialization.
+ * <p>
+ * Safe for concurrent use (e.g. in {@link controllers.MCTSWrapper.MCTS#searchParallel}): The value is published via
+ * the volatile flag {@code valueLoaded}. If two threads load the value at the same time, the supplier is evaluated
+ * twice, so it should be free of side effects.
  *
  * @param <T> The lazy evaluated value's type.
  */
 public final class Lazy<T> {
     private final Supplier<T> valueSupplier;
 
-    private boolean valueLoaded;
+    private volatile boolean valueLoaded;
     private T value;
 
     /**
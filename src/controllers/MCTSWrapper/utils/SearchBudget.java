@@ -0,0 +1,127 @@
+package controllers.MCTSWrapper.utils;
+
+import games.StateObservation;
+import params.ParWrapper;
+
+/**
+ * The time budget of the MCTS wrappers {@link controllers.MCTSWrapper.MCTSWrapperAgent} and
+ * {@link controllers.MCTSExpWrapper.MctseWrapperAgent} in time-budget mode, and the statistics of the achieved
+ * iterations per move.
+ * <p>
+ * Time-budget mode is on, if {@link ParWrapper#getWrapperMCTS_moveTime()} or {@link ParWrapper#getWrapperMCTS_gameTime()}
+ * is greater than 0. Then the search runs until the budget of the current move expires (instead of a fixed number of
+ * iterations):
+ * <ul>
+ * <li> Only {@code moveTime}: each move gets {@code moveTime} ms.
+ * <li> {@code gameTime}: each move gets a share of the remaining clock of this agent in the current episode, namely
+ *      {@code remaining / movesToGo}, where {@code movesToGo} is estimated from the average length of the previous
+ *      episodes (at least {@link #MIN_MOVES_TO_GO}). If also {@code moveTime > 0}, the share is capped at
+ *      {@code moveTime}.
+ * </ul>
+ * The clock and the episode-length estimate are updated by {@link #startMove(StateObservation, ParWrapper)},
+ * {@link #endMove(int)} and {@link #resetEpisode()}.
+ */
+public final class SearchBudget {
+    /**
+     * The lower bound for the estimated number of own moves until the end of the episode
+     */
+    public static final int MIN_MOVES_TO_GO = 5;
+    /**
+     * The estimated number of own moves to go in the first episode (no episode length known yet)
+     */
+    public static final int DEFAULT_MOVES_TO_GO = 30;
+
+    private long clockLeftNanos = -1;       // remaining game clock in the current episode, -1: not yet started
+    private int lastMoveCounter = 0;        // the largest move counter seen in the current episode
+    private double avgEpisodeLength = -1;   // average number of moves (of all players) of the previous episodes
+    private int numEpisodes = 0;
+
+    private long moveStart;                 // System.nanoTime() at the start of the current move
+
+    private long numMoves = 0;
+    private long sumIterations = 0;
+    private long sumNanos = 0;
+    private int lastIterations = 0;
+    private long lastNanos = 0;
+
+    /**
+     * @return true, if the wrapper should search until a time budget expires
+     */
+    public static boolean isTimeMode(final ParWrapper wrPar) {
+        return wrPar.getWrapperMCTS_moveTime() > 0 || wrPar.getWrapperMCTS_gameTime() > 0;
+    }
+
+    /**
+     * Start the clock for a move in state {@code so}.
+     *
+     * @return the deadline for the search (in terms of {@link System#nanoTime()}), or {@link Long#MAX_VALUE} if
+     *      time-budget mode is off
+     */
+    public long startMove(final StateObservation so, final ParWrapper wrPar) {
+        moveStart = System.nanoTime();
+        lastMoveCounter = Math.max(lastMoveCounter, so.getMoveCounter());
+        if (!isTimeMode(wrPar)) return Long.MAX_VALUE;
+
+        long budget = wrPar.getWrapperMCTS_moveTime() * 1_000_000L;
+        final long gameTime = wrPar.getWrapperMCTS_gameTime() * 1_000_000L;
+        if (gameTime > 0) {
+            if (clockLeftNanos < 0) clockLeftNanos = gameTime;
+            final long share = Math.max(clockLeftNanos, 0) / movesToGo(so);
+            budget = (budget > 0) ? Math.min(budget, share) : share;
+        }
+        return moveStart + budget;
+    }
+
+    /**
+     * Stop the clock for the current move and record its statistics.
+     *
+     * @param iterations the number of iterations achieved in this move
+     */
+    public void endMove(final int iterations) {
+        lastNanos = System.nanoTime() - moveStart;
+        lastIterations = iterations;
+        if (clockLeftNanos >= 0) clockLeftNanos -= lastNanos;
+        numMoves++;
+        sumIterations += iterations;
+        sumNanos += lastNanos;
+    }
+
+    /**
+     * Start a new episode: reset the game clock and update the episode-length estimate.
+     */
+    public void resetEpisode() {
+        if (lastMoveCounter > 0) {
+            numEpisodes++;
+            avgEpisodeLength = (avgEpisodeLength < 0) ? lastMoveCounter
+                    : avgEpisodeLength + (lastMoveCounter - avgEpisodeLength) / numEpisodes;
+        }
+        lastMoveCounter = 0;
+        clockLeftNanos = -1;
+    }
+
+    private int movesToGo(final StateObservation so) {
+        if (avgEpisodeLength < 0) return DEFAULT_MOVES_TO_GO;
+        final double ownMovesLeft = (avgEpisodeLength - so.getMoveCounter()) / so.getNumPlayers();
+        return (int) Math.max(MIN_MOVES_TO_GO, Math.ceil(ownMovesLeft));
+    }
+
+    public int getLastIterations() { return lastIterations; }
+
+    public double getLastMillis() { return lastNanos / 1e6; }
+
+    public long getNumMoves() { return numMoves; }
+
+    /**
+     * @return the average number of iterations per move (over all moves since the agent was created)
+     */
+    public double getAvgIterations() { return (numMoves == 0) ? 0.0 : (double) sumIterations / numMoves; }
+
+    /**
+     * @return the average time per move in ms (over all moves since the agent was created)
+     */
+    public double getAvgMillis() { return (numMoves == 0) ? 0.0 : sumNanos / 1e6 / numMoves; }
+
+    public String stringDescr() {
+        return String.format("moves=%d, iter/move=%.1f, ms/move=%.1f", numMoves, getAvgIterations(), getAvgMillis());
+    }
+}
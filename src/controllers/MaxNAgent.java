@@ -6,12 +6,12 @@ import params.MaxNParams;
 import params.ParMaxN;
 import params.ParOther;
 import tools.ScoreTuple;
+import tools.TranspositionTable;
 import tools.Types.ACTIONS;
 import tools.Types.ACTIONS_VT;
 
 import java.io.Serializable;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Random;
 
 /**
@@ -19,7 +19,14 @@ import java.util.Random;
  * Max-N is the generalization of the well-known Minimax agent to N players. It works on {@link ScoreTuple}, 
  * an N-tuple of game scores. It traverses the game tree up to a prescribed 
  * depth (default: 10, see {@link ParMaxN}). To speed up calculations, already 
- * visited states are stored in a HashMap.  
+ * visited states are stored in a bounded {@link TranspositionTable} (if {@code m_useHashMap}). An entry is only
+ * used if it was searched at least as deep as needed or if its subtree contained no depth cutoff.
+ * <p>
+ * If {@link ParMaxN#getMaxNMoveTime()} {@code > 0}, {@link #getNextAction2(StateObservation, boolean, boolean)}
+ * searches with <b>iterative deepening</b> (depth 1, 2, ..., {@code m_depth}) until the time budget expires. Each
+ * iteration searches the best action of the previous iteration first. If the budget expires after this action is
+ * searched, the partial iteration is used (see {@link #iterativeDeepening(StateObservation)}). The transposition
+ * table is shared by all iterations.
  * <p>
  * {@link MaxNAgent} is for <b>deterministic</b> games. For non-deterministic games see 
  * {@link ExpectimaxNAgent}.
@@ -38,8 +45,15 @@ public class MaxNAgent extends AgentBase implements PlayAgent, Serializable
 {
 	protected int m_depth=10;
 	protected boolean m_useHashMap=false; //true;
+	protected int m_tableSizeMB = ParMaxN.DEFAULT_MAXN_TABLE_SIZE_MB;
+	protected int m_moveTime = ParMaxN.DEFAULT_MAXN_MOVE_TIME;	// time budget in ms, 0: fixed depth m_depth
 	private final Random rand;
-	private final HashMap<String,ScoreTuple> hm;
+	private transient TranspositionTable m_table;	// created on demand (not saved with the agent)
+	private int countCutoff;		// # of depth cutoffs (incl. table hits of depth-limited values) in current search
+	private int m_searchDepth;		// the depth of the current search (m_depth or the iterative deepening depth)
+	private long m_deadline = 0;	// System.nanoTime() when the current search has to stop, 0: no time limit
+	private boolean m_partialIter;	// true, if the last iteration of the current search was stopped by the deadline
+	private int m_lastDepth;		// the last completed search depth in getNextAction2
 	
 	/**
 	 * change the version ID for serialization only if a newer version is no longer 
@@ -54,7 +68,6 @@ public class MaxNAgent extends AgentBase implements PlayAgent, Serializable
 		super.setMaxGameNum(1000);		
 		super.setGameNum(0);
         rand = new Random(System.currentTimeMillis());
-		hm = new HashMap<String, ScoreTuple>();
 		super.setAgentState(AgentState.TRAINED);
 	}
 	
@@ -77,10 +90,11 @@ public class MaxNAgent extends AgentBase implements PlayAgent, Serializable
 		super.setMaxGameNum(1000);		
 		super.setGameNum(0);
         rand = new Random(System.currentTimeMillis());
-		hm = new HashMap<String, ScoreTuple>();
 		super.setAgentState(AgentState.TRAINED);
 		m_depth = mPar.getMaxNDepth();
 		m_useHashMap = mPar.getMaxNUseHashmap();
+		m_tableSizeMB = mPar.getMaxNTableSizeMB();
+		m_moveTime = mPar.getMaxNMoveTime();
 //		m_oPar = new ParOther(oPar);		// AgentBase::m_oPar
 	}
 		
@@ -114,12 +128,86 @@ public class MaxNAgent extends AgentBase implements PlayAgent, Serializable
 	@Override
 	public ACTIONS_VT getNextAction2(StateObservation so, boolean random, boolean silent) {
 
-        // this starts the recursion:
-		ACTIONS_VT act_vt = getBestAction(so, so,  silent, 0, null);
-		
+		if (m_useHashMap) getTable(so).newSearch();
+		long startTime = System.nanoTime();
+		ACTIONS_VT act_vt;
+
+		if (m_moveTime > 0) {
+			act_vt = iterativeDeepening(so);
+		} else {
+			m_searchDepth = m_lastDepth = m_depth;
+			// this starts the recursion:
+			act_vt = getBestAction(so, so, true, 0, null, null);
+		}
+
+		if (!silent) {
+			StateObservation NewSO = so.copy();
+			NewSO.advance(act_vt);
+			System.out.println("---Best Move: "+NewSO.stringDescr()+"   "+act_vt.getVBest());
+			System.out.println("[MaxN] depth reached: " + m_lastDepth + (m_partialIter ? " (+ partial)" : "")
+					+ ", time: " + (System.nanoTime() - startTime) / 1_000_000 + " ms");
+			if (m_useHashMap) System.out.println("[MaxN] "+m_table.stringDescr());
+		}
+
+		return act_vt;
+	}
+
+	/**
+	 * Iterative deepening: search with depth 1, 2, ..., {@code m_depth} until the time budget {@code m_moveTime}
+	 * expires or until an iteration has no depth cutoff (then a deeper search would give the same result).
+	 * <p>
+	 * The first iteration always completes. Each further iteration searches the best action of the previous iteration
+	 * first. If the budget expires
+	 * <ul>
+	 * <li> after this first action, the partial iteration is used: the best action among the searched actions of the
+	 *      partial iteration (it is at least as good as the previous best action at the deeper depth). The vTable has
+	 *      the values of the previous iteration for the actions not searched.
+	 * <li> before, the result of the previous iteration is used.
+	 * </ul>
+	 * The reached depth is available via {@link #getLastDepth()}.
+	 *
+	 * @param so	current game state (not changed on return)
+	 * @return the best action of the deepest (partial) iteration
+	 */
+	private ACTIONS_VT iterativeDeepening(StateObservation so) {
+		long deadline = System.nanoTime() + m_moveTime * 1_000_000L;
+		ACTIONS_VT act_vt = null;
+		m_partialIter = false;
+		m_lastDepth = 0;
+		try {
+			for (int d = 1; d <= m_depth && !m_partialIter; d++) {
+				m_searchDepth = d;
+				m_deadline = (d == 1) ? 0 : deadline;
+				int cutoffsBefore = countCutoff;
+				act_vt = getBestAction(so, so, true, 0, null, act_vt);
+				if (!m_partialIter) m_lastDepth = d;
+				if (countCutoff == cutoffsBefore) break;
+			}
+		} catch (SearchTimeout e) {
+			// the current iteration did not complete its first action: keep the previous iteration's act_vt
+		} finally {
+			m_deadline = 0;
+		}
 		return act_vt;
 	}
 
+	private void checkDeadline() {
+		if (m_deadline != 0 && System.nanoTime() - m_deadline > 0) throw new SearchTimeout();
+	}
+
+	/**
+	 * @return the transposition table for {@code so}'s number of players (created on first call, after loading
+	 * 		   the agent and if the number of players changes)
+	 */
+	private TranspositionTable getTable(StateObservation so) {
+		if (m_table==null || m_table.getNumPlayers()!=so.getNumPlayers()) {
+			// m_tableSizeMB is 0 for agents saved before this member existed
+			int sizeMB = (m_tableSizeMB > 0) ? m_tableSizeMB : ParMaxN.DEFAULT_MAXN_TABLE_SIZE_MB;
+			m_table = new TranspositionTable(sizeMB, so.getNumPlayers());
+		}
+		return m_table;
+	}
+
 	/**
 	 * Loop over all actions available for {@code so} to find the action with the best 
 	 * score tuple (best score for {@code so}'s player).
@@ -129,21 +217,21 @@ public class MaxNAgent extends AgentBase implements PlayAgent, Serializable
 	 * @param silent	true: no print-out
 	 * @param depth		tree depth
 	 * @param prevTuple TODO
+	 * @param prevIter	only for the root of iterative deepening: the result of the previous iteration (or null)
 	 * @return		best action + score tuple
 	 */
 	private ACTIONS_VT getBestAction(StateObservation so, StateObservation refer,
-			boolean silent, int depth, ScoreTuple prevTuple) 
+			boolean silent, int depth, ScoreTuple prevTuple, ACTIONS_VT prevIter)
 	{
 		assert so.isLegalState() : "Not a legal state";
+		checkDeadline();
 
 		int i;
 		ScoreTuple currScoreTuple;
-        ScoreTuple sc;
 		StateObservation NewSO;
 		ScoreTuple scBest = null;
         ACTIONS actBest;
         ACTIONS_VT act_vt;
-        String stringRep;
 
         double value, bestValue = -Double.MAX_VALUE;
         ArrayList<ACTIONS> acts = so.getAvailableActions();
@@ -153,44 +241,31 @@ public class MaxNAgent extends AgentBase implements PlayAgent, Serializable
         // TODO: this is not yet the right way to utilize info from prevTuple (!):
     	currScoreTuple = (prevTuple==null) ? new ScoreTuple(so,true) : new ScoreTuple(prevTuple);
         int P = so.getPlayer();
-        
-        for(i = 0; i < acts.size(); ++i)
+
+		// the search order: the best action of the previous iteration first
+		int[] order = new int[acts.size()];
+		for (i = 0; i < order.length; ++i) order[i] = i;
+		if (prevIter != null) {
+			for (i = 0; i < order.length; ++i)
+				if (acts.get(i).toInt() == prevIter.toInt()) { order[i] = 0; order[0] = i; break; }
+		}
+
+        for(int n = 0; n < order.length; ++n)
         {
+			i = order[n];
         	NewSO = so.copy();
         	NewSO.advance(acts.get(i));
-        	
-//        	boolean found = false;
-    		if (NewSO.isGameOver())
-    		{
-    			boolean rgs = m_oPar.getRewardIsGameScore();
-    			currScoreTuple = NewSO.getRewardTuple(rgs);
-    		} else {
-    			if (depth<this.m_depth) {
-    				stringRep = NewSO.uniqueStringDescr();
-    	        	sc = retrieveFromHashMap(m_useHashMap,stringRep);
-    				if (sc==null) {
-    					// here is the recursion: getAllScores may call getBestAction back:
-    					currScoreTuple = getAllScores(NewSO,refer,depth+1, prevTuple);
-    					
-    					if (m_useHashMap) {
-    						hm.put(stringRep, currScoreTuple);
-    		    			//System.out.println(stringRep+":"+currScoreTuple);
-    					}
-    				} else {
-    					currScoreTuple = sc;
-//    					found=true;
-    				}
-    			} else {
-    				// this terminates the recursion:
-    				// (after finishing the for-loop for every element of acts)
-    				currScoreTuple = estimateGameValueTuple(NewSO, prevTuple);
-    			}
-    		}
-//			if (m_useHashMap && !found) {
-//				stringRep = NewSO.uniqueStringDescr();
-//				hm.put(stringRep, currScoreTuple);
-//			}
-			
+
+			try {
+				currScoreTuple = getChildScoreTuple(NewSO, refer, depth, prevTuple);
+			} catch (SearchTimeout e) {
+				if (prevIter == null || n == 0) throw e;
+				// partial iteration: keep the previous iteration's values for the actions not searched
+				for (int m = n; m < order.length; ++m) vTable[order[m]] = prevIter.getVTable()[order[m]];
+				m_partialIter = true;
+				break;
+			}
+
 			// only debug for RubiksCube:
 //			System.out.println(depth+": "+((StateObserverCube)NewSO).getCubeState().getTwistSeq()+", "+currScoreTuple);
 //			System.out.println(((StateObserverCube)NewSO).getCubeState().getTwistSeq()+", "+currScoreTuple);
@@ -219,29 +294,58 @@ public class MaxNAgent extends AgentBase implements PlayAgent, Serializable
         actBest = bestActions.get(rand.nextInt(bestActions.size()));
 
         assert actBest != null : "Oops, no best action actBest";
-        // optional: print the best action
-        if (!silent) {
-        	NewSO = so.copy();
-        	NewSO.advance(actBest);
-        	System.out.println("---Best Move: "+NewSO.stringDescr()+"   "+bestValue);
-        }			
 
         act_vt = new ACTIONS_VT(actBest.toInt(), false, vTable, bestValue, scBest);
         return act_vt;         
 	}
 
-	private ScoreTuple retrieveFromHashMap(boolean m_useHashMap, String stringRep) {
-		ScoreTuple sc = null;
-    	if (m_useHashMap) {
-			// speed up MaxNAgent for repeated calls by storing/retrieving the 
-			// scores of visited states in HashMap hm:
-			sc = hm.get(stringRep); 		// returns null if not in hm
-			//System.out.println(stringRep+":"+sc);
-    	} 
-    	
-    	return sc;
+	/**
+	 * @param NewSO		the state after an action in a state at depth {@code depth}
+	 * @return the score tuple of {@code NewSO}: the reward tuple if {@code NewSO} is a game-over state, else the score
+	 * 		   tuple of the (cached) subtree search or, at the maximum depth, of {@link #estimateGameValueTuple}
+	 */
+	private ScoreTuple getChildScoreTuple(StateObservation NewSO, StateObservation refer,
+			int depth, ScoreTuple prevTuple)
+	{
+		ScoreTuple currScoreTuple;
+		ACTIONS_VT act_vt;
+
+		if (NewSO.isGameOver())
+		{
+			boolean rgs = m_oPar.getRewardIsGameScore();
+			currScoreTuple = NewSO.getRewardTuple(rgs);
+		} else {
+			if (depth<this.m_searchDepth) {
+				if (m_useHashMap) {
+					// speed up MaxNAgent for repeated calls by storing/retrieving the
+					// scores of visited states in the transposition table:
+					long key = NewSO.hash64();
+					int draft = this.m_searchDepth - depth;
+					TranspositionTable.Entry entry = getTable(NewSO).probe(key, draft);
+					if (entry!=null && (entry.exact || entry.draft>=draft)) {
+						currScoreTuple = entry.scoreTuple;
+						if (!entry.exact) countCutoff++;
+					} else {
+						int cutoffsBefore = countCutoff;
+						// here is the recursion: getBestAction calls itself with depth+1:
+						act_vt = getBestAction(NewSO, refer, true, depth+1, prevTuple, null);
+						currScoreTuple = act_vt.getScoreTuple();
+						m_table.store(key, draft, countCutoff==cutoffsBefore, currScoreTuple, act_vt.toInt());
+					}
+				} else {
+					// here is the recursion: getAllScores may call getBestAction back:
+					currScoreTuple = getAllScores(NewSO,refer,depth+1, prevTuple);
+				}
+			} else {
+				// this terminates the recursion:
+				// (after finishing the for-loop for every element of acts)
+				countCutoff++;
+				currScoreTuple = estimateGameValueTuple(NewSO, prevTuple);
+			}
+		}
+		return currScoreTuple;
 	}
-	
+
 //	/**
 //	 * Return the agent's score for that after state.
 //	 * @param sob			the current game state;
@@ -256,6 +360,7 @@ public class MaxNAgent extends AgentBase implements PlayAgent, Serializable
 //	}
 	@Override
 	public ScoreTuple getScoreTuple(StateObservation sob, ScoreTuple prevTuple) {
+		m_searchDepth = m_depth;
 		return getAllScores(sob,sob,0, null);
 	}
 
@@ -263,7 +368,7 @@ public class MaxNAgent extends AgentBase implements PlayAgent, Serializable
         ACTIONS_VT act_vt;
 
 		// here is the recursion: getBestAction calls getAllScores(...,depth+1):
-		act_vt = getBestAction(sob, refer, true, depth, prevTuple);
+		act_vt = getBestAction(sob, refer, true, depth, prevTuple, null);
 		
 		return act_vt.getScoreTuple();		// return ScoreTuple for best action
 	}
@@ -298,6 +403,21 @@ public class MaxNAgent extends AgentBase implements PlayAgent, Serializable
 	public int getDepth() {
 		return m_depth;
 	}
+
+	/**
+	 * @return the search depth reached in the last call of {@link #getNextAction2(StateObservation, boolean, boolean)}
+	 * 		   (the last completed iteration in case of iterative deepening)
+	 */
+	public int getLastDepth() {
+		return m_lastDepth;
+	}
+
+	/**
+	 * @return the transposition table (with its statistics) or null, if there is none (yet)
+	 */
+	public TranspositionTable getTable() {
+		return m_table;
+	}
 	
 
 }
\ No newline at end of file
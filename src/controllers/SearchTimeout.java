@@ -0,0 +1,16 @@
+package controllers;
+
+/**
+ * Thrown by the recursion of {@link MaxNAgent} and {@link ExpectimaxNAgent} when the time budget of an iterative
+ * deepening search (see {@link params.ParMaxN#getMaxNMoveTime()}) has expired. It unwinds the current iteration
+ * without storing any of its incomplete results in the transposition table.
+ * <p>
+ * It carries no stack trace, since it is thrown and caught for control flow only.
+ */
+final class SearchTimeout extends RuntimeException {
+	private static final long serialVersionUID = 1L;
+
+	SearchTimeout() {
+		super(null, null, false, false);
+	}
+}
@@ -5,7 +5,6 @@ import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.Serializable;
 import java.util.Arrays;
-import java.util.LinkedList;
 import java.util.Random;
 
 import controllers.TD.ntuple4.NTuple4;
@@ -65,10 +64,19 @@ public class NTuple2 implements Serializable {
 	// the following elements are needed in update(): if a certain index of the LUT is 
 	// invoked more than once during a weight update for state s_k (multiple calls to updateNew(), 
 	// if there are equivalent states (symmetric to s_k)), then it is updated only *once*. This 
-	// is realized by remembering the already visited indices in indexList.
+	// is realized by remembering the already visited indices in indexList[0..indexCount-1].
 	// It ensures that an update with ALPHA=1.0 changes the LUT in such a way that a subsequent
 	// call getScoreI() returns a value identical to the target of that update.
-	private transient LinkedList indexList = new LinkedList();
+	// indexList is a plain int array (no boxing, no allocation per update), it holds at most one entry per
+	// equivalent state and grows only if there are more than INDEXLIST_INIT of them (see addIndex).
+	private static final int INDEXLIST_INIT = 8;
+	private transient int[] indexList = new int[INDEXLIST_INIT];
+	private transient int indexCount = 0;
+
+	// symTuples[k][j] is the board cell that holds the value of cell nTuple[j] in the k-th symmetric board, i.e.
+	// the LUT index of the k-th symmetric board can be calculated directly from the original board
+	// (see setSymmetryPermutations). null, if not set.
+	private transient int[][] symTuples = null;
 //	private transient int trainCounter[] = null;
 //	private boolean useIndexList = true;	// true: use indexList in updateNew()
 //											// false: use trainCounter in updateNew()
@@ -146,7 +154,8 @@ public class NTuple2 implements Serializable {
 	}
 
 	public boolean instantiateAfterLoading() {
-		indexList = new LinkedList();
+		indexList = new int[INDEXLIST_INIT];
+		indexCount = 0;
 		if (TC) {
 			tcN = new double[lut.length]; // matrix N in TC
 			tcA = new double[lut.length]; // matrix A in TC
@@ -183,6 +192,41 @@ public class NTuple2 implements Serializable {
 		return index;
 	}
 
+	/**
+	 * Get the LUT index for the k-th symmetric board of a certain game board, calculated via the permuted
+	 * n-tuple cells {@code symTuples[k]} without constructing the symmetric board.
+	 *
+	 * @param board	the original game board
+	 * @param k		the symmetry (0: identity)
+	 * @return the same index as {@code getIndex(xnf.symmetryVectors(board,0)[k].bvec)}
+	 *
+	 * @see #setSymmetryPermutations(int[][])
+	 */
+	private int getIndex(int[] board, int k) {
+		int[] cells = symTuples[k];
+		int index = 0;
+		int P=1; 		// P = (posVals)^i in i-loop below
+		for (int cell : cells) {
+			index += P * board[cell];
+			P = P*posVals;
+		}
+		return index;
+	}
+
+	/**
+	 * Precompute for each symmetry k the board cells {@code symTuples[k]} which hold the values of this
+	 * n-tuple's cells in the k-th symmetric board.
+	 *
+	 * @param symPerm	the permutation tables from {@link games.XNTupleFuncs#symmetryPermutations()}
+	 */
+	public void setSymmetryPermutations(int[][] symPerm) {
+		int[][] st = new int[symPerm.length][nTuple.length];
+		for (int k=0; k<symPerm.length; k++)
+			for (int i=0; i<nTuple.length; i++)
+				st[k][i] = symPerm[k][nTuple[i]];
+		symTuples = st;
+	}
+
 //	/**
 //	 * Get the game board corresponding to this LUT index for this NTuple.<br>
 //	 * (--- currently not used inside GBG [still specific to TTT] ---)
@@ -266,6 +310,14 @@ public class NTuple2 implements Serializable {
 		return score;
 	}
 
+	/**
+	 * Same as {@link #getScore(int[])} for the k-th symmetric board of {@code board} (requires
+	 * {@link #setSymmetryPermutations(int[][])})
+	 */
+	public double getScore(int[] board, int k) {
+		return lut[getIndex(board,k)];
+	}
+
 //	/**
 //	 * Update the weights of this NTuple for one specific board (not using
 //	 * symmetries)
@@ -338,8 +390,18 @@ public class NTuple2 implements Serializable {
 	 * @see NTuple2ValueFunc#update(StateObsWithBoardVector, int, int, double, double, boolean, boolean)
 	 */
 	public void updateNew(int[] board, double alphaM, double delta, double e /*, double LAMBDA*/) {
-		int index = getIndex(board);
-		Integer indexI = new Integer(index);
+		updateIndex(getIndex(board), alphaM, delta, e);
+	}
+
+	/**
+	 * Same as {@link #updateNew(int[], double, double, double)} for the k-th symmetric board of {@code board}
+	 * (requires {@link #setSymmetryPermutations(int[][])})
+	 */
+	public void updateNew(int[] board, int k, double alphaM, double delta, double e) {
+		updateIndex(getIndex(board,k), alphaM, delta, e);
+	}
+
+	private void updateIndex(int index, double alphaM, double delta, double e) {
 
 		double tcFactor = getTcFactor(index);	// returns 1 if (!TC)
 				
@@ -355,11 +417,11 @@ public class NTuple2 implements Serializable {
 		}
 
 //		if (useIndexList) {		// useIndexList==true is the recommended choice
-			if (!TC || (TC && tcImm)) {
-				if (!indexList.contains(indexI)) 
-					lut[index] += dW;				
-			}		
-			indexList.add(indexI);
+			if (!containsIndex(index)) {
+				if (!TC || (TC && tcImm))
+					lut[index] += dW;
+				addIndex(index);
+			}
 //		} 
 
 //		if (TC)
@@ -452,7 +514,7 @@ public class NTuple2 implements Serializable {
 
 	public void clearIndices() {
 //		if (useIndexList) {
-			indexList.clear();			
+			indexCount = 0;
 //		} else {
 //			// very slow!!!
 //			for (int k=0; k<trainCounter.length; k++)
@@ -460,6 +522,21 @@ public class NTuple2 implements Serializable {
 //		}
 	}
 
+	/**
+	 * @return true, if {@code index} was already visited since the last call to {@link #clearIndices()}
+	 */
+	private boolean containsIndex(int index) {
+		for (int i=0; i<indexCount; i++)
+			if (indexList[i]==index) return true;
+		return false;
+	}
+
+	private void addIndex(int index) {
+		if (indexCount==indexList.length)
+			indexList = Arrays.copyOf(indexList, 2*indexList.length);
+		indexList[indexCount++] = index;
+	}
+
 	public int getCountP(int k) {
 		if (!DW_DBG) return 0;
 		assert (k >= 0 && k < lut.length) : " k is not a valid LUT index";
@@ -84,6 +84,9 @@ public class NTuple2ValueFunc implements Serializable {
 	private int horizon=0;
 	private transient LinkedList<EligStates>[] eList;
 
+	// the symmetry permutation tables of xnf (null, if xnf has none), see initSymmetryPermutations()
+	private transient int[][] symPerm = null;
+
 	private final boolean PRINTNTUPLES = false;	// /WK/ control the file printout of n-tuples (when loading agents)
 	private final DecimalFormat frmS = new DecimalFormat("+0.00000;-0.00000");
 	
@@ -160,6 +163,7 @@ public class NTuple2ValueFunc implements Serializable {
 				}				
 			}
 		}
+		initSymmetryPermutations();
 	}
 
 	public boolean instantiateAfterLoading() {
@@ -172,6 +176,7 @@ public class NTuple2ValueFunc implements Serializable {
 				}				
 			}
 		}
+		initSymmetryPermutations();
 		return true;
 	}
 	
@@ -207,11 +212,16 @@ public class NTuple2ValueFunc implements Serializable {
 	public double getQFunc(StateObsWithBoardVector curSOWB, int player, Types.ACTIONS act) {
 		int i, j;
 		double score = 0.0;
-		BoardVector[] equiv;
+		BoardVector[] equiv = null;
+		int[] bvec = curSOWB.getBoardVector().bvec;
 		int[] equivAction;
 
-		// Get equivalent boards (including self)
-		equiv = getSymBoards2(curSOWB, getUSESYMMETRY(), getNSym());
+		// Get equivalent boards (including self), if they cannot be evaluated via symPerm
+		int nEquiv = getNumSymPerm(getUSESYMMETRY(), getNSym());
+		if (nEquiv==0) {
+			equiv = getSymBoards2(curSOWB, getUSESYMMETRY(), getNSym());
+			nEquiv = equiv.length;
+		}
 		equivAction = xnf.symmetryActions(act.toInt());
 
 		for (i=0; i<equivAction.length; i++) {
@@ -223,8 +233,8 @@ public class NTuple2ValueFunc implements Serializable {
 		}
 		
 		for (i = 0; i < numTuples; i++) {
-			for (j = 0; j < equiv.length; j++) {
-				score += nTuples[equivAction[j]][player][i].getScore(equiv[j].bvec);
+			for (j = 0; j < nEquiv; j++) {
+				score += getScore(nTuples[equivAction[j]][player][i], equiv, bvec, j);
 			}
 		}
 
@@ -243,16 +253,21 @@ public class NTuple2ValueFunc implements Serializable {
 	public double getScoreI(StateObsWithBoardVector curSOWB, int player) {
 		int i, j;
 		double score = 0.0; 
-		BoardVector[] equiv;
-
-		// Get equivalent boards (including self)
-		equiv = getSymBoards2(curSOWB, getUSESYMMETRY(), getNSym());
+		BoardVector[] equiv = null;
+		int[] bvec = curSOWB.getBoardVector().bvec;
+
+		// Get equivalent boards (including self), if they cannot be evaluated via symPerm
+		int nEquiv = getNumSymPerm(getUSESYMMETRY(), getNSym());
+		if (nEquiv==0) {
+			equiv = getSymBoards2(curSOWB, getUSESYMMETRY(), getNSym());
+			nEquiv = equiv.length;
+		}
 		//equiv = getSymBoards2(board, false);    // DON'T, at least for TTT clearly inferior
 
 		for (i = 0; i < numTuples; i++) {
-			for (j = 0; j < equiv.length; j++) {
+			for (j = 0; j < nEquiv; j++) {
 				//System.out.println("g(i,j)=("+i+","+j+"):  ");		//debug
-				score += nTuples[0][player][i].getScore(equiv[j].bvec);
+				score += getScore(nTuples[0][player][i], equiv, bvec, j);
 			}
 		}
 		//if (getUSESYMMETRY()) score /= equiv.length; // DON'T, at least for TTT clearly inferior
@@ -261,6 +276,42 @@ public class NTuple2ValueFunc implements Serializable {
 		return (hasSigmoid() ? Math.tanh(score) : score);
 	}
 
+	/**
+	 * Fetch the symmetry permutation tables from {@link XNTupleFuncs#symmetryPermutations()} (if available) and
+	 * pass them to all n-tuples. Then the symmetric boards need not be constructed in {@link #getScoreI},
+	 * {@link #getQFunc} and {@link #update}, the n-tuples calculate their LUT indices directly from the
+	 * original board.
+	 */
+	private void initSymmetryPermutations() {
+		symPerm = xnf.symmetryPermutations();
+		if (symPerm!=null && symPerm.length!=xnf.getNumSymmetries()) symPerm = null;
+		if (symPerm!=null) {
+			for (int i = 0; i < numTuples; i++)
+				for (int o=0; o<numOutputs; o++)
+					for (int k=0; k<numPlayers; k++)
+						this.nTuples[o][k][i].setSymmetryPermutations(symPerm);
+		}
+	}
+
+	/**
+	 * @return the number of symmetric boards which are evaluated via {@code symPerm} or 0, if the symmetric
+	 * 		boards have to be constructed with {@link #getSymBoards2(StateObsWithBoardVector, boolean, int)}. The
+	 * 		latter is the case if no permutation tables are available or if only a subset of the symmetries
+	 * 		shall be used ({@literal 0 < nSym < s}).
+	 */
+	private int getNumSymPerm(boolean useSymmetry, int nSym) {
+		if (symPerm==null || !useSymmetry) return 0;
+		return (nSym==0 || nSym==symPerm.length) ? symPerm.length : 0;
+	}
+
+	/**
+	 * @return the score of n-tuple {@code nt} for the j-th equivalent board, either {@code equiv[j]} or (if
+	 * 		{@code equiv==null}) the j-th symmetric board of {@code bvec} via {@code symPerm}
+	 */
+	private static double getScore(NTuple2 nt, BoardVector[] equiv, int[] bvec, int j) {
+		return (equiv==null) ? nt.getScore(bvec,j) : nt.getScore(equiv[j].bvec);
+	}
+
 	/**
 	 * Get the equivalent positions to one board. The first one 
 	 * is the board itself. The other can be generated
@@ -548,19 +599,25 @@ public class NTuple2ValueFunc implements Serializable {
 		int i, j, out;
 		double alphaM, lamFactor;
 
-		// Get equivalent boards (including self) and corresponding actions
-		BoardVector[] equiv = getSymBoards2(curSOWB, getUSESYMMETRY(), getNSym());
+		// Get equivalent boards (including self), if they cannot be evaluated via symPerm, and corresponding actions
+		BoardVector[] equiv = null;
+		int[] bvec = curSOWB.getBoardVector().bvec;
+		int nEquiv = getNumSymPerm(getUSESYMMETRY(), getNSym());
+		if (nEquiv==0) {
+			equiv = getSymBoards2(curSOWB, getUSESYMMETRY(), getNSym());
+			nEquiv = equiv.length;
+		}
 		int[] equivAction = (QMODE ? getSymActions(output, getUSESYMMETRY()) : null); 
 		// equivAction only needed for QMODE==true
 
-		alphaM = ALPHA / (numTuples*equiv.length); 
+		alphaM = ALPHA / (numTuples*nEquiv); 
 
 		// construct new EligStates object, add it at head of LinkedList eList[ie] and remove 
 		// from the list the element 'beyond horizon' t_0 = t-horizon (if any).
 		// The LinkedList to use is either always the same one (ie=0, if ELIST_PP==false) or 
 		// the list kept for each specific player 'player' (if ELIST_PP==true):
 		int ie = (ELIST_PP ? player : 0);
-		EligStates elem = new EligStates(equiv,equivAction,e);
+		EligStates elem = new EligStates(equiv,bvec,nEquiv,equivAction,e);
 		eList[ie].addFirst(elem);
 		assert (horizon>0) : "[NTuple2ValueFunc.update] Error: horizon is 0 !";
 		if (eList[ie].size()>horizon) eList[ie].pollLast();
@@ -571,6 +628,8 @@ public class NTuple2ValueFunc implements Serializable {
 		while(iter.hasNext()) {
 			elem=iter.next();
 			equiv=elem.equiv;
+			bvec=elem.bvec;
+			nEquiv=elem.nEquiv;
 			equivAction=elem.equivAction;
 //			printEquivs(equiv,equivAction);		// debug (TTT only)
 			//System.out.println(eList[ie].size()+" "+lamFactor+"   ["+ equiv[0]+"]");	// debug
@@ -579,14 +638,18 @@ public class NTuple2ValueFunc implements Serializable {
 			e = lamFactor*elem.sigDeriv;
 			for (i = 0; i < numTuples; i++) {
 				nTuples[output][player][i].clearIndices();
-				for (j = 0; j < equiv.length; j++) {
+				for (j = 0; j < nEquiv; j++) {
 					// this assertion is only valid for TicTacToe, where each action should be 
 					// on an empty field which is coded as '1' here:
 					//assert (equiv[j][equivAction[j]]==1) : "Oops, action TicTacToe not viable";
 					
 					out = (QMODE ? equivAction[j] : output);
 //					System.out.print("(i,j)=("+i+","+j+"):  ");		//debug
-					nTuples[out][player][i].updateNew(equiv[j].bvec, alphaM, delta, e);
+					if (equiv==null) {
+						nTuples[out][player][i].updateNew(bvec, j, alphaM, delta, e);
+					} else {
+						nTuples[out][player][i].updateNew(equiv[j].bvec, alphaM, delta, e);
+					}
 				}
 			}
 			lamFactor *= getLambda(); 
@@ -715,12 +778,16 @@ public class NTuple2ValueFunc implements Serializable {
 	
 	// class EligStates is needed in update(int[],int,int,double,double,boolean)
 	private class EligStates implements Serializable {
-		BoardVector[] equiv;
+		BoardVector[] equiv;	// the equivalent boards or null, if they are evaluated via symPerm from bvec
+		int[] bvec;
+		int nEquiv;				// number of equivalent boards
 		int[] equivAction;
 		double sigDeriv;
 		
-		EligStates(BoardVector[] equiv, int[] equivAction, double sigDeriv) {
-			this.equiv=equiv.clone();
+		EligStates(BoardVector[] equiv, int[] bvec, int nEquiv, int[] equivAction, double sigDeriv) {
+			this.equiv=(equiv==null ? null : equiv.clone());
+			this.bvec=bvec;
+			this.nEquiv=nEquiv;
 			this.equivAction=(equivAction==null ? null : equivAction.clone());
 			this.sigDeriv=sigDeriv;
 		}
@@ -4,9 +4,13 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.Serializable;
+import java.nio.Buffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
 import java.util.Arrays;
-import java.util.LinkedList;
 import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 
 import controllers.TD.ntuple2.NTuple2;
 import games.BoardVector;
@@ -43,6 +47,15 @@ import params.ParNT;
  *       [6 * 6 * * * *
  *        * 2 * 2 * * *] </pre>
  *     in positions 0, 8, 2 and 10 activates the highest LUT entry.
+ * <p>
+ * The LUT weights are stored with the precision selected by {@link ParNT#getWeightType()}: as {@code double}
+ * ({@link #WEIGHT_DOUBLE}), as {@code float} ({@link #WEIGHT_FLOAT}) or as 16-bit fixed point numbers with a
+ * per-n-tuple scale ({@link #WEIGHT_INT16}). All modes are used in the same way for training and inference.
+ * <p>
+ * For n-tuples with a huge index space (long tuples or large position alphabets, e.g. in 2048 or RubiksCube), the
+ * LUT can be <em>sparse</em> ({@link #WEIGHT_SPARSE}): a hash map {@link SparseLut} which holds only the entries
+ * visited in training (as {@code float}), optionally with a cap on the number of entries. LUT indices are
+ * {@code long}, so that the theoretical LUT length {@link #getLutSize()} may exceed the range of {@code int}.
  *
  * @author Wolfgang Konen, TH Koeln, 2020
  *
@@ -50,6 +63,18 @@ import params.ParNT;
  */
 public class NTuple4 implements Serializable {
 
+	/**
+	 * the weight types (precision of the LUT weights), see {@link ParNT#getWeightType()}
+	 */
+	public static final int WEIGHT_DOUBLE=0, WEIGHT_FLOAT=1, WEIGHT_INT16=2, WEIGHT_SPARSE=3;
+
+	/**
+	 * The initial scale of {@link #WEIGHT_INT16} weights (weight = lutS[k]*lutScale), i.e. a range of [-8,8] with a
+	 * resolution of 2.4e-4. If a weight update would leave the range, the scale of this n-tuple is doubled as often
+	 * as needed (see {@link #rescaleInt16(double)}).
+	 */
+	private static final double INT16_INIT_SCALE = 1.0/4096;
+
 	private final double INIT; // samine// N and A will be initialized with the same number(INIT)
 
 	private boolean TC = false; 		// TC constant is implemented
@@ -71,7 +96,22 @@ public class NTuple4 implements Serializable {
 
 	private final int[] nTuple;
 	private final int[] posVals; // posVals[i] = # of possible values for cell i of BoardVector
-	private final double[] lut;
+	private double[] lut;		 // either the own LUT of this n-tuple or the flat weight store shared by
+								 // all n-tuples of a value function (see lutBase)
+	private float[] lutF = null; // the same as lut for weightType==WEIGHT_FLOAT (then lut==null)
+	private short[] lutS = null; // the same as lut for weightType==WEIGHT_INT16 (then lut==null)
+	private SparseLut lutH = null; // the LUT for weightType==WEIGHT_SPARSE (then lut==null and lutLen==0)
+	private double lutScale = INT16_INIT_SCALE; // WEIGHT_INT16 only: the weight is lutS[k]*lutScale
+	private int weightType = WEIGHT_DOUBLE;		// one of WEIGHT_DOUBLE, WEIGHT_FLOAT, WEIGHT_INT16
+	private int lutBase = 0;	 // offset of this n-tuple's LUT within lut (0 for an own LUT)
+	private int lutLen;			 // length of this n-tuple's LUT (0 in agents saved before the flat store
+								 // and for sparse LUTs, see getLutSize())
+	// read-only weights in a memory-mapped weight file (see NTuple4WeightFile). If mapped==true, lut, lutF, lutS
+	// are null and the weights are read from lutMD, lutMF or lutMS (according to weightType) at lutBase+k.
+	private transient boolean mapped = false;
+	private transient DoubleBuffer lutMD = null;
+	private transient FloatBuffer lutMF = null;
+	private transient ShortBuffer lutMS = null;
 	private transient double[] tcN = null;
 	private transient double[] tcA = null;
 	private transient double[] tcFactorArray = null;
@@ -79,10 +119,19 @@ public class NTuple4 implements Serializable {
 	// indexList is needed in update(): if a certain index of the LUT is
 	// invoked more than once during a weight update for state s_k (multiple calls to updateNew(), 
 	// if there are equivalent states (symmetric to s_k)), then it is updated only *once*. This 
-	// is realized by remembering the already visited indices in indexList.
+	// is realized by remembering the already visited indices in indexList[0..indexCount-1].
 	// It ensures that an update with ALPHA=1.0 changes the LUT in such a way that a subsequent
 	// call getScoreI() returns a value identical to the target of that update.
-	private transient LinkedList<Integer> indexList = new LinkedList<>();
+	// indexList is a plain long array (no boxing, no allocation per update), it holds at most one entry per
+	// equivalent state and grows only if there are more than INDEXLIST_INIT of them (see addIndex).
+	private static final int INDEXLIST_INIT = 8;
+	private transient long[] indexList = new long[INDEXLIST_INIT];
+	private transient int indexCount = 0;
+
+	// symTuples[k][j] is the board cell that holds the value of cell nTuple[j] in the k-th symmetric board, i.e.
+	// the LUT index of the k-th symmetric board can be calculated directly from the original board
+	// (see setSymmetryPermutations). null, if not set.
+	private transient int[][] symTuples = null;
 
 	// /WK/
 	private transient double[] dWArray=null;		// recommended weight changes
@@ -114,6 +163,21 @@ public class NTuple4 implements Serializable {
 	 *            posVals[b] is the number of possible values at position b = 0, ..., B-1
 	 */
 	NTuple4(int[] nTuple, int[] posVals, ParNT ntPar) {
+		this(nTuple, posVals, ntPar, null, 0);
+	}
+
+	/**
+	 * Same as {@link #NTuple4(int[], int[], ParNT)}, but the LUT of this n-tuple may be a slice of a flat
+	 * weight store shared by all n-tuples of a value function (see {@link NTuple4ValueFunc}).
+	 *
+	 * @param nTuple	the position vector
+	 * @param posVals	posVals[b] is the number of possible values at position b = 0, ..., B-1
+	 * @param ntPar		n-tuple and TC parameters
+	 * @param flatLut	the flat weight store, a {@code double[]}, {@code float[]} or {@code short[]} according to
+	 * 					{@link ParNT#getWeightType()}. If {@code null}, allocate an own LUT for this n-tuple.
+	 * @param lutBase	offset of this n-tuple's LUT within {@code flatLut} (ignored if {@code flatLut==null})
+	 */
+	NTuple4(int[] nTuple, int[] posVals, ParNT ntPar, Object flatLut, int lutBase) {
 
 		// samine//
 		INIT = ntPar.getTcInit();// samine//
@@ -125,18 +189,25 @@ public class NTuple4 implements Serializable {
 		rand = new Random();
 		this.nTuple = nTuple.clone();
 		this.posVals = posVals.clone();
-		int L=1;
-		for (int j : nTuple) L *= posVals[j];
-		lut = new double[L];
+		long L = lutLength(nTuple, posVals);
+		if (ntPar.getWeightType()==WEIGHT_SPARSE) {
+			if (TC) throw new RuntimeException("[NTuple4] TC is not supported with sparse LUTs");
+			L = 0;
+		} else if (L > Integer.MAX_VALUE - 8) {
+			throw new RuntimeException("[NTuple4] LUT length "+L+" is too large for a dense LUT, use sparse LUTs "
+					+ "(weightType "+WEIGHT_SPARSE+")");
+		}
+		lutLen = (int) L;
+		setWeightStore(ntPar.getWeightType(), flatLut, lutBase, ntPar.getSparseLutCap());
 		if (TC) {
-			tcN = new double[lut.length]; // matrix N in TC
-			tcA = new double[lut.length]; // matrix A in TC
-			tcFactorArray = new double[lut.length]; // tcFactor=|N|/A
-			//tcDampArray = new double[lut.length]; // /WK/ for NEW_WK
-			//dWArray = new double[lut.length];	// for accumulating TC (tcImm==false)
+			tcN = new double[lutLen]; // matrix N in TC
+			tcA = new double[lutLen]; // matrix A in TC
+			tcFactorArray = new double[lutLen]; // tcFactor=|N|/A
+			//tcDampArray = new double[lutLen]; // /WK/ for NEW_WK
+			//dWArray = new double[lutLen];	// for accumulating TC (tcImm==false)
 			
 			// initializing N and A matrices and tcFactor=|N|/A
-			for (int i = 0; i < lut.length; i++) {
+			for (int i = 0; i < lutLen; i++) {
 				tcN[i] = INIT;
 				tcA[i] = INIT;
 				tcFactorArray[i] = 1.0;
@@ -154,17 +225,371 @@ public class NTuple4 implements Serializable {
 //			trainCounter = new int[lut.length];
 	}
 
+	/**
+	 * Create a <em>view</em> of n-tuple {@code other}: The new n-tuple shares the LUT (the weights) and the
+	 * symmetry tables with {@code other}, but has its own index list. This allows several threads to update
+	 * the same weights concurrently, each through its own view (see
+	 * {@link TDNTuple4Agt#trainAgentParallel(int, java.util.function.Supplier)}). Call
+	 * {@link #setOwnWeights(Object)} afterwards, if the new n-tuple shall have its own copy of the weights.
+	 * <p>
+	 * The TC counters are not shared (the view has no TC), and with {@link #WEIGHT_INT16} the fixed point scale
+	 * is not shared. Therefore, views of such n-tuples must not be trained on shared weights (this is checked in
+	 * {@link NTuple4ValueFunc}).
+	 *
+	 * @param other	the n-tuple whose weights are shared
+	 */
+	NTuple4(NTuple4 other) {
+		INIT = other.INIT;
+		tcImm = other.tcImm;
+		tcAccRW = other.tcAccRW;
+		tcEXP = other.tcEXP;
+		tcBeta = other.tcBeta;
+		rand = new Random();
+		this.nTuple = other.nTuple;
+		this.posVals = other.posVals;
+		this.lut = other.lut;
+		this.lutF = other.lutF;
+		this.lutS = other.lutS;
+		this.lutH = other.lutH;
+		this.lutScale = other.lutScale;
+		this.weightType = other.weightType;
+		this.lutBase = other.lutBase;
+		this.lutLen = other.lutLen;
+		this.mapped = other.mapped;
+		this.lutMD = other.lutMD;
+		this.lutMF = other.lutMF;
+		this.lutMS = other.lutMS;
+		this.symTuples = other.symTuples;
+	}
+
+	/**
+	 * Let this n-tuple (usually a view, see {@link #NTuple4(NTuple4)}) use its own copy of the weights.
+	 *
+	 * @param flatLutCopy	a copy of the flat weight store which this n-tuple is a slice of (the same offset is
+	 *                      used). If {@code null}, this n-tuple has an own LUT, which is cloned.
+	 */
+	void setOwnWeights(Object flatLutCopy) {
+		switch (weightType) {
+			case WEIGHT_FLOAT -> lutF = (flatLutCopy==null) ? lutF.clone() : (float[]) flatLutCopy;
+			case WEIGHT_INT16 -> lutS = (flatLutCopy==null) ? lutS.clone() : (short[]) flatLutCopy;
+			default -> lut = (flatLutCopy==null) ? lut.clone() : (double[]) flatLutCopy;
+		}
+	}
+
+	/**
+	 * Copy all weights of n-tuple {@code other} (same form and weight type) into the LUT of this n-tuple.
+	 */
+	void copyWeightsFrom(NTuple4 other) {
+		switch (weightType) {
+			case WEIGHT_FLOAT -> System.arraycopy(other.lutF, other.lutBase, lutF, lutBase, lutLen);
+			case WEIGHT_INT16 -> {
+				System.arraycopy(other.lutS, other.lutBase, lutS, lutBase, lutLen);
+				lutScale = other.lutScale;
+			}
+			default -> System.arraycopy(other.lut, other.lutBase, lut, lutBase, lutLen);
+		}
+	}
+
+	/**
+	 * Merge the weights of n-tuples {@code replicas} (same form as this n-tuple), which started from the weights of
+	 * this n-tuple and were trained independently, into this n-tuple: Each weight w becomes
+	 * {@code w + sum_r (w_r - w)/R} (average of the replicas) or, if {@code deltaSum}, {@code w + sum_r (w_r - w)}
+	 * (sum of the replicas' weight changes).
+	 *
+	 * @param replicas	the R trained replicas of this n-tuple
+	 * @param deltaSum	if true, sum up the weight changes of the replicas, else average them
+	 */
+	void mergeWeights(NTuple4[] replicas, boolean deltaSum) {
+		double f = deltaSum ? 1.0 : 1.0/replicas.length;
+		for (int k=0; k<lutLen; k++) {
+			double w = lutGet(lutBase+k);
+			double dw = 0.0;
+			for (NTuple4 r : replicas) dw += r.lutGet(r.lutBase+k) - w;
+			if (dw!=0.0) lutSet(lutBase+k, w + f*dw);
+		}
+	}
+
+	/**
+	 * Let this n-tuple use a new (zero-initialized) LUT of type {@code type}.
+	 *
+	 * @param type		one of {@link #WEIGHT_DOUBLE}, {@link #WEIGHT_FLOAT}, {@link #WEIGHT_INT16},
+	 * 					{@link #WEIGHT_SPARSE}
+	 * @param flatLut	the flat weight store of type {@code type}. If {@code null}, allocate an own LUT.
+	 * 					Ignored for {@link #WEIGHT_SPARSE}.
+	 * @param base		offset of this n-tuple's LUT within {@code flatLut}
+	 * @param sparseCap	maximum number of entries of a sparse LUT (0: no cap)
+	 */
+	private void setWeightStore(int type, Object flatLut, int base, int sparseCap) {
+		lut = null;
+		lutF = null;
+		lutS = null;
+		lutH = null;
+		lutMD = null;
+		lutMF = null;
+		lutMS = null;
+		mapped = false;
+		lutBase = (flatLut==null) ? 0 : base;
+		switch (type) {
+			case WEIGHT_DOUBLE -> lut = (flatLut==null) ? new double[lutLen] : (double[]) flatLut;
+			case WEIGHT_FLOAT -> lutF = (flatLut==null) ? new float[lutLen] : (float[]) flatLut;
+			case WEIGHT_INT16 -> {
+				lutS = (flatLut==null) ? new short[lutLen] : (short[]) flatLut;
+				lutScale = INT16_INIT_SCALE;
+			}
+			case WEIGHT_SPARSE -> {
+				lutH = new SparseLut(sparseCap);
+				lutBase = 0;
+			}
+			default -> throw new RuntimeException("[NTuple4] Unknown weight type "+type);
+		}
+		weightType = type;
+	}
+
+	/**
+	 * Convert the LUT of this n-tuple to weight type {@code type}. The weights are kept (up to the precision of
+	 * {@code type}).
+	 *
+	 * @param type		one of {@link #WEIGHT_DOUBLE}, {@link #WEIGHT_FLOAT}, {@link #WEIGHT_INT16},
+	 * 					{@link #WEIGHT_SPARSE}
+	 * @param flatLut	the new flat weight store of type {@code type}, with this n-tuple's slice at the same
+	 *                  offset as before. If {@code null}, allocate an own LUT.
+	 * @param sparseCap	maximum number of entries, if {@code type==WEIGHT_SPARSE} (0: no cap)
+	 */
+	void convertWeightType(int type, Object flatLut, int sparseCap) {
+		// the weights to keep: all entries of a dense LUT or the occupied entries (idx) of a sparse LUT
+		long[] idx = null;
+		double[] w;
+		if (weightType==WEIGHT_SPARSE) {
+			idx = new long[lutH.size()];
+			w = new double[idx.length];
+			for (int s=0, n=0; s<lutH.tableLength(); s++) {
+				if (lutH.keyAt(s)>=0) {
+					idx[n] = lutH.keyAt(s);
+					w[n++] = lutH.valAt(s);
+				}
+			}
+		} else {
+			w = new double[lutLen];
+			for (int k=0; k<lutLen; k++) w[k] = lutGet(lutBase+k);
+		}
+		double maxAbs = 0.0;
+		for (double v : w) maxAbs = Math.max(maxAbs, Math.abs(v));
+
+		if (type==WEIGHT_SPARSE && TC)
+			throw new RuntimeException("[NTuple4] TC is not supported with sparse LUTs");
+		if (weightType==WEIGHT_SPARSE && type!=WEIGHT_SPARSE) {
+			long L = getLutSize();
+			if (L > Integer.MAX_VALUE - 8)
+				throw new RuntimeException("[NTuple4] LUT length "+L+" is too large for a dense LUT");
+			lutLen = (int) L;
+		}
+		setWeightStore(type, flatLut, lutBase, sparseCap);
+		if (type==WEIGHT_INT16 && maxAbs>0)
+			lutScale = maxAbs / Short.MAX_VALUE;
+		for (int n=0; n<w.length; n++)
+			lutSet(lutBase + (idx==null ? n : idx[n]), w[n]);
+		if (type==WEIGHT_SPARSE) lutLen = 0;
+	}
+
+	/**
+	 * Let this n-tuple read its weights from a memory-mapped weight file (see {@link NTuple4WeightFile}) instead of
+	 * an array on the heap. The weights are used in place, they are read-only: Any attempt to change them throws a
+	 * {@link RuntimeException} (the training methods of the agents call {@link NTuple4ValueFunc#unmapWeights()}
+	 * first).
+	 *
+	 * @param view	view on the weight block of the file, a {@link DoubleBuffer}, {@link FloatBuffer} or
+	 * 				{@link ShortBuffer} according to {@link #getWeightType()}
+	 * @param base	offset of this n-tuple's LUT within {@code view}
+	 * @param len	length of this n-tuple's LUT
+	 */
+	void setMappedWeights(Buffer view, int base, int len) {
+		lut = null;
+		lutF = null;
+		lutS = null;
+		lutMD = null;
+		lutMF = null;
+		lutMS = null;
+		switch (weightType) {
+			case WEIGHT_FLOAT -> lutMF = (FloatBuffer) view;
+			case WEIGHT_INT16 -> lutMS = (ShortBuffer) view;
+			default -> lutMD = (DoubleBuffer) view;
+		}
+		lutBase = base;
+		lutLen = len;
+		mapped = true;
+	}
+
+	/**
+	 * Copy the memory-mapped weights of this n-tuple to the heap, into {@code flatLut} at the same offset.
+	 *
+	 * @param flatLut	the new flat weight store of type {@link #getWeightType()}
+	 */
+	void unmapWeights(Object flatLut) {
+		if (!mapped) return;
+		switch (weightType) {
+			case WEIGHT_FLOAT -> lutMF.get(lutBase, (float[]) flatLut, lutBase, lutLen);
+			case WEIGHT_INT16 -> lutMS.get(lutBase, (short[]) flatLut, lutBase, lutLen);
+			default -> lutMD.get(lutBase, (double[]) flatLut, lutBase, lutLen);
+		}
+		lutMD = null;
+		lutMF = null;
+		lutMS = null;
+		mapped = false;
+		switch (weightType) {
+			case WEIGHT_FLOAT -> lutF = (float[]) flatLut;
+			case WEIGHT_INT16 -> lutS = (short[]) flatLut;
+			default -> lut = (double[]) flatLut;
+		}
+	}
+
+	/**
+	 * @return true, if the weights of this n-tuple are read from a memory-mapped weight file
+	 */
+	public boolean isMapped() {
+		return mapped;
+	}
+
+	/**
+	 * @return the array holding the weights of this n-tuple ({@code double[]}, {@code float[]} or {@code short[]},
+	 * 			this n-tuple's LUT starts at {@link #getLutBase()}) or {@code null} if the weights are memory-mapped
+	 */
+	Object getWeightArray() {
+		return switch (weightType) {
+			case WEIGHT_FLOAT -> lutF;
+			case WEIGHT_INT16 -> lutS;
+			default -> lut;
+		};
+	}
+
+	/**
+	 * Set the array holding the weights of this n-tuple. Used to detach the weights temporarily (with
+	 * {@code weights==null}) while the rest of the agent is serialized (see {@link NTuple4WeightFile}).
+	 *
+	 * @param weights	{@code double[]}, {@code float[]} or {@code short[]} according to {@link #getWeightType()}
+	 */
+	void setWeightArray(Object weights) {
+		switch (weightType) {
+			case WEIGHT_FLOAT -> lutF = (float[]) weights;
+			case WEIGHT_INT16 -> lutS = (short[]) weights;
+			default -> lut = (double[]) weights;
+		}
+	}
+
+	/**
+	 * @param k	absolute index into the weight store (including {@code lutBase})
+	 * @return the weight stored at {@code k}
+	 */
+	private double lutGet(long k) {
+		if (mapped) return switch (weightType) {
+			case WEIGHT_FLOAT -> lutMF.get((int) k);
+			case WEIGHT_INT16 -> lutMS.get((int) k) * lutScale;
+			default -> lutMD.get((int) k);
+		};
+		return switch (weightType) {
+			case WEIGHT_FLOAT -> lutF[(int) k];
+			case WEIGHT_INT16 -> lutS[(int) k] * lutScale;
+			case WEIGHT_SPARSE -> lutH.get(k);
+			default -> lut[(int) k];
+		};
+	}
+
+	private void lutSet(long index, double w) {
+		if (mapped) throwReadOnly();
+		if (weightType==WEIGHT_SPARSE) {
+			lutH.set(index, w);
+			return;
+		}
+		int k = (int) index;
+		switch (weightType) {
+			case WEIGHT_FLOAT -> lutF[k] = (float) w;
+			case WEIGHT_INT16 -> {
+				double q = w/lutScale;
+				if (Math.abs(q) > Short.MAX_VALUE) {
+					rescaleInt16(q);
+					q = w/lutScale;
+				}
+				lutS[k] = (short) Math.round(q);
+			}
+			default -> lut[k] = w;
+		}
+	}
+
+	/**
+	 * Add {@code dW} to the weight stored at {@code k}. In case {@link #WEIGHT_INT16}, the result is rounded
+	 * stochastically, so that weight changes smaller than the resolution {@code lutScale} are not lost, but are
+	 * correct in expectation.
+	 *
+	 * @param index	absolute index into the weight store (including {@code lutBase})
+	 * @param dW	the weight change
+	 */
+	private void lutAdd(long index, double dW) {
+		if (mapped) throwReadOnly();
+		if (weightType==WEIGHT_SPARSE) {
+			lutH.add(index, dW);
+			return;
+		}
+		int k = (int) index;
+		switch (weightType) {
+			case WEIGHT_FLOAT -> lutF[k] += (float) dW;
+			case WEIGHT_INT16 -> {
+				double q = lutS[k] + dW/lutScale;
+				if (Math.abs(q) > Short.MAX_VALUE) {
+					rescaleInt16(q);
+					q = lutS[k] + dW/lutScale;
+				}
+				lutS[k] = (short) Math.floor(q + ThreadLocalRandom.current().nextDouble());
+			}
+			default -> lut[k] += dW;
+		}
+	}
+
+	private static void throwReadOnly() {
+		throw new RuntimeException("[NTuple4] Weights are memory-mapped (read-only). Call unmapWeights() on the "
+				+ "value function before training.");
+	}
+
+	/**
+	 * Double {@code lutScale} (and halve all {@link #WEIGHT_INT16} weights of this n-tuple) as often as needed to
+	 * bring {@code q} into the range of {@code short}.
+	 *
+	 * @param q	a weight in units of the current {@code lutScale}
+	 */
+	private void rescaleInt16(double q) {
+		int factor = 1;
+		while (Math.abs(q) > Short.MAX_VALUE) {
+			q /= 2;
+			factor *= 2;
+		}
+		for (int k=lutBase; k<lutBase+lutLen; k++)
+			lutS[k] = (short) Math.round((double) lutS[k] / factor);
+		lutScale *= factor;
+	}
+
+	/**
+	 * @param nTuple	the position vector
+	 * @param posVals	posVals[b] is the number of possible values at position b = 0, ..., B-1
+	 * @return the LUT length {@code posVals[P[0]]} * ... *  {@code posVals[P[L-1]]} of such an n-tuple
+	 */
+	static long lutLength(int[] nTuple, int[] posVals) {
+		long L=1;
+		for (int j : nTuple) L = Math.multiplyExact(L, posVals[j]);
+		return L;
+	}
+
 	public boolean instantiateAfterLoading() {
-		indexList = new LinkedList<>();
+		indexList = new long[INDEXLIST_INIT];
+		indexCount = 0;
+		if (lutLen==0 && weightType!=WEIGHT_SPARSE)
+			lutLen = lut.length;		// older agents (before flat weight store) have an own LUT
 		if (TC) {
-			tcN = new double[lut.length]; // matrix N in TC
-			tcA = new double[lut.length]; // matrix A in TC
-			tcFactorArray = new double[lut.length]; // tcFactor=|N|/A
-			//tcDampArray = new double[lut.length]; // /WK/ for NEW_WK
-			//dWArray = new double[lut.length];	// for accumulating TC (tcImm==false)
+			tcN = new double[lutLen]; // matrix N in TC
+			tcA = new double[lutLen]; // matrix A in TC
+			tcFactorArray = new double[lutLen]; // tcFactor=|N|/A
+			//tcDampArray = new double[lutLen]; // /WK/ for NEW_WK
+			//dWArray = new double[lutLen];	// for accumulating TC (tcImm==false)
 			
 			// initializing N and A matrices and tcFactor=|N|/A
-			for (int i = 0; i < lut.length; i++) {
+			for (int i = 0; i < lutLen; i++) {
 				tcN[i] = INIT;
 				tcA[i] = INIT;
 				tcFactorArray[i] = 1.0;
@@ -180,11 +605,11 @@ public class NTuple4 implements Serializable {
 	 * @param board
 	 *            the representation of a game board (in case of TTT: vector of length 9,
 	 *            carrying 0 ("O"), 1 (empty) or 2 ("X") in each element)
-	 * @return the corresponding index into the LUT
+	 * @return the corresponding index into the LUT (relative to {@code lutBase})
 	 */
-	private int getIndex(int[] board) {
-		int index = 0;
-		int Q=1; 		// Q = posVals[P[0]]*...*posVals[P[i]] in i-loop below
+	long getIndex(int[] board) {
+		long index = 0;
+		long Q=1; 		// Q = posVals[P[0]]*...*posVals[P[i]] in i-loop below
 		for (int n_i : nTuple) {
 			assert (board[n_i] < posVals[n_i]) : "Assert failed for cell " + n_i + ": " + board[n_i] + ">=" + posVals[n_i];
 			index += Q * board[n_i];
@@ -193,6 +618,41 @@ public class NTuple4 implements Serializable {
 		return index;
 	}
 
+	/**
+	 * Get the LUT index for the k-th symmetric board of a certain game board, calculated via the permuted
+	 * n-tuple cells {@code symTuples[k]} without constructing the symmetric board.
+	 *
+	 * @param board	the original game board
+	 * @param k		the symmetry (0: identity)
+	 * @return the same index as {@code getIndex(xnf.symmetryVectors(board,0)[k].bvec)}
+	 *
+	 * @see #setSymmetryPermutations(int[][])
+	 */
+	long getIndex(int[] board, int k) {
+		int[] cells = symTuples[k];
+		long index = 0;
+		long Q=1; 		// Q = posVals[P[0]]*...*posVals[P[i]] in i-loop below
+		for (int i=0; i<cells.length; i++) {
+			index += Q * board[cells[i]];
+			Q = Q * posVals[nTuple[i]];
+		}
+		return index;
+	}
+
+	/**
+	 * Precompute for each symmetry k the board cells {@code symTuples[k]} which hold the values of this
+	 * n-tuple's cells in the k-th symmetric board.
+	 *
+	 * @param symPerm	the permutation tables from {@link games.XNTupleFuncs#symmetryPermutations()}
+	 */
+	public void setSymmetryPermutations(int[][] symPerm) {
+		int[][] st = new int[symPerm.length][nTuple.length];
+		for (int k=0; k<symPerm.length; k++)
+			for (int i=0; i<nTuple.length; i++)
+				st[k][i] = symPerm[k][nTuple[i]];
+		symTuples = st;
+	}
+
 	/**
 	 * Initialize the weights
 	 * 
@@ -202,8 +662,12 @@ public class NTuple4 implements Serializable {
 	 *            If {@code false}, all weights are set to 0.0.
 	 */
 	public void initWeights(boolean random) {
-		for (int i = 0; i < lut.length; i++)
-			lut[i] = (random ? EPS * (rand.nextDouble() * 2 - 1) : 0.0);
+		if (weightType==WEIGHT_SPARSE) {	// a sparse LUT starts always with weights 0
+			lutH.clear();
+			return;
+		}
+		for (int i = 0; i < lutLen; i++)
+			lutSet(lutBase+i, (random ? EPS * (rand.nextDouble() * 2 - 1) : 0.0));
 	}
 
     /**
@@ -218,8 +682,8 @@ public class NTuple4 implements Serializable {
 	 * @see NTuple4ValueFunc#getScoreI(StateObsWithBoardVector,int)
 	 */
 	public double getScore(int[] board) {
-		int Index = getIndex(board);
-		double score = lut[Index];
+		long Index = getIndex(board);
+		double score = lutGet(lutBase+Index);
 		
 //		final double MAXSCORE = 3932156; 
 //		System.out.println(Index + " ["+score*MAXSCORE+"]");  //debug
@@ -227,6 +691,14 @@ public class NTuple4 implements Serializable {
 		return score;
 	}
 
+	/**
+	 * Same as {@link #getScore(int[])} for the k-th symmetric board of {@code board} (requires
+	 * {@link #setSymmetryPermutations(int[][])})
+	 */
+	public double getScore(int[] board, int k) {
+		return lutGet(lutBase+getIndex(board,k));
+	}
+
 	/**
 	 * Update the weights of this NTuple for one specific board (not using symmetries). 
 	 * <p>
@@ -244,10 +716,25 @@ public class NTuple4 implements Serializable {
 	 * @see NTuple4ValueFunc#update(StateObsWithBoardVector, int, int, double, double, boolean, boolean)
 	 */
 	public void updateNew(int[] board, double alphaM, double delta, double e /*, double LAMBDA*/) {
-		int index = getIndex(board);
-//		Integer indexI = index;
+		updateIndex(getIndex(board), alphaM, delta, e);
+	}
 
-		double tcFactor = getTcFactor(index);	// returns 1 if (!TC)
+	/**
+	 * Same as {@link #updateNew(int[], double, double, double)} for the k-th symmetric board of {@code board}
+	 * (requires {@link #setSymmetryPermutations(int[][])})
+	 */
+	public void updateNew(int[] board, int k, double alphaM, double delta, double e) {
+		updateIndex(getIndex(board,k), alphaM, delta, e);
+	}
+
+	/**
+	 * Same as {@link #updateNew(int[], double, double, double)} for a LUT index already calculated with
+	 * {@link #getIndex(int[])} or {@link #getIndex(int[], int)} (used by the eligibility traces of
+	 * {@link NTuple4ValueFunc}, which keep the indices of the states in the horizon)
+	 */
+	void updateIndex(long index, double alphaM, double delta, double e) {
+
+		double tcFactor = getTcFactor((int) index);	// returns 1 if (!TC) (TC only with dense LUTs)
 				
 		double rW = delta * e;					// recommended weight change
 		double dW = alphaM * rW * tcFactor;
@@ -261,11 +748,11 @@ public class NTuple4 implements Serializable {
 		}
 
 //		if (useIndexList) {		// useIndexList==true is the recommended choice
-			if (!TC || (TC && tcImm)) {
-				if (!indexList.contains(index))
-					lut[index] += dW;				
-			}		
-			indexList.add(index);
+			if (!containsIndex(index)) {
+				if (!TC || (TC && tcImm))
+					lutAdd(lutBase+index, dW);
+				addIndex(index);
+			}
 //		} 
 
 //		if (TC)
@@ -279,7 +766,8 @@ public class NTuple4 implements Serializable {
 	 * @param index
 	 * @param accum
 	 */
-	private void setTcFactor(int index, double accum) {
+	private void setTcFactor(long idx, double accum) {
+		int index = (int) idx;
 		if (TC) {
 			tcN[index] += accum;
 			tcA[index] += Math.abs(accum);
@@ -297,8 +785,12 @@ public class NTuple4 implements Serializable {
 	// currently not used
 	@Deprecated
 	public void weightDecay(double factor) {
-		for (int k=0; k<lut.length; k++)
-			lut[k] *= factor;
+		if (weightType==WEIGHT_SPARSE) {
+			lutH.scale(factor);
+			return;
+		}
+		for (int k=0; k<lutLen; k++)
+			lutSet(lutBase+k, lutGet(lutBase+k) * factor);
 	}
 	
 	/**
@@ -306,13 +798,48 @@ public class NTuple4 implements Serializable {
 	 *            index into LUT
 	 * @return the kth weight for this NTuple
 	 */
-	public double getWeight(int k) {
-		assert (k >= 0 && k < lut.length) : " k is not a valid LUT index";
-		return lut[k];
+	public double getWeight(long k) {
+		assert (k >= 0 && k < getLutSize()) : " k is not a valid LUT index";
+		return lutGet(lutBase+k);
 	}
 
+	/**
+	 * @return the LUT of this n-tuple. If the LUT is a slice of a flat weight store or if the weights are not stored
+	 * 		as {@code double}, a copy is returned (use {@link #getWeight(long)} to avoid the copy).
+	 * @throws RuntimeException if the LUT is sparse and its length {@link #getLutSize()} exceeds the range of
+	 * 		{@code int}
+	 */
 	public double[] getWeights() {
-		return lut;
+		if (weightType==WEIGHT_SPARSE) {
+			long L = getLutSize();
+			if (L > Integer.MAX_VALUE - 8)
+				throw new RuntimeException("[NTuple4] Sparse LUT of length "+L+" cannot be returned as array");
+			double[] w = new double[(int) L];
+			for (int s=0; s<lutH.tableLength(); s++)
+				if (lutH.keyAt(s)>=0) w[(int) lutH.keyAt(s)] = lutH.valAt(s);
+			return w;
+		}
+		if (weightType==WEIGHT_DOUBLE && !mapped) {
+			if (lutBase==0 && lut.length==getLutLength()) return lut;
+			return Arrays.copyOfRange(lut, lutBase, lutBase+getLutLength());
+		}
+		double[] w = new double[lutLen];
+		for (int k=0; k<lutLen; k++) w[k] = lutGet(lutBase+k);
+		return w;
+	}
+
+	/**
+	 * @return one of {@link #WEIGHT_DOUBLE}, {@link #WEIGHT_FLOAT}, {@link #WEIGHT_INT16}, {@link #WEIGHT_SPARSE}
+	 */
+	public int getWeightType() {
+		return weightType;
+	}
+
+	/**
+	 * @return offset of this n-tuple's LUT within the flat weight store (0, if the n-tuple has an own LUT)
+	 */
+	public int getLutBase() {
+		return lutBase;
 	}
 	
 	public double[] getTcFactorArray() {
@@ -332,7 +859,22 @@ public class NTuple4 implements Serializable {
 	}
 
 	public void clearIndices() {
-		indexList.clear();
+		indexCount = 0;
+	}
+
+	/**
+	 * @return true, if {@code index} was already visited since the last call to {@link #clearIndices()}
+	 */
+	private boolean containsIndex(long index) {
+		for (int i=0; i<indexCount; i++)
+			if (indexList[i]==index) return true;
+		return false;
+	}
+
+	private void addIndex(long index) {
+		if (indexCount==indexList.length)
+			indexList = Arrays.copyOf(indexList, 2*indexList.length);
+		indexList[indexCount++] = index;
 	}
 
 //	public int getCountP(int k) {
@@ -360,10 +902,35 @@ public class NTuple4 implements Serializable {
 	}
 
 	/**
-	 * @return the length of the LUT for this NTuple
+	 * @return the length of the LUT for this NTuple. For a sparse LUT, this is {@link #getLutSize()}, clamped to
+	 * 		the range of {@code int}.
 	 */
 	public int getLutLength() {
-		return lut.length;
+		if (weightType==WEIGHT_SPARSE) return (int) Math.min(getLutSize(), Integer.MAX_VALUE);
+		return (lutLen==0) ? lut.length : lutLen;	// lutLen==0: older agent, not yet instantiated after loading
+	}
+
+	/**
+	 * @return the theoretical length {@code posVals[P[0]]*...*posVals[P[L-1]]} of the LUT for this NTuple (the
+	 * 		same as {@link #getLutLength()} for a dense LUT)
+	 */
+	public long getLutSize() {
+		return lutLength(nTuple, posVals);
+	}
+
+	/**
+	 * @return the number of LUT entries which occupy memory: {@link #getLutLength()} for a dense LUT, the number of
+	 * 		entries visited so far (and not evicted) for a sparse LUT
+	 */
+	public int getNumOccupied() {
+		return (weightType==WEIGHT_SPARSE) ? lutH.size() : getLutLength();
+	}
+
+	/**
+	 * @return the sparse LUT of this n-tuple or {@code null}, if the LUT is dense
+	 */
+	public SparseLut getSparseLut() {
+		return lutH;
 	}
 
 	public int getPosVals(int i) {
@@ -383,9 +950,9 @@ public class NTuple4 implements Serializable {
 			//for (int i = 0; i < lut.length; i++)
 			//	tcFactorArray[i] = (double) Math.abs(tcN[i]) / tcA[i];
 
-			for (int i = 0; i < lut.length; i++) {
+			for (int i = 0; i < lutLen; i++) {
 				tcFactorArray[i] = Math.abs(tcN[i]) / tcA[i];
-				lut[i] += tcFactorArray[i]* dWArray[i];				// ??correct to update lut here?? TODO
+				lutAdd(lutBase+i, tcFactorArray[i]* dWArray[i]);				// ??correct to update lut here?? TODO
 				dWArray[i]=0.0;
 			}
 		}
@@ -441,17 +1008,30 @@ public class NTuple4 implements Serializable {
 
 	public int lutHashSum() {
 		int hs=0; 
-		for (int i=0; i<lut.length; i++) if (lut[i]>0) hs += i;
+		if (weightType==WEIGHT_SPARSE) {
+			for (int s=0; s<lutH.tableLength(); s++)
+				if (lutH.keyAt(s)>=0 && lutH.valAt(s)>0) hs += (int) (lutH.keyAt(s)%100);
+			return (hs%100);
+		}
+		for (int i=0; i<lutLen; i++) if (lutGet(lutBase+i)>0) hs += i;
 		return (hs%100);
 	}
 	public double lutSum() {
 		double ls=0;
-		for (double lut_i : lut) ls += lut_i;
+		if (weightType==WEIGHT_SPARSE) {
+			for (int s=0; s<lutH.tableLength(); s++) if (lutH.keyAt(s)>=0) ls += lutH.valAt(s);
+			return ls;
+		}
+		for (int i=0; i<lutLen; i++) ls += lutGet(lutBase+i);
 		return ls;
 	}
 	public double lutSumAbs() {
 		double ls=0;
-		for (double lut_i : lut) ls += Math.abs(lut_i);
+		if (weightType==WEIGHT_SPARSE) {
+			for (int s=0; s<lutH.tableLength(); s++) if (lutH.keyAt(s)>=0) ls += Math.abs(lutH.valAt(s));
+			return ls;
+		}
+		for (int i=0; i<lutLen; i++) ls += Math.abs(lutGet(lutBase+i));
 		return ls;
 	}
 }
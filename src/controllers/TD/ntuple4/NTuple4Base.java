@@ -3,8 +3,16 @@ package controllers.TD.ntuple4;
 import java.io.*;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
 
 import controllers.AgentBase;
 import controllers.RandomAgent;
@@ -187,6 +195,111 @@ abstract public class NTuple4Base extends AgentBase implements NTuple4Agt, Seria
 
 	}
 
+	/**
+	 * Create a replica of this agent for {@link #trainAgentReplicas(int, Supplier)}: an agent of the same class with
+	 * the same parameters, a copy of the n-tuple weights and an own random number generator.
+	 * <p>
+	 * This default implementation throws an exception, the n-tuple agents {@link TDNTuple4Agt}, {@link Sarsa4Agt}
+	 * and {@link QLearn4Agt} override it.
+	 *
+	 * @param seed	seed for the replica's random number generator
+	 * @return the replica
+	 */
+	protected NTuple4Base newReplica(long seed) {
+		throw new RuntimeException("[NTuple4Base] "+getClass().getSimpleName()+" does not support training with replicas");
+	}
+
+	/**
+	 * Train the agent for {@code numEpisodes} self-play episodes with K = {@link ParTD#getNumReplicas()} replicas
+	 * (synchronous data-parallel training). If K is 1, this is the same as calling
+	 * {@link #trainAgent(StateObservation)} {@code numEpisodes} times.
+	 * <p>
+	 * The training proceeds in rounds: In each round, every replica starts from the current weights of this agent
+	 * and trains independently (in its own thread) on M = {@link ParTD#getReplicaSyncEpisodes()} episodes. At the
+	 * end of the round, the replicas are merged into this agent: The weights are averaged or, if
+	 * {@link ParTD#getReplicaMergeMode()}{@code ==1}, the weight changes of all replicas are summed up. A round
+	 * counts as K*M episodes: ALPHA and epsilon of the replicas decay K times as fast as in sequential training,
+	 * so that they follow the sequential schedule.
+	 * <p>
+	 * The start states of each round are fetched from {@code startStates} in a fixed order before the round starts,
+	 * and each replica has its own random number generator, seeded from {@link #rand}. Thus the result does not
+	 * depend on thread scheduling: Two runs with the same seed of {@link #rand} (and the same n-tuples and start
+	 * states) give the same weights. (Exception: {@link NTuple4#WEIGHT_INT16} uses stochastic rounding.)
+	 * <p>
+	 * Side effects: Increment gameNum by {@code numEpisodes}, adjust ALPHA and epsilon as {@code numEpisodes} calls
+	 * of {@link #trainAgent(StateObservation)} would do, and add the learn actions and train moves of all replicas
+	 * to this agent. Training with replicas is not possible with TC (a {@link RuntimeException} is thrown).
+	 *
+	 * @param numEpisodes	number of episodes to train
+	 * @param startStates	delivers the start state of each episode, e.g. via
+	 *                      {@link games.GameBoard#chooseStartState(controllers.PlayAgent)}. It is only called
+	 *                      from the calling thread.
+	 */
+	public void trainAgentReplicas(int numEpisodes, Supplier<StateObservation> startStates) {
+		m_Net.unmapWeights();		// before the replicas are created: they copy the (writable) weights
+		int K = Math.min(m_tdPar.getNumReplicas(), numEpisodes);
+		if (K<=1) {
+			for (int n=0; n<numEpisodes; n++)
+				trainAgent(startStates.get());
+			return;
+		}
+		int M = m_tdPar.getReplicaSyncEpisodes();
+		boolean deltaSum = (m_tdPar.getReplicaMergeMode()==1);
+		double alphaRatio = m_Net.getAlphaChangeRatio();
+
+		NTuple4Base[] replicas = new NTuple4Base[K];
+		NTuple4ValueFunc[] repNets = new NTuple4ValueFunc[K];
+		for (int r=0; r<K; r++) {
+			replicas[r] = newReplica(rand.nextLong());
+			repNets[r] = replicas[r].m_Net;
+			repNets[r].setAlphaChangeRatio(Math.pow(alphaRatio, K));
+			replicas[r].m_EpsilonChangeDelta = K*m_EpsilonChangeDelta;
+		}
+		ExecutorService pool = Executors.newFixedThreadPool(K);
+		try {
+			int done = 0;
+			while (done < numEpisodes) {
+				// the episodes of this round: K*M or the remaining ones, distributed as evenly as possible
+				int roundEpi = Math.min(K*M, numEpisodes-done);
+				List<Callable<Object>> tasks = new ArrayList<>();
+				for (int r=0; r<K; r++) {
+					int nr = roundEpi/K + (r < roundEpi%K ? 1 : 0);
+					StateObservation[] so = new StateObservation[nr];
+					for (int j=0; j<nr; j++) so[j] = startStates.get();
+					NTuple4Base rep = replicas[r];
+					if (done>0) repNets[r].copyWeightsFrom(m_Net);	// in round 0, the replica's weights are a fresh copy
+					repNets[r].setAlpha(m_Net.getAlpha());
+					rep.m_epsilon = m_epsilon;
+					tasks.add(() -> {
+						for (StateObservation s : so) rep.trainAgent(s);
+						return null;
+					});
+				}
+				for (Future<Object> f : pool.invokeAll(tasks)) f.get();
+
+				m_Net.mergeReplicas(repNets, deltaSum);
+				done += roundEpi;
+				m_Net.setAlpha(m_Net.getAlpha()*Math.pow(alphaRatio, roundEpi));
+				m_epsilon = m_epsilon - roundEpi*m_EpsilonChangeDelta;
+				setGameNum(getGameNum() + roundEpi);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("[NTuple4Base] Training with replicas interrupted", e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException("[NTuple4Base] Training with replicas failed: "+e.getCause(), e.getCause());
+		} finally {
+			pool.shutdown();
+			for (NTuple4Base rep : replicas) {
+				m_Net.addNumLearnActions(rep.getNumLrnActions());
+				m_numTrnMoves += rep.getNumTrnMoves();
+				tieCounter += rep.tieCounter;
+				winXCounter += rep.winXCounter;
+				winOCounter += rep.winOCounter;
+			}
+		}
+	}
+
 	private void print(double m_epsilon2) throws IOException {
 		PrintWriter epsilon = new PrintWriter(new FileWriter("epsilon",true));
 		epsilon.println("" +m_epsilon2);
@@ -311,6 +424,19 @@ abstract public class NTuple4Base extends AgentBase implements NTuple4Agt, Seria
 	public boolean getAFTERSTATE() {
 		return m_ntPar.getAFTERSTATE();
 	}
+
+	/**
+	 * Convert the LUT weights of this agent to another precision (e.g. to shrink an existing agent before saving
+	 * it to disk) or to sparse LUTs (with the cap {@link ParNT#getSparseLutCap()}). Training and inference continue
+	 * with the new weight type.
+	 *
+	 * @param weightType one of {@link NTuple4#WEIGHT_DOUBLE}, {@link NTuple4#WEIGHT_FLOAT}, {@link NTuple4#WEIGHT_INT16},
+	 * 					{@link NTuple4#WEIGHT_SPARSE}
+	 */
+	public void convertWeightType(int weightType) {
+		m_Net.convertWeightType(weightType, m_ntPar.getSparseLutCap());
+		m_ntPar.setWeightType(weightType);
+	}
 //	public boolean getLearnFromRM() {
 //		return m_oPar.useLearnFromRM();
 //	}
@@ -1,6 +1,7 @@
 package controllers.TD.ntuple4;
 
 import java.io.*;
+import java.lang.reflect.Array;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.util.*;
@@ -69,6 +70,14 @@ public class NTuple4ValueFunc implements Serializable {
 	 * Array with n-tuple weights. Dimensions: {@code [numOutputs][numPlayers][numTuples]}.
 	 */
 	private NTuple4[][][] nTuples;
+
+	/**
+	 * The flat weight store: If {@link ParNT#getFlatLut()} is set, all LUTs of {@link #nTuples} are consecutive
+	 * slices of this single array, in the order {@code [output][player][tuple]}. It is a {@code double[]},
+	 * {@code float[]} or {@code short[]}, depending on {@link ParNT#getWeightType()}. Otherwise {@code null},
+	 * and each {@link NTuple4} has its own LUT.
+	 */
+	private Object flatLut = null;
 	
 	public XNTupleFuncs xnf;
 
@@ -81,7 +90,18 @@ public class NTuple4ValueFunc implements Serializable {
 	// elements needed for TD(lambda)-update with finite horizon, 
 	// see update(int[],int,double,double):
 	private int horizon=0;
-	private transient LinkedList<EligStates>[] eList;
+	private transient EligRing[] eList;
+
+	// the symmetry permutation tables of xnf (null, if xnf has none), see initSymmetryPermutations()
+	private transient int[][] symPerm = null;
+
+	// tables for the delta evaluation (see DeltaEval), built by buildDeltaTables() for deltaNEquiv equivalent boards:
+	// index vector slot deltaSlot[c][m] = i*nEquiv+j (n-tuple i, symmetric board j) depends on cell c with factor
+	// deltaQ[c][m]. deltaSlot is volatile and written last, so that concurrent evaluations (e.g. in a parallel
+	// MCTS search) see the complete tables
+	private transient volatile int[][] deltaSlot = null;
+	private transient long[][] deltaQ = null;
+	private transient int deltaNEquiv = 0;
 
 	private final boolean PRINTNTUPLES = true;	// /WK/ control the file printout of n-tuples (when loading agents)
 	private final DecimalFormat frmS = new DecimalFormat("+0.00000;-0.00000");
@@ -132,8 +152,7 @@ public class NTuple4ValueFunc implements Serializable {
 		this.xnf = xnf;
 		this.numPlayers = xnf.getNumPlayers();
 		this.numOutputs = numOutputs;
-		this.eList = new LinkedList[this.numPlayers];
-		for (int ie=0; ie<eList.length; ie++) eList[ie] = new LinkedList<>();
+		this.eList = newEligLists(this.numPlayers);
 		this.tdAgt = parent;
 		if (xnf.useActionMap() && allAvailActions != null) {
 			bUseActionMap=true;
@@ -149,6 +168,59 @@ public class NTuple4ValueFunc implements Serializable {
 		}
 	}
 
+	/**
+	 * Create a copy of value function {@code other} for a training thread or a training replica. The copy has its
+	 * own eligibility lists, its own learning rate {@code ALPHA} and its own count of learn actions. Its n-tuples
+	 * either share their weights with {@code other} (a <em>view</em>, see {@link NTuple4#NTuple4(NTuple4)}) or
+	 * have their own copy of the weights.
+	 *
+	 * @param other			the value function to copy
+	 * @param parent		the (worker) agent object where the copy is part of
+	 * @param shareWeights	if true, share the weights with {@code other}, else copy them
+	 * @throws RuntimeException if {@code other} uses TC or if it uses {@link NTuple4#WEIGHT_INT16} and
+	 * 			{@code shareWeights} is true
+	 *
+	 * @see TDNTuple4Agt#trainAgentParallel(int, java.util.function.Supplier)
+	 * @see NTuple4Base#trainAgentReplicas(int, java.util.function.Supplier)
+	 */
+	NTuple4ValueFunc(NTuple4ValueFunc other, NTuple4Agt parent, boolean shareWeights) throws RuntimeException {
+		if (other.getTc())
+			throw new RuntimeException("[NTuple4ValueFunc] Cannot copy a value function with TC for parallel training");
+		if (shareWeights && other.getWeightType()==NTuple4.WEIGHT_INT16)
+			throw new RuntimeException("[NTuple4ValueFunc] Cannot share int16 weights in parallel training");
+		if (other.isMapped())
+			throw new RuntimeException("[NTuple4ValueFunc] Weights are memory-mapped, call unmapWeights() first");
+		if (other.getWeightType()==NTuple4.WEIGHT_SPARSE)
+			throw new RuntimeException("[NTuple4ValueFunc] Parallel training is not supported with sparse LUTs");
+		this.xnf = other.xnf;
+		this.numPlayers = other.numPlayers;
+		this.numOutputs = other.numOutputs;
+		this.numTuples = other.numTuples;
+		this.eList = newEligLists(this.numPlayers);
+		this.tdAgt = parent;
+		this.bUseActionMap = other.bUseActionMap;
+		this.actionMap = other.actionMap;
+		this.ALPHA = other.ALPHA;
+		this.m_AlphaChangeRatio = other.m_AlphaChangeRatio;
+		this.epochMax = other.epochMax;
+		this.horizon = other.horizon;
+		this.flatLut = (shareWeights || other.flatLut==null) ? other.flatLut : cloneFlatLut(other.flatLut);
+		this.symPerm = other.symPerm;
+		this.nTuples = new NTuple4[numOutputs][numPlayers][numTuples];
+		for (int o=0; o<numOutputs; o++)
+			for (int k=0; k<numPlayers; k++)
+				for (int i = 0; i < numTuples; i++) {
+					this.nTuples[o][k][i] = new NTuple4(other.nTuples[o][k][i]);
+					if (!shareWeights) this.nTuples[o][k][i].setOwnWeights(flatLut);
+				}
+	}
+
+	private static Object cloneFlatLut(Object flatLut) {
+		if (flatLut instanceof float[] f) return f.clone();
+		if (flatLut instanceof short[] sh) return sh.clone();
+		return ((double[]) flatLut).clone();
+	}
+
 	void initNTuples(int[][] nTuplesI, int[] posVals, boolean randInitWeights,
 			ParNT ntPar, int numCells) {
 		assert (numOutputs!=0) : "initNTuples: numOutputs is 0!";
@@ -158,15 +230,37 @@ public class NTuple4ValueFunc implements Serializable {
 				int v = nTuplesI[i][j];
 				assert (v>=0 && v<numCells) : "Invalid cell number "+v+" in n-tuple no. "+i;
 			}
+		}
+
+		// lutBase[o][k][i] is the offset of n-tuple (o,k,i) in the flat weight store (only if ntPar.getFlatLut())
+		int[][][] lutBase = null;
+		if (ntPar.getFlatLut() && ntPar.getWeightType()!=NTuple4.WEIGHT_SPARSE) {
+			lutBase = new int[numOutputs][numPlayers][numTuples];
+			long total = 0;
+			for (int o=0; o<numOutputs; o++)
+				for (int k=0; k<numPlayers; k++)
+					for (int i = 0; i < numTuples; i++) {
+						lutBase[o][k][i] = (int) total;
+						total += NTuple4.lutLength(nTuplesI[i], posVals);
+					}
+			if (total > Integer.MAX_VALUE - 8)
+				throw new RuntimeException("[NTuple4ValueFunc] Too many weights ("+total+") for a flat weight store");
+			flatLut = newFlatLut(ntPar.getWeightType(), (int) total);
+		}
+
+		for (int i = 0; i < numTuples; i++) {
 			for (int o=0; o<numOutputs; o++) {
 				for (int k=0; k<numPlayers; k++) {
-					this.nTuples[o][k][i] = new NTuple4(nTuplesI[i], posVals, ntPar);
+					this.nTuples[o][k][i] = (flatLut==null)
+							? new NTuple4(nTuplesI[i], posVals, ntPar)
+							: new NTuple4(nTuplesI[i], posVals, ntPar, flatLut, lutBase[o][k][i]);
 					if (randInitWeights) {
 						this.nTuples[o][k][i].initWeights(true);
 					}				
 				}				
 			}
 		}
+		initSymmetryPermutations();
 	}
 
 	/**
@@ -185,8 +279,7 @@ public class NTuple4ValueFunc implements Serializable {
 	}
 
 	public boolean instantiateAfterLoading() {
-		this.eList = new LinkedList[this.numPlayers];
-		for (int ie=0; ie<eList.length; ie++) eList[ie] = new LinkedList<>();
+		this.eList = newEligLists(this.numPlayers);
 		for (int i = 0; i < numTuples; i++) {
 			for (int o=0; o<numOutputs; o++) {
 				for (int k=0; k<numPlayers; k++) {
@@ -194,6 +287,7 @@ public class NTuple4ValueFunc implements Serializable {
 				}				
 			}
 		}
+		initSymmetryPermutations();
 		return true;
 	}
 	
@@ -209,10 +303,157 @@ public class NTuple4ValueFunc implements Serializable {
 		return list;
 	}
 
+	private static Object newFlatLut(int weightType, int length) {
+		return switch (weightType) {
+			case NTuple4.WEIGHT_FLOAT -> new float[length];
+			case NTuple4.WEIGHT_INT16 -> new short[length];
+			default -> new double[length];
+		};
+	}
+
+	/**
+	 * @return the flat weight store holding all LUTs ({@code double[]}, {@code float[]} or {@code short[]}) or
+	 * 			{@code null}, if each n-tuple has its own LUT (see {@link ParNT#getFlatLut()})
+	 */
+	public Object getFlatLut() {
+		return flatLut;
+	}
+
+	/**
+	 * Detach the flat weight store (if any) from this value function, e.g. to serialize the value function without
+	 * its weights (see {@link NTuple4WeightFile}). The n-tuples keep their reference to the store.
+	 *
+	 * @return the detached flat weight store or {@code null}
+	 */
+	Object detachFlatLut() {
+		Object f = flatLut;
+		flatLut = null;
+		return f;
+	}
+
+	void setFlatLut(Object flatLut) {
+		this.flatLut = flatLut;
+	}
+
+	/**
+	 * @return  res[0]: number of LUT entries which occupy memory, res[1]: theoretical number of LUT entries,
+	 * 			res[2]: number of entries evicted from sparse LUTs (all summed over n-tuples). For dense LUTs,
+	 * 			res[0]==res[1].
+	 *
+	 * @see NTuple4#WEIGHT_SPARSE
+	 */
+	public long[] getLutOccupancy() {
+		long[] res = new long[3];
+		for (NTuple4 nt : getNTuples()) {
+			res[0] += nt.getNumOccupied();
+			res[1] += nt.getLutSize();
+			if (nt.getSparseLut()!=null) res[2] += nt.getSparseLut().getNumEvicted();
+		}
+		return res;
+	}
+
+	/**
+	 * @return true, if the weights are read from a memory-mapped weight file (see {@link NTuple4WeightFile})
+	 */
+	public boolean isMapped() {
+		return nTuples[0][0][0].isMapped();
+	}
+
+	/**
+	 * Copy memory-mapped weights (see {@link NTuple4WeightFile#load(String)}) into a new flat weight store on the
+	 * heap, so that the agent can be trained further. Nothing happens if the weights are not memory-mapped.
+	 */
+	public void unmapWeights() {
+		if (!isMapped()) return;
+		long total = 0;
+		for (NTuple4 nt : getNTuples()) total = Math.max(total, (long) nt.getLutBase()+nt.getLutLength());
+		if (total > Integer.MAX_VALUE - 8)
+			throw new RuntimeException("[NTuple4ValueFunc] Too many weights ("+total+") for a flat weight store");
+		Object f = newFlatLut(getWeightType(), (int) total);
+		for (NTuple4 nt : getNTuples()) nt.unmapWeights(f);
+		flatLut = f;
+	}
+
+	/**
+	 * Memory-mapped weights are not part of the serialized object. Therefore, they are copied to the heap before a
+	 * value function with memory-mapped weights is serialized (e.g. when converting a weight file to
+	 * {@code .agt.zip}).
+	 */
+	@Serial
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		unmapWeights();
+		out.defaultWriteObject();
+	}
+
+	/**
+	 * @return the weight type of all LUTs, one of {@link NTuple4#WEIGHT_DOUBLE}, {@link NTuple4#WEIGHT_FLOAT},
+	 * 			{@link NTuple4#WEIGHT_INT16}
+	 */
+	public int getWeightType() {
+		return nTuples[0][0][0].getWeightType();
+	}
+
+	/**
+	 * Convert all LUTs to weight type {@code weightType}, keeping the weights (up to the precision of
+	 * {@code weightType}). A flat weight store remains a flat weight store, unless converted to sparse LUTs (sparse
+	 * LUTs converted back to a dense type get an own LUT per n-tuple). Used to convert existing agents to
+	 * reduced precision or to sparse LUTs (see {@link NTuple4Base#convertWeightType(int)}).
+	 *
+	 * @param weightType one of {@link NTuple4#WEIGHT_DOUBLE}, {@link NTuple4#WEIGHT_FLOAT}, {@link NTuple4#WEIGHT_INT16},
+	 * 					{@link NTuple4#WEIGHT_SPARSE}
+	 * @param sparseCap	 maximum number of entries per sparse LUT (0: no cap), only relevant for
+	 * 					{@link NTuple4#WEIGHT_SPARSE}
+	 */
+	public void convertWeightType(int weightType, int sparseCap) {
+		if (weightType==NTuple4.WEIGHT_SPARSE) {
+			flatLut = null;
+		} else if (flatLut!=null) {
+			int total = 0;
+			for (NTuple4 nt : getNTuples()) total += nt.getLutLength();
+			flatLut = newFlatLut(weightType, total);
+		}
+		for (NTuple4 nt : getNTuples())
+			nt.convertWeightType(weightType, flatLut, sparseCap);
+	}
+
 	public void finishUpdateWeights() {
 		ALPHA = ALPHA * m_AlphaChangeRatio;
 	}
 
+	/**
+	 * Copy all weights of {@code other} into this value function. {@code other} has to have the same n-tuples and
+	 * weight type, e.g. it is the master of a replica (see {@link #NTuple4ValueFunc(NTuple4ValueFunc, NTuple4Agt,
+	 * boolean)}).
+	 */
+	void copyWeightsFrom(NTuple4ValueFunc other) {
+		if (flatLut!=null && other.flatLut!=null) {
+			System.arraycopy(other.flatLut, 0, flatLut, 0, Array.getLength(flatLut));
+			return;
+		}
+		for (int o=0; o<numOutputs; o++)
+			for (int k=0; k<numPlayers; k++)
+				for (int i = 0; i < numTuples; i++)
+					nTuples[o][k][i].copyWeightsFrom(other.nTuples[o][k][i]);
+	}
+
+	/**
+	 * Merge the weights of the independently trained {@code replicas} of this value function into this value
+	 * function (see {@link NTuple4#mergeWeights(NTuple4[], boolean)}).
+	 *
+	 * @param replicas	the replicas, which all started from the current weights of this value function
+	 * @param deltaSum	if true, add the sum of the replicas' weight changes, else set the weights to the replicas'
+	 *                  average
+	 */
+	void mergeReplicas(NTuple4ValueFunc[] replicas, boolean deltaSum) {
+		NTuple4[] rTuples = new NTuple4[replicas.length];
+		for (int o=0; o<numOutputs; o++)
+			for (int k=0; k<numPlayers; k++)
+				for (int i = 0; i < numTuples; i++) {
+					for (int r=0; r<replicas.length; r++) rTuples[r] = replicas[r].nTuples[o][k][i];
+					nTuples[o][k][i].mergeWeights(rTuples, deltaSum);
+				}
+	}
+
 	/**
 	 * Get the action-value function Q for action {@code act} and state {@code board} in 
 	 * int[]-representation. {@code act} determines which output cell {@code o} of the 
@@ -229,11 +470,16 @@ public class NTuple4ValueFunc implements Serializable {
 	public double getQFunc(StateObsWithBoardVector curSOWB, int player, ACTIONS act) {
 		int i, j;
 		double score = 0.0;
-		BoardVector[] equiv;
+		BoardVector[] equiv = null;
+		int[] bvec = curSOWB.getBoardVector().bvec;
 		int[] equivAction;
 
-		// Get equivalent boards (including self)
-		equiv = getSymBoards2(curSOWB, getUSESYMMETRY(), getNSym());
+		// Get equivalent boards (including self), if they cannot be evaluated via symPerm
+		int nEquiv = getNumSymPerm(getUSESYMMETRY(), getNSym());
+		if (nEquiv==0) {
+			equiv = getSymBoards2(curSOWB, getUSESYMMETRY(), getNSym());
+			nEquiv = equiv.length;
+		}
 		equivAction = xnf.symmetryActions(act.toInt());
 
 		if (equivAction.length==0) throw new RuntimeException( "[getQFunc] Error: equivAction has length 0");
@@ -246,8 +492,8 @@ public class NTuple4ValueFunc implements Serializable {
 			}
 
 			for (i = 0; i < numTuples; i++) {
-				for (j = 0; j < equiv.length; j++) {
-					score += nTuples[actionMap.get(new ACTIONS(equivAction[j])) ][player][i].getScore(equiv[j].bvec);
+				for (j = 0; j < nEquiv; j++) {
+					score += getScore(nTuples[actionMap.get(new ACTIONS(equivAction[j])) ][player][i], equiv, bvec, j);
 				}
 			}
 		} else {  // i.e. if !bUseActionMap:
@@ -259,8 +505,8 @@ public class NTuple4ValueFunc implements Serializable {
 			}
 
 			for (i = 0; i < numTuples; i++) {
-				for (j = 0; j < equiv.length; j++) {
-					score += nTuples[equivAction[j]][player][i].getScore(equiv[j].bvec);
+				for (j = 0; j < nEquiv; j++) {
+					score += getScore(nTuples[equivAction[j]][player][i], equiv, bvec, j);
 				}
 			}
 		}
@@ -281,18 +527,23 @@ public class NTuple4ValueFunc implements Serializable {
 		boolean USE_SYM_IN_SCORE = true;
 		int i, j;
 		double score = 0.0; 
-		BoardVector[] equiv;
+		BoardVector[] equiv = null;
+		int[] bvec = curSOWB.getBoardVector().bvec;
 
 		//if (curSOWB.getStateObservation() instanceof StateObserverCube) USE_SYM_IN_SCORE=false;
 		boolean usesym = USE_SYM_IN_SCORE && getUSESYMMETRY();
 
-		// Get equivalent boards (including self)
-		equiv = getSymBoards2(curSOWB, usesym, getNSym());
+		// Get equivalent boards (including self), if they cannot be evaluated via symPerm
+		int nEquiv = getNumSymPerm(usesym, getNSym());
+		if (nEquiv==0) {
+			equiv = getSymBoards2(curSOWB, usesym, getNSym());
+			nEquiv = equiv.length;
+		}
 
 		for (i = 0; i < numTuples; i++) {
-			for (j = 0; j < equiv.length; j++) {
+			for (j = 0; j < nEquiv; j++) {
 				//System.out.println("g(i,j)=("+i+","+j+"):  ");		//debug
-				score += nTuples[0][player][i].getScore(equiv[j].bvec);
+				score += getScore(nTuples[0][player][i], equiv, bvec, j);
 			}
 		}
 		//if (getUSESYMMETRY()) score /= equiv.length; // DON'T, at least for TTT clearly inferior
@@ -301,6 +552,42 @@ public class NTuple4ValueFunc implements Serializable {
 		return (hasSigmoid() ? Math.tanh(score) : score);
 	}
 
+	/**
+	 * Fetch the symmetry permutation tables from {@link XNTupleFuncs#symmetryPermutations()} (if available) and
+	 * pass them to all n-tuples. Then the symmetric boards need not be constructed in {@link #getScoreI},
+	 * {@link #getQFunc} and {@link #update}, the n-tuples calculate their LUT indices directly from the
+	 * original board.
+	 */
+	private void initSymmetryPermutations() {
+		symPerm = xnf.symmetryPermutations();
+		if (symPerm!=null && symPerm.length!=xnf.getNumSymmetries()) symPerm = null;
+		if (symPerm!=null) {
+			for (int i = 0; i < numTuples; i++)
+				for (int o=0; o<numOutputs; o++)
+					for (int k=0; k<numPlayers; k++)
+						this.nTuples[o][k][i].setSymmetryPermutations(symPerm);
+		}
+	}
+
+	/**
+	 * @return the number of symmetric boards which are evaluated via {@code symPerm} or 0, if the symmetric
+	 * 		boards have to be constructed with {@link #getSymBoards2(StateObsWithBoardVector, boolean, int)}. The
+	 * 		latter is the case if no permutation tables are available or if only a subset of the symmetries
+	 * 		shall be used ({@literal 0 < nSym < s}).
+	 */
+	private int getNumSymPerm(boolean useSymmetry, int nSym) {
+		if (symPerm==null || !useSymmetry) return 0;
+		return (nSym==0 || nSym==symPerm.length) ? symPerm.length : 0;
+	}
+
+	/**
+	 * @return the score of n-tuple {@code nt} for the j-th equivalent board, either {@code equiv[j]} or (if
+	 * 		{@code equiv==null}) the j-th symmetric board of {@code bvec} via {@code symPerm}
+	 */
+	private static double getScore(NTuple4 nt, BoardVector[] equiv, int[] bvec, int j) {
+		return (equiv==null) ? nt.getScore(bvec,j) : nt.getScore(equiv[j].bvec);
+	}
+
 	/**
 	 * Get the equivalent positions to one board. The first one 
 	 * is the board itself. The other can be generated
@@ -618,54 +905,50 @@ public class NTuple4ValueFunc implements Serializable {
 		int i, j, out;
 		double alphaM, lamFactor;
 
-		// Get equivalent boards (including self) and corresponding actions
-		BoardVector[] equiv = getSymBoards2(curSOWB, getUSESYMMETRY(), getNSym());
+		// Get equivalent boards (including self), if they cannot be evaluated via symPerm, and corresponding actions
+		BoardVector[] equiv = null;
+		int[] bvec = curSOWB.getBoardVector().bvec;
+		int nEquiv = getNumSymPerm(getUSESYMMETRY(), getNSym());
+		if (nEquiv==0) {
+			equiv = getSymBoards2(curSOWB, getUSESYMMETRY(), getNSym());
+			nEquiv = equiv.length;
+		}
 		int[] equivAction = (QMODE ? getSymActions(output, getUSESYMMETRY()) : null); 
 		// equivAction only needed for QMODE==true
 
-		alphaM = ALPHA / (numTuples*equiv.length); 
+		alphaM = ALPHA / (numTuples*nEquiv); 
 
-		// construct new EligStates object, add it at head of LinkedList eList[ie] and remove 
-		// from the list the element 'beyond horizon' t_0 = t-horizon (if any).
-		// The LinkedList to use is either always the same one (ie=0, if ELIST_PP==false) or 
-		// the list kept for each specific player 'player' (if ELIST_PP==true):
+		// store the LUT indices of the current state at the head of the ring buffer eList[ie], overwriting the
+		// element 'beyond horizon' t_0 = t-horizon (if any).
+		// The ring buffer to use is either always the same one (ie=0, if ELIST_PP==false) or
+		// the buffer kept for each specific player 'player' (if ELIST_PP==true):
 		int ie = (ELIST_PP ? player : 0);
-		EligStates elem = new EligStates(equiv,equivAction,e);
-		eList[ie].addFirst(elem);
 		assert (horizon>0) : "[NTuple4ValueFunc.update] Error: horizon is 0 !";
-		if (eList[ie].size()>horizon) eList[ie].pollLast();
-		
-		// iterate over all list elements in horizon  (at most h+1 elements from t down to t_0):
-		ListIterator<EligStates> iter = eList[ie].listIterator();		
-		lamFactor=1;  // holds 1, LAMBDA, LAMBDA^2,... in successive passes through while-loop
-		while(iter.hasNext()) {
-			elem=iter.next();
-			equiv=elem.equiv;
-			equivAction=elem.equivAction;
-//			printEquivs(equiv,equivAction);		// debug (TTT only)
-			//System.out.println(eList[ie].size()+" "+lamFactor+"   ["+ equiv[0]+"]");	// debug
+		EligRing ring = eList[ie];
+		ring.add(horizon, equiv, bvec, nEquiv, equivAction, e);
+
+		int o = output;
+		if (bUseActionMap) {
+			if (actionMap.get(new ACTIONS(output))==null) throw new RuntimeException(
+					"[update] action with index "+output+" is not in actionMap !!!");
+			o = actionMap.get(new ACTIONS(output));
+		}
+
+		// iterate over all elements in horizon  (at most h elements from t down to t_0):
+		lamFactor=1;  // holds 1, LAMBDA, LAMBDA^2,... in successive passes through the loop
+		for (int m=0; m<ring.count; m++) {
+			int s = ring.slot(m);
+			long[] idx = ring.idx[s];
+			int[] act = ring.action[s];
+			nEquiv = ring.nEquiv[s];
 			assert (lamFactor >= tdAgt.getParTD().getHorizonCut()) 
 					: "Error: lamFactor < ParTD.getHorizonCut";
-			e = lamFactor*elem.sigDeriv;
+			e = lamFactor*ring.sigDeriv[s];
 			for (i = 0; i < numTuples; i++) {
-				if (bUseActionMap) {
-					nTuples[ actionMap.get(new ACTIONS(output)) ][player][i].clearIndices();
-				} else {
-					nTuples[output][player][i].clearIndices();
-				}
-				for (j = 0; j < equiv.length; j++) {
-					// this assertion is only valid for TicTacToe, where each action should be 
-					// on an empty field which is coded as '1' here:
-					//assert (equiv[j][equivAction[j]]==1) : "Oops, action TicTacToe not viable";
-					
-					out = (QMODE ? equivAction[j] : output);
-					if (bUseActionMap) {
-						if (actionMap.get(new ACTIONS(out))==null) throw new RuntimeException(
-								"[update] action with index "+out+" is not in actionMap !!!");
-						out = actionMap.get(new ACTIONS(out));
-					}
-//					System.out.print("(i,j)=("+i+","+j+"):  ");		//debug
-					nTuples[out][player][i].updateNew(equiv[j].bvec, alphaM, delta, e);
+				nTuples[o][player][i].clearIndices();
+				for (j = 0; j < nEquiv; j++) {
+					out = (QMODE ? act[j] : o);
+					nTuples[out][player][i].updateIndex(idx[i*nEquiv+j], alphaM, delta, e);
 				}
 			}
 			lamFactor *= getLambda(); 
@@ -774,10 +1057,22 @@ public class NTuple4ValueFunc implements Serializable {
 		this.numLearnActions = 0L;
 	}
 
+	// needed to collect the learn actions of training threads and replicas (see TDNTuple4Agt.trainAgentParallel,
+	// NTuple4Base.trainAgentReplicas)
+	void addNumLearnActions(long num) {
+		this.numLearnActions += num;
+	}
+
 
 	public void clearEligList() {
-		for (LinkedList<EligStates> eligStates : eList)
-			eligStates.clear();
+		for (EligRing ring : eList)
+			ring.clear();
+	}
+
+	private EligRing[] newEligLists(int num) {
+		EligRing[] lists = new EligRing[num];
+		for (int ie=0; ie<num; ie++) lists[ie] = new EligRing();
+		return lists;
 	}
 	
 	public void clearEligList(NTuple4Agt.EligType m_elig) {
@@ -792,16 +1087,208 @@ public class NTuple4ValueFunc implements Serializable {
 	}
 
 	
-	// class EligStates is needed in update(int[],int,int,double,double,boolean)
-	private class EligStates implements Serializable {
-		BoardVector[] equiv;
-		int[] equivAction;
-		double sigDeriv;
-		
-		EligStates(BoardVector[] equiv, int[] equivAction, double sigDeriv) {
-			this.equiv=equiv.clone();
-			this.equivAction=(equivAction==null ? null : equivAction.clone());
-			this.sigDeriv=sigDeriv;
+	/**
+	 * Create an object for the delta evaluation of states that are reached from {@code refSO} by one move (or a
+	 * few moves), see {@link DeltaEval}.
+	 *
+	 * @param refSO	the reference state, e.g. the state for which all afterstates are evaluated in
+	 * 				{@link TDNTuple4Agt#getNextAction2(StateObservation, boolean, boolean)}
+	 * @return the {@link DeltaEval} object or {@code null}, if delta evaluation is not possible (symmetries are
+	 * 		used, but not via permutation tables, see {@link XNTupleFuncs#symmetryPermutations()})
+	 */
+	public DeltaEval newDeltaEval(StateObservation refSO) {
+		boolean usesym = getUSESYMMETRY();
+		int nEquiv = getNumSymPerm(usesym, getNSym());
+		if (usesym && nEquiv==0) return null;
+		if (!usesym) nEquiv = 1;
+		int[] bvec0 = xnf.getBoardVector(refSO).bvec;
+		if (bvec0.length!=xnf.getNumCells()) return null;
+		if (deltaSlot==null || deltaNEquiv!=nEquiv) buildDeltaTables(nEquiv);
+		return new DeltaEval(bvec0, nEquiv);
+	}
+
+	/**
+	 * Build the tables {@code deltaSlot, deltaQ} which hold for each board cell c the index vector slots
+	 * (n-tuple i, symmetric board j) that read cell c and the factor of cell c in the LUT index of this slot.
+	 * If the value of cell c changes by d, the index in slot {@code deltaSlot[c][m]} changes by
+	 * {@code d*deltaQ[c][m]}.
+	 *
+	 * @param nEquiv	number of equivalent boards (1, if no symmetries are used)
+	 */
+	private synchronized void buildDeltaTables(int nEquiv) {
+		int numCells = xnf.getNumCells();
+		int[] count = new int[numCells];
+		int[][] perm = (nEquiv==1) ? null : symPerm;
+		int[][] dSlot = null;
+		long[][] dQ = null;
+		for (int pass=0; pass<2; pass++) {
+			// pass 0: count the slots per cell, pass 1: fill the tables
+			if (pass==1) {
+				dSlot = new int[numCells][];
+				dQ = new long[numCells][];
+				for (int c=0; c<numCells; c++) {
+					dSlot[c] = new int[count[c]];
+					dQ[c] = new long[count[c]];
+					count[c] = 0;
+				}
+			}
+			for (int i=0; i<numTuples; i++) {
+				NTuple4 nt = nTuples[0][0][i];
+				for (int j=0; j<nEquiv; j++) {
+					long Q=1;
+					for (int p=0; p<nt.getLength(); p++) {
+						int cell = nt.getPosition(p);
+						int c = (perm==null) ? cell : perm[j][cell];
+						if (pass==1) {
+							dSlot[c][count[c]] = i*nEquiv+j;
+							dQ[c][count[c]] = Q;
+						}
+						count[c]++;
+						Q *= nt.getPosVals(cell);
+					}
+				}
+			}
+		}
+		deltaQ = dQ;
+		deltaNEquiv = nEquiv;
+		deltaSlot = dSlot;
+	}
+
+	/**
+	 * Delta evaluation of states which differ from a reference state only in a few board cells (e.g. the
+	 * afterstates of all moves in a certain state). The LUT indices of all n-tuples and symmetric boards (the
+	 * <em>index vector</em>) of the reference state are calculated once. For each evaluated state, only the
+	 * board cells that differ from the reference state are inspected and only the indices of the n-tuples
+	 * touching these cells (per symmetry) are updated.
+	 * <p>
+	 * The result of {@link #getScoreI(StateObsWithBoardVector, int)} is identical to
+	 * {@link NTuple4ValueFunc#getScoreI(StateObsWithBoardVector, int)}.
+	 * <p>
+	 * A {@link DeltaEval} object is only valid as long as the n-tuple parameters (symmetries) are not changed.
+	 */
+	public class DeltaEval {
+		private final int[] bvec0;		// board vector of the reference state
+		private final long[] idx0;		// index vector of the reference state: idx0[i*nEquiv+j]
+		private final long[] idx;		// index vector of the evaluated state (re-used)
+		private final int nEquiv;
+		private final int[][] slot = deltaSlot;
+		private final long[][] q = deltaQ;
+
+		DeltaEval(int[] bvec0, int nEquiv) {
+			this.bvec0 = bvec0;
+			this.nEquiv = nEquiv;
+			this.idx0 = new long[numTuples*nEquiv];
+			this.idx = new long[numTuples*nEquiv];
+			for (int i=0; i<numTuples; i++) {
+				NTuple4 nt = nTuples[0][0][i];
+				for (int j=0; j<nEquiv; j++) {
+					long Q=1, index=0;
+					for (int p=0; p<nt.getLength(); p++) {
+						int cell = nt.getPosition(p);
+						index += Q * bvec0[(nEquiv==1) ? cell : symPerm[j][cell]];
+						Q *= nt.getPosVals(cell);
+					}
+					idx0[i*nEquiv+j] = index;
+				}
+			}
+		}
+
+		/**
+		 * @param curSOWB	the state to evaluate
+		 * @param player	the player who has to move on {@code board} (0, ..., N-1)
+		 * @return	V, the same as {@link NTuple4ValueFunc#getScoreI(StateObsWithBoardVector, int)}
+		 */
+		public double getScoreI(StateObsWithBoardVector curSOWB, int player) {
+			int[] bvec = curSOWB.getBoardVector().bvec;
+			if (bvec.length!=bvec0.length)
+				return NTuple4ValueFunc.this.getScoreI(curSOWB, player);
+			System.arraycopy(idx0, 0, idx, 0, idx.length);
+			for (int c=0; c<bvec.length; c++) {
+				int d = bvec[c] - bvec0[c];
+				if (d!=0) {
+					int[] sc = slot[c];
+					long[] qc = q[c];
+					for (int m=0; m<sc.length; m++)
+						idx[sc[m]] += d * qc[m];
+				}
+			}
+
+			double score = 0.0;
+			for (int i=0, k=0; i<numTuples; i++) {
+				NTuple4 nt = nTuples[0][player][i];
+				for (int j=0; j<nEquiv; j++, k++)
+					score += nt.getWeight(idx[k]);
+			}
+			return (hasSigmoid() ? Math.tanh(score) : score);
+		}
+	}
+
+	/**
+	 * The eligibility traces for {@link #update(StateObsWithBoardVector, int, int, double, double, boolean, boolean)}:
+	 * a ring buffer which holds for the last {@code horizon} states the LUT indices of all n-tuples and all
+	 * equivalent boards (calculated once, when the state is added). Its slots are allocated once and re-used, so
+	 * that a learn step does not allocate and does not re-derive the symmetric boards of older states.
+	 */
+	class EligRing {
+		long[][] idx = new long[0][];	// idx[s][i*nEquiv+j]: LUT index of n-tuple i for equivalent board j
+		int[][] action = new int[0][];	// action[s][j]: output for equivalent board j (only if QMODE)
+		int[] nEquiv = new int[0];		// number of equivalent boards
+		double[] sigDeriv = new double[0];
+		int head = -1;					// the slot of the newest element
+		int count = 0;					// the number of elements (at most horizon)
+
+		/**
+		 * @param m		the age of an element (0: newest, count-1: oldest)
+		 * @return the slot of this element
+		 */
+		int slot(int m) {
+			int s = head - m;
+			return (s<0) ? s+idx.length : s;
+		}
+
+		/**
+		 * Add a new element as newest element, overwriting the oldest one, if the buffer has already
+		 * {@code horizon} elements. If {@code horizon} has changed, the buffer is cleared.
+		 */
+		void add(int horizon, BoardVector[] equiv, int[] bvec, int nEq, int[] equivAction, double sigDeriv) {
+			if (idx.length!=horizon) {
+				idx = new long[horizon][];
+				action = new int[horizon][];
+				nEquiv = new int[horizon];
+				this.sigDeriv = new double[horizon];
+				head = -1;
+				count = 0;
+			}
+			head = (head+1==horizon) ? 0 : head+1;
+			if (count<horizon) count++;
+
+			int s = head;
+			if (idx[s]==null || idx[s].length<numTuples*nEq) idx[s] = new long[numTuples*nEq];
+			long[] ix = idx[s];
+			for (int i=0; i<numTuples; i++) {
+				NTuple4 nt = nTuples[0][0][i];		// all outputs and players share the n-tuple positions
+				for (int j=0; j<nEq; j++)
+					ix[i*nEq+j] = (equiv==null) ? nt.getIndex(bvec,j) : nt.getIndex(equiv[j].bvec);
+			}
+			if (equivAction!=null) {
+				if (action[s]==null || action[s].length<nEq) action[s] = new int[nEq];
+				for (int j=0; j<nEq; j++) {
+					int out = equivAction[j];
+					if (bUseActionMap) {
+						if (actionMap.get(new ACTIONS(out))==null) throw new RuntimeException(
+								"[update] action with index "+out+" is not in actionMap !!!");
+						out = actionMap.get(new ACTIONS(out));
+					}
+					action[s][j] = out;
+				}
+			}
+			nEquiv[s] = nEq;
+			this.sigDeriv[s] = sigDeriv;
+		}
+
+		void clear() {
+			head = -1;
+			count = 0;
 		}
 	}
 
@@ -935,18 +1422,19 @@ public class NTuple4ValueFunc implements Serializable {
 														// res[2]: quantiles of tcdat;
 		System.arraycopy(per, 0, res[0], 0, per.length);
 		
-		int count = 0;
+		long count = 0;			// theoretical number of LUT entries
+		long occupied = 0;		// number of LUT entries which occupy memory (less than count for sparse LUTs)
 		NTuple4[] ntuples = this.getNTuples();
 		for (NTuple4 ntuple : ntuples) {
-			count += ntuple.getLutLength();
+			count += ntuple.getLutSize();
+			occupied += ntuple.getNumOccupied();
 		}
 		
 		// data is an array big enough to hold all LUT data. It will be filled below with all 
 		// active LUT weights (i.e. LUT  != 0.0). This distinction between active and 
 		// inactive weights works of course only, if LUTs are initialized with 0.0.
-		double[] data = new double[count];		
-		double[] tcdat = new double[count];
-		double[] lut;
+		double[] data = new double[(int) occupied];
+		double[] tcdat = new double[(int) occupied];
 		double[] tcf=null;
 		int i, pos=0;
 		
@@ -963,13 +1451,22 @@ public class NTuple4ValueFunc implements Serializable {
 
 		// --- this is slower, but quantiles for active weights are more meaningful
 		// --- and not always 0.0 (!)
+		// (we access the weights via getWeight(j) and not via getWeights(), because the latter would create a copy
+		// of each LUT in case of a flat weight store)
 		for (i=0; i<ntuples.length; i++) {
-			lut = ntuples[i].getWeights();
+			SparseLut h = ntuples[i].getSparseLut();
+			if (h!=null) {		// sparse LUT: only the occupied entries can be active
+				for (int s=0; s<h.tableLength(); s++)
+					if (h.keyAt(s)>=0 && h.valAt(s)!=0) data[pos++] = h.valAt(s);
+				continue;
+			}
+			int len = ntuples[i].getLutLength();
 			tcf = ntuples[i].getTcFactorArray();
-			for (int j=0; j<lut.length; j++) {
-				if (lut[j]!=0) {
+			for (int j=0; j<len; j++) {
+				double w = ntuples[i].getWeight(j);
+				if (w!=0) {
 					 if (tcf!=null) tcdat[pos] = tcf[j];
-					data[pos++] = lut[j];
+					data[pos++] = w;
 				}
 			}
 		}
@@ -1013,6 +1510,11 @@ public class NTuple4ValueFunc implements Serializable {
 		df.applyPattern("+0.0000000;-0.0000000");  
 		System.out.println("[NTuple4ValueFunc.weightAnalysis] " + tdAgt.getClass().getSimpleName() + " ("
 				+count+" weights, "+nActive+" active ("+pActive+"%)): ");
+		if (getWeightType()==NTuple4.WEIGHT_SPARSE) {
+			long[] occ = getLutOccupancy();
+			System.out.println("   sparse LUTs: "+occ[0]+" of "+occ[1]+" entries occupied ("
+					+String.format(Locale.UK, "%.4f", 100.0*occ[0]/occ[1])+"%), "+occ[2]+" evicted");
+		}
 		//if (tcf==null) System.out.println("WARNING: tcFactorArray is null");
 		System.out.print("             per       LUT    ");
 		System.out.println((tcf==null) ? "" : " / tcFactor");
@@ -1038,19 +1540,24 @@ public class NTuple4ValueFunc implements Serializable {
 	 * @return  res[0]: number of weights, res[1]: number of active weights
 	 */
 	public int[] activeWeights() {
-		int count = 0;
+		long count = 0;
 		NTuple4[] ntuples = this.getNTuples();
-		double[] lut;
 		int i, pos;
 		
 		for (i=0; i<ntuples.length; i++) {
-			count += ntuples[i].getLutLength();
+			count += ntuples[i].getLutSize();
 		}
 		
 		for (i=0,pos=0; i<ntuples.length; i++) {
-			lut = ntuples[i].getWeights();
-			for (double v : lut) {
-				if (v != 0) {
+			SparseLut h = ntuples[i].getSparseLut();
+			if (h!=null) {
+				for (int s=0; s<h.tableLength(); s++)
+					if (h.keyAt(s)>=0 && h.valAt(s)!=0) pos++;
+				continue;
+			}
+			int len = ntuples[i].getLutLength();
+			for (int j=0; j<len; j++) {
+				if (ntuples[i].getWeight(j) != 0) {
 					pos++;
 				}
 			}
@@ -1061,7 +1568,7 @@ public class NTuple4ValueFunc implements Serializable {
 		System.out.println("[NTuple4ValueFunc.activeWeights] " + tdAgt.getClass().getSimpleName() + " ("
 				+count+" weights, "+nActive+" active ("+pActive+"%)): ");
 		
-		return new int[]{count,nActive};
+		return new int[]{(int) Math.min(count, Integer.MAX_VALUE),nActive};
 	}
 
 	
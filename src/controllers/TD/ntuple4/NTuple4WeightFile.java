@@ -0,0 +1,288 @@
+package controllers.TD.ntuple4;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import agentIO.LoadSaveGBG;
+import controllers.PlayAgent;
+
+/**
+ * Binary weight file for n-tuple agents ({@link NTuple4Base}, that is TD-Ntuple-4, Sarsa-4, QLearn-4) with file
+ * extension {@link #EXT}. In contrast to {@code .agt.zip} (GZIP + Java serialization of the whole agent, see
+ * {@link LoadSaveGBG#saveGBGAgent(PlayAgent, String)}), the weights are stored as one raw block which is
+ * memory-mapped read-only when loading. The weights are used in place for inference, they are neither decompressed
+ * nor copied to the heap. This makes loading of large agents (several 100 MB) much faster and lets several
+ * processes share the same pages of the OS file cache.
+ * <p>
+ * File layout (all numbers little-endian):
+ * <pre>
+ *   long    MAGIC
+ *   int     VERSION
+ *   int     weight type ({@link NTuple4#WEIGHT_DOUBLE}, {@link NTuple4#WEIGHT_FLOAT}, {@link NTuple4#WEIGHT_INT16})
+ *   long    offset of the weight block (multiple of {@link #ALIGN})
+ *   long    number of weights in the weight block
+ *   int     length + UTF-8 bytes: class name of the {@link games.XNTupleFuncs} object (XNTupleFuncs id)
+ *   int     number of n-tuples N, followed for each n-tuple by
+ *           int length L, int[L] board positions, int LUT length, long offset of its LUT in the weight block
+ *   int     length + bytes: the serialized agent without its weights (all parameters, n-tuples, XNTupleFuncs;
+ *           for a wrapped n-tuple agent the whole wrapper, e.g. MCTSWrapperAgent, with its parameters)
+ *           padding up to the offset of the weight block
+ *   ...     weight block: double (8 bytes), float (4 bytes) or short (2 bytes) per weight
+ * </pre>
+ * The n-tuples appear in the order of {@link NTuple4ValueFunc#getNTuples()}. With {@link NTuple4#WEIGHT_INT16},
+ * the fixed point scale of each n-tuple is part of the serialized agent.
+ * <p>
+ * A loaded agent with memory-mapped weights can be used for inference right away. If it is trained further, its
+ * weights are copied to the heap at the start of the first training episode ({@link NTuple4ValueFunc#unmapWeights()}
+ * is called by the {@code trainAgent*} methods of the n-tuple agents). Saving it as {@code .agt.zip} copies its weights to the heap
+ * automatically, so that a conversion in both directions is possible (see {@link starters.GBGBatch}, batch13).
+ * {@link LoadSaveGBG} selects this format by the file extension {@link #EXT}.
+ *
+ * @see NTuple4#isMapped()
+ */
+public class NTuple4WeightFile {
+	public static final String EXT = ".ntw";
+	public static final long MAGIC = 0x31304E5447424721L;	// "!GBGTN01" in little-endian byte order
+	public static final int VERSION = 1;
+	/**
+	 * the weight block starts at a multiple of ALIGN bytes (a cache line), so that the views on it are aligned
+	 */
+	public static final int ALIGN = 64;
+
+	private static final int FIXED_HEADER = 32;
+	private static final int CHUNK = 1 << 20;	// bytes per write of the weight block
+
+	/**
+	 * @param filePath	path of an agent file
+	 * @return true, if {@code filePath} has extension {@link #EXT}
+	 */
+	public static boolean isWeightFile(String filePath) {
+		return filePath!=null && filePath.endsWith(EXT);
+	}
+
+	/**
+	 * Save the n-tuple agent {@code pa} as binary weight file. If {@code pa} is a wrapper around an n-tuple agent,
+	 * the wrapper is saved with it (the weights of the wrapped agent go into the weight block). If the agent has
+	 * memory-mapped weights, they are copied to the heap first.
+	 *
+	 * @param pa		the agent, has to be (or to wrap) an {@link NTuple4Base} agent
+	 * @param filePath	the location on disk
+	 * @throws IOException if {@code pa} is not an n-tuple agent or if writing fails
+	 */
+	public static void save(PlayAgent pa, String filePath) throws IOException {
+		PlayAgent inner = pa;
+		while (inner.isWrapper()) inner = inner.getWrappedPlayAgent();
+		if (!(inner instanceof NTuple4Base ntb))
+			throw new IOException("ERROR: Agent "+pa.getName()+" is not an n-tuple agent (NTuple4Base), cannot save "
+					+"it as "+EXT);
+		NTuple4ValueFunc vf = ntb.getNTupleValueFunc();
+		if (vf.getWeightType()==NTuple4.WEIGHT_SPARSE)
+			throw new IOException("ERROR: Agent "+pa.getName()+" has sparse LUTs, cannot save it as "+EXT);
+		vf.unmapWeights();
+		NTuple4[] nts = vf.getNTuples();
+		int weightType = vf.getWeightType();
+
+		// serialize the agent without its weights (they are detached temporarily)
+		byte[] agentBytes;
+		Object flatLut = vf.detachFlatLut();
+		Object[] weights = new Object[nts.length];
+		try {
+			for (int i=0; i<nts.length; i++) {
+				weights[i] = nts[i].getWeightArray();
+				nts[i].setWeightArray(null);
+			}
+			ByteArrayOutputStream bos = new ByteArrayOutputStream();
+			try (ObjectOutputStream oos = new ObjectOutputStream(bos)) {
+				oos.writeObject(pa);
+			}
+			agentBytes = bos.toByteArray();
+		} finally {
+			for (int i=0; i<nts.length; i++) nts[i].setWeightArray(weights[i]);
+			vf.setFlatLut(flatLut);
+		}
+
+		byte[] xnfName = vf.getXnf().getClass().getName().getBytes(StandardCharsets.UTF_8);
+		long headerLen = FIXED_HEADER + 4 + xnfName.length + 4 + 4 + agentBytes.length;
+		for (NTuple4 nt : nts) headerLen += 4 + 4L*nt.getLength() + 4 + 8;
+		long weightsOffset = (headerLen + ALIGN - 1) / ALIGN * ALIGN;
+		long numWeights = 0;
+		for (NTuple4 nt : nts) numWeights += nt.getLutLength();
+
+		ByteBuffer hdr = ByteBuffer.allocate((int) weightsOffset).order(ByteOrder.LITTLE_ENDIAN);
+		hdr.putLong(MAGIC).putInt(VERSION).putInt(weightType).putLong(weightsOffset).putLong(numWeights);
+		hdr.putInt(xnfName.length).put(xnfName);
+		hdr.putInt(nts.length);
+		long base = 0;
+		for (NTuple4 nt : nts) {
+			hdr.putInt(nt.getLength());
+			for (int j=0; j<nt.getLength(); j++) hdr.putInt(nt.getPosition(j));
+			hdr.putInt(nt.getLutLength()).putLong(base);
+			base += nt.getLutLength();
+		}
+		hdr.putInt(agentBytes.length).put(agentBytes);
+		hdr.position(0);		// the rest is zero padding
+
+		try (FileChannel ch = FileChannel.open(Paths.get(filePath), StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			writeFully(ch, hdr);
+			ByteBuffer buf = ByteBuffer.allocateDirect(CHUNK).order(ByteOrder.LITTLE_ENDIAN);
+			for (NTuple4 nt : nts)
+				writeWeights(ch, buf, nt.getWeightArray(), nt.getLutBase(), nt.getLutLength(), weightType);
+		}
+	}
+
+	/**
+	 * Write {@code len} weights of {@code arr}, starting at {@code off}, in chunks of {@code buf.capacity()} bytes
+	 */
+	private static void writeWeights(FileChannel ch, ByteBuffer buf, Object arr, int off, int len, int weightType)
+			throws IOException {
+		int bytes = bytesPerWeight(weightType);
+		while (len>0) {
+			int n = Math.min(len, buf.capacity()/bytes);
+			buf.clear();
+			switch (weightType) {
+				case NTuple4.WEIGHT_FLOAT -> buf.asFloatBuffer().put((float[]) arr, off, n);
+				case NTuple4.WEIGHT_INT16 -> buf.asShortBuffer().put((short[]) arr, off, n);
+				default -> buf.asDoubleBuffer().put((double[]) arr, off, n);
+			}
+			buf.limit(n*bytes);
+			writeFully(ch, buf);
+			off += n;
+			len -= n;
+		}
+	}
+
+	/**
+	 * Load an n-tuple agent (or a wrapper around it) from a binary weight file. The weights are memory-mapped
+	 * read-only and used in place.
+	 * <p>
+	 * The agent returned is not yet instantiated, that is {@link PlayAgent#instantiateAfterLoading()} still has to
+	 * be called (this is done by {@link LoadSaveGBG#loadGBGAgent(String)}).
+	 *
+	 * @param filePath	the location on disk
+	 * @return the agent with memory-mapped weights (the wrapper, if a wrapped agent was saved)
+	 * @throws IOException if the file is not a valid weight file or if its header does not match the agent stored
+	 * 			in it
+	 */
+	public static PlayAgent load(String filePath) throws IOException {
+		int weightType;
+		int[][] positions;
+		int[] lutLen;
+		long[] lutBase;
+		String xnfName;
+		byte[] agentBytes;
+		Buffer view;
+		try (FileChannel ch = FileChannel.open(Paths.get(filePath), StandardOpenOption.READ)) {
+			ByteBuffer fix = readFully(ch, 0, FIXED_HEADER);
+			if (fix.getLong()!=MAGIC)
+				throw new IOException("ERROR: "+filePath+" is not an n-tuple weight file ("+EXT+")");
+			int version = fix.getInt();
+			if (version!=VERSION)
+				throw new IOException("ERROR: Unsupported version "+version+" of weight file "+filePath);
+			weightType = fix.getInt();
+			long weightsOffset = fix.getLong();
+			long numWeights = fix.getLong();
+			long weightBytes = numWeights*bytesPerWeight(weightType);
+			if (weightsOffset > Integer.MAX_VALUE || weightsOffset+weightBytes > ch.size())
+				throw new IOException("ERROR: Weight file "+filePath+" is truncated or corrupt");
+			if (weightBytes > Integer.MAX_VALUE)
+				throw new IOException("ERROR: Weight block of "+filePath+" is too large ("+weightBytes
+						+" bytes) for a single memory mapping");
+
+			ByteBuffer hdr = readFully(ch, FIXED_HEADER, (int) weightsOffset - FIXED_HEADER);
+			byte[] name = new byte[hdr.getInt()];
+			hdr.get(name);
+			xnfName = new String(name, StandardCharsets.UTF_8);
+			int N = hdr.getInt();
+			positions = new int[N][];
+			lutLen = new int[N];
+			lutBase = new long[N];
+			for (int i=0; i<N; i++) {
+				positions[i] = new int[hdr.getInt()];
+				for (int j=0; j<positions[i].length; j++) positions[i][j] = hdr.getInt();
+				lutLen[i] = hdr.getInt();
+				lutBase[i] = hdr.getLong();
+				if (lutBase[i]+lutLen[i] > numWeights)
+					throw new IOException("ERROR: Weight file "+filePath+" is corrupt (n-tuple "+i+")");
+			}
+			agentBytes = new byte[hdr.getInt()];
+			hdr.get(agentBytes);
+
+			MappedByteBuffer mb = ch.map(FileChannel.MapMode.READ_ONLY, weightsOffset, weightBytes);
+			mb.order(ByteOrder.LITTLE_ENDIAN);
+			view = switch (weightType) {
+				case NTuple4.WEIGHT_FLOAT -> mb.asFloatBuffer();
+				case NTuple4.WEIGHT_INT16 -> mb.asShortBuffer();
+				default -> mb.asDoubleBuffer();
+			};
+		}	// the mapping stays valid after the channel is closed
+
+		Object obj;
+		try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(agentBytes))) {
+			obj = ois.readObject();
+		} catch (ClassNotFoundException e) {
+			throw new IOException("ERROR: Class not found: "+e.getMessage());
+		}
+		if (!(obj instanceof PlayAgent pa))
+			throw new IOException("ERROR: Object of class "+obj.getClass().getName()+" in "+filePath
+					+" is not an agent");
+		PlayAgent inner = pa;
+		while (inner.isWrapper()) inner = inner.getWrappedPlayAgent();
+		if (!(inner instanceof NTuple4Base ntb))
+			throw new IOException("ERROR: Agent class "+inner.getClass().getName()+" in "+filePath
+					+" is not an n-tuple agent");
+		NTuple4ValueFunc vf = ntb.getNTupleValueFunc();
+		if (!vf.getXnf().getClass().getName().equals(xnfName))
+			throw new IOException("ERROR: XNTupleFuncs "+xnfName+" in header of "+filePath+" does not match agent ("
+					+vf.getXnf().getClass().getName()+")");
+		NTuple4[] nts = vf.getNTuples();
+		if (nts.length!=positions.length)
+			throw new IOException("ERROR: Number of n-tuples in header of "+filePath+" does not match agent");
+		for (int i=0; i<nts.length; i++) {
+			long L = 1;
+			boolean same = (nts[i].getLength()==positions[i].length);
+			for (int j=0; same && j<positions[i].length; j++) {
+				same = (nts[i].getPosition(j)==positions[i][j]);
+				L *= nts[i].getPosVals(positions[i][j]);
+			}
+			if (!same || L!=lutLen[i] || nts[i].getWeightType()!=weightType)
+				throw new IOException("ERROR: n-tuple "+i+" in header of "+filePath+" does not match agent");
+			nts[i].setMappedWeights(view, (int) lutBase[i], lutLen[i]);
+		}
+		return pa;
+	}
+
+	private static int bytesPerWeight(int weightType) {
+		return switch (weightType) {
+			case NTuple4.WEIGHT_FLOAT -> 4;
+			case NTuple4.WEIGHT_INT16 -> 2;
+			default -> 8;
+		};
+	}
+
+	private static ByteBuffer readFully(FileChannel ch, long pos, int len) throws IOException {
+		ByteBuffer buf = ByteBuffer.allocate(len).order(ByteOrder.LITTLE_ENDIAN);
+		while (buf.hasRemaining()) {
+			if (ch.read(buf, pos+buf.position()) < 0)
+				throw new EOFException("ERROR: Unexpected end of weight file");
+		}
+		buf.flip();
+		return buf;
+	}
+
+	private static void writeFully(FileChannel ch, ByteBuffer buf) throws IOException {
+		while (buf.hasRemaining()) ch.write(buf);
+	}
+}
@@ -144,6 +144,37 @@ public class QLearn4Agt extends NTuple4Base implements PlayAgent, NTuple4Agt,Ser
 		initNet(ntPar,tdPar,oPar, nTuples, xnf, numOutputs, maxGameNum, allAvailActions);
 	}
 
+	/**
+	 * Create a replica for {@link #trainAgentReplicas(int, java.util.function.Supplier)}: It shares all
+	 * parameters with {@code master} and starts with a copy of its n-tuple weights, but has its own eligibility lists,
+	 * its own episode state and its own random number generator.
+	 *
+	 * @param master	the agent to be trained
+	 * @param seed		seed for the replica's random number generator
+	 */
+	private QLearn4Agt(QLearn4Agt master, long seed) {
+		super(master.getName(), master.m_oPar, master.m_rbPar, master.m_wrPar);
+		m_tdPar = master.m_tdPar;
+		m_ntPar = master.m_ntPar;
+		m_elig = master.m_elig;
+		numPlayers = master.numPlayers;
+		numOutputs = master.numOutputs;
+		sLast = new StateObservation[numPlayers];
+		aLast = new ACTIONS[numPlayers];
+		randLast = new boolean[numPlayers];
+		rand = new Random(seed);
+		m_Net = new NTuple4ValueFunc(master.m_Net, this, false);
+		m_epsilon = master.m_epsilon;
+		m_EpsilonChangeDelta = master.m_EpsilonChangeDelta;
+		setMaxGameNum(master.getMaxGameNum());
+		setAgentState(AgentState.INIT);
+	}
+
+	@Override
+	protected NTuple4Base newReplica(long seed) {
+		return new QLearn4Agt(this, seed);
+	}
+
 	/** 
 	 * Infer members actionIndexMin, actionIndexMax, numOutputs from allAvailActions
 	 * @param allAvailActions the list of all actions, needed to infer the number of outputs of the n-tuple network
@@ -215,7 +246,8 @@ public class QLearn4Agt extends NTuple4Base implements PlayAgent, NTuple4Agt,Ser
 		// get the loaded values)
 		this.setTDParams(this.getParTD(), this.getMaxGameNum());
 		this.setNTParams(this.getParNT());
-		this.weightAnalysis(null);
+		if (!m_Net.isMapped())		// would page in the whole weight file
+			this.weightAnalysis(null);
 		
 		// initialize transient members (in case a further training should take place --> see ValidateAgent) 
 		this.sLast = new StateObservation[numPlayers];
@@ -540,6 +572,7 @@ public class QLearn4Agt extends NTuple4Base implements PlayAgent, NTuple4Agt,Ser
 		NextState4 ns;
 		ScoreTuple R;
 		rLast = new ScoreTuple(so);
+		m_Net.unmapWeights();		// weights loaded from a weight file are read-only: copy them on first training
 
 //		boolean learnFromRM = m_oPar.useLearnFromRM();
 		int epiLength = m_oPar.getEpisodeLength();
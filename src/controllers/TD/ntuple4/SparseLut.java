@@ -0,0 +1,232 @@
+package controllers.TD.ntuple4;
+
+import java.io.Serializable;
+
+/**
+ * A sparse LUT for an n-tuple with a huge index space (see {@link NTuple4#WEIGHT_SPARSE}): a primitive open-addressing
+ * hash map {@code long -> float} with linear probing. Only entries which were changed by a weight update occupy
+ * memory, all other entries have weight 0. So the memory footprint is proportional to the number of visited
+ * entries and not to the theoretical LUT length {@code posVals[P[0]]*...*posVals[P[L-1]]}.
+ * <p>
+ * Optionally the number of occupied entries is capped ({@code cap > 0}). If an update would need a new entry while
+ * the cap is reached, the <em>cold</em> entries are evicted: Each entry carries a small hit counter, which is
+ * incremented with each update of the entry and halved with each eviction (aging). An eviction removes the
+ * quarter of all entries with the lowest hit counts.
+ * <p>
+ * Reading ({@link #get(long)}) never changes the map. The map is not thread-safe for concurrent updates.
+ *
+ * @see NTuple4
+ */
+public class SparseLut implements Serializable {
+	private static final long EMPTY = -1L;		// keys (LUT indices) are always >= 0
+	private static final int MIN_TABLE = 16;
+	private static final int MAX_HITS = Byte.MAX_VALUE;
+	private static final double MAX_LOAD = 0.75;
+
+	private long[] keys;
+	private float[] vals;
+	private byte[] hits;
+	private int mask;
+	private int size = 0;
+	private final int cap;						// max. number of occupied entries, 0: no cap
+	private long numEvicted = 0;				// number of entries evicted so far
+
+	/**
+	 * change the version ID for serialization only if a newer version is no longer
+	 * compatible with an older one (older .agt.zip will become unreadable or you have
+	 * to provide a special version transformation)
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * @param cap	maximum number of occupied entries (0: no cap)
+	 */
+	public SparseLut(int cap) {
+		this.cap = Math.max(cap, 0);
+		allocate(MIN_TABLE);
+	}
+
+	private void allocate(int tableLen) {
+		keys = new long[tableLen];
+		java.util.Arrays.fill(keys, EMPTY);
+		vals = new float[tableLen];
+		hits = new byte[tableLen];
+		mask = tableLen - 1;
+	}
+
+	private static int hash(long key) {
+		key ^= key >>> 33;			// finalizer of MurmurHash3
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		return (int) key;
+	}
+
+	/**
+	 * @param key	a LUT index
+	 * @return the slot of {@code key} or of the empty slot where {@code key} would be inserted
+	 */
+	private int slot(long key) {
+		int s = hash(key) & mask;
+		while (keys[s]!=EMPTY && keys[s]!=key) s = (s+1) & mask;
+		return s;
+	}
+
+	/**
+	 * @param key	a LUT index
+	 * @return the weight stored for {@code key} (0, if {@code key} is not occupied)
+	 */
+	public float get(long key) {
+		int s = hash(key) & mask;
+		long k;
+		while ((k=keys[s])!=EMPTY) {
+			if (k==key) return vals[s];
+			s = (s+1) & mask;
+		}
+		return 0.0f;
+	}
+
+	/**
+	 * Set the weight for {@code key}. Setting a weight 0 for a non-occupied key does not occupy an entry.
+	 */
+	public void set(long key, double w) {
+		int s = slot(key);
+		if (keys[s]==EMPTY) {
+			if (w==0.0) return;
+			s = insert(key);
+		}
+		vals[s] = (float) w;
+	}
+
+	/**
+	 * Add {@code dW} to the weight for {@code key} and count a hit for this entry.
+	 */
+	public void add(long key, double dW) {
+		int s = slot(key);
+		if (keys[s]==EMPTY) {
+			if (dW==0.0) return;
+			s = insert(key);
+		}
+		vals[s] += (float) dW;
+		if (hits[s]<MAX_HITS) hits[s]++;
+	}
+
+	/**
+	 * Occupy a new entry for {@code key} (weight 0), evicting cold entries or growing the table if necessary.
+	 * @return the slot of the new entry
+	 */
+	private int insert(long key) {
+		if (cap>0 && size>=cap) {
+			evictCold();
+		} else if (size+1 > MAX_LOAD*keys.length) {
+			rehash(keys.length*2);
+		}
+		int s = slot(key);
+		keys[s] = key;
+		vals[s] = 0.0f;
+		hits[s] = 0;
+		size++;
+		return s;
+	}
+
+	/**
+	 * Remove the {@code size/4} entries with the lowest hit counts and halve the hit counts of all remaining
+	 * entries.
+	 */
+	private void evictCold() {
+		int[] histo = new int[MAX_HITS+1];
+		for (int s=0; s<keys.length; s++)
+			if (keys[s]!=EMPTY) histo[hits[s]]++;
+		int need = Math.max(size/4, 1);
+		int threshold = 0, below = 0;		// below: number of entries with hits < threshold
+		while (below+histo[threshold] < need) below += histo[threshold++];
+		int atThreshold = need - below;		// number of entries with hits == threshold to evict
+
+		long[] oldKeys = keys;
+		float[] oldVals = vals;
+		byte[] oldHits = hits;
+		allocate(oldKeys.length);
+		int oldSize = size;
+		size = 0;
+		for (int s=0; s<oldKeys.length; s++) {
+			if (oldKeys[s]==EMPTY || oldHits[s]<threshold) continue;
+			if (oldHits[s]==threshold && atThreshold>0) {
+				atThreshold--;
+				continue;
+			}
+			int t = slot(oldKeys[s]);
+			keys[t] = oldKeys[s];
+			vals[t] = oldVals[s];
+			hits[t] = (byte) (oldHits[s]/2);
+			size++;
+		}
+		numEvicted += oldSize - size;
+	}
+
+	private void rehash(int tableLen) {
+		long[] oldKeys = keys;
+		float[] oldVals = vals;
+		byte[] oldHits = hits;
+		allocate(tableLen);
+		for (int s=0; s<oldKeys.length; s++) {
+			if (oldKeys[s]!=EMPTY) {
+				int t = slot(oldKeys[s]);
+				keys[t] = oldKeys[s];
+				vals[t] = oldVals[s];
+				hits[t] = oldHits[s];
+			}
+		}
+	}
+
+	/**
+	 * Remove all entries (all weights become 0)
+	 */
+	public void clear() {
+		allocate(MIN_TABLE);
+		size = 0;
+	}
+
+	/**
+	 * Multiply all weights by {@code factor}
+	 */
+	public void scale(double factor) {
+		for (int s=0; s<keys.length; s++)
+			if (keys[s]!=EMPTY) vals[s] *= (float) factor;
+	}
+
+	/**
+	 * @return the number of occupied entries
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the maximum number of occupied entries (0: no cap)
+	 */
+	public int getCap() {
+		return cap;
+	}
+
+	/**
+	 * @return the number of entries evicted so far (only if there is a cap)
+	 */
+	public long getNumEvicted() {
+		return numEvicted;
+	}
+
+	/**
+	 * Slot access for iterating over all occupied entries: for {@code s=0,...,}{@link #tableLength()}{@code -1}
+	 * entry {@code s} is occupied if {@link #keyAt(int)}{@code >=0}.
+	 */
+	public int tableLength() {
+		return keys.length;
+	}
+
+	public long keyAt(int s) {
+		return keys[s];
+	}
+
+	public float valAt(int s) {
+		return vals[s];
+	}
+}
@@ -6,6 +6,9 @@ import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 
 import agentIO.LoadSaveGBG;
 import controllers.MCTSWrapper.MCTSWrapperAgent;
@@ -79,6 +82,9 @@ public class TDNTuple4Agt extends NTuple4Base implements PlayAgent, NTuple4Agt,S
 	// debug printout in collectReward:
 	public static boolean DBG_REWARD=false;
 	public static boolean DBG_BJ=false;		// debugging for Blackjack
+	// If true, evaluate the afterstates in getNextAction2 incrementally (same result, but faster),
+	// see NTuple4ValueFunc.DeltaEval:
+	public static boolean DELTA_EVAL=true;
 
 	// variable TERNARY is normally false. If true, use ternary target in update rule:
 	private boolean TERNARY=false;		// If true, it remains true only for final-reward-games (see getNextAction2)
@@ -132,6 +138,37 @@ public class TDNTuple4Agt extends NTuple4Base implements PlayAgent, NTuple4Agt,S
 		}
 	}
 
+	/**
+	 * Create a worker agent for {@link #trainAgentParallel(int, Supplier)} or a replica for
+	 * {@link #trainAgentReplicas(int, Supplier)}: It shares all parameters with {@code master}, but has its own
+	 * eligibility lists, its own episode state and its own random number generator.
+	 *
+	 * @param master		the agent to be trained
+	 * @param seed			seed for the worker's random number generator
+	 * @param shareWeights	if true, share the n-tuple weights with {@code master} (worker), else copy them (replica)
+	 */
+	private TDNTuple4Agt(TDNTuple4Agt master, long seed, boolean shareWeights) {
+		super(master.getName(), master.m_oPar, master.m_rbPar, master.m_wrPar);
+		m_tdPar = master.m_tdPar;
+		m_ntPar = master.m_ntPar;
+		m_elig = master.m_elig;
+		numPlayers = master.numPlayers;
+		sLast = new StateObservation[numPlayers];
+		randLast = new boolean[numPlayers];
+		rand = new Random(seed);
+		m_Net = new NTuple4ValueFunc(master.m_Net, this, shareWeights);
+		m_epsilon = master.m_epsilon;
+		m_EpsilonChangeDelta = master.m_EpsilonChangeDelta;
+		TERNARY = master.TERNARY;
+		setMaxGameNum(master.getMaxGameNum());
+		setAgentState(AgentState.INIT);
+	}
+
+	@Override
+	protected NTuple4Base newReplica(long seed) {
+		return new TDNTuple4Agt(this, seed, false);
+	}
+
 	/**
 	 *
 	 * @param tdPar			temporal difference parameters
@@ -180,7 +217,8 @@ public class TDNTuple4Agt extends NTuple4Base implements PlayAgent, NTuple4Agt,S
 		// get the loaded values)
 		this.setTDParams(this.getParTD(), this.getMaxGameNum());
 		this.setNTParams(this.getParNT());
-		this.weightAnalysis(null);
+		if (!m_Net.isMapped())		// would page in the whole weight file
+			this.weightAnalysis(null);
 
 		// initialize transient members (in case a further training should take place --> see ValidateAgentTest) 
 		this.sLast = new StateObservation[numPlayers];
@@ -236,6 +274,9 @@ public class TDNTuple4Agt extends NTuple4Base implements PlayAgent, NTuple4Agt,S
 
 		VTable = new double[acts.size()];
 
+		// delta evaluation of all afterstates relative to so (null, if not applicable or if randomSelect):
+		NTuple4ValueFunc.DeltaEval dEval = (DELTA_EVAL && !randomSelect) ? m_Net.newDeltaEval(so) : null;
+
 		if (DBG_BJ) {
 			System.out.println("so "+ so.stringDescr());
 			System.out.println("so reward:" + so.getRewardTuple(rgs));
@@ -266,7 +307,7 @@ public class TDNTuple4Agt extends NTuple4Base implements PlayAgent, NTuple4Agt,S
 					// if parameter "AFTERSTATE" is checked in ParNT, i.e. we use afterstate logic:
 					//
 					NewSO.advanceDeterministic(thisAct); 	// generate the afterstate
-					value = this.getScore(NewSO.project(),so); // this is V(s') from so-perspective
+					value = this.getScore(NewSO.project(),so,dEval); // this is V(s') from so-perspective
 							// .project() projects the state into its canonical form (e.g. sorted heaps in case Nim,
 							// for all other state observers, .project() currently returns just 'this')
 					while (!NewSO.isNextActionDeterministic() && !NewSO.isRoundOver()) {	// /WK/ NEW/03/2021
@@ -275,7 +316,7 @@ public class TDNTuple4Agt extends NTuple4Base implements PlayAgent, NTuple4Agt,S
 				} else {
 					// the non-afterstate logic for the case of single moves:
 					NewSO.advance(acts.get(i));
-					value = this.getScore(NewSO.project(),so); // this is V(s'') from the perspective of so
+					value = this.getScore(NewSO.project(),so,dEval); // this is V(s'') from the perspective of so
 				}
 				// both ways of calculating the agent score are the same for deterministic games (s'=s''),
 				// but they usually differ for nondeterministic games.
@@ -438,6 +479,18 @@ public class TDNTuple4Agt extends NTuple4Base implements PlayAgent, NTuple4Agt,S
 		return score;
 	}
 
+	/**
+	 * Same as {@link #getScore(StateObservation, StateObservation)}, but with delta evaluation relative to the
+	 * state for which {@code dEval} was created (if {@code dEval!=null})
+	 */
+	private double getScore(StateObservation so, StateObservation refer, NTuple4ValueFunc.DeltaEval dEval) {
+		if (dEval==null) return getScore(so,refer);
+		if (so.isGameOver())
+			return 0.0;
+		StateObsWithBoardVector curSOWB = new StateObsWithBoardVector(so,m_Net.xnf);
+		return dEval.getScoreI(curSOWB,refer.getPlayer());
+	}
+
 	/**
 	 * Return the agent's estimate of {@code sob}'s final game value (final reward) <b>for all players</b>. 
 	 * Is called by the n-ply wrappers ({@link MaxN2Wrapper}, {@link ExpectimaxNWrapper}).
@@ -753,6 +806,7 @@ public class TDNTuple4Agt extends NTuple4Base implements PlayAgent, NTuple4Agt,S
 		NextState4 ns;
 		ScoreTuple R;
 		rLast = new ScoreTuple(so);
+		m_Net.unmapWeights();		// weights loaded from a weight file are read-only: copy them on first training
 
 		int epiLength = m_oPar.getEpisodeLength();
 		if (epiLength==-1) epiLength = Integer.MAX_VALUE;
@@ -833,6 +887,98 @@ public class TDNTuple4Agt extends NTuple4Base implements PlayAgent, NTuple4Agt,S
 		return false;
 	} // trainAgent
 
+	/**
+	 * Train the agent for {@code numEpisodes} self-play episodes with {@link ParTD#getNumTrainThreads()} threads
+	 * in parallel ("Hogwild" training). If the number of threads is 1, this is the same as calling
+	 * {@link #trainAgent(StateObservation)} {@code numEpisodes} times.
+	 * <p>
+	 * Each thread runs complete episodes with its own worker agent. All workers update the weights of this agent
+	 * without any locking: The worker's n-tuples are views on this agent's LUTs (see {@link NTuple4#NTuple4(NTuple4)}).
+	 * Concurrent updates of the same weight are racy: An update may get lost if two threads read-modify-write the
+	 * same LUT entry at the same time. Since each update is only a small step and since the n-tuple LUTs are large
+	 * and sparsely hit, such collisions are rare and their effect is bounded (it is as if one of the learn steps was
+	 * not taken). Each worker has its own eligibility lists and its own random number generator (seeded from
+	 * {@link #rand}).
+	 * <p>
+	 * ALPHA and epsilon of all workers follow the same schedule as in sequential training, driven by a global
+	 * episode counter: After g finished episodes (in any thread), they are {@code alpha*alphaChangeRatio^g} and
+	 * {@code epsilon - g*epsilonChangeDelta}, where alpha and epsilon are the values when this method is entered.
+	 * <p>
+	 * Side effects: Increment gameNum by {@code numEpisodes}, adjust ALPHA and epsilon as {@code numEpisodes}
+	 * calls of {@link #trainAgent(StateObservation)} would do, and add the learn actions and train moves of all
+	 * workers to this agent.
+	 * <p>
+	 * Parallel training is not possible with a replay buffer, with TC or with weight type
+	 * {@link NTuple4#WEIGHT_INT16} (a {@link RuntimeException} is thrown).
+	 *
+	 * @param numEpisodes	number of episodes to train
+	 * @param startStates	delivers the start state of each episode, e.g. via
+	 *                      {@link GameBoard#chooseStartState(PlayAgent)}. It is called by the worker threads, but
+	 *                      never concurrently.
+	 */
+	public void trainAgentParallel(int numEpisodes, Supplier<StateObservation> startStates) {
+		m_Net.unmapWeights();		// before the workers are created: they share the (writable) weights
+		int numThreads = Math.min(m_tdPar.getNumTrainThreads(), numEpisodes);
+		if (numThreads<=1) {
+			for (int n=0; n<numEpisodes; n++)
+				trainAgent(startStates.get());
+			return;
+		}
+		if (ConfigReplayBuffer.USE_REPLAYBUFFER)
+			throw new RuntimeException("[TDNTuple4Agt] Parallel training is not possible with a replay buffer");
+
+		final double alpha0 = m_Net.getAlpha();
+		final double alphaRatio = m_Net.getAlphaChangeRatio();
+		final double epsilon0 = m_epsilon;
+		final AtomicInteger started = new AtomicInteger(0);
+		final AtomicInteger finished = new AtomicInteger(0);	// the global episode counter
+		final AtomicReference<Throwable> failure = new AtomicReference<>();
+		TDNTuple4Agt[] workers = new TDNTuple4Agt[numThreads];
+		Thread[] threads = new Thread[numThreads];
+		for (int t=0; t<numThreads; t++) {
+			final TDNTuple4Agt w = new TDNTuple4Agt(this, rand.nextLong(), true);
+			workers[t] = w;
+			threads[t] = new Thread(() -> {
+				try {
+					while (failure.get()==null && started.getAndIncrement() < numEpisodes) {
+						StateObservation so;
+						synchronized (startStates) {
+							so = startStates.get();
+						}
+						w.trainAgent(so);
+						// ALPHA and epsilon for the next episode of w from the global episode counter:
+						int g = finished.incrementAndGet();
+						w.m_Net.setAlpha(alpha0*Math.pow(alphaRatio, g));
+						w.m_epsilon = epsilon0 - g*m_EpsilonChangeDelta;
+					}
+				} catch (Throwable e) {
+					failure.compareAndSet(null, e);
+				}
+			}, "TDNTuple4Agt-train-"+t);
+			threads[t].start();
+		}
+		try {
+			for (Thread thread : threads) thread.join();
+		} catch (InterruptedException e) {
+			failure.compareAndSet(null, e);
+			Thread.currentThread().interrupt();
+		}
+
+		int g = finished.get();
+		m_Net.setAlpha(alpha0*Math.pow(alphaRatio, g));
+		m_epsilon = epsilon0 - g*m_EpsilonChangeDelta;
+		setGameNum(getGameNum() + g);
+		for (TDNTuple4Agt w : workers) {
+			m_Net.addNumLearnActions(w.getNumLrnActions());
+			m_numTrnMoves += w.getNumTrnMoves();
+			tieCounter += w.tieCounter;
+			winXCounter += w.winXCounter;
+			winOCounter += w.winOCounter;
+		}
+		if (failure.get()!=null)
+			throw new RuntimeException("[TDNTuple4Agt] Parallel training failed: "+failure.get(), failure.get());
+	}
+
 
 	/**
 	 * This function is called when {@code ns.getNextSO()} is terminal. It does two things:
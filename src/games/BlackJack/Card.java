@@ -1,7 +1,9 @@
 package games.BlackJack;
+import java.io.Serializable;
 import static games.BlackJack.BlackJackConfig.CARDS_AS_UNICODE;
 
-public class Card implements Comparable<Card>{
+public class Card implements Comparable<Card>, Serializable {
+    private static final long serialVersionUID = 1L;
 
     /**
      * Compares this card with the specified card for order. Returns a negative integer, zero,
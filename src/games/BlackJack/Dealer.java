@@ -1,12 +1,14 @@
 package games.BlackJack;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 
 
 /**
  * Wraps an action and a button. This simplifies the assignement of an evaluation value made from an agent for this action.
  */
-public class Dealer {
+public class Dealer implements Serializable {
+    private static final long serialVersionUID = 1L;
 
 
     public Dealer(String name) {
@@ -1,12 +1,15 @@
 package games.BlackJack;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
 
 /**
  * Represents a hand in Black Jack
  */
-public class Hand {
+public class Hand implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     ArrayList<Card> hand = new ArrayList<Card>();
     private boolean isHandFinished = false;
 
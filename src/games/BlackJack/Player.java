@@ -1,12 +1,15 @@
 package games.BlackJack;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import static games.BlackJack.BlackJackConfig.START_CHIPS;
 
 /**
  * stores informations about players participating in a game of Blackjack
  */
-public class Player {
+public class Player implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     ArrayList<Hand> hands = new ArrayList<Hand>();
     Hand activeHand = null;
     private double chips = START_CHIPS;
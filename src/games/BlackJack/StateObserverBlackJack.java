@@ -10,6 +10,7 @@ import games.StateObservation;
 import tools.ScoreTuple;
 import tools.Types.ACTIONS;
 import tools.Types;
+import tools.Zobrist;
 import static games.BlackJack.BlackJackConfig.*;
 
 public class StateObserverBlackJack extends ObsNondetBase implements StateObsNondeterministic {
@@ -336,6 +337,30 @@ public class StateObserverBlackJack extends ObsNondetBase implements StateObsNon
                 : " (dealer | hand : " + dhand + " = "+ dhand.getHandValue() + " ) ";
         return result+str;
     }
+
+    /**
+     * The hash is computed directly from the chips and hands of the players and the hand of the dealer (the same
+     * information as in {@link #stringDescr()}, whose hand values follow from the cards).
+     */
+    @Override
+    public long hash64() {
+        long h = Zobrist.mix64(players.length);
+        for (Player p : players) {
+            h = Zobrist.mix64(h, Double.doubleToLongBits(p.getChips()));
+            h = Zobrist.mix64(h, p.getHands().size());
+            for (Hand hand : p.getHands()) h = hashHand(h, hand);
+        }
+        Hand dhand = dealer.getActiveHand();
+        return (dhand == null) ? Zobrist.mix64(h, -1) : hashHand(h, dhand);
+    }
+
+    private static long hashHand(long h, Hand hand) {
+        h = Zobrist.mix64(h, hand.size());
+        for (Card c : hand.getCards())
+            h = Zobrist.mix64(h, c.rank.ordinal() * Card.Suit.values().length + c.suit.ordinal());
+        return h;
+    }
+
     public String stringDescrSM() {
         String result = "\n";
         for (Player p : players) {
@@ -174,6 +174,17 @@ public class C4Base extends AgentBase implements Serializable {
 		setBoard(field);
 	}
 
+	/**
+	 * Copy the board of {@code other} into {@code this}.
+	 *
+	 * @param other the board to copy
+	 */
+	public void copyFrom(C4Base other) {
+		this.fieldP1 = other.fieldP1;
+		this.fieldP2 = other.fieldP2;
+		System.arraycopy(other.colHeight, 0, this.colHeight, 0, COLCOUNT);
+	}
+
 	// --- never used ---
 //	/**
 //	 * Create a new Board
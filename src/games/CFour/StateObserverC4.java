@@ -8,6 +8,7 @@ import games.ObserverBase;
 import games.StateObservation;
 import tools.Types;
 import tools.Types.ACTIONS;
+import tools.Zobrist;
 
 /**
  * Class StateObserverC4 observes the current state of the game, it has utility functions for
@@ -88,6 +89,27 @@ public class StateObserverC4 extends ObserverBase implements StateObservation {
 		return new StateObserverC4(this);
 	}
 
+	/**
+	 * Copy {@code this} into {@code target} without constructing a new {@link C4Base} (which is the expensive part
+	 * of {@link #copy()}).
+	 */
+	@Override
+	public StateObservation copyInto(StateObservation target) {
+		if (target==null || target.getClass()!=StateObserverC4.class || this.getClass()!=StateObserverC4.class)
+			return this.copy();
+		StateObserverC4 t = (StateObserverC4) target;
+		copyBaseInto(t);
+		t.m_C4.copyFrom(this.m_C4);
+		t.m_Player = this.m_Player;
+		t.gameOver = this.gameOver;
+		t.isWin = this.isWin;
+		t.lastCell = (this.lastCell!=null) ? new LastCell(this.lastCell) : null;
+		t.prevCell = (this.prevCell!=null) ? new LastCell(this.prevCell) : null;
+		t.availableActions.clear();
+		t.availableActions.addAll(this.availableActions);
+		return t;
+	}
+
 	public int countPieces() {
 		return m_C4.countPieces();
 	}
@@ -162,6 +184,14 @@ public class StateObserverC4 extends ObserverBase implements StateObservation {
 		
  		return sout.toString();
 	}
+
+	/**
+	 * The hash is computed directly from the two bit boards of {@link C4Base}, which code the board uniquely.
+	 */
+	@Override
+	public long hash64() {
+		return Zobrist.mix64(m_C4.fieldP1, m_C4.fieldP2);
+	}
 	
 	/**
 	 * 
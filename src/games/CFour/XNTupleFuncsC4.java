@@ -128,6 +128,15 @@ public class XNTupleFuncsC4 extends XNTupleBase implements XNTupleFuncs, Seriali
 
 		return equiv;
 	}
+
+	/**
+	 * The symmetries (the mirror reflection) are pure cell permutations.
+	 * @return the permutation tables, see {@link XNTupleFuncs#symmetryPermutations()}
+	 */
+	@Override
+	public int[][] symmetryPermutations() {
+		return makeSymmetryPermutations();
+	}
 	
 	/**
 	 * Given a certain board array of symmetric (equivalent) states for state <b>{@code so}</b> 
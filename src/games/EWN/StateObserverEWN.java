@@ -8,6 +8,7 @@ import games.EWN.config.StartingPositions;
 import games.ObsNondetBase;
 import games.StateObsNondeterministic;
 import tools.ScoreTuple;
+import tools.Zobrist;
 import tools.Types;
 import tools.Types.ACTIONS;
 import controllers.ExpectimaxNAgent;
@@ -589,6 +590,25 @@ public class StateObserverEWN extends ObsNondetBase implements  StateObsNondeter
     }
 
 
+    /**
+     * The board of EWN is small, so the hash is computed directly from the cells (each coded as player and value),
+     * the dice value and the player to move, i.e. from the same information as {@link #uniqueStringDescr()}.
+     *
+     * @return a 64-bit hash of this state
+     */
+    @Override
+    public long hash64() {
+        int dice = (nextNondeterministicAction==null) ? -1 : nextNondeterministicAction.toInt();
+        long h = Zobrist.mix64(dice, player);
+        for (Token[] row : gameState) {
+            for (Token t : row) {
+                int code = (t.getPlayer() >= 0) ? 1 + t.getPlayer()*8 + t.getValue() : 0;
+                h = Zobrist.mix64(h, code);
+            }
+        }
+        return h;
+    }
+
     @Override
     public ACTIONS getNextNondeterministicAction() {
         return nextNondeterministicAction;
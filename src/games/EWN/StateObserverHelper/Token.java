@@ -24,7 +24,9 @@ public class Token implements Serializable {
         this.player = other.getPlayer();
         this.value = other.getValue();
         this.index = other.getIndex();
-        this.availableActions = other.getAvailAbleActions();
+        // an own list: setAvailableActions() of the copy must not change the list of the original (copies of
+        // the same state may be made and advanced concurrently, e.g. in the parallel search of ExpectimaxNAgent)
+        this.availableActions = new ArrayList<>(other.getAvailAbleActions());
     }
 
     /**
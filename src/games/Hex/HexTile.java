@@ -90,6 +90,17 @@ public class HexTile implements Serializable {
         return new HexTile(coords.x, coords.y, player, poly, value);
     }
 
+    /**
+     * Copy the state of {@code other}, which has to be the tile at the same place, into this tile (the allocation-free
+     * counterpart of {@link #copy()}).
+     */
+    void copyFrom(HexTile other) {
+        assert coords.equals(other.coords) : "copyFrom with a tile at another place";
+        this.player = other.player;
+        this.poly = other.poly;
+        this.value = other.value;
+    }
+
     @Override
     public String toString() {
         return "HexTile [" + coords.x + ", " + coords.y + "]";
@@ -4,6 +4,7 @@ import games.ObserverBase;
 import games.StateObservation;
 import tools.Types;
 import tools.Types.ACTIONS;
+import tools.Zobrist;
 
 import java.util.ArrayList;
 
@@ -50,6 +51,19 @@ public class StateObserverHex extends ObserverBase implements StateObservation {
     private HexTile lastUpdatedTile;
     private ArrayList<Types.ACTIONS> availableActions;
 
+    /**
+     * Zobrist keys for the cells (numbered as the actions) with owners PLAYER_ONE, PLAYER_TWO. Sufficient for board
+     * sizes up to {@code MAX_HASH_SIZE}, for larger boards {@link #hash64()} falls back to the string hash.
+     */
+    private static final int MAX_HASH_SIZE = 16;
+    private static final Zobrist ZOBRIST = new Zobrist(MAX_HASH_SIZE*MAX_HASH_SIZE, 2, 0x4E7L);
+    /**
+     * the Zobrist hash of the board, maintained incrementally in {@link #advance(Types.ACTIONS)}. It is transient and
+     * only valid if {@code boardHashValid} (after loading it is recomputed in {@link #hash64()}).
+     */
+    private transient long boardHash;
+    private transient boolean boardHashValid = false;
+
     public StateObserverHex() {
         board = defaultGameBoard();
         currentPlayer = HexConfig.PLAYER_ONE;
@@ -83,6 +97,8 @@ public class StateObserverHex extends ObserverBase implements StateObservation {
         board = new HexTile[HexConfig.BOARD_SIZE][HexConfig.BOARD_SIZE];
         copyTable(other.board);
         this.currentPlayer =other.currentPlayer;
+        this.boardHash = other.boardHash;
+        this.boardHashValid = other.boardHashValid;
         this.lastUpdatedTile = other.lastUpdatedTile;
 		if (other.availableActions!=null)	// this check is needed when loading older logs
 			this.availableActions = (ArrayList<ACTIONS>) other.availableActions.clone();
@@ -100,6 +116,32 @@ public class StateObserverHex extends ObserverBase implements StateObservation {
     	return new StateObserverHex(this);
     }
 
+    /**
+     * Copy {@code this} into {@code target}, reusing its board array and its {@link HexTile}s (allocating the
+     * {@code BOARD_SIZE*BOARD_SIZE} tiles is the expensive part of {@link #copy()}).
+     */
+    @Override
+    public StateObservation copyInto(StateObservation target) {
+        if (target==null || target.getClass()!=StateObserverHex.class || this.getClass()!=StateObserverHex.class)
+            return this.copy();
+        StateObserverHex t = (StateObserverHex) target;
+        if (t.board.length!=this.board.length || t.availableActions==null) return this.copy();
+        copyBaseInto(t);
+        for (int i = 0; i < board.length; i++) {
+            for (int j = 0; j < board[i].length; j++) {
+                t.board[i][j].copyFrom(board[i][j]);
+            }
+        }
+        t.currentPlayer = this.currentPlayer;
+        t.boardHash = this.boardHash;
+        t.boardHashValid = this.boardHashValid;
+        t.lastUpdatedTile = this.lastUpdatedTile;
+        t.availableActions.clear();
+        if (this.availableActions!=null) t.availableActions.addAll(this.availableActions);
+        else t.availableActions = null;
+        return t;
+    }
+
     /**
      * Replaces the current game board array by a copy of the array that is passed as the parameter.
      *
@@ -207,6 +249,24 @@ public class StateObserverHex extends ObserverBase implements StateObservation {
         return sb.toString();
     }
 
+    /**
+     * The Zobrist hash of the board (as {@link #stringDescr()}, it does not contain the player to move).
+     */
+    @Override
+    public long hash64() {
+        if (HexConfig.BOARD_SIZE > MAX_HASH_SIZE) return super.hash64();
+        if (!boardHashValid) {
+            long h = 0L;
+            for (int i = 0, n = 0; i < HexConfig.BOARD_SIZE; i++)
+                for (int j = 0; j < HexConfig.BOARD_SIZE; j++, n++)
+                    if (board[i][j].getPlayer() != HexConfig.PLAYER_NONE)
+                        h ^= ZOBRIST.key(n, board[i][j].getPlayer());
+            boardHash = h;
+            boardHashValid = true;
+        }
+        return boardHash;
+    }
+
     /**
      * @return 	the game score, i.e. the sum of rewards for the current state.
      * 			For Hex only game-over states have a non-zero game score.
@@ -253,6 +313,7 @@ public class StateObserverHex extends ObserverBase implements StateObservation {
             return;
         }
         board[i][j].setPlayer(currentPlayer);
+        if (boardHashValid) boardHash ^= ZOBRIST.key(actionInt, currentPlayer);
 
         lastUpdatedTile = board[i][j];
         setAvailableActions();            // IMPORTANT: adjust the available actions (have reduced by one)
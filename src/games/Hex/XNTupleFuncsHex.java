@@ -95,6 +95,15 @@ public class XNTupleFuncsHex extends XNTupleBase implements XNTupleFuncs, Serial
         return symmetries;
     }
 
+    /**
+     * The symmetries (the 180 degree rotation) are pure cell permutations.
+     * @return the permutation tables, see {@link XNTupleFuncs#symmetryPermutations()}
+     */
+    @Override
+    public int[][] symmetryPermutations() {
+        return makeSymmetryPermutations();
+    }
+
 	/**
 	 * Given a certain board array of symmetric (equivalent) states for state <b>{@code so}</b> 
 	 * and a certain action to be taken in <b>{@code so}</b>, 
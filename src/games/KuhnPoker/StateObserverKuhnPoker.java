@@ -6,6 +6,7 @@ import games.StateObsNondeterministic;
 import games.StateObservation;
 import tools.Types;
 import tools.Types.ACTIONS;
+import tools.Zobrist;
 
 import java.util.ArrayList;
 import java.util.Random;
@@ -599,6 +600,23 @@ public class StateObserverKuhnPoker extends ObsNondetBase implements StateObsNon
 		return desc;
 	}
 
+	/**
+	 * The hash is computed directly from the scores, the hole cards (0 for an unknown card) and the moves of the
+	 * current round (the same information as in {@link #stringDescr()}).
+	 */
+	@Override
+	public long hash64() {
+		long h = Zobrist.mix64(getLastRoundMoves().size());
+		for (int p=0; p<NUM_PLAYER; p++) {
+			PlayingCard card = getHoleCards(p)[0];
+			h = Zobrist.mix64(h, Double.doubleToLongBits(getGameScore(p)));
+			h = Zobrist.mix64(h, (card==null) ? 0 : card.getId());
+		}
+		for (int move : getLastRoundMoves())
+			h = Zobrist.mix64(h, move);
+		return h;
+	}
+
 	// --- obsolete, use Arena().getGameName() instead
 //	public String getName() { return "Poker";	}
 
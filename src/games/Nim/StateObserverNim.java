@@ -8,6 +8,7 @@ import games.ObserverBase;
 import games.StateObservation;
 import tools.Types;
 import tools.Types.ACTIONS;
+import tools.Zobrist;
 
 /**
  * Class StateObserverNim observes the current state of the game Nim <b>for 2 players</b> and it is the 
@@ -158,6 +159,18 @@ public class StateObserverNim extends ObserverBase implements StateObservation {
 		
  		return sout.toString();
 	}
+
+	/**
+	 * The hash is computed directly from player and heaps (the same information as in {@link #stringDescr()}).
+	 * This is cheaper than a Zobrist table for a few heaps with many possible sizes.
+	 */
+	@Override
+	public long hash64() {
+		long h = Zobrist.mix64(m_player);
+		for (int i=0;i<NimConfig.NUMBER_HEAPS;i++)
+			h = Zobrist.mix64(h, m_heap[i]);
+		return h;
+	}
 	
 	/**
 	 * 
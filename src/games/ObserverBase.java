@@ -8,6 +8,7 @@ import controllers.PlayAgtVector;
 import tools.ScoreTuple;
 import tools.Types;
 import tools.Types.ACTIONS;
+import tools.Zobrist;
 
 /**
  * Class {@link ObserverBase} implements as an <b>abstract</b> class all elements of the interface  
@@ -63,6 +64,31 @@ abstract public class ObserverBase extends PartialPerfect implements StateObserv
     	return this.copy();
 	}
 
+	/**
+	 * Default implementation: just return a copy of {@code this}, {@code target} is not reused.
+	 * @see StateObservation#copyInto(StateObservation)
+	 */
+	public StateObservation copyInto(StateObservation target) {
+		return this.copy();
+	}
+
+	/**
+	 * Copy the members of {@link ObserverBase} into {@code target} (the same as the copy constructor does, but
+	 * reusing {@code target.lastMoves}). Helper for the overrides of {@link #copyInto(StateObservation)}.
+	 */
+	protected void copyBaseInto(ObserverBase target) {
+		target.m_counter = this.m_counter;
+		target.creatingPlayer = this.creatingPlayer;
+		target.m_partialState = this.m_partialState;
+		target.m_roundOver = this.m_roundOver;
+		target.lastMoves.clear();
+		target.lastMoves.addAll(this.lastMoves);
+		target.storedMaxScore = this.storedMaxScore;
+		target.storedActBest = (this.storedActBest!=null) ? new Types.ACTIONS_VT(this.storedActBest) : null;
+		target.storedActions = (this.storedActions!=null) ? this.storedActions.clone() : null;
+		target.storedValues = (this.storedValues!=null) ? this.storedValues.clone() : null;
+	}
+
 	public StateObservation project() { return this; }
 
 	/**
@@ -388,6 +414,15 @@ abstract public class ObserverBase extends PartialPerfect implements StateObserv
 		return stringDescr();
 	}
 
+	/**
+	 * Default implementation: hash the string {@link #uniqueStringDescr()}. This fulfills the contract of
+	 * {@link StateObservation#hash64()} for every game, but it is not faster than the string itself. Games should
+	 * override it.
+	 */
+	public long hash64() {
+		return Zobrist.hashString(uniqueStringDescr());
+	}
+
 	/**
 	 * 
 	 * @return a string representation of action {@code act}
@@ -176,8 +176,10 @@ public class BaseOthello implements Serializable
 	 * @param i index
 	 * @param j index
 	 * @param player player 
+	 * @return a bit mask of the flipped cells (bit {@code i*BOARD_SIZE+j} is set, if cell {@code (i,j)} was flipped)
 	 */
-	public static void flip(int[][] cgs, int i, int j, int player){
+	public static long flip(int[][] cgs, int i, int j, int player){
+		long flipped = 0L;
 		HashSet<Modifier> flipSet = new HashSet<Modifier>();
 		for(Modifier x : modifier) {
 			flipSet.clear();
@@ -204,9 +206,11 @@ public class BaseOthello implements Serializable
 				for(Modifier y : flipSet)
 				{
 					cgs[y.x][y.y] = player;
+					flipped |= 1L << (y.x*ConfigOthello.BOARD_SIZE + y.y);
 				}
 			}
 		}
+		return flipped;
 	}
 
 	/**
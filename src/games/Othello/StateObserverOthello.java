@@ -1,6 +1,8 @@
 package games.Othello;
 
 import games.ObserverBase;
+import games.StateObservation;
+import tools.Zobrist;
 import tools.Types;
 import tools.Types.ACTIONS;
 import tools.Types.WINNER;
@@ -61,6 +63,18 @@ public class StateObserverOthello extends ObserverBase{
 	private int countBlack, countWhite;	// probably never really needed
 	private ArrayList<ACTIONS> availableActions = new ArrayList<>();
 //	public ArrayList<Integer> lastMoves;		// this is now in ObserverBase
+
+	/**
+	 * Zobrist keys for the 64 cells with values BLACK, WHITE, EMPTY
+	 */
+	private static final Zobrist ZOBRIST = new Zobrist(64, 3, 0x07E110L);
+	/**
+	 * the Zobrist hash of {@code currentGameState}, maintained incrementally in {@link #advance(ACTIONS)}. It is
+	 * transient and only valid if {@code boardHashValid} (after loading it is recomputed in {@link #hash64()}).
+	 * Derived classes that change {@code currentGameState} by other means have to set {@code boardHashValid=false}.
+	 */
+	private transient long boardHash;
+	protected transient boolean boardHashValid = false;
 //	private int turn;			// use super.getMoveCounter() instead
 	
 	public StateObserverOthello()
@@ -101,6 +115,8 @@ public class StateObserverOthello extends ObserverBase{
 		this.playerNextMove = other.playerNextMove;
 		this.countBlack = other.countBlack;
 		this.countWhite = other.countWhite;
+		this.boardHash = other.boardHash;
+		this.boardHashValid = other.boardHashValid;
 //		this.turn = other.turn;
 		if (other.availableActions!=null)	// this check is needed when loading older logs
 			this.availableActions = (ArrayList<ACTIONS>) other.availableActions.clone();
@@ -152,6 +168,26 @@ public class StateObserverOthello extends ObserverBase{
 	public StateObserverOthello copy() {
 		return new StateObserverOthello(this);
 	}
+
+	/**
+	 * Copy {@code this} into {@code target}, reusing its board and its list of available actions.
+	 */
+	@Override
+	public StateObservation copyInto(StateObservation target) {
+		if (target==null || target.getClass()!=StateObserverOthello.class || this.getClass()!=StateObserverOthello.class)
+			return this.copy();
+		StateObserverOthello t = (StateObserverOthello) target;
+		copyBaseInto(t);
+		BaseOthello.deepCopyGameState(this.currentGameState, t.currentGameState);
+		t.playerNextMove = this.playerNextMove;
+		t.countBlack = this.countBlack;
+		t.countWhite = this.countWhite;
+		t.boardHash = this.boardHash;
+		t.boardHashValid = this.boardHashValid;
+		t.availableActions.clear();
+		t.availableActions.addAll(this.availableActions);
+		return t;
+	}
 	
 	/**
 	 * @return a boolean whether the game has no possible actions for any player.
@@ -277,7 +313,14 @@ public class StateObserverOthello extends ObserverBase{
 		int iAction = action.toInt();
 		int j = iAction % ConfigOthello.BOARD_SIZE;
 		int i = (iAction-j) / ConfigOthello.BOARD_SIZE;
-		BaseOthello.flip(currentGameState, i, j, playerNextMove);
+		long flipped = BaseOthello.flip(currentGameState, i, j, playerNextMove);
+		if (boardHashValid) {
+			boardHash ^= ZOBRIST.key(iAction, ConfigOthello.EMPTY) ^ ZOBRIST.key(iAction, playerNextMove);
+			for (; flipped != 0; flipped &= flipped - 1) {
+				int n = Long.numberOfTrailingZeros(flipped);
+				boardHash ^= ZOBRIST.key(n, ConfigOthello.BLACK) ^ ZOBRIST.key(n, ConfigOthello.WHITE);
+			}
+		}
 		currentGameState[i][j] = playerNextMove;
 		int prevPlayer = playerNextMove;
 		
@@ -351,6 +394,23 @@ public class StateObserverOthello extends ObserverBase{
 		return sb.toString();
 	}
 
+	/**
+	 * The Zobrist hash of the board (the player to move is not part of {@link #stringDescr()}, so it is not part of
+	 * the hash either).
+	 */
+	@Override
+	public long hash64() {
+		if (!boardHashValid) {
+			long h = 0L;
+			for (int i = 0, n = 0; i < ConfigOthello.BOARD_SIZE; i++)
+				for (int j = 0; j < ConfigOthello.BOARD_SIZE; j++, n++)
+					h ^= ZOBRIST.key(n, currentGameState[i][j]);
+			boardHash = h;
+			boardHashValid = true;
+		}
+		return boardHash;
+	}
+
 	public void toString2() {
 		
 		for(int i = 0; i < ConfigOthello.BOARD_SIZE; i++) {
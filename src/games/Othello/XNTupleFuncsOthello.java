@@ -170,6 +170,15 @@ public class XNTupleFuncsOthello extends XNTupleBase implements XNTupleFuncs, Se
 		return symmetryVectors;
 	}
 
+	/**
+	 * The symmetries (rotations and reflections) are pure cell permutations.
+	 * @return the permutation tables, see {@link XNTupleFuncs#symmetryPermutations()}
+	 */
+	@Override
+	public int[][] symmetryPermutations() {
+		return makeSymmetryPermutations();
+	}
+
 	/**
 	 * Helper function for  {@link #symmetryVectors(BoardVector, int)} :
 	 * Rotates the given boardVector 90 degrees clockwise
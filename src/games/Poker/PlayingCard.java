@@ -1,8 +1,10 @@
 package games.Poker;
 
+import java.io.Serializable;
 import java.util.Arrays;
 
-public class PlayingCard {
+public class PlayingCard implements Serializable {
+    private static final long serialVersionUID = 1L;
 
     private final int rank;
     private final int suit;
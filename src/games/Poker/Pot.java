@@ -1,6 +1,10 @@
 package games.Poker;
 
-public class Pot {
+import java.io.Serializable;
+
+public class Pot implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     private double size;
     private final double[] open;
     private boolean[] claim;
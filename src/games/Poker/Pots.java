@@ -1,8 +1,11 @@
 package games.Poker;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 
-public class Pots {
+public class Pots implements Serializable {
+        private static final long serialVersionUID = 1L;
+
         private final ArrayList<Pot> pots;
 
     /**
@@ -5,6 +5,7 @@ import games.StateObsNondeterministic;
 import games.StateObservation;
 import tools.Types;
 import tools.Types.ACTIONS;
+import tools.Zobrist;
 
 import java.util.*;
 import java.util.concurrent.ThreadLocalRandom;
@@ -1004,6 +1005,25 @@ public class StateObserverPoker extends ObsNondetBase implements StateObsNondete
 		return cc.toString();
 	}
 
+	/**
+	 * The hash is computed directly from the score, the hole cards and the community cards (0 for an unknown card),
+	 * the same information as in {@link #stringDescr()}.
+	 */
+	@Override
+	public long hash64() {
+		long h = Zobrist.mix64(Double.doubleToLongBits(getGameScore(0)));	// stringDescr() has only this score
+		for (int p=0; p<NUM_PLAYER; p++)
+			for (int c=0; c<2; c++)
+				h = Zobrist.mix64(h, cardId(getHoleCards(p)[c]));
+		for (PlayingCard card : communityCards)
+			h = Zobrist.mix64(h, cardId(card));
+		return h;
+	}
+
+	private static int cardId(PlayingCard card) {
+		return (card==null) ? 0 : card.getId();
+	}
+
 	// --- obsolete, use Arena().getGameName() instead
 //	public String getName() { return "Poker";	}
 
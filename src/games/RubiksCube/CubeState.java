@@ -8,6 +8,7 @@ import java.util.Hashtable;
 import java.util.Map;
 
 import games.BoardVector;
+import tools.Zobrist;
 
 /**
  * Class CubeState represents a certain cube state. It comes in four different types (member {@code type}), two
@@ -781,6 +782,16 @@ abstract public class CubeState implements Serializable {
 	/**
 	 * @return a one-line string representing this object: This string is a representation of {@link #fcol}.
 	 */
+	/**
+	 * @return a 64-bit hash of {@code fcol}, consistent with {@link #toString()}: equal strings imply equal hashes
+	 * 		(the types COLOR_P and COLOR_R have the same string format, so they are not distinguished)
+	 */
+	public long hash64() {
+		long h = Zobrist.mix64((type==Type.TRAFO_P) ? 1 : (type==Type.TRAFO_R) ? 2 : 0);
+		for (int f : fcol) h = Zobrist.mix64(h, f);
+		return h;
+	}
+
 	public String toString() {
 		DecimalFormat form = new DecimalFormat("00");
 		StringBuilder sb = new StringBuilder();
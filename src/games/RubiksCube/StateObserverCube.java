@@ -179,6 +179,11 @@ public class StateObserverCube extends ObserverBase implements StateObservation
  		return m_state.toString();
 //		return m_state.getTwistSeq();	// this would be necessary for hash map in MaxNAgent, but is problematic in other cases
 	}
+
+	@Override
+	public long hash64() {
+		return m_state.hash64();
+	}
 	
 	public CubeState getCubeState() {
 		return m_state;
@@ -25,6 +25,10 @@ public class Link2 implements Serializable
 		this.nFrom = other.nFrom;
 		this.lTo = other.lTo.clone();
 	}
+	void copyFrom(Link2 other) {
+		this.nFrom = other.nFrom;
+		System.arraycopy(other.lTo, 0, this.lTo, 0, lTo.length);
+	}
 
 	public boolean hasSpaceLeft() {
 		for (int i=nFrom+1; i<lTo.length; i++) {
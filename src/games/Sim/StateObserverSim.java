@@ -12,6 +12,7 @@ import games.StateObservation;
 import games.Sim.Gui.BoardPanel;
 import tools.Types.ACTIONS;
 import tools.Types;
+import tools.Zobrist;
 
 /**
  * This class holds any valid Sim game state. It is coded
@@ -62,6 +63,19 @@ public class StateObserverSim extends ObserverBase implements StateObservation {
 	 */
 	private ArrayList<Types.ACTIONS> availableActions = new ArrayList<>();
 
+	/**
+	 * Zobrist keys for the links (numbered as the actions) with owners 0 (empty), 1, 2, 3. Sufficient for up to
+	 * {@code MAX_HASH_NODES} nodes, for larger graphs {@link #hash64()} falls back to the string hash.
+	 */
+	private static final int MAX_HASH_NODES = 30;
+	private static final Zobrist ZOBRIST = new Zobrist(MAX_HASH_NODES*(MAX_HASH_NODES-1)/2, 4, 0x5133L);
+	/**
+	 * the Zobrist hash of the links, maintained incrementally in {@link #advance(ACTIONS)}. It is transient and only
+	 * valid if {@code boardHashValid} (after loading it is recomputed in {@link #hash64()}).
+	 */
+	private transient long boardHash;
+	private transient boolean boardHashValid = false;
+
 //	private ArrayList<Integer> lastMoves;		// this is now in ObserverBase
 
 	/**
@@ -93,6 +107,8 @@ public class StateObserverSim extends ObserverBase implements StateObservation {
 
 		setupLinks(other.numNodes);
 		copyLinks(other.lFrom);
+		this.boardHash = other.boardHash;
+		this.boardHashValid = other.boardHashValid;
 		
 		if (other.availableActions!=null)	// this check is needed when loading older logs
 			this.availableActions = (ArrayList<ACTIONS>) other.availableActions.clone();
@@ -120,6 +136,28 @@ public class StateObserverSim extends ObserverBase implements StateObservation {
 		return sos;
 	}
 
+	/**
+	 * Copy {@code this} into {@code target}, reusing its links and its list of available actions.
+	 */
+	@Override
+	public StateObservation copyInto(StateObservation target) {
+		if (target==null || target.getClass()!=StateObserverSim.class || this.getClass()!=StateObserverSim.class
+				|| ((StateObserverSim) target).numNodes!=this.numNodes
+				|| ((StateObserverSim) target).numPlayers!=this.numPlayers)
+			return this.copy();
+		StateObserverSim t = (StateObserverSim) target;
+		copyBaseInto(t);
+		t.player = this.player;
+		t.finalSim.copyFrom(this.finalSim);
+		for (int i = 0; i < numNodes; i++)
+			t.lFrom[i].copyFrom(this.lFrom[i]);
+		t.boardHash = this.boardHash;
+		t.boardHashValid = this.boardHashValid;
+		t.availableActions.clear();
+		t.availableActions.addAll(this.availableActions);
+		return t;
+	}
+
 	private void setupLinks(int numberOfNodes)
 	{
 		lFrom = new Link2[numberOfNodes];
@@ -414,6 +452,23 @@ public class StateObserverSim extends ObserverBase implements StateObservation {
  		return sout.toString();
 	}
 
+	/**
+	 * The Zobrist hash of the links (as {@link #stringDescr()}, it does not contain the player to move).
+	 */
+	@Override
+	public long hash64() {
+		if (numNodes > MAX_HASH_NODES) return super.hash64();
+		if (!boardHashValid) {
+			long h = 0L;
+			for(int i = 0, k = 0; i < lFrom.length -1 ; i++)
+				for(int j = lFrom[i].getNode()+1; j < lFrom.length; j++,k++)
+					if (lFrom[i].getPlayer(j) != 0) h ^= ZOBRIST.key(k, lFrom[i].getPlayer(j));
+			boardHash = h;
+			boardHashValid = true;
+		}
+		return boardHash;
+	}
+
 	public String stringDescr2() {
 		StringBuilder sout = new StringBuilder();
 		String[] str = {"_", "0", "1", "2" };
@@ -439,6 +494,7 @@ public class StateObserverSim extends ObserverBase implements StateObservation {
 			for(int j = lFrom[i].getNode()+1; j < lFrom.length; j++,k++) {
 				if(k == action)	{
 					lFrom[i].setPlayer(j, player + 1);
+					if (boardHashValid) boardHash ^= ZOBRIST.key(k, player + 1);
 					setLastNodes(i,j);
 					return;
 				}
@@ -524,6 +580,11 @@ public class StateObserverSim extends ObserverBase implements StateObservation {
 			this.loser = other.loser;
 			this.allRewards = other.allRewards.clone();			
 		}
+		void copyFrom(FinalSim other) {
+			this.winner = other.winner;
+			this.loser = other.loser;
+			System.arraycopy(other.allRewards, 0, this.allRewards, 0, allRewards.length);
+		}
 		public boolean isGameOver() {
 			return (winner != -2);
 		}
@@ -5,6 +5,7 @@ import games.ObserverBase;
 import games.StateObsNondeterministic;
 import games.StateObservation;
 import tools.Types.ACTIONS;
+import tools.Zobrist;
 
 import java.io.Serial;
 import java.util.ArrayList;
@@ -97,6 +98,11 @@ public class StateObserverSG extends ObsNondetBase implements StateObsNondetermi
 		String sout = "(" + m_sum +") " + (m_gameOver?"F":"O");	// (F)inal : (O)pen
  		return sout;
 	}
+
+	@Override
+	public long hash64() {
+		return Zobrist.mix64(m_sum, m_gameOver ? 1 : 0);
+	}
 	
 	/**
 	 * @param player only needed for the interface, not relevant in this 1-person game
@@ -38,6 +38,19 @@ public interface StateObservation extends PartialState, Serializable{
 
 	StateObservation copy();
 
+	/**
+	 * Copy {@code this} into {@code target}, reusing the storage of {@code target} where possible. This is for inner
+	 * loops that need a scratch copy again and again (e.g. the rollouts of MCTS): The caller keeps the returned object
+	 * and passes it as {@code target} in the next call.
+	 * <p>
+	 * ObserverBase provides a default implementation which just returns {@link #copy()}. Games where
+	 * {@link #copy()} is expensive override it.
+	 *
+	 * @param target	a state no longer needed by the caller (it is overwritten), or null
+	 * @return a copy of {@code this}. This is {@code target}, if it could be reused, else a new object.
+	 */
+	StateObservation copyInto(StateObservation target);
+
 	/**
 	 * Some classes implementing StateObservation store information about the history that led to this state.
 	 * This is useful in some situations (e.g. Rubik's Cube: When searching the twist sequence to the solved cube,
@@ -105,6 +118,19 @@ public interface StateObservation extends PartialState, Serializable{
 	 */
 	String uniqueStringDescr();
 
+	/**
+	 * A 64-bit hash of the state, e.g. for transposition tables that are keyed by primitives instead of
+	 * {@link #uniqueStringDescr()}. The contract is: equal {@link #uniqueStringDescr()} implies equal
+	 * {@code hash64()}. (Different states may have the same hash, but this is very unlikely.)
+	 * <p>
+	 * ObserverBase provides a default implementation which hashes {@link #uniqueStringDescr()}. Board games
+	 * override it with a Zobrist hash ({@link tools.Zobrist}) which is maintained incrementally in {@code advance} or
+	 * which is computed directly from a compact state coding.
+	 *
+	 * @return	a 64-bit hash of the state
+	 */
+	long hash64();
+
 	/**
 	 * 
 	 * @return a string representation of action {@code act}
@@ -8,6 +8,7 @@ import games.ObserverBase;
 import games.StateObservation;
 import tools.Types;
 import tools.Types.ACTIONS;
+import tools.Zobrist;
 
 /**
  * Class StateObserverTTT observes the current state of the game.<p>
@@ -27,6 +28,17 @@ public class StateObserverTTT extends ObserverBase implements StateObservation {
 	private int m_Player;			// what we fill into m_Table for the current player's move:
 									// +1 for X (this.getPlayer()==0), -1 for O (this.getPlayer()==1)
 	protected ArrayList<Types.ACTIONS> availableActions = new ArrayList<>();	// holds all available actions
+
+	/**
+	 * Zobrist keys for the 9 cells with values O, empty, X (index {@code m_Table[i][j]+1})
+	 */
+	private static final Zobrist ZOBRIST = new Zobrist(9, 3, 0x777L);
+	/**
+	 * the Zobrist hash of {@code m_Table}, maintained incrementally in {@link #advance(ACTIONS)}. It is transient and
+	 * only valid if {@code boardHashValid} (after loading it is recomputed in {@link #hash64()}).
+	 */
+	private transient long boardHash;
+	private transient boolean boardHashValid = false;
     
 	/**
 	 * change the version ID for serialization only if a newer version is no longer 
@@ -57,6 +69,8 @@ public class StateObserverTTT extends ObserverBase implements StateObservation {
 		this.m_Table = new int[3][3];
 		TicTDBase.copyTable(other.m_Table,m_Table); 
 		m_Player = other.m_Player;
+		boardHash = other.boardHash;
+		boardHashValid = other.boardHashValid;
 		if (other.availableActions!=null)	// this check is needed when loading older logs
 			this.availableActions = (ArrayList<ACTIONS>) other.availableActions.clone();
 				// Note that clone does only clone the ArrayList, but not the contained ACTIONS, they are 
@@ -183,6 +197,7 @@ public class StateObserverTTT extends ObserverBase implements StateObservation {
 		
 		assert m_Table[i][j]==0 : "The desired move would alter an already occupied field!";
 		m_Table[i][j] = m_Player;
+		if (boardHashValid) boardHash ^= ZOBRIST.key(iAction, 1) ^ ZOBRIST.key(iAction, m_Player+1);
     	
     	setAvailableActions(); 		// IMPORTANT: adjust the available actions (have reduced by one)
     	
@@ -247,6 +262,23 @@ public class StateObserverTTT extends ObserverBase implements StateObservation {
 		return m_Table;
 	}
 
+	/**
+	 * The Zobrist hash of the board (as {@link #stringDescr()}, it does not contain the player to move, which is
+	 * determined by the board anyhow).
+	 */
+	@Override
+	public long hash64() {
+		if (!boardHashValid) {
+			long h = 0L;
+			for (int i=0, n=0; i<3; i++)
+				for (int j=0; j<3; j++, n++)
+					h ^= ZOBRIST.key(n, m_Table[i][j]+1);
+			boardHash = h;
+			boardHashValid = true;
+		}
+		return boardHash;
+	}
+
 	/**
 	 * @return 	{0,1} for the player to move in this state 
 	 * 			Player 0 is X, the player who starts the game (m_Player=+1). Player 1 is O (m_Player=-1).
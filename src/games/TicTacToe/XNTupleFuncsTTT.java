@@ -139,6 +139,15 @@ public class XNTupleFuncsTTT extends XNTupleBase implements XNTupleFuncs, Serial
 		}
 		return equiv;
 	}
+
+	/**
+	 * The symmetries (rotations and reflections) are pure cell permutations.
+	 * @return the permutation tables, see {@link XNTupleFuncs#symmetryPermutations()}
+	 */
+	@Override
+	public int[][] symmetryPermutations() {
+		return makeSymmetryPermutations();
+	}
 	
 	/**
 	 * Given a certain board array of symmetric (equivalent) states for state <b>{@code so}</b> 
@@ -1008,9 +1008,22 @@ public class XArenaFuncs {
 			long startTime = System.currentTimeMillis();
 			gb.initialize();
 			while (pa.getGameNum() < pa.getMaxGameNum()) {
-				StateObservation so = soSelectStartState(gb, xab.oPar[n].getChooseStart01(), pa);
+				if (pa instanceof NTuple4Base ntb && (ntb.getParTD().getNumReplicas() > 1 ||
+						(pa instanceof TDNTuple4Agt && ntb.getParTD().getNumTrainThreads() > 1))) {
+					// parallel training (with replicas or Hogwild) of all episodes up to the next evaluation:
+					final PlayAgent fpa = pa;
+					final boolean chooseStart01 = xab.oPar[n].getChooseStart01();
+					int numEpi = Math.min(numEval - pa.getGameNum() % numEval, pa.getMaxGameNum() - pa.getGameNum());
+					if (ntb.getParTD().getNumReplicas() > 1) {
+						ntb.trainAgentReplicas(numEpi, () -> soSelectStartState(gb, chooseStart01, fpa));
+					} else {
+						((TDNTuple4Agt) ntb).trainAgentParallel(numEpi, () -> soSelectStartState(gb, chooseStart01, fpa));
+					}
+				} else {
+					StateObservation so = soSelectStartState(gb, xab.oPar[n].getChooseStart01(), pa);
 
-				pa.trainAgent(so);
+					pa.trainAgent(so);
+				}
 
 				gameNum = pa.getGameNum();
 				if (gameNum % numEval == 0) { // || gameNum==1) {
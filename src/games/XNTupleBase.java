@@ -16,7 +16,8 @@ import tools.Types;
  *      <li> {@link #getPositionValuesVector()},
  *      <li> {@link #instantiateAfterLoading()},
  *      <li> {@link #makeBoardVectorEachCellDifferent()},
- *      <li> {@link #symmetryVectors(StateObsWithBoardVector, int)} and
+ *      <li> {@link #symmetryVectors(StateObsWithBoardVector, int)},
+ *      <li> {@link #symmetryPermutations()} and
  *      <li> {@link #useActionMap()}
  *  </ul>
  *  from the interface {@link XNTupleFuncs}. All other methods are left as abstract methods.
@@ -31,6 +32,8 @@ abstract public class XNTupleBase implements Serializable, XNTupleFuncs {
     @Serial
     private static final long serialVersionUID = 42L;
 
+	private transient int[][] symPerm = null;		// cache for makeSymmetryPermutations()
+
     public XNTupleBase() {	}
 
 	/**
@@ -100,6 +103,44 @@ abstract public class XNTupleBase implements Serializable, XNTupleFuncs {
 	@Override
 	abstract public BoardVector[] symmetryVectors(BoardVector boardVector, int n);
 
+	/**
+	 * The default stub returns {@code null} (symmetries are not known to be pure cell permutations). Games whose
+	 * symmetries are pure cell permutations should override this method with
+	 * {@code return makeSymmetryPermutations();}
+	 *
+	 * @return {@code null}
+	 * @see #makeSymmetryPermutations()
+	 */
+	@Override
+	public int[][] symmetryPermutations() {
+		return null;
+	}
+
+	/**
+	 * Derive the permutation tables for {@link #symmetryPermutations()} once from
+	 * {@link #symmetryVectors(BoardVector, int)}, applied to a board where each cell holds its own number.
+	 * This is only valid if {@link #symmetryVectors(BoardVector, int)} moves cell values without changing them.
+	 *
+	 * @return {@code perm[s][numCells]}, see {@link XNTupleFuncs#symmetryPermutations()}
+	 */
+	protected int[][] makeSymmetryPermutations() {
+		if (symPerm==null) {
+			int nc = getNumCells();
+			int[] cells = new int[nc];
+			for (int i = 0; i < nc; i++) cells[i] = i;
+			BoardVector[] equiv = symmetryVectors(new BoardVector(cells), 0);
+			assert (equiv.length==getNumSymmetries())
+					: "symmetryVectors returns "+equiv.length+" boards, but there are "+getNumSymmetries()+" symmetries";
+			int[][] perm = new int[equiv.length][];
+			for (int k = 0; k < equiv.length; k++) {
+				assert (equiv[k].bvec.length==nc) : "symmetry vector "+k+" has wrong length";
+				perm[k] = equiv[k].bvec.clone();
+			}
+			symPerm = perm;
+		}
+		return symPerm;
+	}
+
 	@Override
 	abstract public int[] symmetryActions(int actionKey);
 
@@ -111,6 +111,21 @@ public interface XNTupleFuncs {
 	 * object in order to construct the symmetric board vectors.)
 	 */
 	BoardVector[] symmetryVectors(StateObsWithBoardVector curSOWB, int n);
+
+	/**
+	 * If all symmetries of this game are pure permutations of the board cells (each cell value is just moved to
+	 * another cell, as for rotations and reflections), return them as permutation tables {@code perm} with
+	 * <pre>
+	 * 		symmetryVectors(boardVector,0)[k].bvec[c] == boardVector.bvec[perm[k][c]] </pre>
+	 * for all symmetries k = 0,...,{@link #getNumSymmetries()}-1 and all cells c. The n-tuple value functions
+	 * use these tables to calculate the LUT indices of all symmetric boards directly from the original board,
+	 * without constructing the symmetric board vectors.
+	 *
+	 * @return {@code perm[s][numCells]} or {@code null}, if the symmetries are no pure cell permutations (e.g. if
+	 * 		they also change cell values). In the latter case, {@link #symmetryVectors(StateObsWithBoardVector, int)}
+	 * 		is used.
+	 */
+	int[][] symmetryPermutations();
 	
 	/**
 	 * Given a certain board array of symmetric (equivalent) states for state <b>{@code so}</b> 
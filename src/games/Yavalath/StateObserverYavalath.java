@@ -4,6 +4,7 @@ import games.ObserverBase;
 import games.StateObservation;
 import tools.ScoreTuple;
 import tools.Types;
+import tools.Zobrist;
 
 import java.io.Serializable;
 import java.util.ArrayList;
@@ -47,6 +48,19 @@ public class StateObserverYavalath extends ObserverBase implements StateObservat
     private GameInformation information;
     private ArrayList <TileYavalath> moveList;
 
+    /**
+     * Zobrist keys for the cells (numbered as the actions) with owners PLAYER_ZERO, PLAYER_ONE, PLAYER_TWO. Sufficient
+     * for rows up to {@code MAX_HASH_ROW_LENGTH}, for larger boards {@link #hash64()} falls back to the string hash.
+     */
+    private static final int MAX_HASH_ROW_LENGTH = 21;
+    private static final Zobrist ZOBRIST = new Zobrist(MAX_HASH_ROW_LENGTH*MAX_HASH_ROW_LENGTH, 3, 0x7A7A1L);
+    /**
+     * the Zobrist hash of the board, maintained incrementally in {@link #advance(Types.ACTIONS)}. It is transient and
+     * only valid if {@code boardHashValid} (after loading it is recomputed in {@link #hash64()}).
+     */
+    private transient long boardHash;
+    private transient boolean boardHashValid = false;
+
     /**
      * change the version ID for serialization only if a newer version is no longer
      * compatible with an older one (older .gamelog containing this object will become
@@ -70,6 +84,8 @@ public class StateObserverYavalath extends ObserverBase implements StateObservat
         this.currentPlayer = stateObserverYavalath.currentPlayer;
         this.numPlayers = stateObserverYavalath.numPlayers;
         this.swapRuleUsed = stateObserverYavalath.swapRuleUsed;
+        this.boardHash = stateObserverYavalath.boardHash;
+        this.boardHashValid = stateObserverYavalath.boardHashValid;
         this.information = new GameInformation(stateObserverYavalath.information);
         this.moveList = (ArrayList<TileYavalath>) stateObserverYavalath.moveList.clone();
         if(stateObserverYavalath.availableActions!=null){
@@ -166,6 +182,7 @@ public class StateObserverYavalath extends ObserverBase implements StateObservat
 
         int j = actionInt % getMaxRowLength();
         int i = (actionInt-j) / getMaxRowLength();
+        int oldOwner = board[i][j].getPlayer();     // another player than EMPTY only if the swap rule is used
 
         if (board[i][j].getPlayer() != EMPTY && board[i][j].getPlayer() != INVALID_FIELD){
             if(super.m_counter == 1){
@@ -175,6 +192,10 @@ public class StateObserverYavalath extends ObserverBase implements StateObservat
         }
 
         board[i][j].setPlayer(currentPlayer);
+        if (boardHashValid) {
+            if (oldOwner >= 0) boardHash ^= ZOBRIST.key(actionInt, oldOwner);
+            boardHash ^= ZOBRIST.key(actionInt, currentPlayer);
+        }
         board[i][j].setThreateningMove(false);
         moveList.add(0, board[i][j]);
         super.addToLastMoves(action);
@@ -396,6 +417,23 @@ public class StateObserverYavalath extends ObserverBase implements StateObservat
         return sb.toString();
     }
 
+    /**
+     * The Zobrist hash of the board (as {@link #stringDescr()}, it does not contain the player to move).
+     */
+    @Override
+    public long hash64() {
+        if (getMaxRowLength() > MAX_HASH_ROW_LENGTH) return super.hash64();
+        if (!boardHashValid) {
+            long h = 0L;
+            for (int i = 0, n = 0; i < getMaxRowLength(); i++)
+                for (int j = 0; j < getMaxRowLength(); j++, n++)
+                    if (board[i][j].getPlayer() >= 0) h ^= ZOBRIST.key(n, board[i][j].getPlayer());
+            boardHash = h;
+            boardHashValid = true;
+        }
+        return boardHash;
+    }
+
     @Override
     public void storeBestActionInfo(Types.ACTIONS_VT bestAction){
         double[] valueTable = bestAction.getVTable();
@@ -128,6 +128,15 @@ public class XNTupleFuncsYavalath extends XNTupleBase implements XNTupleFuncs, S
 
     }
 
+    /**
+     * The symmetries (rotations and reflections) are pure cell permutations.
+     * @return the permutation tables, see {@link XNTupleFuncs#symmetryPermutations()}
+     */
+    @Override
+    public int[][] symmetryPermutations() {
+        return makeSymmetryPermutations();
+    }
+
     @Override
     public int[] symmetryActions(int actionKey) {
         return actionArray[actionKey];
@@ -5,6 +5,7 @@ import games.*;
 import games.ZweiTausendAchtundVierzig.Heuristic.HeuristicSettings2048;
 import tools.Types;
 import tools.Types.ACTIONS;
+import tools.Zobrist;
 
 import java.util.ArrayList;
 import java.util.Random;
@@ -786,6 +787,14 @@ public class StateObserver2048 extends ObsNondetBase implements StateObsNondeter
         //return Long.toHexString(boardB);            // no leading zeros
     }
 
+	/**
+	 * The hash is computed directly from {@code boardB}, which codes the whole board in one {@code long}.
+	 */
+	@Override
+	public long hash64() {
+		return Zobrist.mix64(boardB);
+	}
+
 	/**
 	 * 
 	 * @return a string representation of actions {@code act}
@@ -6,6 +6,7 @@ import games.ObserverBase;
 import games.StateObsNondeterministic;
 import tools.Types;
 import tools.Types.ACTIONS;
+import tools.Zobrist;
 
 import java.io.Serial;
 import java.util.ArrayList;
@@ -657,6 +658,18 @@ public class StateObserver2048Slow extends ObsNondetBase implements StateObsNond
         }
         return s;
     }
+	/**
+	 * The hash is computed directly from the tile values of {@code gameBoard}.
+	 */
+	@Override
+	public long hash64() {
+		long h = 0;
+		for (Tile[] row : gameBoard)
+			for (Tile t : row)
+				h = Zobrist.mix64(h, t.getValue());
+		return h;
+	}
+
 	// -- possible code to test stringDescr --
 	//		int[][] state = {{0,2048,0,0}, {0,0,0,0}, {0,2,4,0}, {0,0,0,0}};
 	//		StateObserver2048Slow so = new StateObserver2048Slow(state,0,0);
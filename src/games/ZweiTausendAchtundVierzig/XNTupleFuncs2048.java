@@ -140,6 +140,15 @@ public class XNTupleFuncs2048 extends XNTupleBase implements XNTupleFuncs, Seria
 		return symmetries;
 	}
 
+	/**
+	 * The symmetries (rotations and reflections) are pure cell permutations.
+	 * @return the permutation tables, see {@link XNTupleFuncs#symmetryPermutations()}
+	 */
+	@Override
+	public int[][] symmetryPermutations() {
+		return makeSymmetryPermutations();
+	}
+
 	/**
 	 * Given a certain board array of symmetric (equivalent) states for state <b>{@code so}</b> 
 	 * and a certain action to be taken in <b>{@code so}</b>, 
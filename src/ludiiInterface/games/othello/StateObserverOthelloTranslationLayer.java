@@ -57,6 +57,7 @@ public class StateObserverOthelloTranslationLayer extends StateObserverOthello {
         int player = sysConversion.getGBGPlayerFromLudii(move.actions().get(0).state());
         BaseOthello.flip(currentGameState,x,y,player);
         currentGameState[x][y] = player;
+        boardHashValid = false;
     }
 
     /**
@@ -5,6 +5,16 @@ import java.io.Serializable;
 import javax.swing.JPanel;
 
 /**
+ * Parameters for {@link controllers.MCTS.MCTSAgentT}.
+ * <p>
+ * Besides the parameters in the GUI {@link MCTSParams}, there is {@code numTrees} (no GUI element): the number of
+ * independent trees that are built on as many threads (root-parallel ensemble, see
+ * {@link controllers.MCTS.SingleMCTSPlayer}). The iterations {@code numIters} are split among the trees.
+ * <p>
+ * Anytime mode (no GUI elements): If {@code moveTime > 0}, each move searches for {@code moveTime} ms (wall clock)
+ * instead of {@code numIters} iterations. In this mode, {@code earlyStop} stops the search as soon as the leading root
+ * child cannot be overtaken anymore in the remaining time, and {@code reuseTree} keeps the subtree of the previous
+ * move's tree that belongs to the current state (only for {@code numTrees = 1}).
  * 
  * @see MCTSParams
  */
@@ -21,6 +31,8 @@ public class ParMCTS implements Serializable {
     public static final double DEFAULT_EPSILONGREEDY = 0.05;
     public static final int DEFAULT_VERBOSITY = 0;
     public static final int DEFAULT_SELECT_MODE = 0;	// 0:[UCT], 1:[eps-greedy], 2:[roulette wheel]
+    public static final int DEFAULT_NUM_TREES = 1;
+    public static final int DEFAULT_MOVE_TIME = 0;	// 0: no anytime mode, take numIters iterations
     private int numIters = DEFAULT_NUM_ITERS;
 	private int rolloutDepth = DEFAULT_ROLLOUT_DEPTH;
     private int treeDepth = DEFAULT_TREE_DEPTH;
@@ -29,6 +41,10 @@ public class ParMCTS implements Serializable {
     private int verbose = DEFAULT_VERBOSITY; 
     private boolean useNormalize = true;
     private int selectMode = DEFAULT_SELECT_MODE;
+    private int numTrees = DEFAULT_NUM_TREES;		// no GUI element
+    private int moveTime = DEFAULT_MOVE_TIME;		// no GUI element
+    private boolean earlyStop = true;				// no GUI element
+    private boolean reuseTree = false;				// no GUI element
 
     /**
      * This member is only constructed when the constructor {@link #ParMCTS(boolean) ParMCTS(boolean withUI)} 
@@ -67,6 +83,10 @@ public class ParMCTS implements Serializable {
 		this.verbose = tp.getVerbosity();
 		this.useNormalize = tp.getNormalize();
 		this.selectMode = tp.getSelectMode();
+		this.numTrees = tp.getNumTrees();
+		this.moveTime = tp.getMoveTime();
+		this.earlyStop = tp.getEarlyStop();
+		this.reuseTree = tp.getReuseTree();
 		
 		if (msparams!=null)
 			msparams.setFrom(this);
@@ -124,6 +144,25 @@ public class ParMCTS implements Serializable {
 	public boolean getNormalize() {
 		return useNormalize;
 	}
+	/**
+	 * @return the number of independent trees (root-parallel ensemble), at least 1 (older agents without this
+	 * 		parameter have 1)
+	 */
+	public int getNumTrees() {
+		return Math.max(numTrees, 1);
+	}
+	/**
+	 * @return the search time per move in ms (anytime mode), 0 if the search takes {@link #getNumIter()} iterations
+	 */
+	public int getMoveTime() {
+		return moveTime;
+	}
+	public boolean getEarlyStop() {
+		return earlyStop;
+	}
+	public boolean getReuseTree() {
+		return reuseTree;
+	}
 
 	public void setNumIter(int numIters) {
 		this.numIters = numIters;
@@ -131,6 +170,22 @@ public class ParMCTS implements Serializable {
 			msparams.setNumIter(numIters);
 	}
 
+	public void setNumTrees(int numTrees) {
+		this.numTrees = numTrees;
+	}
+
+	public void setMoveTime(int moveTime) {
+		this.moveTime = moveTime;
+	}
+
+	public void setEarlyStop(boolean earlyStop) {
+		this.earlyStop = earlyStop;
+	}
+
+	public void setReuseTree(boolean reuseTree) {
+		this.reuseTree = reuseTree;
+	}
+
 	public void setSelectMode(int selectMode) {
 		this.selectMode=selectMode;
 		if (msparams!=null)
@@ -12,7 +12,24 @@ import controllers.MaxNAgent;
  * Parameters for {@link MaxNAgent} and {@link ExpectimaxNAgent}
  * <ul>
  * <li> <b> Tree Depth</b>: [10] depth of search tree
- * <li> <b> Max-N Hashmap</b>: [true] (only MaxN) whether to hash already visited states or not
+ * <li> <b> Max-N Hashmap</b>: [true] whether to store the values of already visited states in a transposition
+ *      table or not
+ * </ul>
+ * Besides the parameters in the GUI {@link MaxNParams}, there are (no GUI elements):
+ * <ul>
+ * <li> <b>maxNTableSizeMB</b>: [16] the memory size in MB of the (bounded) transposition table, see
+ *      {@link tools.TranspositionTable}.
+ * <li> <b>maxNMoveTime</b>: [0] if &gt; 0, the time budget in ms per move. The agent then searches with iterative
+ *      deepening (depth 1, 2, ..., Tree Depth) until the budget expires. If 0, it searches with fixed Tree Depth.
+ * <li> <b>maxNParallelism</b>: [1] (only ExpectimaxN) the number of threads. If &gt; 1, the root actions and the
+ *      chance outcomes up to {@code maxNParallelDepth} are searched in parallel (fork/join). The results are the
+ *      same as with 1 thread.
+ * <li> <b>maxNParallelDepth</b>: [1] (only ExpectimaxN) the chance nodes up to this depth expand their outcomes in
+ *      parallel (depth 1: the chance nodes after the root actions, 0: only the root actions are parallel).
+ * <li> <b>maxNStarPruning</b>: [0] (only ExpectimaxN) chance-node pruning with the game score bounds: 0 = none (full
+ *      expansion), 1 = Star1, 2 = Star2 (Star1 with a probing phase). Only for 2-player zero-sum games with perfect
+ *      information (e.g. EWN with 2 players), other games use full expansion. The vTable is the same as without
+ *      pruning.
  * </ul>
  *  <p>
  *  Game- and agent-specific parameters are set with {@link #setParamDefaults(String, String, int)}.
@@ -24,10 +41,20 @@ public class ParMaxN implements Serializable {
     public static int DEFAULT_MAXN_TREE_DEPTH = 10;
     public static boolean DEFAULT_MAXN_USE_HASHMAP = true;
 	public static boolean DEFAULT_STOPONROUNDOVER = true;
+	public static int DEFAULT_MAXN_TABLE_SIZE_MB = 16;
+	public static int DEFAULT_MAXN_MOVE_TIME = 0;
+	public static int DEFAULT_MAXN_PARALLELISM = 1;
+	public static int DEFAULT_MAXN_PARALLEL_DEPTH = 1;
+	public static int DEFAULT_MAXN_STAR_PRUNING = 0;
 
     private int maxNTreeDepth = DEFAULT_MAXN_TREE_DEPTH;
     private boolean maxNUseHashmap = DEFAULT_MAXN_USE_HASHMAP;
 	private boolean stopOnRoundOver = DEFAULT_STOPONROUNDOVER;
+	private int maxNTableSizeMB = DEFAULT_MAXN_TABLE_SIZE_MB;		// no GUI element
+	private int maxNMoveTime = DEFAULT_MAXN_MOVE_TIME;				// no GUI element
+	private int maxNParallelism = DEFAULT_MAXN_PARALLELISM;			// no GUI element
+	private int maxNParallelDepth = DEFAULT_MAXN_PARALLEL_DEPTH;	// no GUI element
+	private int maxNStarPruning = DEFAULT_MAXN_STAR_PRUNING;		// no GUI element
 
     /**
      * This member is only constructed when the constructor {@link #ParMaxN(boolean) ParMaxN(boolean withUI)}
@@ -62,6 +89,11 @@ public class ParMaxN implements Serializable {
 		this.maxNTreeDepth = op.getMaxNDepth();
 		this.maxNUseHashmap = op.getMaxNUseHashmap();
 		this.stopOnRoundOver = op.getStopOnRoundOver();
+		this.maxNTableSizeMB = op.getMaxNTableSizeMB();
+		this.maxNMoveTime = op.getMaxNMoveTime();
+		this.maxNParallelism = op.getMaxNParallelism();
+		this.maxNParallelDepth = op.getMaxNParallelDepth();
+		this.maxNStarPruning = op.getMaxNStarPruning();
 
 		if (mnparams!=null)
 			mnparams.setFrom(this);
@@ -104,6 +136,34 @@ public class ParMaxN implements Serializable {
 	public boolean getStopOnRoundOver() {
 		return stopOnRoundOver;
 	}
+	/**
+	 * @return the memory size in MB of the transposition table (an object from an older agent file, which has no
+	 * 		   such member, returns the default size)
+	 */
+	public int getMaxNTableSizeMB() {
+		return (maxNTableSizeMB > 0) ? maxNTableSizeMB : DEFAULT_MAXN_TABLE_SIZE_MB;
+	}
+	/**
+	 * @return the time budget in ms per move for iterative deepening (0: fixed depth, no iterative deepening)
+	 */
+	public int getMaxNMoveTime() {
+		return maxNMoveTime;
+	}
+	/**
+	 * @return the number of threads of ExpectimaxN (an object from an older agent file returns 1)
+	 */
+	public int getMaxNParallelism() {
+		return Math.max(maxNParallelism, 1);
+	}
+	public int getMaxNParallelDepth() {
+		return maxNParallelDepth;
+	}
+	/**
+	 * @return the chance-node pruning of ExpectimaxN: 0 = none, 1 = Star1, 2 = Star2
+	 */
+	public int getMaxNStarPruning() {
+		return maxNStarPruning;
+	}
 
 	public void setMaxNDepth(int treeDepth) {
 		this.maxNTreeDepth = treeDepth;
@@ -123,6 +183,27 @@ public class ParMaxN implements Serializable {
 			mnparams.setStopOnRoundOver(stopOnRoundOver);
 	}
 
+	public void setMaxNTableSizeMB(int sizeMB) {
+		this.maxNTableSizeMB = sizeMB;
+	}
+
+	public void setMaxNMoveTime(int moveTime) {
+		this.maxNMoveTime = moveTime;
+	}
+
+	public void setMaxNParallelism(int parallelism) {
+		this.maxNParallelism = parallelism;
+	}
+
+	public void setMaxNParallelDepth(int parallelDepth) {
+		this.maxNParallelDepth = parallelDepth;
+	}
+
+	public void setMaxNStarPruning(int starPruning) {
+		assert 0 <= starPruning && starPruning <= 2 : "maxNStarPruning has to be 0, 1 or 2";
+		this.maxNStarPruning = starPruning;
+	}
+
 	/**
 	 * Set sensible parameters for a specific agent and specific game. By "sensible
 	 * parameters" we mean parameter producing good results. If withUI, some parameter
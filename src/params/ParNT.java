@@ -44,6 +44,9 @@ public class ParNT implements Serializable {
     private boolean useSymmetry = true;
     private int nSym= 0;							// 0: use all symmetries, if useSymmetry==true
     private boolean afterState = false;
+    private boolean flatLut = false;				// true: all LUTs of a value function in one flat weight store
+    private int weightType = 0;						// 0: double, 1: float, 2: int16 fixed point, 3: sparse (see NTuple4)
+    private int sparseLutCap = 0;					// max. number of entries per sparse LUT, 0: no cap (no GUI element)
     
     /**
      * This member is only constructed when the constructor {@link #ParNT(boolean) ParNT(boolean withUI)} 
@@ -89,6 +92,9 @@ public class ParNT implements Serializable {
 		this.useSymmetry = nt.getUSESYMMETRY();
 		this.nSym = nt.getNSym();
 		this.afterState = nt.getAFTERSTATE();
+		this.flatLut = nt.getFlatLut();
+		this.weightType = nt.getWeightType();
+		this.sparseLutCap = nt.getSparseLutCap();
 
 		if (ntparams!=null)
 			ntparams.setFrom(this);
@@ -198,6 +204,33 @@ public class ParNT implements Serializable {
 		return afterState;
 	}
 
+	/**
+	 * @return true, if all LUTs of an n-tuple value function live in one contiguous {@code double[]} (flat weight
+	 * 		store, better memory locality and fewer objects), false, if each n-tuple has its own LUT.
+	 * 		Only relevant for {@link controllers.TD.ntuple4.NTuple4ValueFunc}.
+	 */
+	public boolean getFlatLut() {
+		return flatLut;
+	}
+
+	/**
+	 * @return the precision of the n-tuple LUT weights: 0: {@code double}, 1: {@code float}, 2: 16-bit fixed point
+	 * 		with a per-n-tuple scale (see {@link controllers.TD.ntuple4.NTuple4#WEIGHT_INT16}), 3: sparse LUTs
+	 * 		holding only the visited entries as {@code float} (see {@link controllers.TD.ntuple4.NTuple4#WEIGHT_SPARSE},
+	 * 		for n-tuple sets with huge index spaces). Only relevant for {@link controllers.TD.ntuple4.NTuple4ValueFunc}.
+	 */
+	public int getWeightType() {
+		return weightType;
+	}
+
+	/**
+	 * @return the maximum number of entries of each sparse LUT (weight type 3), 0: no cap. If the cap is reached,
+	 * 		the least visited entries are evicted (see {@link controllers.TD.ntuple4.SparseLut}).
+	 */
+	public int getSparseLutCap() {
+		return sparseLutCap;
+	}
+
 	public int getPlotWeightMethod() {
 		if (ntparams!=null)
 			return ntparams.getPlotWeightMethod();
@@ -285,6 +318,18 @@ public class ParNT implements Serializable {
 		this.afterState = afterState;
 	}
 
+	public void setFlatLut(boolean flatLut) {
+		this.flatLut = flatLut;
+	}
+
+	public void setWeightType(int weightType) {
+		this.weightType = weightType;
+	}
+
+	public void setSparseLutCap(int sparseLutCap) {
+		this.sparseLutCap = sparseLutCap;
+	}
+
 	/**
 	 * Set sensible parameters for a specific agent and specific game. By "sensible
 	 * parameters" we mean parameter producing good results.
@@ -34,6 +34,7 @@ public class ParTD implements Serializable {
     public static int DEFAULT_ELIG_MODE = 0;	// 0:[et], 1:[res], 2:[rep], 3:[rr], see [Thill14]
 	public static double DEFAULT_STEP_REWARD = -0.1;
 	public static double DEFAULT_REWARD_POSITIVE = 1.0;
+	public static int DEFAULT_REPLICA_SYNC = 100;
 
     private double alpha = DEFAULT_ALPHA;		// initial learn step size
     private double alfin = DEFAULT_ALFIN;		// final learn step size
@@ -54,6 +55,10 @@ public class ParTD implements Serializable {
 	private boolean hasStopOnRoundOver = false;
 	private double stepReward = DEFAULT_STEP_REWARD;
 	private double rewardPositive = DEFAULT_REWARD_POSITIVE;
+	private int numTrainThreads = 1;		// number of threads for parallel training (no GUI element)
+	private int numReplicas = 1;			// number of replicas for data-parallel training (no GUI element)
+	private int replicaSyncEpisodes = DEFAULT_REPLICA_SYNC;	// episodes per replica between two merges
+	private int replicaMergeMode = 0;		// 0: average the replicas' weights, 1: sum up their weight changes
 
     /**
      * This member is only constructed when the constructor {@link #ParTD(boolean,Arena) ParTD(boolean withUI,Arena)}
@@ -104,6 +109,10 @@ public class ParTD implements Serializable {
 //		this.mode3P = tp.getMode3P();
 		this.stepReward = tp.getStepReward();
 		this.rewardPositive = tp.getRewardPositive();
+		this.numTrainThreads = tp.getNumTrainThreads();
+		this.numReplicas = tp.getNumReplicas();
+		this.replicaSyncEpisodes = tp.getReplicaSyncEpisodes();
+		this.replicaMergeMode = tp.getReplicaMergeMode();
 		
 		if (tdparams!=null)
 			tdparams.setFrom(this);
@@ -253,6 +262,43 @@ public class ParTD implements Serializable {
 		return rewardPositive;
 	}
 
+	/**
+	 * @return the number of threads which train the agent in parallel on shared weights (only
+	 * 		{@link controllers.TD.ntuple4.TDNTuple4Agt}, see
+	 * 		{@link controllers.TD.ntuple4.TDNTuple4Agt#trainAgentParallel(int, java.util.function.Supplier)
+	 * 		trainAgentParallel}). A value &le; 1 means sequential training (this is also the case for agents
+	 * 		saved before this parameter existed).
+	 */
+	public int getNumTrainThreads() {
+		return Math.max(numTrainThreads, 1);
+	}
+
+	/**
+	 * @return the number K of replicas in synchronous data-parallel training of n-tuple agents (see
+	 * 		{@link controllers.TD.ntuple4.NTuple4Base#trainAgentReplicas(int, java.util.function.Supplier)
+	 * 		trainAgentReplicas}). A value &le; 1 means sequential training (this is also the case for agents
+	 * 		saved before this parameter existed).
+	 */
+	public int getNumReplicas() {
+		return Math.max(numReplicas, 1);
+	}
+
+	/**
+	 * @return the number M of episodes each replica trains between two merges into the master agent
+	 * 		(older agents: {@link #DEFAULT_REPLICA_SYNC})
+	 */
+	public int getReplicaSyncEpisodes() {
+		return (replicaSyncEpisodes > 0) ? replicaSyncEpisodes : DEFAULT_REPLICA_SYNC;
+	}
+
+	/**
+	 * @return how the replicas are merged into the master agent: 0: the weights are averaged, 1: the weight
+	 * 		changes of all replicas are summed up
+	 */
+	public int getReplicaMergeMode() {
+		return replicaMergeMode;
+	}
+
 	public void setAlpha(double alpha) {
 		this.alpha = alpha;
 		if (tdparams!=null)
@@ -378,6 +424,22 @@ public class ParTD implements Serializable {
 			tdparams.setRewardPositive(rp);
 	}
 
+	public void setNumTrainThreads(int numTrainThreads) {
+		this.numTrainThreads = numTrainThreads;
+	}
+
+	public void setNumReplicas(int numReplicas) {
+		this.numReplicas = numReplicas;
+	}
+
+	public void setReplicaSyncEpisodes(int replicaSyncEpisodes) {
+		this.replicaSyncEpisodes = replicaSyncEpisodes;
+	}
+
+	public void setReplicaMergeMode(int replicaMergeMode) {
+		this.replicaMergeMode = replicaMergeMode;
+	}
+
 	/**
 	 * Set sensible parameters for a specific agent and specific game. By "sensible
 	 * parameters" we mean parameters producing good results. If withUI, some parameter
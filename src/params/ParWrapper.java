@@ -45,6 +45,29 @@ import games.XArenaFuncs;
  *          <li>  If true (recommended setting for Othello, RubiksCube), re-use the tree (i.e. as in JS's master code) in
  *                  subsequent calls during one episode.
  *      </ul>
+ * <li><b>wrapperMCTS_numThreads</b>: [1] number of threads for the tree-parallel search of {@link MCTSWrapperAgent}
+ *      (see {@link controllers.MCTSWrapper.MCTS#searchParallel(controllers.MCTSWrapper.MCTSNode, int, int)
+ *      MCTS.searchParallel}). The iterations are the total over all threads. No GUI element.
+ * <li><b>wrapperMCTS_batchSize</b>: [1] number of leaves that each search thread of {@link MCTSWrapperAgent} collects
+ *      (with virtual loss) before they are evaluated together by one batch call of the approximator (see
+ *      {@link controllers.MCTSWrapper.stateApproximation.Approximator#predict(java.util.List) Approximator.predict(List)}).
+ *      Note that the current approximator {@link PlayAgentApproximator} evaluates the states one by one, so that
+ *      {@code batchSize > 1} gives no speedup (it only shares the cache lookup of the batch). No GUI element.
+ * <li><b>wrapperMCTS_cacheSize</b>: [0] capacity of the transposition cache for the predictions of the agent wrapped
+ *      by {@link MCTSWrapperAgent} (see {@link PlayAgentApproximator}). 0: no cache. Only for agents whose
+ *      {@code getNextAction2} is deterministic for {@code random=false}. Read from the parameters of the wrapper.
+ *      No GUI element.
+ * <li><b>wrapperMCTS_moveTime</b>, <b>wrapperMCTS_gameTime</b>: [0, 0] time budget in ms per move and per episode
+ *      (for each player) of {@link MCTSWrapperAgent} and {@link controllers.MCTSExpWrapper.MctseWrapperAgent}. If one of
+ *      them is greater than 0, the wrappers search until the budget of a move expires instead of performing
+ *      wrapperMCTS_iterations iterations (see {@link controllers.MCTSWrapper.utils.SearchBudget}). No GUI element.
+ * <li><b>wrapperMCTS_maxNodes</b>: [0] node budget for the search tree of {@link MCTSWrapperAgent} (0: no limit). If
+ *      the tree reaches it, the least-visited subtrees are pruned (see
+ *      {@link controllers.MCTSWrapper.MCTSNode#pruneLeastVisited(int) MCTSNode.pruneLeastVisited}). No GUI element.
+ * <li><b>wrapperMCTS_transpositions</b>: [false] if true, equal states in the search tree of {@link MCTSWrapperAgent}
+ *      share one node (transposition mode, see {@link controllers.MCTSWrapper.MCTSNode}). Only sensible for games
+ *      where the state (as given by {@code uniqueStringDescr}, player and move counter) determines the available
+ *      actions and the value. No GUI element.
  * </ul>
  *
  * @see MCTSWrapperAgent
@@ -64,6 +87,13 @@ public class ParWrapper implements Serializable {
     public static double DEFAULT_WRAPPER_MCTS_EPSFINAL = ConfigWrapper.epsilon; //0.15;
     public static boolean DEFAULT_USESOFTMAX = ConfigWrapper.USESOFTMAX; // true
     public static boolean DEFAULT_USELASTMCTS = ConfigWrapper.USELASTMCTS; //true;
+    public static int DEFAULT_WRAPPER_MCTS_NUMTHREADS = 1;
+    public static int DEFAULT_WRAPPER_MCTS_BATCHSIZE = 1;
+    public static int DEFAULT_WRAPPER_MCTS_CACHESIZE = 0;
+    public static int DEFAULT_WRAPPER_MCTS_MOVETIME = 0;
+    public static int DEFAULT_WRAPPER_MCTS_GAMETIME = 0;
+    public static int DEFAULT_WRAPPER_MCTS_MAXNODES = 0;
+    public static boolean DEFAULT_WRAPPER_MCTS_TRANSPOSITIONS = false;
 
     private int wrapperMode = DEFAULT_WRAPPER_MODE;
     private int wrapperNply = DEFAULT_WRAPPER_NPLY;
@@ -76,6 +106,13 @@ public class ParWrapper implements Serializable {
     private double wrapperMCTS_epsFinal = DEFAULT_WRAPPER_MCTS_EPSFINAL;    // MCTSWrapperAgent.adjustEpsilon()
     private boolean useSoftMax = DEFAULT_USESOFTMAX;
     private boolean useLastMCTS = DEFAULT_USELASTMCTS;
+    private int wrapperMCTS_numThreads = DEFAULT_WRAPPER_MCTS_NUMTHREADS;   // no GUI element
+    private int wrapperMCTS_batchSize = DEFAULT_WRAPPER_MCTS_BATCHSIZE;     // no GUI element
+    private int wrapperMCTS_cacheSize = DEFAULT_WRAPPER_MCTS_CACHESIZE;     // no GUI element
+    private int wrapperMCTS_moveTime = DEFAULT_WRAPPER_MCTS_MOVETIME;       // no GUI element
+    private int wrapperMCTS_gameTime = DEFAULT_WRAPPER_MCTS_GAMETIME;       // no GUI element
+    private int wrapperMCTS_maxNodes = DEFAULT_WRAPPER_MCTS_MAXNODES;       // no GUI element
+    private boolean wrapperMCTS_transpositions = DEFAULT_WRAPPER_MCTS_TRANSPOSITIONS;  // no GUI element
 
     /**
      * This member is only constructed when the constructor
@@ -119,6 +156,13 @@ public class ParWrapper implements Serializable {
         this.wrapperMCTS_epsFinal = wp.getWrapperMCTS_epsFinal();
         this.useSoftMax = wp.getUseSoftMax();
         this.useLastMCTS = wp.getUseLastMCTS();
+        this.wrapperMCTS_numThreads = wp.getWrapperMCTS_numThreads();
+        this.wrapperMCTS_batchSize = wp.getWrapperMCTS_batchSize();
+        this.wrapperMCTS_cacheSize = wp.getWrapperMCTS_cacheSize();
+        this.wrapperMCTS_moveTime = wp.getWrapperMCTS_moveTime();
+        this.wrapperMCTS_gameTime = wp.getWrapperMCTS_gameTime();
+        this.wrapperMCTS_maxNodes = wp.getWrapperMCTS_maxNodes();
+        this.wrapperMCTS_transpositions = wp.getWrapperMCTS_transpositions();
 
         if (wrparams !=null)
             wrparams.setFrom(this);
@@ -189,6 +233,43 @@ public class ParWrapper implements Serializable {
 
     public boolean getUseLastMCTS() { return useLastMCTS; }
 
+    /**
+     * @return the number of threads for the tree-parallel search of {@link MCTSWrapperAgent} (at least 1, older
+     *      agents without this parameter have 1)
+     */
+    public int getWrapperMCTS_numThreads() { return Math.max(wrapperMCTS_numThreads, 1); }
+
+    /**
+     * @return the number of leaves per batch evaluation in the search of {@link MCTSWrapperAgent} (at least 1, older
+     *      agents without this parameter have 1)
+     */
+    public int getWrapperMCTS_batchSize() { return Math.max(wrapperMCTS_batchSize, 1); }
+
+    /**
+     * @return the capacity of the prediction cache of {@link PlayAgentApproximator} (0: no cache)
+     */
+    public int getWrapperMCTS_cacheSize() { return wrapperMCTS_cacheSize; }
+
+    /**
+     * @return the time budget per move in ms (0: none)
+     */
+    public int getWrapperMCTS_moveTime() { return wrapperMCTS_moveTime; }
+
+    /**
+     * @return the time budget per episode and player in ms (0: none)
+     */
+    public int getWrapperMCTS_gameTime() { return wrapperMCTS_gameTime; }
+
+    /**
+     * @return the node budget for the search tree of {@link MCTSWrapperAgent} (0: no limit)
+     */
+    public int getWrapperMCTS_maxNodes() { return wrapperMCTS_maxNodes; }
+
+    /**
+     * @return true, if equal states in the search tree of {@link MCTSWrapperAgent} share one node
+     */
+    public boolean getWrapperMCTS_transpositions() { return wrapperMCTS_transpositions; }
+
     public void setWrapperMode(int mode) {
         this.wrapperMode=mode;
         if (wrparams !=null)
@@ -254,6 +335,34 @@ public class ParWrapper implements Serializable {
             wrparams.setUseLastMCTS(bUseLast);
     }
 
+    public void setWrapperMCTS_numThreads(final int numThreads) {
+        this.wrapperMCTS_numThreads = numThreads;
+    }
+
+    public void setWrapperMCTS_batchSize(final int batchSize) {
+        this.wrapperMCTS_batchSize = batchSize;
+    }
+
+    public void setWrapperMCTS_cacheSize(final int cacheSize) {
+        this.wrapperMCTS_cacheSize = cacheSize;
+    }
+
+    public void setWrapperMCTS_moveTime(final int moveTime) {
+        this.wrapperMCTS_moveTime = moveTime;
+    }
+
+    public void setWrapperMCTS_gameTime(final int gameTime) {
+        this.wrapperMCTS_gameTime = gameTime;
+    }
+
+    public void setWrapperMCTS_maxNodes(final int maxNodes) {
+        this.wrapperMCTS_maxNodes = maxNodes;
+    }
+
+    public void setWrapperMCTS_transpositions(final boolean transpositions) {
+        this.wrapperMCTS_transpositions = transpositions;
+    }
+
     /**
      * Set sensible parameters for a specific agent and specific game. By "sensible
      * parameters" we mean parameter producing good results. Likewise, some parameter
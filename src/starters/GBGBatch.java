@@ -5,7 +5,14 @@ import java.io.IOException;
 import java.util.Properties;
 
 import controllers.*;
+import controllers.MCTSWrapper.MCTSWrapperAgent;
+import controllers.TD.ntuple4.NTuple4Base;
+import controllers.TD.ntuple4.NTuple4WeightFile;
+import controllers.TD.ntuple4.TDNTuple4Agt;
 import games.*;
+import params.ParTD;
+import params.ParWrapper;
+import tools.ScoreTuple;
 import tools.Types;
 
 /**
@@ -31,11 +38,13 @@ import tools.Types;
 public class GBGBatch extends SetupGBG {
 
 	/**
-	 * The default csv filenames for the different batch facilities (batch00, batch01, ..., batch09, batch10)
+	 * The default csv filenames for the different batch facilities (batch00, batch01, ..., batch14, batch15)
 	 */
 	public static String[] csvNameDef = {"multiTrain.csv","multiTrain.csv","multiTrainAlphaSweep.csv","multiTrainLambdaSweep.csv"
 			,"multiTrainIncAmountSweep.csv","multiTrain","multiCompeteOthelloSweep.csv"
-			,"multiCompeteOthello.csv","symmIterCube.csv","multiTrainCube.csv","multiEvalCube.csv"};
+			,"multiCompeteOthello.csv","symmIterCube.csv","multiTrainCube.csv","multiEvalCube.csv"
+			,"convertedWeights.csv","parallelScaling.csv","weightFileConversion.csv"
+			,"mctsScaling.csv","learnSpeed.csv"};
 	private static GBGBatch t_Batch = null;
 	protected static Arena arenaTrain;
 	protected static String filePath = null;
@@ -57,8 +66,8 @@ public class GBGBatch extends SetupGBG {
 	 * @param args <br>
 	 * 			[0] {@code gameName}: name of the game, suitable as subdirectory name in the 
 	 *         		{@code agents} directory <br>
-	 *          [1] {@code n}: 0,1,2,3,...,7,8,9,10  to call either
-	 *          	{@link #batch00(int, int, String, XArenaButtons, GameBoard, String) batch00} (multiTrain) or <br>
+	 *          [1] {@code n}: 0,1,2,3,...,7,8,9,10,11,12,13,14,15  to call either
+	 *          	{@link #batch00(int, int, Properties, String, XArenaButtons, GameBoard, String) batch00} (multiTrain) or <br>
 	 *              {@link #batch01(int, int, Properties, String, String, XArenaButtons, GameBoard, String)  batch01} (multiTrain_M) or <br>
 	 * 	            {@link #batch02(int, int, String, XArenaButtons, GameBoard, String) batch02} (multiTrainAlphaSweep) or <br>
 	 *              {@link #batch03(int, int, String, XArenaButtons, GameBoard, String) batch03} (multiTrainLambdaSweep) or <br>
@@ -69,7 +78,16 @@ public class GBGBatch extends SetupGBG {
 	 *              {@link #batch08(String, String, int, Properties) batch08} ({@link MCubeIterSweep}) or <br>
 	 *              {@link #batch09(int, int, Properties, String, String, XArenaButtons, GameBoard) batch09} (multiTrainSweepCube) or <br>
 	 *              {@link #batch10(int, Properties, String[], String, String, String) batch10}
-	 *             		   (multiTrainSweepCube).<br>
+	 *             		   (multiTrainSweepCube) or <br>
+	 *              {@link #batch11(Properties, String) batch11} (convert weight type of an n-tuple agent) or <br>
+	 *              {@link #batch12(int, Properties, String, XArenaButtons, GameBoard) batch12} (scaling of parallel
+	 *              training with the number of threads) or <br>
+	 *              {@link #batch13(String) batch13} (convert an n-tuple agent between {@code .agt.zip} and the
+	 *              memory-mapped weight file {@link NTuple4WeightFile#EXT}) or <br>
+	 *              {@link #batch14(Properties, GameBoard) batch14} (scaling of the tree-parallel search of
+	 *              {@link controllers.MCTSWrapper.MCTSWrapperAgent MCTSWrapperAgent} with the number of threads) or <br>
+	 *              {@link #batch15(int, int, String, XArenaButtons, GameBoard) batch15} (learn actions/sec of
+	 *              sequential training).<br>
 	 *              The values 5,6,7 are only for game Othello, values 8,9,10 are only for game RubiksCube.
 	 *              <br>
 	 *          [2] {@code agentFile}: e.g. "tdntuple3.agt.zip". This agent is loaded from
@@ -200,7 +218,7 @@ public class GBGBatch extends SetupGBG {
 		XArenaButtons xab = arenaTrain.m_xab;
 		GameBoard gb = arenaTrain.getGameBoard();
 		switch (args[1]) {
-			case "0" -> t_Batch.batch00(nruns, maxGameNum, filePath, xab, gb, csvName);
+			case "0" -> t_Batch.batch00(nruns, maxGameNum, prop, filePath, xab, gb, csvName);
 			case "1" -> t_Batch.batch01(nruns, maxGameNum, prop, agtFile, filePath, xab, gb, csvName);
 			case "2" -> t_Batch.batch02(nruns, maxGameNum, filePath, xab, gb, csvName);
 			case "3" -> t_Batch.batch03(nruns, maxGameNum, filePath, xab, gb, csvName);
@@ -211,6 +229,11 @@ public class GBGBatch extends SetupGBG {
 			case "8" -> t_Batch.batch08(agtFile, csvName, nruns, prop);
 			case "9" -> t_Batch.batch09(nruns, maxGameNum, prop, agtFile, filePath, xab, gb);
 			case "10"-> t_Batch.batch10(nruns, prop, scaPar, agtFile, filePath, csvName);
+			case "11"-> t_Batch.batch11(prop, filePath);
+			case "12"-> t_Batch.batch12(maxGameNum, prop, filePath, xab, gb);
+			case "13"-> t_Batch.batch13(filePath);
+			case "14"-> t_Batch.batch14(prop, gb);
+			case "15"-> t_Batch.batch15(nruns, maxGameNum, filePath, xab, gb);
 			default -> {
 				System.err.println("[GBGBatch.main] args[1]=" + args[1] + " not allowed.");
 				System.exit(1);
@@ -273,6 +296,8 @@ public class GBGBatch extends SetupGBG {
 	 * Perform multi-training. Write results to file {@code csvName}.
 	 * @param trainNum		how many agents to train
 	 * @param maxGameNum	maximum number of training games 
+	 * @param prop			properties with the optional parallel training parameters, see
+	 *                      {@link #setParallelTrainFromProps(Properties, XArenaButtons)}
 	 * @param filePath		full path of the agent file	
 	 * @param xab			arena buttons object, to assess parameters	
 	 * @param gb			game board object, needed by multiTrain for evaluators and start state selection
@@ -280,7 +305,7 @@ public class GBGBatch extends SetupGBG {
 	 * <p>
 	 * If trainNum or maxGameNum are -1, the values stored in {@code xab} are taken.
 	 */
-	public void batch00(int trainNum, int maxGameNum, String filePath,
+	public void batch00(int trainNum, int maxGameNum, Properties prop, String filePath,
 					   XArenaButtons xab, GameBoard gb, String csvName) {
 		// load an agent to fill xab with the appropriate parameter settings
 		boolean res = arenaTrain.loadAgent(0, filePath);
@@ -292,6 +317,7 @@ public class GBGBatch extends SetupGBG {
 		// overwrite trainNum or maxGameNum in xab, if they are specified here
 		if (trainNum!=-1) xab.setTrainNumber(trainNum);
 		if (maxGameNum!=-1) xab.setGameNumber(maxGameNum);
+		setParallelTrainFromProps(prop, xab);
 		
 		// run multiTrain
 		xab.m_arena.taskState=Arena.Task.MULTTRN;
@@ -703,6 +729,266 @@ public class GBGBatch extends SetupGBG {
 		System.out.println("[GBGBatch.batch10] evalRubiksCube finished in "+elapsedTime+" sec. ");
 	} // batch10
 
+	/**
+	 * Convert the weight type of a trained n-tuple agent ({@link controllers.TD.ntuple4.NTuple4Base NTuple4Base},
+	 * that is TD-Ntuple-4, Sarsa-4, QLearn-4) to the type given by property {@code weightType}
+	 * (0: double, 1: float, 2: int16 fixed point, 3: sparse, see {@link params.ParNT#getWeightType()}). For sparse
+	 * LUTs, the optional property {@code sparseLutCap} sets the maximum number of entries per LUT (default: 0, no cap).
+	 * <p>
+	 * The converted agent (with its wrapper, if the loaded agent is a wrapped n-tuple agent) is saved to
+	 * {@code <csvName>.agt.zip} (default: {@code convertedWeights.agt.zip}) in the
+	 * same directory as the loaded agent. Converting to a lower precision reduces the memory footprint of the
+	 * agent (and the size of its file) by a factor of 2 or 4.
+	 *
+	 * @param prop			properties, for {@code weightType} and {@code sparseLutCap}
+	 * @param filePath		full file path to agent
+	 */
+	public void batch11(Properties prop, String filePath) {
+		int weightType = getIntegerFromProps(prop, "weightType");
+		boolean res = arenaTrain.loadAgent(0, filePath);
+		if (!res) {
+			System.err.println("\n[GBGBatch.batch11] Aborted (no agent found).");
+			return;
+		}
+		PlayAgent outer = arenaTrain.m_xfun.m_PlayAgents[0];
+		PlayAgent pa = outer;
+		while (pa.isWrapper()) pa = pa.getWrappedPlayAgent();
+		if (!(pa instanceof NTuple4Base)) {
+			System.err.println("\n[GBGBatch.batch11] Aborted (agent "+pa.getName()+" is not an NTuple4Base agent).");
+			return;
+		}
+		if (prop.getProperty("sparseLutCap")!=null)
+			((NTuple4Base) pa).getParNT().setSparseLutCap(getIntegerFromProps(prop, "sparseLutCap"));
+		((NTuple4Base) pa).convertWeightType(weightType);	// in place, so that a wrapper is saved with it
+		arenaTrain.saveAgent(outer, savePath);
+		System.out.println("[GBGBatch.batch11] agent with weightType="+weightType+" saved to "+savePath);
+	} // batch11
+
+	/**
+	 * Report how parallel training ({@link TDNTuple4Agt#trainAgentParallel(int, java.util.function.Supplier)})
+	 * scales with the number of threads. For each number of threads in property {@code numTrainThreadsArr}, a new
+	 * agent with the parameters of the agent in {@code filePath} is constructed and trained for {@code maxGameNum}
+	 * episodes (no evaluation). The report lists episodes/sec and the speedup relative to the first entry of
+	 * {@code numTrainThreadsArr}. Of course, the speedup is limited by the number of available cores.
+	 *
+	 * @param maxGameNum	number of training episodes per measurement (if -1, take the value stored in the agent)
+	 * @param prop			properties with {@code numTrainThreadsArr}
+	 * @param filePath		full path of the agent file (must be a {@link TDNTuple4Agt})
+	 * @param xab			arena buttons object, to assess parameters
+	 * @param gb			game board object, needed for start state selection
+	 */
+	public void batch12(int maxGameNum, Properties prop, String filePath, XArenaButtons xab, GameBoard gb) {
+		int[] numThreadsArr = getIntegerArrFromProps(prop, "numTrainThreadsArr");
+		boolean res = arenaTrain.loadAgent(0, filePath);
+		if (!res) {
+			System.err.println("\n[GBGBatch.batch12] Aborted (no agent found).");
+			return;
+		}
+		if (maxGameNum!=-1) xab.setGameNumber(maxGameNum);
+		String sAgent = xab.getSelectedAgent(0);
+		boolean chooseStart01 = xab.oPar[0].getChooseStart01();
+		double[] epiPerSec = new double[numThreadsArr.length];
+		for (int i=0; i<numThreadsArr.length; i++) {
+			xab.tdPar[0].setNumTrainThreads(numThreadsArr[i]);
+			PlayAgent pa = arenaTrain.m_xfun.constructAgent(0, sAgent, xab);
+			if (!(pa instanceof TDNTuple4Agt tdnt)) {
+				System.err.println("\n[GBGBatch.batch12] Aborted (agent "+sAgent+" is not a TDNTuple4Agt).");
+				return;
+			}
+			gb.initialize();
+			long startTime = System.currentTimeMillis();
+			tdnt.trainAgentParallel(xab.getGameNumber(),
+					() -> chooseStart01 ? gb.chooseStartState(tdnt) : gb.getDefaultStartState());
+			double elapsedTime = Math.max(System.currentTimeMillis() - startTime, 1) / 1000.0;
+			epiPerSec[i] = tdnt.getGameNum() / elapsedTime;
+			System.out.printf("[GBGBatch.batch12] threads=%3d: %8d episodes in %8.2f sec, %10.1f episodes/s, "
+					+ "speedup=%5.2f, %s%n", numThreadsArr[i], tdnt.getGameNum(), elapsedTime, epiPerSec[i],
+					epiPerSec[i]/epiPerSec[0], tdnt.printTrainStatus());
+		}
+		System.out.println("[GBGBatch.batch12] available cores: "+Runtime.getRuntime().availableProcessors());
+	} // batch12
+
+	/**
+	 * Convert a trained n-tuple agent ({@link NTuple4Base}, that is TD-Ntuple-4, Sarsa-4, QLearn-4) between the
+	 * formats {@code .agt.zip} and {@link NTuple4WeightFile#EXT} (binary weight file, memory-mapped when loading, see
+	 * {@link NTuple4WeightFile}). The converted agent is saved in the same directory as the loaded agent, with the
+	 * other file extension (with its wrapper, if the loaded agent is a wrapped n-tuple agent). The load times of both
+	 * files are reported.
+	 *
+	 * @param filePath		full file path to agent ({@code .agt.zip} or {@link NTuple4WeightFile#EXT})
+	 */
+	public void batch13(String filePath) {
+		boolean toWeightFile = !NTuple4WeightFile.isWeightFile(filePath);
+		String convPath = toWeightFile
+				? filePath.replaceAll("\\.agt\\.zip$", "") + NTuple4WeightFile.EXT
+				: filePath.substring(0, filePath.length()-NTuple4WeightFile.EXT.length()) + ".agt.zip";
+		long startTime = System.currentTimeMillis();
+		boolean res = arenaTrain.loadAgent(0, filePath);
+		double loadTime = (System.currentTimeMillis() - startTime)/1000.0;
+		if (!res) {
+			System.err.println("\n[GBGBatch.batch13] Aborted (no agent found).");
+			return;
+		}
+		PlayAgent outer = arenaTrain.m_xfun.m_PlayAgents[0];
+		PlayAgent pa = outer;
+		while (pa.isWrapper()) pa = pa.getWrappedPlayAgent();
+		if (!(pa instanceof NTuple4Base)) {
+			System.err.println("\n[GBGBatch.batch13] Aborted (agent "+pa.getName()+" is not an NTuple4Base agent).");
+			return;
+		}
+		arenaTrain.saveAgent(outer, convPath);
+		startTime = System.currentTimeMillis();
+		res = arenaTrain.loadAgent(0, convPath);
+		double convTime = (System.currentTimeMillis() - startTime)/1000.0;
+		if (!res) {
+			System.err.println("\n[GBGBatch.batch13] Could not reload converted agent "+convPath);
+			return;
+		}
+		System.out.printf("[GBGBatch.batch13] agent saved to %s%n", convPath);
+		System.out.printf("[GBGBatch.batch13] load time: %8.3f sec (%s), %8.3f sec (%s)%n", loadTime, filePath,
+				convTime, convPath);
+	} // batch13
+
+	/**
+	 * Report how the tree-parallel search of {@link controllers.MCTSWrapper.MCTSWrapperAgent MCTSWrapperAgent} (see
+	 * {@link controllers.MCTSWrapper.MCTS#searchParallel(controllers.MCTSWrapper.MCTSNode, int, int) MCTS.searchParallel})
+	 * scales with the number of threads. The agent loaded in {@link #batch14(Properties, GameBoard) main} (its
+	 * inner agent, if it is already wrapped) is wrapped with {@code iterMCTSWrap} iterations per move. All other
+	 * wrapper parameters are taken from the loaded agent.
+	 * <p>
+	 * For each number of threads in property {@code numMCTSThreadsArr}, the wrapped agent plays one game against
+	 * itself from the default start state. The report lists iterations/sec and the speedup relative to the first
+	 * entry of {@code numMCTSThreadsArr}. Of course, the speedup is limited by the number of available cores.
+	 * <p>
+	 * Then the playing strength at (roughly) equal wall-clock time is measured: The agent with {@code t} threads gets
+	 * {@code speedup*iterMCTSWrap} iterations per move and competes in {@code competeNum} episodes in all roles
+	 * against the agent with the first entry of {@code numMCTSThreadsArr}.
+	 *
+	 * @param prop			properties with {@code numMCTSThreadsArr}, {@code iterMCTSWrap} and {@code competeNum}
+	 * @param gb			the game board, for the default start state
+	 */
+	public void batch14(Properties prop, GameBoard gb) {
+		int[] numThreadsArr = getIntegerArrFromProps(prop, "numMCTSThreadsArr");
+		int iterMCTSWrap = getIntegerFromProps(prop, "iterMCTSWrap");
+		int competeNum = getIntegerFromProps(prop, "competeNum");
+		boolean res = arenaTrain.loadAgent(0, filePath);
+		if (!res) {
+			System.err.println("\n[GBGBatch.batch14] Aborted (no agent found).");
+			return;
+		}
+		PlayAgent outer = arenaTrain.m_xfun.m_PlayAgents[0];
+		PlayAgent pa = outer;
+		if (pa.isWrapper()) pa = pa.getWrappedPlayAgent();
+		ParWrapper wrPar = outer.getParWrapper();	// keep the wrapper settings of a loaded wrapper
+		StateObservation startSO = gb.getDefaultStartState();
+		if (!startSO.isDeterministicGame()) {
+			System.err.println("\n[GBGBatch.batch14] Aborted (MCTSWrapperAgent needs a deterministic game).");
+			return;
+		}
+
+		double[] iterPerSec = new double[numThreadsArr.length];
+		for (int i=0; i<numThreadsArr.length; i++) {
+			PlayAgent qa = wrapForScaling(pa, wrPar, iterMCTSWrap, numThreadsArr[i], startSO);
+			StateObservation so = startSO.copy();
+			int moves = 0;
+			long startTime = System.currentTimeMillis();
+			while (!so.isGameOver()) {
+				so.advance(qa.getNextAction2(so.partialState(), false, true));
+				moves++;
+			}
+			double elapsedTime = Math.max(System.currentTimeMillis() - startTime, 1) / 1000.0;
+			shutdownSearchPool(qa);
+			iterPerSec[i] = (double) moves * iterMCTSWrap / elapsedTime;
+			System.out.printf("[GBGBatch.batch14] threads=%3d: %5d moves in %8.2f sec, %10.1f iterations/s, "
+					+ "speedup=%5.2f%n", numThreadsArr[i], moves, elapsedTime, iterPerSec[i], iterPerSec[i]/iterPerSec[0]);
+		}
+		System.out.println("[GBGBatch.batch14] available cores: "+Runtime.getRuntime().availableProcessors());
+
+		PlayAgent base = wrapForScaling(pa, wrPar, iterMCTSWrap, numThreadsArr[0], startSO);
+		for (int i=1; i<numThreadsArr.length; i++) {
+			int iter = (int) Math.round(iterMCTSWrap * iterPerSec[i]/iterPerSec[0]);
+			PlayAgent qa = wrapForScaling(pa, wrPar, iter, numThreadsArr[i], startSO);
+			ScoreTuple sc = XArenaFuncs.competeNPlayerAllRoles(new PlayAgtVector(qa, base), startSO, competeNum,
+					0, null);
+			shutdownSearchPool(qa);
+			System.out.printf("[GBGBatch.batch14] threads=%3d (iter=%6d) vs. threads=%3d (iter=%6d): score %s%n",
+					numThreadsArr[i], iter, numThreadsArr[0], iterMCTSWrap, sc);
+		}
+		shutdownSearchPool(base);
+	} // batch14
+
+	/**
+	 * Benchmark the speed of sequential training (one thread), e.g. to compare the cost of the weight updates of
+	 * n-tuple agents ({@link controllers.TD.ntuple4.NTuple4#updateNew(int[], double, double, double) NTuple4.updateNew})
+	 * before and after a software change. For each of {@code nruns} runs, a new agent with the parameters of the agent
+	 * in {@code filePath} is constructed and trained for {@code maxGameNum} episodes (no evaluation). The report lists
+	 * learn actions/sec for each run. The first run includes the JIT warm-up, so the later runs are the ones to
+	 * compare.
+	 *
+	 * @param nruns			number of runs (if -1, take 3)
+	 * @param maxGameNum	number of training episodes per run (if -1, take the value stored in the agent)
+	 * @param filePath		full path of the agent file
+	 * @param xab			arena buttons object, to assess parameters
+	 * @param gb			game board object, needed for start state selection
+	 */
+	public void batch15(int nruns, int maxGameNum, String filePath, XArenaButtons xab, GameBoard gb) {
+		if (nruns==-1) nruns = 3;
+		boolean res = arenaTrain.loadAgent(0, filePath);
+		if (!res) {
+			System.err.println("\n[GBGBatch.batch15] Aborted (no agent found).");
+			return;
+		}
+		if (maxGameNum!=-1) xab.setGameNumber(maxGameNum);
+		xab.tdPar[0].setNumTrainThreads(1);
+		String sAgent = xab.getSelectedAgent(0);
+		boolean chooseStart01 = xab.oPar[0].getChooseStart01();
+		for (int i=0; i<nruns; i++) {
+			PlayAgent pa = arenaTrain.m_xfun.constructAgent(0, sAgent, xab);
+			if (pa==null) {
+				System.err.println("\n[GBGBatch.batch15] Aborted (could not construct agent "+sAgent+").");
+				return;
+			}
+			gb.initialize();
+			long startTime = System.currentTimeMillis();
+			for (int k=0; k<xab.getGameNumber(); k++)
+				pa.trainAgent(chooseStart01 ? gb.chooseStartState(pa) : gb.getDefaultStartState());
+			double elapsedTime = Math.max(System.currentTimeMillis() - startTime, 1) / 1000.0;
+			System.out.printf("[GBGBatch.batch15] run %2d: %8d episodes, %10d learn actions in %8.2f sec, "
+					+ "%10.1f learn actions/s%n", i, xab.getGameNumber(), pa.getNumLrnActions(), elapsedTime,
+					pa.getNumLrnActions() / elapsedTime);
+		}
+	} // batch15
+
+	private PlayAgent wrapForScaling(PlayAgent pa, ParWrapper wrParLoaded, int iterations, int numThreads,
+									 StateObservation so) {
+		ParWrapper wrPar = new ParWrapper(wrParLoaded);
+		wrPar.setWrapperNPly(0);
+		wrPar.setWrapperMCTS_iterations(iterations);
+		wrPar.setWrapperMCTS_numThreads(numThreads);
+		return arenaTrain.m_xfun.wrapAgent(pa, pa.getParOther(), wrPar, null, so);
+	}
+
+	private static void shutdownSearchPool(PlayAgent pa) {
+		if (pa instanceof MCTSWrapperAgent mwa) mwa.shutdownSearchPool();
+	}
+
+	/**
+	 * Overwrite the parallel training parameters of {@code xab.tdPar[0]} with those properties which are present in
+	 * {@code prop}: {@code numTrainThreads} (see {@link ParTD#getNumTrainThreads()}), {@code numReplicas},
+	 * {@code replicaSyncEpisodes} and {@code replicaMergeMode} (see {@link ParTD#getNumReplicas()}). Parameters
+	 * not present in {@code prop} keep the values of the loaded agent.
+	 */
+	protected void setParallelTrainFromProps(Properties prop, XArenaButtons xab) {
+		if (prop.getProperty("numTrainThreads")!=null)
+			xab.tdPar[0].setNumTrainThreads(getIntegerFromProps(prop, "numTrainThreads"));
+		if (prop.getProperty("numReplicas")!=null)
+			xab.tdPar[0].setNumReplicas(getIntegerFromProps(prop, "numReplicas"));
+		if (prop.getProperty("replicaSyncEpisodes")!=null)
+			xab.tdPar[0].setReplicaSyncEpisodes(getIntegerFromProps(prop, "replicaSyncEpisodes"));
+		if (prop.getProperty("replicaMergeMode")!=null)
+			xab.tdPar[0].setReplicaMergeMode(getIntegerFromProps(prop, "replicaMergeMode"));
+	}
+
 	// several helper methods to read properties:
 
 	protected int getPMaxFromProps(Properties prop, String[] scaPar){
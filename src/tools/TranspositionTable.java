@@ -0,0 +1,259 @@
+package tools;
+
+import controllers.ExpectimaxNAgent;
+import controllers.MaxNAgent;
+import games.StateObservation;
+import params.ParMaxN;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ *	TranspositionTable: a fixed-size table of search results (score tuple, draft, best action), keyed by
+ *	{@link StateObservation#hash64()}. It replaces the unbounded {@code HashMap<String,ScoreTuple>} of {@link MaxNAgent}
+ *	and {@link ExpectimaxNAgent}. The size is given in MB (see {@link ParMaxN#getMaxNTableSizeMB()}).
+ *  <p>
+ *  The <b>draft</b> of an entry is the remaining search depth below the state when its score tuple was computed. A
+ *  score tuple of a subtree that was searched until the end of the game (no depth cutoff) is <b>exact</b>, it is the
+ *  same for every draft from a certain minimum on. The caller decides which draft it stores for an exact entry (the
+ *  draft of the search or the minimum draft) and when it uses an entry.
+ *  <p>
+ *  A search with windows (alpha-beta, Star1/Star2) may store a score tuple which is only a <b>bound</b>
+ *  ({@link #BOUND_LOWER} or {@link #BOUND_UPPER}) of the true value. Bound entries have lower priority than values
+ *  with the same exactness and draft.
+ *  <p>
+ *  The table consists of buckets with two slots. Slot 0 is <b>depth-preferred</b>: it is only overwritten by an
+ *  entry with at least the same priority (exact entries first, then larger drafts) or if it stems from an earlier
+ *  search (see {@link #newSearch()}). Slot 1 is always overwritten.
+ *  <p>
+ *  The table is <b>lock-free</b>: Each slot is a row of {@code long}s {@code [check, meta, score_0, ..., score_N-1]}
+ *  in an {@link AtomicLongArray}, where {@code check = key ^ meta ^ score_0 ^ ... ^ score_N-1}. A reader
+ *  recomputes the key from the row, so a row that is partially overwritten by another thread does (with
+ *  overwhelming probability) not match any key and is treated as a miss.
+ *  <p>
+ *  The statistics (hits, misses, ...) are accumulated since the construction of the table.
+ *
+ *	@see MaxNAgent
+ *	@see ExpectimaxNAgent
+ */
+public final class TranspositionTable {
+	/**
+	 * the maximum draft of an entry (larger drafts are stored as {@code MAX_DRAFT})
+	 */
+	public static final int MAX_DRAFT = 0x7FFF;
+	/**
+	 * the best action of an entry without best action (e.g. a chance node)
+	 */
+	public static final int NO_ACTION = Integer.MIN_VALUE;
+	/**
+	 * the bound type of an entry: the score tuple is the value, a lower bound or an upper bound
+	 */
+	public static final int BOUND_NONE = 0, BOUND_LOWER = 1, BOUND_UPPER = 2;
+
+	private static final long EXACT = 1L << 15;
+	private static final int GENERATION_MASK = 0x1FFF;	// bits 16-28: generation
+	private static final int BOUND_SHIFT = 29;			// bits 29-30: bound type
+	private static final long VALID = 1L << 31;
+
+	private final int numPlayers;
+	private final int stride;			// longs per slot
+	private final int mask;				// number of buckets - 1
+	private final AtomicLongArray data;
+	private volatile int generation = 0;
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder shallow = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder collisions = new LongAdder();
+	private final LongAdder stores = new LongAdder();
+	private final LongAdder replaced = new LongAdder();
+
+	/**
+	 * An entry of the table, as returned by {@link #probe(long, int)}
+	 */
+	public static final class Entry {
+		public final ScoreTuple scoreTuple;
+		public final int draft;
+		public final boolean exact;
+		public final int bound;
+		public final int bestAction;
+
+		Entry(ScoreTuple scoreTuple, int draft, boolean exact, int bound, int bestAction) {
+			this.scoreTuple = scoreTuple;
+			this.draft = draft;
+			this.exact = exact;
+			this.bound = bound;
+			this.bestAction = bestAction;
+		}
+	}
+
+	/**
+	 * @param sizeMB		the memory size of the table in MB
+	 * @param numPlayers	the length of the stored score tuples
+	 */
+	public TranspositionTable(int sizeMB, int numPlayers) {
+		this.numPlayers = numPlayers;
+		this.stride = 2 + numPlayers;
+		long maxBuckets = Math.max(1, ((long) sizeMB << 20) / (2L * stride * Long.BYTES));
+		int numBuckets = Integer.highestOneBit((int) Math.min(maxBuckets, (Integer.MAX_VALUE / (2L * stride))));
+		this.mask = numBuckets - 1;
+		this.data = new AtomicLongArray(numBuckets * 2 * stride);
+	}
+
+	/**
+	 * Start a new search: entries of earlier searches are preferred for replacement.
+	 */
+	public void newSearch() {
+		generation = (generation + 1) & GENERATION_MASK;
+	}
+
+	/**
+	 * Remove all entries (the statistics are kept).
+	 */
+	public void clear() {
+		for (int i=0; i<data.length(); i++) data.setOpaque(i, 0L);
+	}
+
+	/**
+	 * @param key		the key, usually {@link StateObservation#hash64()}
+	 * @param minDraft	the draft needed by the caller (only for the statistics: a non-exact entry with smaller draft
+	 *                  counts as 'shallow' instead of 'hit')
+	 * @return the entry for {@code key} (with any draft) or null, if there is none
+	 */
+	public Entry probe(long key, int minDraft) {
+		int base = bucketOf(key);
+		boolean occupied = false;
+		for (int s=0; s<2; s++) {
+			int off = base + s*stride;
+			long meta = data.getOpaque(off+1);
+			if ((meta & VALID) == 0) continue;
+			occupied = true;
+			long[] bits = new long[numPlayers];
+			long k = data.getOpaque(off) ^ meta;
+			for (int i=0; i<numPlayers; i++) k ^= (bits[i] = data.getOpaque(off+2+i));
+			if (k != key) continue;
+
+			int draft = draftOf(meta);
+			boolean exact = (meta & EXACT) != 0;
+			if (exact || draft >= minDraft) hits.increment(); else shallow.increment();
+			ScoreTuple sc = new ScoreTuple(numPlayers);
+			for (int i=0; i<numPlayers; i++) sc.scTup[i] = Double.longBitsToDouble(bits[i]);
+			return new Entry(sc, draft, exact, boundOf(meta), (int) (meta >>> 32));
+		}
+		misses.increment();
+		if (occupied) collisions.increment();
+		return null;
+	}
+
+	/**
+	 * Store a search result. It goes into the depth-preferred slot of the bucket if that is empty, holds the same
+	 * key, stems from an earlier search or has no higher priority. Otherwise, it goes into the always-replace slot
+	 * (unless the depth-preferred slot holds the same key with a higher priority).
+	 *
+	 * @param key			the key, usually {@link StateObservation#hash64()}
+	 * @param draft			the remaining search depth (at most {@link #MAX_DRAFT})
+	 * @param exact			whether the score tuple is exact (the subtree contains no depth cutoff)
+	 * @param sc			the score tuple
+	 * @param bestAction	the best action (its {@code toInt()}) or {@link #NO_ACTION}
+	 */
+	public void store(long key, int draft, boolean exact, ScoreTuple sc, int bestAction) {
+		store(key, draft, exact, BOUND_NONE, sc, bestAction);
+	}
+
+	/**
+	 * Store a search result which may be a bound of the true value.
+	 *
+	 * @param bound			{@link #BOUND_NONE}, {@link #BOUND_LOWER} or {@link #BOUND_UPPER}
+	 * @see #store(long, int, boolean, ScoreTuple, int)
+	 */
+	public void store(long key, int draft, boolean exact, int bound, ScoreTuple sc, int bestAction) {
+		assert sc.scTup.length == numPlayers : "Wrong length of score tuple";
+		long flags = Math.min(Math.max(draft, 0), MAX_DRAFT) | (exact ? EXACT : 0) | ((long) bound << BOUND_SHIFT);
+		long prio = priorityOf(flags);
+		int base = bucketOf(key);
+		long meta0 = data.getOpaque(base+1);
+		int off = base;
+		if ((meta0 & VALID) != 0 && priorityOf(meta0) > prio) {
+			if (keyAt(base, meta0) == key) return;		// keep the better entry
+			if (((meta0 >>> 16) & GENERATION_MASK) == generation) off = base + stride;
+		}
+
+		long meta = ((long) bestAction << 32) | VALID | ((long) generation << 16) | flags;
+		long oldMeta = data.getOpaque(off+1);
+		if ((oldMeta & VALID) != 0 && keyAt(off, oldMeta) != key) replaced.increment();
+		long check = key ^ meta;
+		for (int i=0; i<numPlayers; i++) {
+			long bits = Double.doubleToRawLongBits(sc.scTup[i]);
+			check ^= bits;
+			data.setOpaque(off+2+i, bits);
+		}
+		data.setOpaque(off+1, meta);
+		data.setOpaque(off, check);
+		stores.increment();
+	}
+
+	private int bucketOf(long key) {
+		return ((int) (key ^ (key >>> 32)) & mask) * 2 * stride;
+	}
+
+	private long keyAt(int off, long meta) {
+		long k = data.getOpaque(off) ^ meta;
+		for (int i=0; i<numPlayers; i++) k ^= data.getOpaque(off+2+i);
+		return k;
+	}
+
+	private static int draftOf(long meta) {
+		return (int) (meta & MAX_DRAFT);
+	}
+
+	private static int boundOf(long meta) {
+		return (int) ((meta >>> BOUND_SHIFT) & 3);
+	}
+
+	/**
+	 * @return the priority of an entry for replacement: exact entries first, then larger drafts, then values before
+	 * 		   bounds
+	 */
+	private static long priorityOf(long meta) {
+		return ((meta & (EXACT | MAX_DRAFT)) << 1) | ((boundOf(meta) == BOUND_NONE) ? 1 : 0);
+	}
+
+	public int getNumPlayers() { return numPlayers; }
+
+	/**
+	 * @return the number of slots (two per bucket)
+	 */
+	public int getCapacity() { return (mask + 1) * 2; }
+
+	/**
+	 * @return the number of probes which found the key with sufficient draft
+	 */
+	public long getHits() { return hits.sum(); }
+
+	/**
+	 * @return the number of probes which found the key, but non-exact and with a smaller draft than needed
+	 */
+	public long getShallowHits() { return shallow.sum(); }
+
+	public long getMisses() { return misses.sum(); }
+
+	/**
+	 * @return the number of misses where the bucket was occupied by other keys
+	 */
+	public long getCollisions() { return collisions.sum(); }
+
+	public long getStores() { return stores.sum(); }
+
+	/**
+	 * @return the number of stores which evicted an entry with another key
+	 */
+	public long getReplaced() { return replaced.sum(); }
+
+	public String stringDescr() {
+		long probes = getHits() + getShallowHits() + getMisses();
+		double hitRate = (probes == 0) ? 0.0 : (double) getHits() / probes;
+		return String.format("TT[%d slots]: probes=%d, hits=%d (%.1f%%), shallow=%d, misses=%d, collisions=%d, "
+				+ "stores=%d, replaced=%d", getCapacity(), probes, getHits(), 100*hitRate, getShallowHits(),
+				getMisses(), getCollisions(), getStores(), getReplaced());
+	}
+}
@@ -0,0 +1,73 @@
+package tools;
+
+import games.StateObservation;
+
+/**
+ *	Zobrist: a table of pseudo-random 64-bit keys, one for each (cell, value) pair of a game board, and some helpers
+ *	for the 64-bit state hashes {@link StateObservation#hash64()}.
+ *  <p>
+ *  The hash of a board is the XOR of the keys of all occupied cells. When a move changes a cell from value
+ *  {@code a} to value {@code b}, the hash is updated incrementally by {@code hash ^= key(cell,a) ^ key(cell,b)}.
+ *  <p>
+ *  The keys are generated from a fixed seed, so the hashes are the same in every run (and in every JVM).
+ *
+ *	@see StateObservation#hash64()
+ */
+public class Zobrist {
+	private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+	private final long[] keys;
+	private final int numValues;
+
+	/**
+	 * @param numCells	the number of cells of the board
+	 * @param numValues	the number of different values a cell can have (values 0,...,numValues-1)
+	 * @param seed		the seed for the keys (each game should use its own seed)
+	 */
+	public Zobrist(int numCells, int numValues, long seed) {
+		this.numValues = numValues;
+		this.keys = new long[numCells*numValues];
+		long s = seed;
+		for (int i=0; i<keys.length; i++)
+			keys[i] = mix64(s += GOLDEN_GAMMA);
+	}
+
+	/**
+	 * @param cell	the cell, 0,...,numCells-1
+	 * @param value	the value of the cell, 0,...,numValues-1
+	 * @return the key for {@code value} in {@code cell}
+	 */
+	public long key(int cell, int value) {
+		return keys[cell*numValues + value];
+	}
+
+	/**
+	 * The 64-bit finalizer of SplitMix64: a bijective mixing function on {@code long}.
+	 * Useful to hash states that are already coded in one or a few {@code long}s (e.g. bit boards).
+	 */
+	public static long mix64(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * @return a hash of {@code z1} and {@code z2} (not symmetric in its arguments)
+	 */
+	public static long mix64(long z1, long z2) {
+		return mix64(mix64(z1) + GOLDEN_GAMMA * z2);
+	}
+
+	/**
+	 * The fallback for games without a board-based hash: a 64-bit FNV-1a hash of {@code s}, mixed by
+	 * {@link #mix64(long)}.
+	 */
+	public static long hashString(String s) {
+		long h = 0xCBF29CE484222325L;
+		for (int i=0; i<s.length(); i++) {
+			h ^= s.charAt(i);
+			h *= 0x100000001B3L;
+		}
+		return mix64(h);
+	}
+}
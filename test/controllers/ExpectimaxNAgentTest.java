@@ -3,12 +3,17 @@ package controllers;
 import games.EWN.GameBoardEWN;
 import games.EWN.StateObserverEWN;
 import org.junit.Test;
+import params.ParMaxN;
+import params.ParOther;
 import starters.GBGBatch;
 import starters.SetupGBG;
 import tools.Types;
 
 import java.text.DecimalFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 public class ExpectimaxNAgentTest extends GBGBatch {
 
@@ -149,6 +154,229 @@ public class ExpectimaxNAgentTest extends GBGBatch {
         System.out.println("[expectimaxTree9Test] finished");
     }
 
+    /**
+     * This test checks for 2-player 3x3 EWN that Star1 and Star2 pruning ({@link params.ParMaxN#getMaxNStarPruning()})
+     * give the same vTable as the full expansion, for states along random episodes, with and without transposition
+     * table. It prints the number of visited nodes: Star1 should never visit more nodes than the full expansion.
+     */
+    @Test
+    public void starPruningTest() {
+        int nEpi=3;
+        int nDepth=5;
+        Random rand = new Random(42);
+
+        String[] scaPar = SetupGBG.setDefaultScaPars("EWN");        // for EWN currently: 3x3 2-player
+        arenaTrain = SetupGBG.setupSelectedGame("EWN",scaPar,"",false,true);
+        GameBoardEWN gb = new GameBoardEWN(arenaTrain);
+        StateObserverEWN so;
+
+        for (boolean useTT : new boolean[]{false,true}) {
+            long[] nodes = new long[3];
+            for (int i=0; i<nEpi; i++) {
+                gb.clearBoard(true,true);
+                so = (StateObserverEWN) gb.getStateObs();
+                while(!so.isGameOver()) {
+                    double[] vTable0 = null;
+                    int nodes0 = 0;
+                    for (int star=0; star<=2; star++) {
+                        ParMaxN mpar = new ParMaxN();
+                        mpar.setMaxNDepth(nDepth);
+                        mpar.setMaxNUseHashmap(useTT);
+                        mpar.setMaxNStarPruning(star);
+                        ExpectimaxNAgent pa = new ExpectimaxNAgent("ExpectimaxN", mpar, new ParOther());
+                        Types.ACTIONS_VT act_pa = pa.getNextAction2(so.copy(),false,true);
+                        nodes[star] += pa.getCountNodes();
+                        if (star==0) {
+                            vTable0 = act_pa.getVTable();
+                            nodes0 = pa.getCountNodes();
+                        } else {
+                            assert Arrays.equals(vTable0, act_pa.getVTable())
+                                    : "Star"+star+" vTable differs from full expansion in "+so.stringDescr();
+                        }
+                        if (star==1)
+                            assert pa.getCountNodes() <= nodes0 : "Star1 visits more nodes than full expansion";
+                    }
+                    ArrayList<Types.ACTIONS> acts = so.getAvailableActions();
+                    so.advance(acts.get(rand.nextInt(acts.size())));
+                }
+            }
+            System.out.println("useTT="+useTT+": visited nodes full="+nodes[0]+", Star1="+nodes[1]+", Star2="+nodes[2]);
+        }
+        System.out.println("[starPruningTest] finished");
+    }
+
+    /**
+     * This test checks for 2-player 3x3 EWN that the parallel search of the root actions
+     * ({@link params.ParMaxN#getMaxNParallelism()} &gt; 1) is deterministic: It gives the same vTable and the same
+     * best action as the sequential search, for states along random episodes, with and without transposition table.
+     */
+    @Test
+    public void parallelTest() {
+        int nEpi=3;
+        int nDepth=5;
+        Random rand = new Random(42);
+
+        String[] scaPar = SetupGBG.setDefaultScaPars("EWN");        // for EWN currently: 3x3 2-player
+        arenaTrain = SetupGBG.setupSelectedGame("EWN",scaPar,"",false,true);
+        GameBoardEWN gb = new GameBoardEWN(arenaTrain);
+        StateObserverEWN so;
+
+        for (boolean useTT : new boolean[]{false,true}) {
+            int nStates = 0;
+            for (int i=0; i<nEpi; i++) {
+                gb.clearBoard(true,true);
+                so = (StateObserverEWN) gb.getStateObs();
+                while(!so.isGameOver()) {
+                    Types.ACTIONS_VT act0 = null;
+                    for (int parallelism : new int[]{1,4}) {
+                        ParMaxN mpar = new ParMaxN();
+                        mpar.setMaxNDepth(nDepth);
+                        mpar.setMaxNUseHashmap(useTT);
+                        mpar.setMaxNParallelism(parallelism);
+                        ExpectimaxNAgent pa = new ExpectimaxNAgent("ExpectimaxN", mpar, new ParOther());
+                        Types.ACTIONS_VT act_pa = pa.getNextAction2(so.copy(),false,true);
+                        pa.shutdownSearchPool();
+                        if (parallelism==1) {
+                            act0 = act_pa;
+                        } else {
+                            assert Arrays.equals(act0.getVTable(), act_pa.getVTable())
+                                    : "parallel vTable differs from sequential in "+so.stringDescr();
+                            if (isUniqueBest(act0.getVTable()))
+                                assert act0.toInt() == act_pa.toInt()
+                                        : "parallel best action differs from sequential in "+so.stringDescr();
+                        }
+                    }
+                    ArrayList<Types.ACTIONS> acts = so.getAvailableActions();
+                    so.advance(acts.get(rand.nextInt(acts.size())));
+                    nStates++;
+                }
+            }
+            System.out.println("useTT="+useTT+": "+nStates+" states OK");
+        }
+        System.out.println("[parallelTest] finished");
+    }
+
+    /**
+     * This test checks for 2-player 3x3 EWN that {@link ExpectimaxNAgent} keeps its fork/join pool over the moves,
+     * shuts the old pool down when {@link params.ParMaxN#getMaxNParallelism()} changes (also to 1, the sequential
+     * search) and releases it with {@link ExpectimaxNAgent#shutdownSearchPool()}.
+     */
+    @Test
+    public void searchPoolTest() {
+        String[] scaPar = SetupGBG.setDefaultScaPars("EWN");        // for EWN currently: 3x3 2-player
+        arenaTrain = SetupGBG.setupSelectedGame("EWN",scaPar,"",false,true);
+        GameBoardEWN gb = new GameBoardEWN(arenaTrain);
+        gb.clearBoard(true,true);
+        StateObserverEWN so = (StateObserverEWN) gb.getStateObs();
+
+        ParMaxN mpar = new ParMaxN();
+        mpar.setMaxNDepth(3);
+        mpar.setMaxNParallelism(4);
+        ExpectimaxNAgent pa = new ExpectimaxNAgent("ExpectimaxN", mpar, new ParOther());
+        pa.getNextAction2(so.copy(),false,true);
+        ForkJoinPool pool4 = pa.getPool();
+        assert pool4 != null && pool4.getParallelism() == 4 : "no pool with parallelism 4";
+        pa.getNextAction2(so.copy(),false,true);
+        assert pa.getPool() == pool4 : "pool not kept over the moves";
+
+        mpar.setMaxNParallelism(2);
+        pa.getNextAction2(so.copy(),false,true);
+        ForkJoinPool pool2 = pa.getPool();
+        assert pool4.isShutdown() : "replaced pool not shut down";
+        assert pool2 != null && pool2 != pool4 && pool2.getParallelism() == 2 : "no pool with parallelism 2";
+
+        mpar.setMaxNParallelism(1);
+        pa.getNextAction2(so.copy(),false,true);
+        assert pool2.isShutdown() && pa.getPool() == null : "pool not released for the sequential search";
+
+        mpar.setMaxNParallelism(4);
+        pa.getNextAction2(so.copy(),false,true);
+        ForkJoinPool pool = pa.getPool();
+        pa.shutdownSearchPool();
+        assert pool.isShutdown() && pa.getPool() == null : "shutdownSearchPool did not release the pool";
+        System.out.println("[searchPoolTest] finished");
+    }
+
+    /**
+     * @return true, if the maximum of {@code vTable} is unique (otherwise the best action is a random tie break)
+     */
+    private static boolean isUniqueBest(double[] vTable) {
+        double max = Arrays.stream(vTable).max().orElse(Double.NaN);
+        return Arrays.stream(vTable).filter(v -> v == max).count() == 1;
+    }
+
+    /**
+     * This test checks for 2-player 3x3 EWN the time-limited search of ExpectimaxNAgent (iterative deepening,
+     * {@link params.ParMaxN#getMaxNMoveTime()} &gt; 0) for states along random episodes:
+     * <ul>
+     * <li> maxNMoveTime=0 gives the fixed-depth search (same vTable, reached depth = maxNDepth).
+     * <li> With a generous time limit, the search reaches maxNDepth (or stops earlier, if there is no depth cutoff)
+     *      and gives the same vTable.
+     * <li> If the deadline expires already in the first action of iteration 2 (the leaf evaluation of
+     *      {@link TimedAgents.SlowExpectimaxNAgent} is made slow for this), the result of the completed iteration 1
+     *      is returned: the same vTable as the fixed-depth search with depth 1.
+     * <li> getNextAction2 returns a legal action within the time limit (plus some slack), also for a depth which
+     *      cannot be reached in time.
+     * </ul>
+     */
+    @Test
+    public void timeLimitTest() {
+        int nEpi=3;
+        int nDepth=5;
+        Random rand = new Random(42);
+
+        String[] scaPar = SetupGBG.setDefaultScaPars("EWN");        // for EWN currently: 3x3 2-player
+        arenaTrain = SetupGBG.setupSelectedGame("EWN",scaPar,"",false,true);
+        GameBoardEWN gb = new GameBoardEWN(arenaTrain);
+        StateObserverEWN so;
+        int nStates = 0;
+
+        for (int i=0; i<nEpi; i++) {
+            gb.clearBoard(true,true);
+            so = (StateObserverEWN) gb.getStateObs();
+            while(!so.isGameOver()) {
+                double[] vFixed = TimedAgents.expectimaxN(nDepth, 0).getNextAction2(so.copy(),false,true).getVTable();
+
+                ExpectimaxNAgent pa = TimedAgents.expectimaxN(nDepth, 0);
+                double[] vTable = pa.getNextAction2(so.copy(),false,true).getVTable();
+                assert Arrays.equals(vFixed, vTable) && pa.getLastDepth()==nDepth : "maxNMoveTime=0 differs";
+
+                pa = TimedAgents.expectimaxN(nDepth, 60000);
+                vTable = pa.getNextAction2(so.copy(),false,true).getVTable();
+                assert pa.getLastDepth() <= nDepth : "depth "+pa.getLastDepth()+" reached";
+                assert Arrays.equals(vFixed, vTable)
+                        : "iterative deepening (depth "+pa.getLastDepth()+") differs in "+so.stringDescr();
+
+                double[] vDepth1 = TimedAgents.expectimaxN(1, 0).getNextAction2(so.copy(),false,true).getVTable();
+                ParMaxN mpar = new ParMaxN();
+                mpar.setMaxNDepth(nDepth);
+                mpar.setMaxNMoveTime(1);
+                pa = new TimedAgents.SlowExpectimaxNAgent(mpar);
+                vTable = pa.getNextAction2(so.copy(),false,true).getVTable();
+                assert pa.getLastDepth() == 1 : "timed-out search reached depth "+pa.getLastDepth();
+                assert Arrays.equals(vDepth1, vTable) : "timed-out search does not return iteration 1 in "
+                        +so.stringDescr();
+
+                ArrayList<Types.ACTIONS> acts = so.getAvailableActions();
+                so.advance(acts.get(rand.nextInt(acts.size())));
+                nStates++;
+            }
+        }
+
+        int moveTime = 100;
+        ExpectimaxNAgent pa = TimedAgents.expectimaxN(40, moveTime);
+        gb.clearBoard(true,true);
+        so = (StateObserverEWN) gb.getStateObs();
+        long start = System.nanoTime();
+        Types.ACTIONS_VT act = pa.getNextAction2(so.copy(),false,true);
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        assert so.getAvailableActions().stream().anyMatch(a -> a.toInt() == act.toInt())
+                : "illegal action "+act.toInt();
+        assert millis < moveTime + 100 : "search took "+millis+" ms for maxNMoveTime="+moveTime;
+        System.out.println(nStates+" states OK, depth "+pa.getLastDepth()+" reached in "+millis+" ms");
+        System.out.println("[timeLimitTest] finished");
+    }
+
     /**
      * Helper method for {@link #expectimaxTree3Test()} and {@link #expectimaxTree9Test()}:
      * For {@code pa} which should have a nondeterministic next action (otherwise exception):
@@ -0,0 +1,289 @@
+package controllers.MCTS;
+
+import games.CFour.StateObserverC4;
+import games.StateObservation;
+import org.junit.Test;
+import params.ParMCTS;
+import tools.ElapsedCpuTimer;
+import tools.Types;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+public class SingleMCTSPlayerTest {
+
+    /**
+     * Test the root-parallel ensemble ({@link ParMCTS#getNumTrees()} &gt; 1) on the states of a random Connect-Four
+     * episode: After {@link SingleTreeNode#mergeRoots(SingleTreeNode[])}, the merged root has exactly
+     * {@code NUM_ITERS} visits (also if {@code NUM_ITERS} is not divisible by the number of trees), which are the
+     * sum of its children's visits. The trees run on a pool which is kept over the moves (no more than
+     * {@code numTrees} pool threads exist) and can be shut down.
+     */
+    @Test
+    public void mergeRootsTest() {
+        int numTrees = 4, numIters = 1001;
+        SingleMCTSPlayer player = newPlayer(numTrees, numIters, 0, 42);
+        Random rand = new Random(42);
+        StateObservation so = new StateObserverC4();
+        int numStates = 0;
+        int otherThreads = countPoolThreads();      // of pools of earlier tests, if any
+        while (!so.isGameOver()) {
+            double[] vtable = search(player, so);
+            SingleTreeNode root = player.m_root;
+            assert root.getNVisits() == numIters : "merged root has "+root.getNVisits()+" visits";
+            assert sumChildVisits(root) == numIters : "merged children have "+sumChildVisits(root)+" visits";
+            assert vtable[so.getNumAvailableActions()] > -Double.MAX_VALUE : "no best value";
+            int poolThreads = countPoolThreads() - otherThreads;
+            assert poolThreads <= numTrees : poolThreads+" pool threads for "+numTrees+" trees";
+
+            ArrayList<Types.ACTIONS> acts = so.getAvailableActions();
+            so.advance(acts.get(rand.nextInt(acts.size())));
+            numStates++;
+        }
+        player.shutdownTreePool();
+        System.out.println("[mergeRootsTest] "+numStates+" states OK");
+    }
+
+    /**
+     * Test that a search with {@link ParMCTS#getNumTrees()}{@code ==1} is unchanged by the ensemble code: With the
+     * same random seed, {@link SingleMCTSPlayer#run(ElapsedCpuTimer, double[])} gives the same vtable and root
+     * visits as a direct call of {@link SingleTreeNode#mctsSearch(ElapsedCpuTimer, double[])}.
+     */
+    @Test
+    public void singleTreeTest() {
+        int numIters = 500;
+        Random rand = new Random(43);
+        StateObservation so = new StateObserverC4();
+        int numStates = 0;
+        while (!so.isGameOver()) {
+            SingleMCTSPlayer p1 = newPlayer(1, numIters, 0, numStates);
+            double[] vt1 = search(p1, so);
+
+            SingleMCTSPlayer p2 = newPlayer(1, numIters, 0, numStates);
+            p2.initActions(so);
+            p2.init(so);
+            double[] vt2 = new double[so.getNumAvailableActions()+1];
+            p2.m_root.mctsSearch(cpuTimer(), vt2);
+
+            assert Arrays.equals(vt1, vt2) : "vtable differs in state\n"+so;
+            assert p1.m_root.getNVisits() == numIters && p2.m_root.getNVisits() == numIters : "root visits differ";
+
+            ArrayList<Types.ACTIONS> acts = so.getAvailableActions();
+            so.advance(acts.get(rand.nextInt(acts.size())));
+            numStates++;
+        }
+        System.out.println("[singleTreeTest] "+numStates+" states OK");
+    }
+
+    /**
+     * Test the reuse of the previous move's tree ({@link ParMCTS#getReuseTree()}) over random Connect-Four episodes:
+     * If {@link SingleMCTSPlayer#init(StateObservation)} finds the new state in the old tree, the reused root has as
+     * many visits as its children together, all depths are rebased (root at depth 0, each child one deeper than its
+     * parent) and the search adds exactly {@code NUM_ITERS} visits.
+     */
+    @Test
+    public void reuseTreeTest() {
+        int numIters = 500;
+        ParMCTS par = newPar(1, numIters, 0);
+        par.setReuseTree(true);
+        SingleMCTSPlayer player = newPlayer(par, 42);
+        Random rand = new Random(42);
+        int numReused = 0, numStates = 0;
+        for (int e=0; e<5; e++) {
+            StateObservation so = new StateObserverC4();
+            while (!so.isGameOver()) {
+                player.initActions(so);
+                player.init(so);
+                SingleTreeNode root = player.m_root;
+                int startVisits = root.getNVisits();
+                if (startVisits > 0) {
+                    numReused++;
+                    assert root.parent == null : "reused root has a parent";
+                    assert startVisits == sumChildVisits(root) : "reused root has "+startVisits+" visits, its "
+                            +"children "+sumChildVisits(root);
+                    assertDepths(root, 0);
+                }
+                player.run(cpuTimer(), new double[so.getNumAvailableActions()+1]);
+                assert player.m_root == root : "run() replaced the root";
+                assert root.getNVisits() == startVisits + numIters : "search did not add "+numIters+" visits";
+
+                // our move and a random move of the opponent
+                so.advance(player.actions[root.bestAction()]);
+                if (so.isGameOver()) break;
+                ArrayList<Types.ACTIONS> acts = so.getAvailableActions();
+                so.advance(acts.get(rand.nextInt(acts.size())));
+                numStates++;
+            }
+        }
+        assert numReused > 0 : "the tree was never reused";
+        System.out.println("[reuseTreeTest] "+numStates+" states, tree reused in "+numReused);
+    }
+
+    /**
+     * Test the early-stop criterion {@link SingleTreeNode#cannotBeOvertaken(long)} of the anytime search: A search
+     * of {@code total} iterations is run one iteration at a time. Whenever the criterion holds for the remaining
+     * iterations (where an early stop would end the search), the action chosen at that point (most visits and
+     * best mean value) has to be the same as the one chosen after all {@code total} iterations (the deadline).
+     * <p>
+     * In addition, a search with {@code moveTime} and early stop returns within the time limit.
+     */
+    @Test
+    public void earlyStopTest() {
+        int total = 2000;
+        Random rand = new Random(44);
+        StateObservation so = new StateObserverC4();
+        int numStates = 0, numStops = 0;
+        while (!so.isGameOver()) {
+            SingleMCTSPlayer player = newPlayer(newPar(1, 1, 0), numStates);
+            player.initActions(so);
+            player.init(so);
+            SingleTreeNode root = player.m_root;
+            int stopAction = -1;
+            for (int i=1; i<=total; i++) {
+                root.mctsSearch(cpuTimer(), new double[so.getNumAvailableActions()+1]);
+                if (stopAction < 0 && root.cannotBeOvertaken(total - i)) {
+                    stopAction = mostVisited(root);
+                    if (i < total) numStops++;
+                }
+            }
+            assert stopAction < 0 || (stopAction == mostVisited(root) && stopAction == bestMean(root))
+                    : "early stop chose action "+stopAction+", the full search "+bestMean(root)+" in state\n"+so;
+
+            ArrayList<Types.ACTIONS> acts = so.getAvailableActions();
+            so.advance(acts.get(rand.nextInt(acts.size())));
+            numStates++;
+        }
+        assert numStops > 0 : "the early-stop criterion never held";
+
+        int moveTime = 200;
+        ParMCTS par = newPar(1, 1000, moveTime);
+        par.setEarlyStop(true);
+        MCTSAgentT agent = new MCTSAgentT("MCTS", null, par);
+        StateObservation start = new StateObserverC4();
+        long startNanos = System.nanoTime();
+        Types.ACTIONS_VT act = agent.getNextAction2(start, false, true);
+        long millis = (System.nanoTime() - startNanos) / 1_000_000;
+        assert start.getAvailableActions().stream().anyMatch(a -> a.toInt() == act.toInt()) : "illegal action";
+        assert millis < moveTime + 100 : "search took "+millis+" ms for moveTime="+moveTime;
+        System.out.println("[earlyStopTest] "+numStates+" states OK, early stop possible in "+numStops
+                +", timed search "+millis+" ms");
+    }
+
+    /**
+     * Test that {@code moveTime=0} is the fixed-iteration search of before: exactly {@code NUM_ITERS} iterations,
+     * and the same result with and without {@link ParMCTS#getEarlyStop()} (which only applies to the anytime mode).
+     */
+    @Test
+    public void moveTimeZeroTest() {
+        int numIters = 500;
+        Random rand = new Random(45);
+        StateObservation so = new StateObserverC4();
+        int numStates = 0;
+        while (!so.isGameOver()) {
+            ParMCTS par1 = newPar(1, numIters, 0);
+            par1.setEarlyStop(true);
+            SingleMCTSPlayer p1 = newPlayer(par1, numStates);
+            double[] vt1 = search(p1, so);
+
+            ParMCTS par2 = newPar(1, numIters, 0);
+            par2.setEarlyStop(false);
+            SingleMCTSPlayer p2 = newPlayer(par2, numStates);
+            double[] vt2 = search(p2, so);
+
+            assert Arrays.equals(vt1, vt2) : "early stop changed the search with moveTime=0 in state\n"+so;
+            assert p1.m_root.getNVisits() == numIters : "root has "+p1.m_root.getNVisits()+" visits";
+
+            ArrayList<Types.ACTIONS> acts = so.getAvailableActions();
+            so.advance(acts.get(rand.nextInt(acts.size())));
+            numStates++;
+        }
+        System.out.println("[moveTimeZeroTest] "+numStates+" states OK");
+    }
+
+    private static ParMCTS newPar(int numTrees, int numIters, int moveTime) {
+        ParMCTS par = new ParMCTS();
+        par.setNumTrees(numTrees);
+        par.setNumIter(numIters);
+        par.setMoveTime(moveTime);
+        return par;
+    }
+
+    private static SingleMCTSPlayer newPlayer(int numTrees, int numIters, int moveTime, long seed) {
+        return newPlayer(newPar(numTrees, numIters, moveTime), seed);
+    }
+
+    private static SingleMCTSPlayer newPlayer(ParMCTS par, long seed) {
+        MCTSAgentT agent = new MCTSAgentT("MCTS", null, par);
+        return new SingleMCTSPlayer(agent, new Random(seed), par);
+    }
+
+    /**
+     * One move of {@code player} in state {@code so}, as {@link MCTSAgentT#act(StateObservation, ElapsedCpuTimer,
+     * double[])} does it
+     *
+     * @return the vtable (with the best value in the last element)
+     */
+    private static double[] search(SingleMCTSPlayer player, StateObservation so) {
+        double[] vtable = new double[so.getNumAvailableActions()+1];
+        player.initActions(so);
+        player.init(so);
+        player.run(cpuTimer(), vtable);
+        return vtable;
+    }
+
+    private static ElapsedCpuTimer cpuTimer() {
+        ElapsedCpuTimer timer = new ElapsedCpuTimer(ElapsedCpuTimer.TimerType.CPU_TIME);
+        timer.setMaxTimeMillis(40);
+        return timer;
+    }
+
+    private static int sumChildVisits(SingleTreeNode node) {
+        int sum = 0;
+        for (SingleTreeNode c : node.children)
+            if (c != null) sum += c.getNVisits();
+        return sum;
+    }
+
+    private static void assertDepths(SingleTreeNode node, int depth) {
+        assert node.getDepth() == depth : "node has depth "+node.getDepth()+" instead of "+depth;
+        for (SingleTreeNode c : node.children)
+            if (c != null) assertDepths(c, depth+1);
+    }
+
+    /**
+     * @return the child with the most visits (the one which {@link SingleTreeNode#cannotBeOvertaken(long)} refers
+     *      to), the first one in case of ties
+     */
+    private static int mostVisited(SingleTreeNode node) {
+        int best = -1;
+        for (int i = 0; i < node.children.length; i++)
+            if (node.children[i] != null && (best < 0 || node.children[i].getNVisits() > node.children[best].getNVisits()))
+                best = i;
+        return best;
+    }
+
+    /**
+     * @return the child with the best mean value {@code totValue/nVisits} (the one which
+     *      {@link SingleTreeNode#bestAction()} picks, without its random tie breaker)
+     */
+    private static int bestMean(SingleTreeNode node) {
+        int best = -1;
+        double bestValue = -Double.MAX_VALUE;
+        for (int i = 0; i < node.children.length; i++) {
+            SingleTreeNode c = node.children[i];
+            if (c != null && c.totValue / c.getNVisits() > bestValue) {
+                bestValue = c.totValue / c.getNVisits();
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    private static int countPoolThreads() {
+        int n = 0;
+        for (Thread t : Thread.getAllStackTraces().keySet())
+            if (t.getName().startsWith("MCTS-search-")) n++;
+        return n;
+    }
+}
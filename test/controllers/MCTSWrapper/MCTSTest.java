@@ -0,0 +1,318 @@
+package controllers.MCTSWrapper;
+
+import controllers.MCTSWrapper.passStates.GameStateIncludingPass;
+import controllers.MCTSWrapper.stateApproximation.PlayAgentApproximator;
+import controllers.MCTSWrapper.utils.Tuple;
+import controllers.TD.ntuple4.TDNTuple4Agt;
+import games.CFour.StateObserverC4;
+import games.CFour.XNTupleFuncsC4;
+import games.StateObservation;
+import games.XNTupleFuncs;
+import org.junit.Test;
+import params.*;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Unit tests for the search variants of {@link MCTS} and the tree management of {@link MCTSNode}. The approximator is
+ * a {@link PlayAgentApproximator} around a {@link TDNTuple4Agt} briefly trained on Connect-Four (deterministic for
+ * {@code random=false}).
+ */
+public class MCTSTest {
+    private static final double C_PUCT = 1.0;
+    private static PlayAgentApproximator approximator = null;
+
+    /**
+     * Test that {@link MCTS#searchParallel(MCTSNode, int, int)} with one thread builds the same tree as the same
+     * number of calls of {@link MCTS#search(MCTSNode, int)}, and that the multi-threaded search with virtual loss
+     * completes exactly the requested iterations: The visit counts of the root sum up to the iterations (minus the
+     * one expanding the root), and in each node the visit count of an action slot equals the visits of its child.
+     */
+    @Test
+    public void searchParallelTest() {
+        int iterations = 2000;
+        MCTSNode root1 = newRoot(false);
+        MCTS mcts = new MCTS(approximator(), C_PUCT, -1);
+        for (int i=0; i<iterations; i++) mcts.search(root1, 0);
+        MCTSNode root2 = newRoot(false);
+        int done = new MCTS(approximator(), C_PUCT, -1).searchParallel(root2, iterations, 1);
+        assert done == iterations : "searchParallel with 1 thread completed "+done+" iterations";
+        assertSameTree(root1, root2, "1 thread");
+
+        for (int numThreads : new int[]{2, 4}) {
+            MCTSNode root = newRoot(false);
+            done = new MCTS(approximator(), C_PUCT, -1).searchParallel(root, iterations, numThreads);
+            assert done == iterations : numThreads+" threads completed "+done+" iterations";
+            assert root.getSumVisits() == iterations-1
+                    : numThreads+" threads: root visits "+root.getSumVisits()+" != "+(iterations-1);
+            assertConsistentVisits(root, numThreads+" threads");
+            assert root.getTreeSize() == countNodes(root) : numThreads+" threads: tree size differs from recount";
+        }
+        System.out.println("[searchParallelTest] finished");
+    }
+
+    /**
+     * Test that passes of the batched search with one leaf ({@code MCTS.searchBatch} with {@code maxLeaves=1}) build
+     * the same tree as the same number of calls of {@link MCTS#search(MCTSNode, int)}. With larger batches
+     * ({@link MCTS#searchParallel(MCTSNode, int, int, int)} with {@code batchSize} 8, with one and with two threads),
+     * exactly the requested iterations are completed and the visit counts are consistent.
+     */
+    @Test
+    public void searchBatchTest() throws InterruptedException {
+        int iterations = 2000;
+        MCTSNode root1 = newRoot(false);
+        MCTS mcts = new MCTS(approximator(), C_PUCT, -1);
+        for (int i=0; i<iterations; i++) mcts.search(root1, 0);
+        MCTSNode root2 = newRoot(false);
+        MCTS mcts2 = new MCTS(approximator(), C_PUCT, -1);
+        int[] deepest = new int[1];
+        int done = 0;
+        while (done < iterations) done += mcts2.searchBatch(root2, 1, deepest);
+        assert done == iterations : "searchBatch completed "+done+" iterations";
+        assertSameTree(root1, root2, "batchSize 1");
+
+        for (int numThreads : new int[]{1, 2}) {
+            MCTSNode root = newRoot(false);
+            done = new MCTS(approximator(), C_PUCT, -1).searchParallel(root, iterations, numThreads, 8);
+            assert done == iterations : "batchSize 8, "+numThreads+" threads: completed "+done+" iterations";
+            assert root.getSumVisits() == iterations-1 : "batchSize 8: root visits "+root.getSumVisits();
+            assertConsistentVisits(root, "batchSize 8, "+numThreads+" threads");
+        }
+        System.out.println("[searchBatchTest] finished");
+    }
+
+    /**
+     * Test that {@link MCTSNode#getTreeSize()} stays equal to a recount of the reachable nodes when the tree is pruned
+     * ({@link MCTSNode#pruneLeastVisited(int)}), when the search continues on a pruned tree with a node budget
+     * ({@link MCTS#setMaxNodes(int)}) and when the tree is re-rooted ({@link MCTSNode#reRoot(int)}).
+     */
+    @Test
+    public void treeSizeTest() {
+        checkTreeSize(false, "tree");
+        System.out.println("[treeSizeTest] finished");
+    }
+
+    /**
+     * Test the transposition (DAG) mode: Equal states reached via different move orders share one node (there are
+     * nodes with several incoming edges, and no two reachable nodes have the same transposition key). The tree size
+     * stays equal to a recount and to the size of the transposition table when the DAG is pruned and re-rooted, so
+     * the mark-and-sweep removes all nodes no longer reachable from the table.
+     */
+    @Test
+    public void transpositionTest() {
+        MCTSNode root = newRoot(true);
+        new MCTS(approximator(), C_PUCT, -1).searchParallel(root, 3000, 1);
+        Set<MCTSNode> nodes = Collections.newSetFromMap(new IdentityHashMap<>());
+        IdentityHashMap<MCTSNode, Integer> inDegree = new IdentityHashMap<>();
+        HashMap<String, MCTSNode> byKey = new HashMap<>();
+        ArrayDeque<MCTSNode> stack = new ArrayDeque<>();
+        nodes.add(root);
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            MCTSNode node = stack.pop();
+            MCTSNode other = byKey.put(node.gameState.transpositionKey(), node);
+            assert other == null || other == node : "two nodes for the same state "+node.gameState.stringDescr();
+            if (!node.isExpanded()) continue;
+            for (int k=0; k<node.getNumSlots(); k++) {
+                MCTSNode child = node.getChildNode(k);
+                if (child == null) continue;
+                inDegree.merge(child, 1, Integer::sum);
+                if (nodes.add(child)) stack.push(child);
+            }
+        }
+        long shared = inDegree.values().stream().filter(d -> d > 1).count();
+        assert shared > 0 : "no node is shared by transposed move orders";
+        assert root.getTreeSize() == nodes.size() && root.getTableSize() == nodes.size()
+                : "tree size "+root.getTreeSize()+", table size "+root.getTableSize()+", recount "+nodes.size();
+        System.out.println("[transpositionTest] "+nodes.size()+" nodes, "+shared+" of them shared");
+
+        checkTreeSize(true, "DAG");
+        System.out.println("[transpositionTest] finished");
+    }
+
+    /**
+     * Test the prediction cache of {@link PlayAgentApproximator}: A search with the cached approximator builds the same
+     * tree as a search without cache, and repeated states are served from the cache. The capacity is passed in by
+     * {@link MCTSWrapperAgent} from its {@link ParWrapper#getWrapperMCTS_cacheSize()}.
+     */
+    @Test
+    public void predictionCacheTest() {
+        PlayAgentApproximator cached = new PlayAgentApproximator(approximator().getWrappedPlayAgent(), 10000);
+        MCTSNode root1 = newRoot(true);
+        new MCTS(approximator(), C_PUCT, -1).searchParallel(root1, 2000, 1);
+        MCTSNode root2 = newRoot(true);
+        new MCTS(cached, C_PUCT, -1).searchParallel(root2, 2000, 1);
+        assertSameTree(root1, root2, "cache");
+        root2 = newRoot(true);
+        new MCTS(cached, C_PUCT, -1).searchParallel(root2, 2000, 1);
+        assertSameTree(root1, root2, "filled cache");
+        assert cached.getCacheHits() > 0 && cached.getCacheHitRate() > 0.4
+                : "hits "+cached.getCacheHits()+", misses "+cached.getCacheMisses();
+
+        PlayAgentApproximator approx = new PlayAgentApproximator(approximator().getWrappedPlayAgent());
+        MCTSWrapperAgent mwa = new MCTSWrapperAgent(500, C_PUCT, approx, "MCTS-wrapped", -1, new ParOther());
+        ParWrapper wrPar = new ParWrapper();
+        wrPar.setWrapperMCTS_cacheSize(10000);
+        mwa.setParWrapper(wrPar);
+        StateObservation so = new StateObserverC4();
+        for (int m=0; m<4; m++) {
+            so.advance(mwa.getNextAction2(so.partialState(), false, m<3));
+            assert mwa.getLastIterations() == 500 : "achieved "+mwa.getLastIterations()+" iterations instead of 500";
+        }
+        assert approx.getCacheMisses() > 0 && approx.getCacheHits() > 0 : "the wrapper did not switch on the cache";
+        System.out.println("[predictionCacheTest] hit rate "+cached.getCacheHitRate()+" (search), "
+                +approx.getCacheHitRate()+" (wrapper)");
+    }
+
+    /**
+     * Test the batch prediction {@link PlayAgentApproximator#predict(List)} with cache: For a batch of Connect-Four
+     * states with an exact duplicate and a transposition (same position via another move order), it gives the same
+     * predictions as single uncached calls, in the order of the batch. The whole batch is looked up once (all misses
+     * for a new batch, all hits when the batch is repeated).
+     */
+    @Test
+    public void batchPredictTest() {
+        List<StateObservation> batch = new ArrayList<>();
+        Random rand = new Random(42);
+        StateObservation so = new StateObserverC4();
+        while (!so.isGameOver() && batch.size() < 10) {
+            batch.add(so.copy());
+            so.advance(so.getAvailableActions().get(rand.nextInt(so.getNumAvailableActions())));
+        }
+        batch.add(batch.get(3).copy());
+        StateObservation s1 = new StateObserverC4(), s2 = new StateObserverC4();
+        for (int col : new int[]{0, 1, 2}) s1.advance(s1.getAvailableActions().get(col));
+        for (int col : new int[]{2, 1, 0}) s2.advance(s2.getAvailableActions().get(col));
+        batch.add(s1);
+        batch.add(s2);
+
+        PlayAgentApproximator cached = new PlayAgentApproximator(approximator().getWrappedPlayAgent(), 10000);
+        for (int pass=1; pass<=2; pass++) {
+            List<Tuple<Double, double[]>> predicted = cached.predict(batch);
+            assert predicted.size() == batch.size() : "pass "+pass+": "+predicted.size()+" predictions";
+            for (int i=0; i<batch.size(); i++) {
+                Tuple<Double, double[]> single = approximator().predict(batch.get(i));
+                assert single.element1.equals(predicted.get(i).element1)
+                        && Arrays.equals(single.element2, predicted.get(i).element2)
+                        : "pass "+pass+": prediction "+i+" differs from the single prediction";
+            }
+        }
+        assert cached.getCacheMisses() == batch.size() && cached.getCacheHits() == batch.size()
+                : "hits "+cached.getCacheHits()+", misses "+cached.getCacheMisses();
+        System.out.println("[batchPredictTest] "+batch.size()+" states OK");
+    }
+
+    static void checkTreeSize(boolean transpositions, String descr) {
+        MCTS mcts = new MCTS(approximator(), C_PUCT, -1);
+        MCTSNode root = newRoot(transpositions);
+        mcts.searchParallel(root, 3000, 1);
+        assert root.getTreeSize() == countNodes(root) : descr+": tree size differs from recount after search";
+        int rootVisits = root.getSumVisits();
+
+        int before = root.getTreeSize();
+        int released = root.pruneLeastVisited(500);
+        assert root.getTreeSize() <= 500 : descr+": "+root.getTreeSize()+" nodes left after pruning to 500";
+        assert before - released == root.getTreeSize() : descr+": released count is wrong";
+        assert root.getTreeSize() == countNodes(root) : descr+": tree size differs from recount after pruning";
+        assert root.getSumVisits() == rootVisits : descr+": pruning changed the root statistics";
+        assert !transpositions || root.getTableSize() == root.getTreeSize() : descr+": table not swept after pruning";
+
+        mcts.setMaxNodes(1000);
+        int done = mcts.searchParallel(root, 10000, 1, 1, Long.MAX_VALUE);
+        assert done < 10000 && mcts.isTreeFull(root) : descr+": the search did not stop at the node budget";
+        assert root.getTreeSize() == countNodes(root) : descr+": tree size differs from recount after budget search";
+
+        int best = 0;
+        for (int k=1; k<root.getNumSlots(); k++)
+            if (root.getN(k) > root.getN(best)) best = k;
+        MCTSNode child = root.reRoot(best);
+        assert child.getTreeSize() == countNodes(child) : descr+": tree size differs from recount after reRoot";
+        assert !transpositions || child.getTableSize() == child.getTreeSize() : descr+": table not swept after reRoot";
+        child.reRoot(-1);
+        assert child.getTreeSize() == 0 : descr+": "+child.getTreeSize()+" nodes left after releasing the tree";
+        assert child.getTableSize() == 0 : descr+": "+child.getTableSize()+" nodes left in the table";
+    }
+
+    /**
+     * Assert that the trees below {@code a} and {@code b} have the same structure and the same statistics N, Q, P
+     */
+    static void assertSameTree(MCTSNode a, MCTSNode b, String descr) {
+        assert a.isExpanded() == b.isExpanded() : descr+": expansion differs";
+        assert a.getSumVisits() == b.getSumVisits() : descr+": visits differ";
+        if (!a.isExpanded()) return;
+        assert a.getNumSlots() == b.getNumSlots() : descr+": slots differ";
+        for (int k=0; k<a.getNumSlots(); k++) {
+            assert a.getN(k) == b.getN(k) && a.getQ(k) == b.getQ(k) && a.getP(k) == b.getP(k)
+                    : descr+": statistics differ in slot "+k;
+            MCTSNode ca = a.getChildNode(k), cb = b.getChildNode(k);
+            assert (ca == null) == (cb == null) : descr+": child "+k+" exists only in one tree";
+            if (ca != null) assertSameTree(ca, cb, descr);
+        }
+    }
+
+    /**
+     * Assert that in each expanded node of the tree (not a DAG) the visit counts sum up correctly and that the visit
+     * count of each action slot equals the number of descents into its child
+     */
+    static void assertConsistentVisits(MCTSNode node, String descr) {
+        if (!node.isExpanded()) return;
+        int sum = 0;
+        for (int k=0; k<node.getNumSlots(); k++) {
+            sum += node.getN(k);
+            MCTSNode child = node.getChildNode(k);
+            if (child == null) continue;
+            if (!child.gameState.isFinalGameState()) {
+                int descents = child.getSumVisits() + (child.isExpanded() ? 1 : 0);
+                assert node.getN(k) == descents
+                        : descr+": N(k)="+node.getN(k)+", but "+descents+" descents into child "+k;
+            }
+            assertConsistentVisits(child, descr);
+        }
+        assert sum == node.getSumVisits() : descr+": sum of N(k) "+sum+" != sumVisits "+node.getSumVisits();
+    }
+
+    /**
+     * @return the number of distinct nodes reachable from {@code root}
+     */
+    static int countNodes(MCTSNode root) {
+        Set<MCTSNode> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        ArrayDeque<MCTSNode> stack = new ArrayDeque<>();
+        seen.add(root);
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            MCTSNode node = stack.pop();
+            if (!node.isExpanded()) continue;
+            for (int k=0; k<node.getNumSlots(); k++) {
+                MCTSNode child = node.getChildNode(k);
+                if (child != null && seen.add(child)) stack.push(child);
+            }
+        }
+        return seen.size();
+    }
+
+    static MCTSNode newRoot(boolean transpositions) {
+        return new MCTSNode(new GameStateIncludingPass(new StateObserverC4()), transpositions);
+    }
+
+    static synchronized PlayAgentApproximator approximator() {
+        if (approximator == null) {
+            XNTupleFuncs xnf = new XNTupleFuncsC4();
+            int[][] nTuples = xnf.fixedNTuples(xnf.fixedNTupleModesAvailable()[0]);
+            TDNTuple4Agt pa = new TDNTuple4Agt("TD-Ntuple-4", new ParTD(), new ParNT(), new ParOther(),
+                    new ParRB(), new ParWrapper(), nTuples, xnf, 200);
+            pa.rand = new Random(42);
+            for (int i=0; i<200; i++)
+                pa.trainAgent(new StateObserverC4());
+            approximator = new PlayAgentApproximator(pa);
+        }
+        return approximator;
+    }
+}
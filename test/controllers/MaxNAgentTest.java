@@ -0,0 +1,115 @@
+package controllers;
+
+import games.CFour.StateObserverC4;
+import games.StateObservation;
+import games.TicTacToe.StateObserverTTT;
+import org.junit.Test;
+import params.ParMaxN;
+import tools.Types;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+public class MaxNAgentTest {
+
+    /**
+     * Test that the transposition table of {@link MaxNAgent} ({@code maxNUseHashmap=true}) does not change the
+     * result: For all states of random episodes, the vTable and the best value are the same as without table.
+     * <ul>
+     * <li> TicTacToe, full depth: All entries are exact, the table is kept over all moves of all episodes.
+     * <li> Connect-Four, depth 5: The table is cleared before each move, because a deeper entry from an earlier move
+     *      may be reused (by design) and would then give a better value than the depth-limited search without table.
+     * </ul>
+     */
+    @Test
+    public void hashmapTest() {
+        compareHashmap(new StateObserverTTT(), 9, false, 20);
+        compareHashmap(new StateObserverC4(), 5, true, 2);
+        System.out.println("[hashmapTest] finished");
+    }
+
+    /**
+     * Test the time-limited search of {@link MaxNAgent} (iterative deepening, {@code maxNMoveTime > 0}) on the states
+     * of random Connect-Four episodes:
+     * <ul>
+     * <li> {@code maxNMoveTime=0} gives the fixed-depth search (same vTable, reached depth = {@code maxNDepth}).
+     * <li> With a generous time limit, the search reaches {@code maxNDepth} and gives the same vTable.
+     * <li> If the deadline expires already in the first action of iteration 2 (the leaf evaluation of
+     *      {@link TimedAgents.SlowMaxNAgent} is made slow for this), the result of the completed iteration 1 is
+     *      returned: the same vTable as the fixed-depth search with depth 1.
+     * <li> {@code getNextAction2} returns a legal action within the time limit (plus some slack), also for a depth
+     *      which cannot be reached in time.
+     * </ul>
+     */
+    @Test
+    public void timeLimitTest() {
+        int depth = 4;
+        Random rand = new Random(42);
+        int numStates = 0;
+        for (int e=0; e<2; e++) {
+            StateObservation so = new StateObserverC4();
+            while (!so.isGameOver()) {
+                double[] vFixed = TimedAgents.maxN(depth, 0).getNextAction2(so.partialState(), false, true).getVTable();
+
+                MaxNAgent pa = TimedAgents.maxN(depth, 0);
+                double[] vTable = pa.getNextAction2(so.partialState(), false, true).getVTable();
+                assert Arrays.equals(vFixed, vTable) && pa.getLastDepth() == depth : "maxNMoveTime=0 differs";
+
+                pa = TimedAgents.maxN(depth, 60000);
+                vTable = pa.getNextAction2(so.partialState(), false, true).getVTable();
+                assert pa.getLastDepth() <= depth : "depth "+pa.getLastDepth()+" reached";
+                if (pa.getLastDepth() == depth)
+                    assert Arrays.equals(vFixed, vTable) : "iterative deepening differs in state\n"+so;
+
+                double[] vDepth1 = TimedAgents.maxN(1, 0).getNextAction2(so.partialState(), false, true).getVTable();
+                ParMaxN mpar = new ParMaxN();
+                mpar.setMaxNDepth(depth);
+                mpar.setMaxNMoveTime(1);
+                pa = new TimedAgents.SlowMaxNAgent(mpar);
+                vTable = pa.getNextAction2(so.partialState(), false, true).getVTable();
+                assert pa.getLastDepth() == 1 : "timed-out search reached depth "+pa.getLastDepth();
+                assert Arrays.equals(vDepth1, vTable) : "timed-out search does not return iteration 1 in state\n"+so;
+
+                ArrayList<Types.ACTIONS> acts = so.getAvailableActions();
+                so.advance(acts.get(rand.nextInt(acts.size())));
+                numStates++;
+            }
+        }
+
+        int moveTime = 100;
+        MaxNAgent pa = TimedAgents.maxN(20, moveTime);
+        StateObservation so = new StateObserverC4();
+        long start = System.nanoTime();
+        Types.ACTIONS_VT act = pa.getNextAction2(so.partialState(), false, true);
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        assert so.getAvailableActions().stream().anyMatch(a -> a.toInt() == act.toInt())
+                : "illegal action "+act.toInt();
+        assert millis < moveTime + 100 : "search took "+millis+" ms for maxNMoveTime="+moveTime;
+        System.out.println("[timeLimitTest] "+numStates+" states OK, depth "+pa.getLastDepth()+" reached in "+millis
+                +" ms");
+    }
+
+    private static void compareHashmap(StateObservation startSO, int depth, boolean clearTable, int numEpisodes) {
+        MaxNAgent withTable = new MaxNAgent("MaxN", depth, true);
+        MaxNAgent without = new MaxNAgent("MaxN", depth, false);
+        Random rand = new Random(42);
+        int numStates = 0;
+        for (int e=0; e<numEpisodes; e++) {
+            StateObservation so = startSO.copy();
+            while (!so.isGameOver()) {
+                if (clearTable && withTable.getTable() != null) withTable.getTable().clear();
+                Types.ACTIONS_VT act1 = withTable.getNextAction2(so.partialState(), false, true);
+                Types.ACTIONS_VT act2 = without.getNextAction2(so.partialState(), false, true);
+                assert Arrays.equals(act1.getVTable(), act2.getVTable())
+                        : "vTable differs with transposition table in state\n"+so;
+                assert act1.getVBest() == act2.getVBest() : "best value differs in state\n"+so;
+                ArrayList<Types.ACTIONS> acts = so.getAvailableActions();
+                so.advance(acts.get(rand.nextInt(acts.size())));
+                numStates++;
+            }
+        }
+        System.out.println("[hashmapTest] "+startSO.getClass().getSimpleName()+", depth "+depth+": "+numStates
+                +" states OK, "+withTable.getTable().stringDescr());
+    }
+}
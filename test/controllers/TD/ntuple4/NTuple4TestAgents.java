@@ -0,0 +1,51 @@
+package controllers.TD.ntuple4;
+
+import games.CFour.StateObserverC4;
+import games.CFour.XNTupleFuncsC4;
+import games.StateObservation;
+import games.XNTupleFuncs;
+import params.*;
+
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * Create the {@link TDNTuple4Agt} agents for the tests of this package: default parameters (apart from {@link ParNT}),
+ * the first fixed n-tuple mode of the game and the random generator {@code Random(42)}, so that the training is
+ * reproducible.
+ * <p>
+ * The class does not contain test cases itself, it is used by the test cases of the other classes.
+ */
+final class NTuple4TestAgents {
+
+    private NTuple4TestAgents() { }
+
+    /**
+     * @return an untrained agent for the game of {@code xnf}
+     */
+    static TDNTuple4Agt newAgent(XNTupleFuncs xnf, ParNT ntPar, int maxGameNum) {
+        int[][] nTuples = xnf.fixedNTuples(xnf.fixedNTupleModesAvailable()[0]);
+        TDNTuple4Agt pa = new TDNTuple4Agt("TD-Ntuple-4", new ParTD(), ntPar, new ParOther(), new ParRB(),
+                new ParWrapper(), nTuples, xnf, maxGameNum);
+        pa.rand = new Random(42);
+        return pa;
+    }
+
+    /**
+     * @return an agent for the game of {@code xnf}, trained by self-play for {@code episodes} episodes starting from
+     *      {@code startSO}
+     */
+    static TDNTuple4Agt trainedAgent(XNTupleFuncs xnf, ParNT ntPar, int episodes, Supplier<StateObservation> startSO) {
+        TDNTuple4Agt pa = newAgent(xnf, ntPar, episodes);
+        for (int i=0; i<episodes; i++)
+            pa.trainAgent(startSO.get());
+        return pa;
+    }
+
+    /**
+     * @return a Connect-Four agent with default {@link ParNT}, trained for {@code episodes} episodes
+     */
+    static TDNTuple4Agt trainedC4Agent(int episodes) {
+        return trainedAgent(new XNTupleFuncsC4(), new ParNT(), episodes, StateObserverC4::new);
+    }
+}
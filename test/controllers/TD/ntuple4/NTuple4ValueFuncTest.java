@@ -0,0 +1,71 @@
+package controllers.TD.ntuple4;
+
+import games.BoardVector;
+import games.CFour.XNTupleFuncsC4;
+import games.XNTupleFuncs;
+import org.junit.Test;
+import params.*;
+
+import java.util.Random;
+
+public class NTuple4ValueFuncTest {
+
+    /**
+     * Test the ring buffer {@link NTuple4ValueFunc.EligRing} of the eligibility traces: It holds at most
+     * {@code horizon} elements, element {@code m} (0: newest) is always the one added {@code m} steps ago (also after
+     * the buffer has wrapped around), its LUT indices are those of the board added, and the slots are re-used without
+     * allocation. Changing the horizon or calling {@code clear()} empties the buffer.
+     */
+    @Test
+    public void eligRingTest() {
+        XNTupleFuncs xnf = new XNTupleFuncsC4();
+        int[][] nTuples = xnf.fixedNTuples(xnf.fixedNTupleModesAvailable()[0]);
+        TDNTuple4Agt pa = new TDNTuple4Agt("TD-Ntuple-4", new ParTD(), new ParNT(), new ParOther(), new ParRB(),
+                new ParWrapper(), nTuples, xnf, 100);
+        NTuple4ValueFunc vf = pa.getNTupleValueFunc();
+        NTuple4[] nts = vf.getNTuples();
+        int stride = nts.length / nTuples.length;      // getNTuples() interleaves players and outputs
+        NTuple4ValueFunc.EligRing ring = vf.new EligRing();
+        Random rand = new Random(42);
+
+        int horizon = 3;
+        int numAdds = 10;
+        int[][] boards = new int[numAdds][];
+        long[][] slotArrays = new long[horizon][];
+        for (int n=0; n<numAdds; n++) {
+            boards[n] = randomBoard(rand, xnf.getNumCells());
+            ring.add(horizon, new BoardVector[]{new BoardVector(boards[n])}, boards[n], 1, null, n);
+
+            assert ring.count == Math.min(n+1, horizon) : "count "+ring.count+" after "+(n+1)+" adds";
+            assert ring.idx.length == horizon : "capacity "+ring.idx.length+" instead of "+horizon;
+            for (int m=0; m<ring.count; m++) {
+                int s = ring.slot(m);
+                assert ring.sigDeriv[s] == n-m : "element "+m+" is from add "+ring.sigDeriv[s]+", not "+(n-m);
+                assert ring.nEquiv[s] == 1;
+                for (int i=0; i<nTuples.length; i++)
+                    assert ring.idx[s][i] == nts[i*stride].getIndex(boards[n-m])
+                            : "LUT index of n-tuple "+i+" differs for element "+m;
+            }
+            int s = ring.slot(0);
+            if (n<horizon) {
+                slotArrays[s] = ring.idx[s];
+            } else {
+                assert ring.idx[s] == slotArrays[s] : "slot "+s+" was re-allocated after wrap-around";
+            }
+        }
+
+        ring.add(horizon-1, new BoardVector[]{new BoardVector(boards[0])}, boards[0], 1, null, 0);
+        assert ring.count == 1 && ring.idx.length == horizon-1 : "changing the horizon did not reset the buffer";
+        ring.clear();
+        assert ring.count == 0 : "clear() did not empty the buffer";
+        ring.add(horizon-1, new BoardVector[]{new BoardVector(boards[1])}, boards[1], 1, null, 1);
+        assert ring.count == 1 && ring.sigDeriv[ring.slot(0)] == 1 : "add after clear() failed";
+        System.out.println("[eligRingTest] finished");
+    }
+
+    private static int[] randomBoard(Random rand, int numCells) {
+        int[] board = new int[numCells];
+        for (int c=0; c<numCells; c++) board[c] = rand.nextInt(3);
+        return board;
+    }
+}
@@ -0,0 +1,169 @@
+package controllers.TD.ntuple4;
+
+import controllers.MCTSWrapper.MCTSWrapperAgent;
+import controllers.MCTSWrapper.stateApproximation.PlayAgentApproximator;
+import controllers.MaxN2Wrapper;
+import controllers.PlayAgent;
+import games.CFour.StateObserverC4;
+import games.StateObservation;
+import org.junit.Test;
+import params.*;
+import tools.Types;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Random;
+
+public class NTuple4WeightFileTest {
+
+    /**
+     * Test that an n-tuple agent saved as binary weight file ({@link NTuple4WeightFile#EXT}) and loaded again (with
+     * memory-mapped weights) has exactly the same {@code getScore} values as the agent before saving. This is checked
+     * for each weight type double, float and int16 on the states of random Connect-Four episodes.
+     * <p>
+     * Agents with sparse LUTs cannot be saved as weight file, this has to throw an {@link IOException}.
+     */
+    @Test
+    public void roundTripTest() throws IOException {
+        ArrayList<StateObservation> states = randomStates(10, 42);
+        int[] weightTypes = {NTuple4.WEIGHT_DOUBLE, NTuple4.WEIGHT_FLOAT, NTuple4.WEIGHT_INT16};
+        for (int weightType : weightTypes) {
+            TDNTuple4Agt pa = NTuple4TestAgents.trainedC4Agent(200);
+            pa.convertWeightType(weightType);
+            File file = tempWeightFile();
+            NTuple4WeightFile.save(pa, file.getPath());
+            PlayAgent qa = NTuple4WeightFile.load(file.getPath());
+            qa.instantiateAfterLoading();
+
+            assert qa instanceof TDNTuple4Agt : "loaded agent is not a TDNTuple4Agt";
+            TDNTuple4Agt ta = (TDNTuple4Agt) qa;
+            assert ta.getNTupleValueFunc().getWeightType() == weightType : "weight type changed for "+weightType;
+            for (NTuple4 nt : ta.getNTupleValueFunc().getNTuples())
+                assert nt.isMapped() : "weights of the loaded agent are not memory-mapped";
+            assertSameScores(pa, ta, states, "weightType="+weightType);
+            System.out.println("[roundTripTest] weightType="+weightType+": "+states.size()+" states OK, file size "
+                    +file.length()+" bytes");
+        }
+
+        TDNTuple4Agt pa = NTuple4TestAgents.trainedC4Agent(20);
+        pa.convertWeightType(NTuple4.WEIGHT_SPARSE);
+        boolean thrown = false;
+        try {
+            NTuple4WeightFile.save(pa, tempWeightFile().getPath());
+        } catch (IOException e) {
+            thrown = true;
+        }
+        assert thrown : "saving an agent with sparse LUTs did not throw an IOException";
+        System.out.println("[roundTripTest] finished");
+    }
+
+    /**
+     * Test that a wrapped n-tuple agent (here: {@link MaxN2Wrapper}) is saved together with its wrapper: The agent
+     * loaded from the weight file is again a {@link MaxN2Wrapper} with the same nPly, and its inner agent has
+     * memory-mapped weights with the same {@code getScore} values as before saving.
+     * <p>
+     * A wrapper which is not serializable ({@link MCTSWrapperAgent}) cannot be saved, this has to throw an
+     * {@link IOException} and has to leave the weights of the inner agent in place.
+     */
+    @Test
+    public void wrapperRoundTripTest() throws IOException {
+        ArrayList<StateObservation> states = randomStates(10, 43);
+        TDNTuple4Agt pa = NTuple4TestAgents.trainedC4Agent(200);
+        pa.convertWeightType(NTuple4.WEIGHT_FLOAT);
+        MaxN2Wrapper wa = new MaxN2Wrapper(pa, 2, new ParOther());
+        File file = tempWeightFile();
+        NTuple4WeightFile.save(wa, file.getPath());
+        PlayAgent qa = NTuple4WeightFile.load(file.getPath());
+        qa.instantiateAfterLoading();
+
+        assert qa instanceof MaxN2Wrapper : "loaded agent is not a MaxN2Wrapper, but "+qa.getClass().getName();
+        assert qa.getWrappedPlayAgent() instanceof TDNTuple4Agt : "wrapped agent is not a TDNTuple4Agt";
+        assert qa.stringDescr().equals(wa.stringDescr()) : "wrapper changed: "+qa.stringDescr();
+        TDNTuple4Agt ta = (TDNTuple4Agt) qa.getWrappedPlayAgent();
+        for (NTuple4 nt : ta.getNTupleValueFunc().getNTuples())
+            assert nt.isMapped() : "weights of the loaded inner agent are not memory-mapped";
+        assertSameScores(pa, ta, states, "wrapped");
+
+        MCTSWrapperAgent mwa = new MCTSWrapperAgent(50, 1.0, new PlayAgentApproximator(pa),
+                "MCTS-Wrapped "+pa.getName(), -1, new ParOther());
+        boolean thrown = false;
+        try {
+            NTuple4WeightFile.save(mwa, tempWeightFile().getPath());
+        } catch (IOException e) {
+            thrown = true;
+        }
+        assert thrown : "saving a non-serializable wrapper did not throw an IOException";
+        for (NTuple4 nt : pa.getNTupleValueFunc().getNTuples())
+            assert nt.getWeightArray() != null : "weights of the inner agent not restored after failed save";
+        System.out.println("[wrapperRoundTripTest] finished");
+    }
+
+    /**
+     * Test that an agent loaded from a weight file (with read-only, memory-mapped weights) can be trained further:
+     * sequentially ({@code trainAgent}), with worker threads ({@code trainAgentParallel}) and with replicas
+     * ({@code trainAgentReplicas}). The weights are copied to the heap at the start of training, afterwards the agent
+     * is no longer mapped and its weights have changed.
+     */
+    @Test
+    public void trainLoadedTest() throws IOException {
+        ArrayList<StateObservation> states = randomStates(2, 44);
+        TDNTuple4Agt pa = NTuple4TestAgents.trainedC4Agent(100);
+        pa.convertWeightType(NTuple4.WEIGHT_FLOAT);
+        File file = tempWeightFile();
+        NTuple4WeightFile.save(pa, file.getPath());
+        String[] modes = {"trainAgent", "trainAgentParallel", "trainAgentReplicas"};
+        for (String mode : modes) {
+            TDNTuple4Agt ta = (TDNTuple4Agt) NTuple4WeightFile.load(file.getPath());
+            ta.instantiateAfterLoading();
+            assert ta.getNTupleValueFunc().isMapped() : mode+": loaded agent is not mapped";
+            ta.getParTD().setNumTrainThreads(2);
+            ta.getParTD().setNumReplicas(2);
+            ta.rand = new Random(42);
+            if (mode.equals("trainAgent"))
+                ta.trainAgent(new StateObserverC4());
+            else if (mode.equals("trainAgentParallel"))
+                ta.trainAgentParallel(4, StateObserverC4::new);
+            else
+                ta.trainAgentReplicas(4, StateObserverC4::new);
+            assert !ta.getNTupleValueFunc().isMapped() : mode+": agent is still mapped after training";
+            boolean changed = false;
+            for (StateObservation so : states)
+                changed |= (pa.getScore(so, so) != ta.getScore(so, so));
+            assert changed : mode+": training did not change the weights";
+            System.out.println("[trainLoadedTest] "+mode+" OK");
+        }
+    }
+
+    private static void assertSameScores(TDNTuple4Agt pa, TDNTuple4Agt qa, ArrayList<StateObservation> states,
+                                         String descr) {
+        for (StateObservation so : states) {
+            double s1 = pa.getScore(so, so);
+            double s2 = qa.getScore(so, so);
+            assert s1 == s2 : descr+": getScore differs ("+s1+" vs. "+s2+") for state\n"+so;
+        }
+    }
+
+    /**
+     * @return all states visited in {@code numEpisodes} random Connect-Four episodes
+     */
+    private static ArrayList<StateObservation> randomStates(int numEpisodes, long seed) {
+        Random rand = new Random(seed);
+        ArrayList<StateObservation> states = new ArrayList<>();
+        for (int e=0; e<numEpisodes; e++) {
+            StateObservation so = new StateObserverC4();
+            while (!so.isGameOver()) {
+                ArrayList<Types.ACTIONS> acts = so.getAvailableActions();
+                so.advance(acts.get(rand.nextInt(acts.size())));
+                states.add(so.copy());
+            }
+        }
+        return states;
+    }
+
+    private static File tempWeightFile() throws IOException {
+        File file = File.createTempFile("ntuple4-", NTuple4WeightFile.EXT);
+        file.deleteOnExit();
+        return file;
+    }
+}
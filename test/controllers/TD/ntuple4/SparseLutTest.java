@@ -0,0 +1,152 @@
+package controllers.TD.ntuple4;
+
+import games.CFour.StateObserverC4;
+import games.CFour.XNTupleFuncsC4;
+import games.StateObservation;
+import org.junit.Test;
+import params.*;
+import tools.Types;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Random;
+
+public class SparseLutTest {
+
+    /**
+     * Test {@link SparseLut#get(long)}, {@link SparseLut#set(long, double)} and {@link SparseLut#add(long, double)}
+     * against a {@link HashMap} for many random keys (small and huge LUT indices), including the growth of the
+     * table. Keys never touched read as 0, and adding or setting 0 for them does not occupy an entry.
+     */
+    @Test
+    public void getAddTest() {
+        SparseLut lut = new SparseLut(0);
+        HashMap<Long, Float> ref = new HashMap<>();
+        Random rand = new Random(42);
+        for (int n=0; n<200000; n++) {
+            long key = (n%2==0) ? rand.nextInt(50000) : (rand.nextLong() & Long.MAX_VALUE);
+            double dW = rand.nextGaussian();
+            if (n%10==0) {
+                lut.set(key, dW);
+                ref.put(key, (float) dW);
+            } else {
+                lut.add(key, dW);
+                ref.put(key, ref.getOrDefault(key, 0.0f) + (float) dW);
+            }
+        }
+        assert lut.size() == ref.size() : "size "+lut.size()+" differs from reference "+ref.size();
+        for (long key : ref.keySet())
+            assert lut.get(key) == ref.get(key) : "weight for key "+key+" differs";
+
+        int occupied = 0;
+        for (int s=0; s<lut.tableLength(); s++) {
+            if (lut.keyAt(s) >= 0) {
+                occupied++;
+                assert lut.valAt(s) == ref.get(lut.keyAt(s)) : "valAt("+s+") differs";
+            }
+        }
+        assert occupied == ref.size() : "slot iteration finds "+occupied+" instead of "+ref.size()+" entries";
+
+        int size = lut.size();
+        for (long key=Long.MAX_VALUE-1000; key<Long.MAX_VALUE; key++) {
+            if (ref.containsKey(key)) continue;
+            assert lut.get(key) == 0.0f : "untouched key "+key+" does not read as 0";
+            lut.add(key, 0.0);
+            lut.set(key, 0.0);
+        }
+        assert lut.size() == size : "adding or setting 0 occupied new entries";
+        assert lut.getNumEvicted() == 0 : "entries evicted without cap";
+
+        lut.scale(0.5);
+        for (long key : ref.keySet())
+            assert lut.get(key) == ref.get(key) * 0.5f : "scaled weight for key "+key+" differs";
+        lut.clear();
+        assert lut.size() == 0 && lut.get(ref.keySet().iterator().next()) == 0.0f : "clear() did not remove entries";
+        System.out.println("[getAddTest] "+ref.size()+" keys OK");
+    }
+
+    /**
+     * Test the cap of {@link SparseLut}: The number of occupied entries never exceeds the cap, the evicted entries are
+     * counted, and the entries which are updated frequently (hot keys) survive the eviction of cold entries with
+     * their weights unchanged.
+     */
+    @Test
+    public void capEvictionTest() {
+        int cap = 100;
+        SparseLut lut = new SparseLut(cap);
+        HashMap<Long, Float> hot = new HashMap<>();
+        Random rand = new Random(42);
+        long inserted = 0;
+        for (long key=0; key<40; key++) {
+            for (int k=0; k<10; k++) {
+                float dW = (float) rand.nextGaussian();
+                lut.add(key, dW);
+                hot.put(key, hot.getOrDefault(key, 0.0f) + dW);
+            }
+            inserted++;
+        }
+        for (int n=0; n<2000; n++) {
+            lut.add(1000+n, 1.0);            // a cold key, updated only once
+            inserted++;
+            assert lut.size() <= cap : "size "+lut.size()+" exceeds cap "+cap;
+            if (n%10==9) {
+                for (long key : hot.keySet()) {
+                    float dW = (float) rand.nextGaussian();
+                    lut.add(key, dW);
+                    hot.put(key, hot.get(key) + dW);
+                }
+            }
+        }
+        assert lut.getCap() == cap;
+        assert lut.getNumEvicted() > 0 : "no entries evicted";
+        assert lut.getNumEvicted() == inserted - lut.size()
+                : "evicted "+lut.getNumEvicted()+" != inserted "+inserted+" - size "+lut.size();
+        for (long key : hot.keySet())
+            assert lut.get(key) == hot.get(key) : "hot key "+key+" was evicted or changed";
+        System.out.println("[capEvictionTest] "+inserted+" keys inserted, "+lut.getNumEvicted()+" evicted, size "
+                +lut.size());
+    }
+
+    /**
+     * Test that an agent with sparse LUTs ({@link NTuple4#WEIGHT_SPARSE}, no cap) learns exactly the same as an agent
+     * with dense float LUTs ({@link NTuple4#WEIGHT_FLOAT}), since both store {@code float} weights: After a small
+     * training run on Connect-Four, both agents have the same {@code getScore} for all states of random episodes, and
+     * the sparse LUTs occupy only the entries which were visited.
+     */
+    @Test
+    public void denseEquivalenceTest() {
+        TDNTuple4Agt dense = trainedAgent(NTuple4.WEIGHT_FLOAT, 100);
+        TDNTuple4Agt sparse = trainedAgent(NTuple4.WEIGHT_SPARSE, 100);
+        Random rand = new Random(43);
+        int numStates = 0;
+        for (int e=0; e<10; e++) {
+            StateObservation so = new StateObserverC4();
+            while (!so.isGameOver()) {
+                ArrayList<Types.ACTIONS> acts = so.getAvailableActions();
+                so.advance(acts.get(rand.nextInt(acts.size())));
+                double s1 = dense.getScore(so, so);
+                double s2 = sparse.getScore(so, so);
+                assert s1 == s2 : "getScore differs (dense "+s1+", sparse "+s2+") for state\n"+so;
+                numStates++;
+            }
+        }
+        long occupied = 0, nonZero = 0, lutSize = 0;
+        for (NTuple4 nt : sparse.getNTupleValueFunc().getNTuples()) {
+            occupied += nt.getNumOccupied();
+            lutSize += nt.getLutSize();
+        }
+        for (NTuple4 nt : dense.getNTupleValueFunc().getNTuples())
+            for (int k=0; k<nt.getLutLength(); k++)
+                if (((float[]) nt.getWeightArray())[nt.getLutBase()+k] != 0.0f) nonZero++;
+        assert occupied >= nonZero && occupied < lutSize
+                : "occupied "+occupied+", non-zero dense weights "+nonZero+", LUT size "+lutSize;
+        System.out.println("[denseEquivalenceTest] "+numStates+" states OK, "+occupied+" of "+lutSize
+                +" entries occupied");
+    }
+
+    private static TDNTuple4Agt trainedAgent(int weightType, int episodes) {
+        ParNT ntPar = new ParNT();
+        ntPar.setWeightType(weightType);
+        return NTuple4TestAgents.trainedAgent(new XNTupleFuncsC4(), ntPar, episodes, StateObserverC4::new);
+    }
+}
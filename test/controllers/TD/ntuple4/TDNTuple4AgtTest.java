@@ -0,0 +1,89 @@
+package controllers.TD.ntuple4;
+
+import games.CFour.StateObserverC4;
+import games.CFour.XNTupleFuncsC4;
+import games.Othello.StateObserverOthello;
+import games.Othello.XNTupleFuncsOthello;
+import games.StateObsWithBoardVector;
+import games.StateObservation;
+import games.XNTupleFuncs;
+import org.junit.Test;
+import params.*;
+import tools.Types;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.Supplier;
+
+public class TDNTuple4AgtTest {
+
+    /**
+     * Test that the delta evaluation of afterstates ({@link NTuple4ValueFunc.DeltaEval}) gives exactly the same values
+     * as the full evaluation {@link TDNTuple4Agt#getScore(StateObservation, StateObservation)} of these afterstates.
+     * This is checked for Othello and Connect-Four, with and without symmetries, for all afterstates of the states
+     * visited in random episodes.
+     * <p>
+     * In addition, {@link TDNTuple4Agt#getNextAction2(StateObservation, boolean, boolean)} has to return the same
+     * VTable with and without delta evaluation ({@link TDNTuple4Agt#DELTA_EVAL}).
+     */
+    @Test
+    public void deltaEvalTest() {
+        deltaEvalGame("Othello", new XNTupleFuncsOthello(), StateObserverOthello::new);
+        deltaEvalGame("ConnectFour", new XNTupleFuncsC4(), StateObserverC4::new);
+        System.out.println("[deltaEvalTest] finished");
+    }
+
+    private void deltaEvalGame(String game, XNTupleFuncs xnf, Supplier<StateObservation> startSO) {
+        for (boolean useSymmetry : new boolean[]{false, true}) {
+            TDNTuple4Agt pa = trainedAgent(xnf, useSymmetry, 20, startSO);
+            NTuple4ValueFunc vf = pa.getNTupleValueFunc();
+            Random rand = new Random(42);
+            int numStates = 0, numAfterstates = 0;
+            for (int e=0; e<3; e++) {
+                StateObservation so = startSO.get();
+                while (!so.isGameOver()) {
+                    NTuple4ValueFunc.DeltaEval dEval = vf.newDeltaEval(so);
+                    assert dEval != null : game+": no delta evaluation possible (useSymmetry="+useSymmetry+")";
+                    ArrayList<Types.ACTIONS> acts = so.getAvailableActions();
+                    for (Types.ACTIONS act : acts) {
+                        StateObservation newSO = so.copy();
+                        newSO.advanceDeterministic(act);
+                        if (newSO.isGameOver()) continue;      // getScore returns 0 without evaluation
+                        double full = pa.getScore(newSO, so);
+                        double delta = dEval.getScoreI(new StateObsWithBoardVector(newSO, xnf), so.getPlayer());
+                        assert full == delta : game+" (useSymmetry="+useSymmetry+"): delta evaluation "+delta
+                                +" differs from getScore "+full+" for action "+act.toInt()+" in state\n"+so;
+                        numAfterstates++;
+                    }
+                    assertSameVTable(pa, so, game);
+                    so.advance(acts.get(rand.nextInt(acts.size())));
+                    numStates++;
+                }
+            }
+            System.out.println("[deltaEvalTest] "+game+" (useSymmetry="+useSymmetry+"): "+numStates+" states, "
+                    +numAfterstates+" afterstates OK");
+        }
+    }
+
+    private static void assertSameVTable(TDNTuple4Agt pa, StateObservation so, String game) {
+        boolean oldDeltaEval = TDNTuple4Agt.DELTA_EVAL;
+        try {
+            TDNTuple4Agt.DELTA_EVAL = false;
+            Types.ACTIONS_VT actFull = pa.getNextAction2(so.partialState(), false, true);
+            TDNTuple4Agt.DELTA_EVAL = true;
+            Types.ACTIONS_VT actDelta = pa.getNextAction2(so.partialState(), false, true);
+            assert Arrays.equals(actFull.getVTable(), actDelta.getVTable())
+                    : game+": VTable differs with delta evaluation in state\n"+so;
+        } finally {
+            TDNTuple4Agt.DELTA_EVAL = oldDeltaEval;
+        }
+    }
+
+    private static TDNTuple4Agt trainedAgent(XNTupleFuncs xnf, boolean useSymmetry, int episodes,
+                                             Supplier<StateObservation> startSO) {
+        ParNT ntPar = new ParNT();
+        ntPar.setUSESYMMETRY(useSymmetry);
+        return NTuple4TestAgents.trainedAgent(xnf, ntPar, episodes, startSO);
+    }
+}
@@ -0,0 +1,77 @@
+package controllers;
+
+import games.StateObservation;
+import params.ParMaxN;
+import params.ParOther;
+import tools.ScoreTuple;
+
+/**
+ * Create the agents for the tests of the time-limited search ({@link ParMaxN#getMaxNMoveTime()}) of
+ * {@link MaxNAgent} and {@link ExpectimaxNAgent}: agents with transposition table and a given depth and move time,
+ * and agents with a slow leaf evaluation (5 ms), so that the time limit expires in a predictable iteration.
+ * <p>
+ * The class does not contain test cases itself, it is used by {@link MaxNAgentTest} and
+ * {@link ExpectimaxNAgentTest}.
+ */
+final class TimedAgents {
+
+    private TimedAgents() { }
+
+    /**
+     * @return the parameters for a search with transposition table, depth {@code depth} and move time
+     *      {@code moveTime} (0: fixed-depth search)
+     */
+    static ParMaxN timedPar(int depth, int moveTime) {
+        ParMaxN mpar = new ParMaxN();
+        mpar.setMaxNDepth(depth);
+        mpar.setMaxNUseHashmap(true);
+        mpar.setMaxNMoveTime(moveTime);
+        return mpar;
+    }
+
+    static MaxNAgent maxN(int depth, int moveTime) {
+        return new MaxNAgent("MaxN", timedPar(depth, moveTime), new ParOther());
+    }
+
+    static ExpectimaxNAgent expectimaxN(int depth, int moveTime) {
+        return new ExpectimaxNAgent("ExpectimaxN", timedPar(depth, moveTime), new ParOther());
+    }
+
+    private static void sleepLeaf() {
+        try {
+            Thread.sleep(5);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * A {@link MaxNAgent} with a slow leaf evaluation
+     */
+    static class SlowMaxNAgent extends MaxNAgent {
+        SlowMaxNAgent(ParMaxN mpar) {
+            super("SlowMaxN", mpar, new ParOther());
+        }
+
+        @Override
+        public ScoreTuple estimateGameValueTuple(StateObservation sob, ScoreTuple prevTuple) {
+            sleepLeaf();
+            return super.estimateGameValueTuple(sob, prevTuple);
+        }
+    }
+
+    /**
+     * An {@link ExpectimaxNAgent} with a slow leaf evaluation
+     */
+    static class SlowExpectimaxNAgent extends ExpectimaxNAgent {
+        SlowExpectimaxNAgent(ParMaxN mpar) {
+            super("SlowExpectimaxN", mpar, new ParOther());
+        }
+
+        @Override
+        public ScoreTuple estimateGameValueTuple(StateObservation sob, ScoreTuple prevTuple) {
+            sleepLeaf();
+            return super.estimateGameValueTuple(sob, prevTuple);
+        }
+    }
+}
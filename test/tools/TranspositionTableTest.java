@@ -0,0 +1,171 @@
+package tools;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link TranspositionTable}: store/probe round trip, draft-gated reuse, collisions, the replacement
+ * scheme of the two-slot buckets and the aging of entries with {@link TranspositionTable#newSearch()}.
+ */
+public class TranspositionTableTest {
+
+    /**
+     * Test that {@link TranspositionTable#probe(long, int)} returns exactly what was stored: score tuple (bit-exact,
+     * also for negative and tiny values), draft, exactness, bound type and best action (also negative and
+     * {@link TranspositionTable#NO_ACTION}). Drafts beyond {@link TranspositionTable#MAX_DRAFT} are clamped.
+     * {@link TranspositionTable#clear()} removes all entries.
+     */
+    @Test
+    public void roundTripTest() {
+        TranspositionTable tt = new TranspositionTable(1, 3);
+        long[] keys = {1L, 0x9E3779B97F4A7C15L, -42L, Long.MAX_VALUE};
+        int[] actions = {17, -5, TranspositionTable.NO_ACTION, 0};
+        for (int n=0; n<keys.length; n++) {
+            ScoreTuple sc = scoreTuple(-1.5+n, 0.25, 1e-300*n);
+            int bound = n % 3;
+            tt.store(keys[n], n+1, n%2==0, bound, sc, actions[n]);
+            TranspositionTable.Entry e = tt.probe(keys[n], n+1);
+            assert e != null : "entry for key "+keys[n]+" not found";
+            for (int i=0; i<3; i++)
+                assert Double.doubleToRawLongBits(e.scoreTuple.scTup[i]) == Double.doubleToRawLongBits(sc.scTup[i])
+                        : "score "+i+" differs for key "+keys[n];
+            assert e.draft == n+1 && e.exact == (n%2==0) && e.bound == bound && e.bestAction == actions[n]
+                    : "meta data differ for key "+keys[n];
+        }
+        tt.store(5L, 100000, false, scoreTuple(0, 0, 0), 1);
+        assert tt.probe(5L, 0).draft == TranspositionTable.MAX_DRAFT : "draft not clamped to MAX_DRAFT";
+        assert tt.getHits() == keys.length+1 && tt.getStores() == keys.length+1;
+
+        tt.clear();
+        for (long key : keys)
+            assert tt.probe(key, 0) == null : "entry for key "+key+" still there after clear()";
+        assert tt.getStores() == keys.length+1 : "clear() reset the statistics";
+        System.out.println("[roundTripTest] "+tt.stringDescr());
+    }
+
+    /**
+     * Test the draft gating: A non-exact entry is returned for any requested draft, but counts as a hit only if its
+     * draft is sufficient (else as 'shallow' hit, which the caller must not use). An exact entry counts as a hit for
+     * every draft. A store with lower priority for the same key does not overwrite the better entry.
+     */
+    @Test
+    public void draftTest() {
+        TranspositionTable tt = new TranspositionTable(1, 2);
+        long key = 12345L;
+        tt.store(key, 3, false, scoreTuple(0.5, -0.5), 1);
+        TranspositionTable.Entry e = tt.probe(key, 5);
+        assert e != null && e.draft == 3 && !e.exact : "non-exact entry not returned";
+        assert tt.getShallowHits() == 1 && tt.getHits() == 0 : "probe with larger draft not counted as shallow";
+        tt.probe(key, 3);
+        assert tt.getHits() == 1 : "probe with sufficient draft not counted as hit";
+
+        tt.store(key, 2, false, scoreTuple(1.0, -1.0), 2);
+        e = tt.probe(key, 0);
+        assert e.draft == 3 && e.bestAction == 1 && e.scoreTuple.scTup[0] == 0.5 : "better entry was overwritten";
+
+        tt.store(key, 1, true, scoreTuple(1.0, -1.0), 2);
+        e = tt.probe(key, 20);
+        assert e.exact && e.bestAction == 2 : "exact entry did not replace the non-exact one";
+        assert tt.getHits() == 3 : "probe of an exact entry not counted as hit";
+
+        tt.store(key, 4, false, TranspositionTable.BOUND_LOWER, scoreTuple(0.0, 0.0), 3);
+        assert tt.probe(key, 0).exact : "non-exact bound replaced an exact entry";
+        long key2 = 54321L;
+        tt.store(key2, 4, false, TranspositionTable.BOUND_LOWER, scoreTuple(0.0, 0.0), 3);
+        tt.store(key2, 4, false, scoreTuple(0.1, -0.1), 4);
+        e = tt.probe(key2, 4);
+        assert e.bound == TranspositionTable.BOUND_NONE && e.bestAction == 4 : "value did not replace the bound";
+        tt.store(key2, 4, false, TranspositionTable.BOUND_UPPER, scoreTuple(0.0, 0.0), 5);
+        assert tt.probe(key2, 4).bestAction == 4 : "bound replaced the value with the same draft";
+        System.out.println("[draftTest] "+tt.stringDescr());
+    }
+
+    /**
+     * Test that a probe for a key which is not stored, but falls into an occupied bucket, is a miss (the check word
+     * of the slot does not match the key) and is counted as collision.
+     */
+    @Test
+    public void collisionTest() {
+        TranspositionTable tt = new TranspositionTable(1, 2);
+        long numBuckets = tt.getCapacity() / 2;
+        long key = 7L;
+        tt.store(key, 2, false, scoreTuple(0.3, -0.3), 1);
+        for (int n=1; n<=10; n++) {
+            long other = key + n*numBuckets;        // same bucket, other key
+            assert tt.probe(other, 0) == null : "key "+other+" matched the entry of key "+key;
+        }
+        assert tt.getMisses() == 10 && tt.getCollisions() == 10 : "misses "+tt.getMisses()+", collisions "
+                +tt.getCollisions();
+        assert tt.probe(key + 1, 0) == null && tt.getCollisions() == 10 : "miss in an empty bucket is a collision";
+        assert tt.probe(key, 2).bestAction == 1 : "the stored entry was lost";
+        System.out.println("[collisionTest] "+tt.stringDescr());
+    }
+
+    /**
+     * Test the replacement scheme of a bucket (keys A, B, ... in the same bucket): The depth-preferred slot keeps the
+     * entry with the higher priority (exact, then larger draft) of the current search, the always-replace slot
+     * takes the others. An entry of an earlier search (before {@link TranspositionTable#newSearch()}) is replaced
+     * by an entry of the current search regardless of its draft.
+     */
+    @Test
+    public void replacementTest() {
+        TranspositionTable tt = new TranspositionTable(1, 2);
+        long numBuckets = tt.getCapacity() / 2;
+        long[] k = new long[6];
+        for (int n=0; n<k.length; n++) k[n] = 99L + n*numBuckets;
+        ScoreTuple sc = scoreTuple(0.0, 0.0);
+
+        tt.store(k[0], 5, false, sc, 0);        // depth-preferred slot
+        tt.store(k[1], 2, false, sc, 1);        // lower priority: always-replace slot
+        assertPresent(tt, k, true, true, false, false, false, false);
+        tt.store(k[2], 3, false, sc, 2);        // lower priority than k[0]: replaces k[1]
+        assertPresent(tt, k, true, false, true, false, false, false);
+        tt.store(k[3], 7, false, sc, 3);        // higher priority: replaces k[0]
+        assertPresent(tt, k, false, false, true, true, false, false);
+        tt.store(k[4], 1, true, sc, 4);         // exact beats any draft: replaces k[3]
+        assertPresent(tt, k, false, false, true, false, true, false);
+        assert tt.getReplaced() == 3 : "replaced "+tt.getReplaced()+" instead of 3";
+
+        tt.newSearch();
+        tt.store(k[5], 1, false, sc, 5);        // k[4] is from an earlier search: replaced despite being exact
+        assertPresent(tt, k, false, false, true, false, false, true);
+        tt.store(k[0], 0, false, sc, 0);        // lower priority than k[5] of the current search: replaces k[2]
+        assertPresent(tt, k, true, false, false, false, false, true);
+        System.out.println("[replacementTest] "+tt.stringDescr());
+    }
+
+    /**
+     * Test the aging with {@link TranspositionTable#newSearch()}: Entries of earlier searches stay valid for probes
+     * (also after many searches, when the generation counter wraps around), but are replaced by new entries.
+     */
+    @Test
+    public void newSearchTest() {
+        TranspositionTable tt = new TranspositionTable(1, 2);
+        long numBuckets = tt.getCapacity() / 2;
+        long keyA = 3L, keyB = 3L + numBuckets, keyC = 3L + 2*numBuckets;
+        tt.store(keyA, 10, true, scoreTuple(1.0, -1.0), 1);
+        for (int n=0; n<10000; n++) tt.newSearch();      // more than the 13-bit generation counter holds
+        TranspositionTable.Entry e = tt.probe(keyA, 10);
+        assert e != null && e.exact && e.draft == 10 : "entry of an earlier search not found";
+
+        tt.newSearch();
+        tt.store(keyB, 1, false, scoreTuple(0.0, 0.0), 2);
+        assert tt.probe(keyA, 0) == null : "aged entry was not replaced";
+        tt.store(keyC, 0, false, scoreTuple(0.0, 0.0), 3);
+        assert tt.probe(keyB, 0) != null && tt.probe(keyC, 0) != null : "entries of the current search were lost";
+        System.out.println("[newSearchTest] "+tt.stringDescr());
+    }
+
+    private static void assertPresent(TranspositionTable tt, long[] keys, boolean... present) {
+        for (int n=0; n<keys.length; n++) {
+            TranspositionTable.Entry e = tt.probe(keys[n], 0);
+            assert (e != null) == present[n] : "key "+n+(present[n] ? " missing" : " still present");
+            assert e == null || e.bestAction == n : "key "+n+" has the wrong entry";
+        }
+    }
+
+    private static ScoreTuple scoreTuple(double... scores) {
+        ScoreTuple sc = new ScoreTuple(scores.length);
+        System.arraycopy(scores, 0, sc.scTup, 0, scores.length);
+        return sc;
+    }
+}
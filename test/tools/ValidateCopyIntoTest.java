@@ -0,0 +1,85 @@
+package tools;
+
+import games.CFour.StateObserverC4;
+import games.Hex.StateObserverHex;
+import games.Othello.StateObserverOthello;
+import games.Sim.StateObserverSim;
+import games.StateObservation;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ *  Validate the overrides of {@link StateObservation#copyInto(StateObservation)} (which refill a reused target
+ *  instead of allocating a new state, e.g. for the rollouts of {@link controllers.MCTS.SingleTreeNode}): Play random
+ *  episodes and copy every state into the same scratch target. The target has to be reused and has to be
+ *  indistinguishable from {@link StateObservation#copy()}: same {@link StateObservation#uniqueStringDescr()},
+ *  {@link StateObservation#hash64()}, available actions, player and move counter. Advancing the target must not
+ *  change the source state.
+ */
+public class ValidateCopyIntoTest {
+    private static final int NUM_EPISODES = 20;
+
+    @Test
+    public void testC4()        { assert runTestCopyInto(new StateObserverC4()); }
+
+    @Test
+    public void testOthello()   { assert runTestCopyInto(new StateObserverOthello()); }
+
+    @Test
+    public void testSim()       { assert runTestCopyInto(new StateObserverSim()); }
+
+    @Test
+    public void testHex()       { assert runTestCopyInto(new StateObserverHex()); }
+
+    public boolean runTestCopyInto(StateObservation startSO) {
+        Random rand = new Random(42);
+        String name = startSO.getClass().getSimpleName();
+        StateObservation scratch = startSO.copy();
+        int numStates = 0;
+        for (int e = 0; e < NUM_EPISODES; e++) {
+            StateObservation so = startSO.copy();
+            while (true) {
+                StateObservation target = so.copyInto(scratch);
+                assert target == scratch : name + ": copyInto did not reuse the target";
+                assertSameState(so.copy(), target, name);
+
+                // the target is independent of the source: play it to the end (this also leaves it in a state
+                // different from the next source state)
+                String key = so.uniqueStringDescr();
+                long hash = so.hash64();
+                while (!target.isGameOver()) {
+                    ArrayList<Types.ACTIONS> acts = target.getAvailableActions();
+                    target.advance(acts.get(rand.nextInt(acts.size())));
+                }
+                assert key.equals(so.uniqueStringDescr()) && hash == so.hash64()
+                        : name + ": advancing the target changed the source\n" + so.stringDescr();
+                numStates++;
+
+                if (so.isGameOver()) break;
+                ArrayList<Types.ACTIONS> acts = so.getAvailableActions();
+                so.advance(acts.get(rand.nextInt(acts.size())));
+            }
+        }
+        System.out.println(name + ": copyInto check for " + numStates + " states ... OK");
+        return true;
+    }
+
+    private static void assertSameState(StateObservation expected, StateObservation actual, String name) {
+        String descr = expected.stringDescr();
+        assert expected.uniqueStringDescr().equals(actual.uniqueStringDescr())
+                : name + ": uniqueStringDescr differs from copy() in\n" + descr;
+        assert expected.hash64() == actual.hash64() : name + ": hash64 differs from copy() in\n" + descr;
+        assert expected.getPlayer() == actual.getPlayer() : name + ": player differs from copy() in\n" + descr;
+        assert expected.getMoveCounter() == actual.getMoveCounter()
+                : name + ": move counter differs from copy() in\n" + descr;
+        assert expected.isGameOver() == actual.isGameOver() : name + ": isGameOver differs from copy() in\n" + descr;
+        ArrayList<Types.ACTIONS> a1 = expected.getAvailableActions();
+        ArrayList<Types.ACTIONS> a2 = actual.getAvailableActions();
+        assert a1.size() == a2.size() : name + ": number of available actions differs from copy() in\n" + descr;
+        for (int i = 0; i < a1.size(); i++)
+            assert a1.get(i).toInt() == a2.get(i).toInt()
+                    : name + ": available action " + i + " differs from copy() in\n" + descr;
+    }
+}
@@ -0,0 +1,146 @@
+package tools;
+
+import games.BlackJack.StateObserverBlackJack;
+import games.CFour.StateObserverC4;
+import games.EWN.StateObserverEWN;
+import games.Hex.StateObserverHex;
+import games.KuhnPoker.StateObserverKuhnPoker;
+import games.Nim.StateObserverNim;
+import games.Nim.StateObserverNim3P;
+import games.Othello.StateObserverOthello;
+import games.Poker.StateObserverPoker;
+import games.RubiksCube.CubeState;
+import games.RubiksCube.CubeStateFactory;
+import games.RubiksCube.StateObserverCube;
+import games.Sim.StateObserverSim;
+import games.SimpleGame.StateObserverSG;
+import games.StateObservation;
+import games.TicTacToe.StateObserverTTT;
+import games.Yavalath.StateObserverYavalath;
+import games.ZweiTausendAchtundVierzig.StateObserver2048;
+import org.junit.Test;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Random;
+
+/**
+ *  Validate {@link StateObservation#hash64()} for several games: Play random episodes and check in every state that
+ *  <ul>
+ *  <li> the (incrementally maintained) hash is the same as the hash of a fresh copy of the state (a serialized and
+ *       reloaded copy, which has to recompute its transient hash from scratch),
+ *  <li> equal {@link StateObservation#uniqueStringDescr()} implies equal {@code hash64()} (the contract) and
+ *  <li> different {@code uniqueStringDescr()} have different hashes (no 64-bit collision among the visited states).
+ *  </ul>
+ */
+public class ValidateHash64Test {
+    private static final int NUM_EPISODES = 50;
+    private static final int MAX_MOVES = 500;       // limit for games with long episodes (2048)
+
+    @Test
+    public void testTTT()       { assert runTestHash64(new StateObserverTTT()); }
+
+    @Test
+    public void testC4()        { assert runTestHash64(new StateObserverC4()); }
+
+    @Test
+    public void testOthello()   { assert runTestHash64(new StateObserverOthello()); }
+
+    @Test
+    public void testSim()       { assert runTestHash64(new StateObserverSim()); }
+
+    @Test
+    public void testHex()       { assert runTestHash64(new StateObserverHex()); }
+
+    @Test
+    public void testNim()       { assert runTestHash64(new StateObserverNim()); }
+
+    @Test
+    public void testYavalath()  { assert runTestHash64(new StateObserverYavalath()); }
+
+    @Test
+    public void testEWN()       { assert runTestHash64(new StateObserverEWN()); }
+
+    @Test
+    public void test2048()      { assert runTestHash64(new StateObserver2048()); }
+
+    @Test
+    public void testSG()        { assert runTestHash64(new StateObserverSG()); }
+
+    @Test
+    public void testNim3P()     { assert runTestHash64(new StateObserverNim3P()); }
+
+    @Test
+    public void testCube()      { assert runTestHash64(scrambledCube()); }
+
+    @Test
+    public void testBlackJack() { assert runTestHash64(new StateObserverBlackJack()); }
+
+    @Test
+    public void testKuhnPoker() { assert runTestHash64(new StateObserverKuhnPoker()); }
+
+    @Test
+    public void testPoker()     { assert runTestHash64(new StateObserverPoker()); }
+
+    public boolean runTestHash64(StateObservation startSO) {
+        Random rand = new Random(42);
+        HashMap<String, Long> hashOf = new HashMap<>();
+        HashMap<Long, String> stringOf = new HashMap<>();
+        int numStates = 0;
+        for (int e = 0; e < NUM_EPISODES; e++) {
+            StateObservation so = startSO.copy();
+            for (int n = 0; n <= MAX_MOVES; n++) {
+                long h = so.hash64();
+                assert h == reload(so).hash64()
+                        : so.getClass().getSimpleName() + ": hash64 differs from the hash of a reloaded copy in\n" + so.stringDescr();
+                assert h == so.copy().hash64()
+                        : so.getClass().getSimpleName() + ": hash64 differs from the hash of copy() in\n" + so.stringDescr();
+
+                String key = so.uniqueStringDescr();
+                Long prev = hashOf.putIfAbsent(key, h);
+                assert prev == null || prev == h
+                        : so.getClass().getSimpleName() + ": equal uniqueStringDescr, but different hash64 for\n" + key;
+                String prevKey = stringOf.putIfAbsent(h, key);
+                assert prevKey == null || prevKey.equals(key)
+                        : so.getClass().getSimpleName() + ": hash64 collision for\n" + prevKey + "\nand\n" + key;
+                numStates++;
+
+                if (so.isGameOver()) break;
+                ArrayList<Types.ACTIONS> acts = so.getAvailableActions();
+                so.advance(acts.get(rand.nextInt(acts.size())));
+            }
+        }
+        System.out.println(startSO.getClass().getSimpleName() + ": hash64 check for " + numStates + " states ("
+                + hashOf.size() + " distinct) ... OK");
+        return true;
+    }
+
+    /**
+     * @return a cube a few random twists away from the solved cube (the solved cube is already game over)
+     */
+    private static StateObservation scrambledCube() {
+        CubeStateFactory.generateInverseTs();       // the twist tables, as the cube's Arena would set them up
+        CubeState.generateForwardTs();
+        Random rand = new Random(7);
+        StateObservation so = new StateObserverCube();
+        while (so.getMoveCounter() < 5 || so.isGameOver()) {
+            ArrayList<Types.ACTIONS> acts = so.getAvailableActions();
+            so.advance(acts.get(rand.nextInt(acts.size())));
+        }
+        return so;
+    }
+
+    private static StateObservation reload(StateObservation so) {
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            ObjectOutputStream oos = new ObjectOutputStream(bos);
+            oos.writeObject(so);
+            oos.close();
+            ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(bos.toByteArray()));
+            return (StateObservation) ois.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            throw new RuntimeException("[ValidateHash64Test] reload failed", e);
+        }
+    }
+}